@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.index.seqno;
+
+import org.elasticsearch.index.seqno.ConcurrentLocalCheckpointTracker;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the synchronized and the lock-free local checkpoint tracker when the threads that index into a shard
+ * generate a sequence number, do some work and then mark the sequence number as completed.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class LocalCheckpointTrackerBenchmark {
+
+    @Param({"synchronized", "concurrent"})
+    private String type;
+
+    // simulates the work of indexing an operation between generating its sequence number and marking it as completed
+    @Param({"0", "64", "1024"})
+    private int tokens;
+
+    private LocalCheckpointTracker tracker;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        switch (type) {
+            case "synchronized":
+                tracker = new LocalCheckpointTracker(SequenceNumbers.NO_OPS_PERFORMED, SequenceNumbers.NO_OPS_PERFORMED);
+                break;
+            case "concurrent":
+                tracker = new ConcurrentLocalCheckpointTracker(SequenceNumbers.NO_OPS_PERFORMED, SequenceNumbers.NO_OPS_PERFORMED);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown tracker type [" + type + "]");
+        }
+    }
+
+    private long index() {
+        final long seqNo = tracker.generateSeqNo();
+        Blackhole.consumeCPU(tokens);
+        tracker.markSeqNoAsCompleted(seqNo);
+        return tracker.getCheckpoint();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long index_01() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long index_02() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long index_04() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long index_08() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long index_16() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long index_32() {
+        return index();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long index_64() {
+        return index();
+    }
+}
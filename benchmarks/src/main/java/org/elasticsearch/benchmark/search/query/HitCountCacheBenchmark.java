@@ -0,0 +1,158 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.search.query;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesHitCountCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting the hits of a query on all segments of a shard with counting them on its newest segment only and taking the
+ * counts of the other segments from the {@link IndicesHitCountCache}, which is what a size=0 request does after a refresh if the
+ * same query was counted before the refresh.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class HitCountCacheBenchmark {
+
+    private static final long HOUR_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"10", "50"})
+    private int numSegments;
+
+    @Param({"10000", "100000"})
+    private int docsPerSegment;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private Query query;
+    private IndicesHitCountCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        directory = new RAMDirectory();
+        // one document per second over the last numSegments hours, one segment per hour
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            for (int segment = 0; segment < numSegments; segment++) {
+                for (int i = 0; i < docsPerSegment; i++) {
+                    final Document document = new Document();
+                    document.add(new LongPoint("@timestamp", segment * HOUR_IN_MILLIS + random.nextInt((int) HOUR_IN_MILLIS)));
+                    document.add(new StringField("status", random.nextInt(10) == 0 ? "error" : "ok", Field.Store.NO));
+                    writer.addDocument(document);
+                }
+                writer.flush();
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        // the errors of the last day, like a dashboard would count them
+        query = searcher.rewrite(new BooleanQuery.Builder()
+            .add(LongPoint.newRangeQuery("@timestamp", Math.max(0, numSegments - 24) * HOUR_IN_MILLIS, Long.MAX_VALUE),
+                BooleanClause.Occur.FILTER)
+            .add(new TermQuery(new Term("status", "error")), BooleanClause.Occur.FILTER)
+            .build());
+
+        // the counts of all segments but the newest one were cached by the requests before the last refresh
+        cache = new IndicesHitCountCache(Settings.EMPTY);
+        final Weight weight = searcher.createNormalizedWeight(query, false);
+        final List<LeafReaderContext> leaves = reader.leaves();
+        for (LeafReaderContext leaf : leaves.subList(0, leaves.size() - 1)) {
+            cache.put(leaf.reader(), query, count(weight, leaf));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cache.close();
+        reader.close();
+        directory.close();
+    }
+
+    private static int count(Weight weight, LeafReaderContext leaf) throws IOException {
+        final TotalHitCountCollector collector = new TotalHitCountCollector();
+        final BulkScorer scorer = weight.bulkScorer(leaf);
+        if (scorer != null) {
+            scorer.score(collector.getLeafCollector(leaf), leaf.reader().getLiveDocs());
+        }
+        return collector.getTotalHits();
+    }
+
+    @Benchmark
+    public int countAllSegments() throws IOException {
+        final TotalHitCountCollector collector = new TotalHitCountCollector();
+        searcher.search(query, collector);
+        return collector.getTotalHits();
+    }
+
+    @Benchmark
+    public int countUncachedSegments() throws IOException {
+        final Weight weight = searcher.createNormalizedWeight(query, false);
+        int totalHits = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final Integer cached = cache.get(leaf.reader(), query);
+            totalHits += cached != null ? cached : count(weight, leaf);
+        }
+        return totalHits;
+    }
+}
@@ -684,6 +684,7 @@ public class RestHighLevelClientTests extends ESTestCase {
             "nodes.info",
             "nodes.stats",
             "nodes.hot_threads",
+            "nodes.hot_shards",
             "nodes.usage",
             "search_shards",
         };
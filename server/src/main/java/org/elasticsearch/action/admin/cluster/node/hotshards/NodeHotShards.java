@@ -0,0 +1,80 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.admin.cluster.node.hotshards;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.indices.ShardWriteLoad;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The shards of a node with the highest write load, hottest first.
+ */
+public class NodeHotShards extends BaseNodeResponse implements ToXContentFragment {
+
+    private List<ShardWriteLoad> shards;
+
+    NodeHotShards() {
+    }
+
+    public NodeHotShards(DiscoveryNode node, List<ShardWriteLoad> shards) {
+        super(node);
+        this.shards = shards;
+    }
+
+    public List<ShardWriteLoad> getShards() {
+        return shards;
+    }
+
+    public static NodeHotShards readNodeHotShards(StreamInput in) throws IOException {
+        NodeHotShards node = new NodeHotShards();
+        node.readFrom(in);
+        return node;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.startArray("shards");
+        for (ShardWriteLoad shard : shards) {
+            shard.toXContent(builder, params);
+        }
+        builder.endArray();
+        return builder;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        shards = in.readList(ShardWriteLoad::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeList(shards);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.admin.cluster.node.hotshards;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.indices.WriteLoadMonitor;
+
+import java.io.IOException;
+
+/**
+ * A request to get the shards with the highest write load of each node.
+ */
+public class NodesHotShardsRequest extends BaseNodesRequest<NodesHotShardsRequest> {
+
+    int size = 10;
+    WriteLoadMonitor.Window window = WriteLoadMonitor.Window.ONE_MINUTE;
+
+    // for serialization
+    public NodesHotShardsRequest() {
+
+    }
+
+    /**
+     * Get hot shards from nodes based on the nodes ids specified. If none are passed, hot
+     * shards for all nodes is used.
+     */
+    public NodesHotShardsRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Sets the number of shards to return per node.
+     */
+    public NodesHotShardsRequest size(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be positive but was [" + size + "]");
+        }
+        this.size = size;
+        return this;
+    }
+
+    public WriteLoadMonitor.Window window() {
+        return this.window;
+    }
+
+    /**
+     * Sets the window over which the write load of shards is compared.
+     */
+    public NodesHotShardsRequest window(WriteLoadMonitor.Window window) {
+        this.window = window;
+        return this;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        size = in.readVInt();
+        window = WriteLoadMonitor.Window.fromId(in.readString());
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(size);
+        out.writeString(window.getId());
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.admin.cluster.node.hotshards;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+import org.elasticsearch.indices.WriteLoadMonitor;
+
+public class NodesHotShardsRequestBuilder
+    extends NodesOperationRequestBuilder<NodesHotShardsRequest, NodesHotShardsResponse, NodesHotShardsRequestBuilder> {
+
+    public NodesHotShardsRequestBuilder(ElasticsearchClient client, NodesHotShardsAction action) {
+        super(client, action, new NodesHotShardsRequest());
+    }
+
+    public NodesHotShardsRequestBuilder setSize(int size) {
+        request.size(size);
+        return this;
+    }
+
+    public NodesHotShardsRequestBuilder setWindow(WriteLoadMonitor.Window window) {
+        request.window(window);
+        return this;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.admin.cluster.node.hotshards;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TransportNodesHotShardsAction extends TransportNodesAction<NodesHotShardsRequest,
+                                                                        NodesHotShardsResponse,
+                                                                        TransportNodesHotShardsAction.NodeRequest,
+                                                                        NodeHotShards> {
+
+    private final IndicesService indicesService;
+
+    @Inject
+    public TransportNodesHotShardsAction(Settings settings, ThreadPool threadPool, ClusterService clusterService,
+                                         TransportService transportService, IndicesService indicesService, ActionFilters actionFilters) {
+        super(settings, NodesHotShardsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+            NodesHotShardsRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT, NodeHotShards.class);
+        this.indicesService = indicesService;
+    }
+
+    @Override
+    protected NodesHotShardsResponse newResponse(NodesHotShardsRequest request,
+                                                 List<NodeHotShards> responses, List<FailedNodeException> failures) {
+        return new NodesHotShardsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(String nodeId, NodesHotShardsRequest request) {
+        return new NodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected NodeHotShards newNodeResponse() {
+        return new NodeHotShards();
+    }
+
+    @Override
+    protected NodeHotShards nodeOperation(NodeRequest request) {
+        return new NodeHotShards(clusterService.localNode(),
+            indicesService.getWriteLoadMonitor().hottestShards(request.request.window(), request.request.size()));
+    }
+
+    public static class NodeRequest extends BaseNodeRequest {
+
+        NodesHotShardsRequest request;
+
+        public NodeRequest() {
+        }
+
+        NodeRequest(String nodeId, NodesHotShardsRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new NodesHotShardsRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+}
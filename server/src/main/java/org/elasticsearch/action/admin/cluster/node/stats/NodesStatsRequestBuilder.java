@@ -148,4 +148,12 @@ public class NodesStatsRequestBuilder extends NodesOperationRequestBuilder<Nodes
         return this;
     }
 
+    /**
+     * Should the search admission statistics be returned.
+     */
+    public NodesStatsRequestBuilder setSearchAdmission(boolean searchAdmission) {
+        request.searchAdmission(searchAdmission);
+        return this;
+    }
+
 }
@@ -29,7 +29,10 @@ import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.translog.Translog;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This is a utility class that holds the per request state needed to perform bulk operations on the primary.
@@ -75,6 +78,7 @@ class BulkPrimaryExecutionContext {
     private DocWriteRequest requestToExecute;
     private BulkItemResponse executionResult;
     private int retryCounter;
+    private Engine.Index[] preparedIndexOperations;
 
 
     BulkPrimaryExecutionContext(BulkShardRequest request, IndexShard primary) {
@@ -205,6 +209,53 @@ class BulkPrimaryExecutionContext {
         assert assertInvariants(ItemProcessingState.TRANSLATED);
     }
 
+    /**
+     * sets the index operations that have been parsed ahead of execution. The operations are indexed by the position of their
+     * item in the bulk request, items that were not parsed ahead of execution have a <code>null</code> entry.
+     */
+    public void setPreparedIndexOperations(Engine.Index[] operations) {
+        assert operations.length == request.items().length;
+        preparedIndexOperations = operations;
+    }
+
+    /**
+     * returns the index operation that has been parsed ahead of execution for the current item or <code>null</code> if
+     * there is none. The operation is only returned once such that retries, for instance after a mapping update, parse
+     * the document again.
+     */
+    public Engine.Index takePreparedIndexOperation() {
+        assert assertInvariants(ItemProcessingState.TRANSLATED);
+        if (preparedIndexOperations == null || requestToExecute != getCurrent()) {
+            return null;
+        }
+        final Engine.Index operation = preparedIndexOperations[currentIndex];
+        preparedIndexOperations[currentIndex] = null;
+        return operation;
+    }
+
+    /**
+     * returns the index operations that have been parsed ahead of execution for the current item and the items that directly
+     * follow it, such that they can be executed as a batch. The run ends at the first item that wasn't parsed ahead of execution
+     * or whose operation requires a mapping update, these items go through the regular execution path. The returned operations
+     * are consumed.
+     */
+    public List<Engine.Index> takePreparedIndexOperations() {
+        assert assertInvariants(ItemProcessingState.INITIAL);
+        if (preparedIndexOperations == null) {
+            return Collections.emptyList();
+        }
+        final List<Engine.Index> operations = new ArrayList<>();
+        for (int i = currentIndex; i < request.items().length; i = findNextNonAborted(i + 1)) {
+            final Engine.Index operation = preparedIndexOperations[i];
+            if (operation == null || operation.parsedDoc().dynamicMappingsUpdate() != null) {
+                break;
+            }
+            operations.add(operation);
+            preparedIndexOperations[i] = null;
+        }
+        return operations;
+    }
+
     /** returns the request that should be executed on the shard. */
     public <T extends DocWriteRequest<T>> T getRequestToExecute() {
         assert assertInvariants(ItemProcessingState.TRANSLATED);
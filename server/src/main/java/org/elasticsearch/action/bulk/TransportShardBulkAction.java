@@ -45,14 +45,17 @@ import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.CheckedRunnable;
 import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.get.GetResult;
@@ -70,7 +73,11 @@ import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
@@ -82,6 +89,12 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     private static final Logger logger = ESLoggerFactory.getLogger(TransportShardBulkAction.class);
 
+    /**
+     * The minimum number of append-only documents each thread has to parse for the documents of a bulk request to be parsed
+     * concurrently. Below that forking additional threads isn't worth it.
+     */
+    static final int MIN_DOCS_PER_PARSE_THREAD = 32;
+
     private final ThreadPool threadPool;
     private final UpdateHelper updateHelper;
     private final MappingUpdatedAction mappingUpdatedAction;
@@ -139,7 +152,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             waitingFuture.get();
         };
         return performOnPrimary(request, primary, updateHelper, threadPool::absoluteTimeInMillis,
-            new ConcreteMappingUpdatePerformer(), waitForMappingUpdate);
+            new ConcreteMappingUpdatePerformer(), waitForMappingUpdate, threadPool.executor(ThreadPool.Names.WRITE));
     }
 
     public static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
@@ -149,22 +162,135 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         LongSupplier nowInMillisSupplier,
         MappingUpdatePerformer mappingUpdater,
         CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
+        return performOnPrimary(request, primary, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate, null);
+    }
+
+    /**
+     * Performs the given bulk request on the primary. If a parse executor is given, the documents of append-only items are parsed
+     * ahead of execution so that runs of them can be indexed as a batch. They are parsed concurrently on the executor if the index is
+     * configured with a {@link IndexSettings#BULK_PARSE_PARALLELISM_SETTING} greater than one.
+     */
+    public static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
+        BulkShardRequest request,
+        IndexShard primary,
+        UpdateHelper updateHelper,
+        LongSupplier nowInMillisSupplier,
+        MappingUpdatePerformer mappingUpdater,
+        CheckedRunnable<Exception> waitForMappingUpdate,
+        @Nullable Executor parseExecutor) throws Exception {
         BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(request, primary);
+        if (parseExecutor != null) {
+            prepareIndexOperations(context, parseExecutor);
+        }
         return performOnPrimary(context, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
     }
 
+    /**
+     * Parses the documents of append-only items, i.e. index requests with auto-generated IDs, ahead of their execution such that
+     * runs of them are indexed as a batch, see {@link #executePreparedIndexOperations(BulkPrimaryExecutionContext)}. The calling
+     * thread takes part in parsing and up to {@link IndexSettings#getBulkParseParallelism()} - 1 threads of the given executor help
+     * out if they are available, by default the calling thread parses all documents. The parsed operations are still executed in
+     * the order of the items such that they are assigned sequence numbers and handed to the index writer in order. Documents
+     * that fail to parse are parsed again when their item is executed, which reports the failure as usual.
+     */
+    static void prepareIndexOperations(BulkPrimaryExecutionContext context, Executor executor) throws InterruptedException {
+        final IndexShard primary = context.getPrimary();
+        final BulkItemRequest[] items = context.getBulkShardRequest().items();
+        final int[] appendOnlyItems = new int[items.length];
+        int numAppendOnlyItems = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (isAppendOnly(items[i])) {
+                appendOnlyItems[numAppendOnlyItems++] = i;
+            }
+        }
+        if (numAppendOnlyItems < 2) {
+            // a single document is indexed as usual
+            return;
+        }
+        final int numThreads = Math.max(1, Math.min(primary.indexSettings().getBulkParseParallelism(),
+            numAppendOnlyItems / MIN_DOCS_PER_PARSE_THREAD));
+        final long startTime = System.nanoTime();
+        final int numDocs = numAppendOnlyItems;
+        final Engine.Index[] operations = new Engine.Index[items.length];
+        final AtomicInteger nextDoc = new AtomicInteger();
+        final AtomicInteger parsed = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(numDocs);
+        // documents are only claimed by threads that run already, such that the calling thread never waits for queued tasks
+        final Runnable parser = () -> {
+            for (int doc = nextDoc.getAndIncrement(); doc < numDocs; doc = nextDoc.getAndIncrement()) {
+                final int item = appendOnlyItems[doc];
+                try {
+                    final IndexRequest request = (IndexRequest) items[item].request();
+                    operations[item] = primary.prepareIndexOperationOnPrimary(request.version(), request.versionType(),
+                        toSourceToParse(request), request.getAutoGeneratedTimestamp(), request.isRetry());
+                    parsed.incrementAndGet();
+                } catch (Exception e) {
+                    logger.trace(() -> new ParameterizedMessage("{} failed to parse bulk item [{}] ahead of execution",
+                        primary.shardId(), item), e);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (int i = 1; i < numThreads; i++) {
+            try {
+                executor.execute(parser);
+            } catch (EsRejectedExecutionException e) {
+                // the executor is busy, the documents are parsed by the threads that we have
+                break;
+            }
+        }
+        parser.run();
+        latch.await();
+        context.setPreparedIndexOperations(operations);
+        if (numThreads > 1) {
+            primary.parallelParse(parsed.get(), System.nanoTime() - startTime);
+        }
+    }
+
+    private static boolean isAppendOnly(BulkItemRequest item) {
+        if (item.getPrimaryResponse() != null || item.request() instanceof IndexRequest == false) {
+            return false;
+        }
+        return ((IndexRequest) item.request()).getAutoGeneratedTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP;
+    }
+
     private static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
         BulkPrimaryExecutionContext context, UpdateHelper updateHelper, LongSupplier nowInMillisSupplier,
         MappingUpdatePerformer mappingUpdater, CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
 
         while (context.hasMoreOperationsToExecute()) {
-            executeBulkItemRequest(context, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+            if (executePreparedIndexOperations(context) == false) {
+                executeBulkItemRequest(context, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+            }
             assert context.isInitial(); // either completed and moved to next or reset
         }
         return new WritePrimaryResult<>(context.getBulkShardRequest(), context.buildShardResponse(), context.getLocationToSync(),
             null, context.getPrimary(), logger);
     }
 
+    /**
+     * Executes the index operations that were parsed ahead of execution for the current item and the items that directly follow
+     * it as a single batch, see {@link IndexShard#applyIndexOperationsOnPrimary(List)}.
+     *
+     * @return <code>true</code> if any items were executed, <code>false</code> if the current item needs to be executed regularly
+     */
+    private static boolean executePreparedIndexOperations(BulkPrimaryExecutionContext context) throws IOException {
+        final List<Engine.Index> operations = context.takePreparedIndexOperations();
+        if (operations.isEmpty()) {
+            return false;
+        }
+        final List<Engine.IndexResult> results = context.getPrimary().applyIndexOperationsOnPrimary(operations);
+        assert results.size() == operations.size();
+        for (Engine.IndexResult result : results) {
+            final DocWriteRequest.OpType opType = context.getCurrent().opType();
+            context.setRequestToExecute(context.getCurrent());
+            context.markOperationAsExecuted(result);
+            finalizePrimaryOperationOnCompletion(context, opType, null);
+        }
+        return true;
+    }
+
     /** Executes bulk item requests and handles request execution exceptions */
     static void executeBulkItemRequest(BulkPrimaryExecutionContext context, UpdateHelper updateHelper, LongSupplier nowInMillisSupplier,
                                        MappingUpdatePerformer mappingUpdater, CheckedRunnable<Exception> waitForMappingUpdate)
@@ -454,18 +580,27 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                                              MappingUpdatePerformer mappingUpdater) throws Exception {
         final IndexRequest request = context.getRequestToExecute();
         final IndexShard primary = context.getPrimary();
-        final SourceToParse sourceToParse =
-            SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
-                .routing(request.routing());
+        final SourceToParse sourceToParse = toSourceToParse(request);
         executeOnPrimaryWhileHandlingMappingUpdates(context,
-            () ->
-                primary.applyIndexOperationOnPrimary(request.version(), request.versionType(), sourceToParse,
-                    request.getAutoGeneratedTimestamp(), request.isRetry()),
+            () -> {
+                // documents that have been parsed ahead of execution are parsed again if they need a mapping update
+                final Engine.Index preparedOperation = context.takePreparedIndexOperation();
+                if (preparedOperation != null) {
+                    return primary.applyIndexOperationOnPrimary(preparedOperation);
+                }
+                return primary.applyIndexOperationOnPrimary(request.version(), request.versionType(), sourceToParse,
+                    request.getAutoGeneratedTimestamp(), request.isRetry());
+            },
             e -> primary.getFailedIndexResult(e, request.version()),
             context::markOperationAsExecuted,
             mapping -> mappingUpdater.updateMappings(mapping, primary.shardId(), request.type()));
     }
 
+    private static SourceToParse toSourceToParse(IndexRequest request) {
+        return SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
+            .routing(request.routing());
+    }
+
     private static void executeDeleteRequestOnPrimary(BulkPrimaryExecutionContext context,
                                                       MappingUpdatePerformer mappingUpdater) throws Exception {
         final DeleteRequest request = context.getRequestToExecute();
@@ -20,6 +20,8 @@ package org.elasticsearch.action.resync;
 
 import org.elasticsearch.Version;
 import org.elasticsearch.action.support.replication.ReplicatedWriteRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -36,6 +38,8 @@ public final class ResyncReplicationRequest extends ReplicatedWriteRequest<Resyn
 
     private long trimAboveSeqNo;
     private Translog.Operation[] operations;
+    @Nullable
+    private BytesReference serializedOperations; // only set on the sending side
 
     ResyncReplicationRequest() {
         super();
@@ -43,9 +47,19 @@ public final class ResyncReplicationRequest extends ReplicatedWriteRequest<Resyn
 
     public ResyncReplicationRequest(final ShardId shardId, final long trimAboveSeqNo,
                                     final Translog.Operation[] operations) {
+        this(shardId, trimAboveSeqNo, operations, null);
+    }
+
+    /**
+     * @param serializedOperations the given operations, each serialized with {@link Translog.Operation#writeOperation}, if available.
+     *                             These bytes are sent as they are instead of serializing the operations again.
+     */
+    public ResyncReplicationRequest(final ShardId shardId, final long trimAboveSeqNo,
+                                    final Translog.Operation[] operations, @Nullable final BytesReference serializedOperations) {
         super(shardId);
         this.trimAboveSeqNo = trimAboveSeqNo;
         this.operations = operations;
+        this.serializedOperations = serializedOperations;
     }
 
     public long getTrimAboveSeqNo() {
@@ -82,7 +96,13 @@ public final class ResyncReplicationRequest extends ReplicatedWriteRequest<Resyn
         if (out.getVersion().onOrAfter(Version.V_6_4_0)) {
             out.writeZLong(trimAboveSeqNo);
         }
-        out.writeArray(Translog.Operation::writeOperation, operations);
+        if (serializedOperations != null && out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            // the operations are shipped in the format they were written to the translog in, which older nodes might not understand
+            out.writeVInt(operations.length);
+            serializedOperations.writeTo(out);
+        } else {
+            out.writeArray(Translog.Operation::writeOperation, operations);
+        }
     }
 
     @Override
@@ -21,11 +21,20 @@ package org.elasticsearch.action.search;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.util.FixedBitSet;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.query.MatchNoneQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryRewriteContext;
+import org.elasticsearch.index.query.Rewriteable;
+import org.elasticsearch.index.shard.ShardFieldRanges;
 import org.elasticsearch.search.internal.AliasFilter;
+import org.elasticsearch.search.internal.ShardSearchTransportRequest;
 import org.elasticsearch.transport.Transport;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -39,11 +48,16 @@ import java.util.stream.Stream;
  * from the search. The extra round trip to the search shards is very cheap and is not subject to rejections
  * which allows to fan out to more shards at the same time without running into rejections even if we are hitting a
  * large portion of the clusters indices.
+ * Shards that no longer accept writes return the min and max values of their fields with their responses. These are cached on the
+ * coordinating node, see {@link ShardFieldRangesCache}, and queries are rewritten against the cached values of local shards without
+ * a round trip at all, falling back to asking the shard if the rewrite is not conclusive.
  */
 final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<SearchTransportService.CanMatchResponse> {
 
     private final Function<GroupShardsIterator<SearchShardIterator>, SearchPhase> phaseFactory;
     private final GroupShardsIterator<SearchShardIterator> shardsIts;
+    private final ShardFieldRangesCache fieldRangesCache;
+    private final ClusterState clusterState;
 
     CanMatchPreFilterSearchPhase(Logger logger, SearchTransportService searchTransportService,
                                         BiFunction<String, String, Transport.Connection> nodeIdToConnection,
@@ -53,7 +67,8 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
                                         ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
                                         TransportSearchAction.SearchTimeProvider timeProvider, long clusterStateVersion,
                                         SearchTask task, Function<GroupShardsIterator<SearchShardIterator>, SearchPhase> phaseFactory,
-                                        SearchResponse.Clusters clusters) {
+                                        SearchResponse.Clusters clusters, @Nullable ShardFieldRangesCache fieldRangesCache,
+                                        ClusterState clusterState) {
         /*
          * We set max concurrent shard requests to the number of shards to otherwise avoid deep recursing that would occur if the local node
          * is the coordinating node for the query, holds all the shards for the request, and there are a lot of shards.
@@ -63,13 +78,51 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
                 new BitSetSearchPhaseResults(shardsIts.size()), shardsIts.size(), clusters);
         this.phaseFactory = phaseFactory;
         this.shardsIts = shardsIts;
+        this.fieldRangesCache = fieldRangesCache;
+        this.clusterState = clusterState;
     }
 
     @Override
     protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
                                        SearchActionListener<SearchTransportService.CanMatchResponse> listener) {
-        getSearchTransport().sendCanMatch(getConnection(shardIt.getClusterAlias(), shard.currentNodeId()),
-            buildShardSearchRequest(shardIt), getTask(), listener);
+        final ShardSearchTransportRequest request = buildShardSearchRequest(shardIt);
+        // ranges of shards of remote clusters are not cached since we don't know the metadata of their indices
+        if (fieldRangesCache == null || shardIt.getClusterAlias() != null) {
+            getSearchTransport().sendCanMatch(getConnection(shardIt.getClusterAlias(), shard.currentNodeId()), request, getTask(),
+                listener);
+            return;
+        }
+        final ShardFieldRanges cachedRanges = fieldRangesCache.get(shardIt.shardId(), clusterState);
+        if (cachedRanges != null) {
+            final QueryRewriteContext rewriteContext = fieldRangesCache.getRewriteContext(cachedRanges, request::nowInMillis);
+            if (canMatch(request.source().query(), rewriteContext) == false) {
+                listener.onResponse(new SearchTransportService.CanMatchResponse(false));
+                return;
+            }
+            // the shard doesn't need to compute and send the ranges again as long as the metadata of its index didn't change
+            request.cachedFieldRangesVersion(cachedRanges.getIndexMetaDataVersion());
+        }
+        getSearchTransport().sendCanMatch(getConnection(null, shard.currentNodeId()), request, getTask(),
+            ActionListener.wrap(response -> {
+                final ShardFieldRanges fieldRanges = response.getFieldRanges();
+                if (fieldRanges != null) {
+                    fieldRangesCache.put(shardIt.shardId(), fieldRanges);
+                }
+                listener.onResponse(response);
+            }, listener::onFailure));
+    }
+
+    /**
+     * Rewrites the query against the cached field ranges of a shard, any query that can't be fully rewritten on the coordinating
+     * node is considered to match.
+     */
+    private boolean canMatch(QueryBuilder query, QueryRewriteContext rewriteContext) {
+        try {
+            return Rewriteable.rewrite(query, rewriteContext, true) instanceof MatchNoneQueryBuilder == false;
+        } catch (IOException | RuntimeException e) {
+            // let the shard decide
+            return true;
+        }
     }
 
     @Override
@@ -58,6 +58,7 @@ final class DfsQueryPhase extends SearchPhase {
         this.nextPhaseFactory = nextPhaseFactory;
         this.context = context;
         this.searchTransportService = context.getSearchTransport();
+        context.addReleasable(queryResult);
     }
 
     @Override
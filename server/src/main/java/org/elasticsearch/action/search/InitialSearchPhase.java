@@ -25,17 +25,25 @@ import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
@@ -86,15 +94,28 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         this.executor = executor;
     }
 
+    /**
+     * @param failedHedges copies of the shard that a hedged request failed on already, they are skipped when moving on to the next
+     *                     copy but still count as a failed operation
+     */
     private void onShardFailure(final int shardIndex, @Nullable ShardRouting shard, @Nullable String nodeId,
-                                final SearchShardIterator shardIt, Exception e) {
+                                final SearchShardIterator shardIt, Exception e, Set<ShardRouting> failedHedges) {
         // we always add the shard failure for a specific shard instance
         // we do make sure to clean it on a successful response from a shard
         SearchShardTarget shardTarget = new SearchShardTarget(nodeId, shardIt.shardId(), shardIt.getClusterAlias(),
                 shardIt.getOriginalIndices());
         onShardFailure(shardIndex, shardTarget, e);
 
-        if (totalOps.incrementAndGet() == expectedTotalOps) {
+        ShardRouting nextShard = null;
+        int xTotalOps = totalOps.incrementAndGet();
+        while (xTotalOps != expectedTotalOps) {
+            nextShard = shardIt.nextOrNull();
+            if (nextShard == null || failedHedges.contains(nextShard) == false) {
+                break;
+            }
+            xTotalOps = totalOps.incrementAndGet();
+        }
+        if (xTotalOps == expectedTotalOps) {
             if (logger.isDebugEnabled()) {
                 if (e != null && !TransportActions.isShardNotAvailableException(e)) {
                     logger.debug(new ParameterizedMessage(
@@ -105,14 +126,13 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
             }
             onPhaseDone();
         } else {
-            final ShardRouting nextShard = shardIt.nextOrNull();
             final boolean lastShard = nextShard == null;
             // trace log this exception
             logger.trace(() -> new ParameterizedMessage(
                 "{}: Failed to execute [{}] lastShard [{}]",
                 shard != null ? shard.shortSummary() : shardIt.shardId(), request, lastShard), e);
             if (!lastShard) {
-                performPhaseOnShard(shardIndex, shardIt, nextShard);
+                performPhaseOnShard(shardIndex, shardIt, nextShard, failedHedges);
             } else {
                 // no more shards active, add a failure
                 if (logger.isDebugEnabled() && !logger.isTraceEnabled()) { // do not double log this exception
@@ -244,6 +264,11 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
 
 
     private void performPhaseOnShard(final int shardIndex, final SearchShardIterator shardIt, final ShardRouting shard) {
+        performPhaseOnShard(shardIndex, shardIt, shard, Collections.emptySet());
+    }
+
+    private void performPhaseOnShard(final int shardIndex, final SearchShardIterator shardIt, final ShardRouting shard,
+                                     final Set<ShardRouting> failedHedges) {
         /*
          * We capture the thread that this phase is starting on. When we are called back after executing the phase, we are either on the
          * same thread (because we never went async, or the same thread was selected from the thread pool) or a different thread. If we
@@ -252,43 +277,25 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
          * we can continue (cf. InitialSearchPhase#maybeFork).
          */
         if (shard == null) {
-            fork(() -> onShardFailure(shardIndex, null, null, shardIt, new NoShardAvailableActionException(shardIt.shardId())));
+            fork(() -> onShardFailure(shardIndex, null, null, shardIt, new NoShardAvailableActionException(shardIt.shardId()),
+                failedHedges));
         } else {
             final PendingExecutions pendingExecutions = throttleConcurrentRequests ?
                 pendingExecutionsPerNode.computeIfAbsent(shard.currentNodeId(), n -> new PendingExecutions(maxConcurrentRequestsPerNode))
                 : null;
             Runnable r = () -> {
                 final Thread thread = Thread.currentThread();
+                final ShardRequest shardRequest = new ShardRequest(shardIndex, shardIt, shard, failedHedges);
                 try {
-                    executePhaseOnShard(shardIt, shard, new SearchActionListener<FirstResult>(new SearchShardTarget(shard.currentNodeId(),
-                        shardIt.shardId(), shardIt.getClusterAlias(), shardIt.getOriginalIndices()), shardIndex) {
-                        @Override
-                        public void innerOnResponse(FirstResult result) {
-                            try {
-                                onShardResult(result, shardIt);
-                            } finally {
-                                executeNext(pendingExecutions, thread);
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Exception t) {
-                            try {
-                                onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, t);
-                            } finally {
-                                executeNext(pendingExecutions, thread);
-                            }
-                        }
-                    });
-
-
+                    executePhaseOnShard(shardIt, shard, shardRequest.newListener(shard, () -> executeNext(pendingExecutions, thread)));
+                    shardRequest.maybeScheduleHedge(shard);
                 } catch (final Exception e) {
                     try {
                         /*
                          * It is possible to run into connection exceptions here because we are getting the connection early and might
                          * run in tonodes that are not connected. In this case, on shard failure will move us to the next shard copy.
                          */
-                        fork(() -> onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e));
+                        fork(() -> onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e, failedHedges));
                     } finally {
                         executeNext(pendingExecutions, thread);
                     }
@@ -303,6 +310,176 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         }
     }
 
+    /**
+     * The request of this phase for a shard. If the copy of the shard that it was sent to takes unusually long to respond, see
+     * {@link #getHedging()}, the request is also sent to the next copy of the shard on another node. Only the first response is used
+     * and the other one is released, failures are only reported once none of the copies can respond anymore, which moves on to the
+     * next copy of the shard as usual, skipping the copy that the hedged request failed on.
+     */
+    private final class ShardRequest {
+        private final int shardIndex;
+        private final SearchShardIterator shardIt;
+        private final ShardRouting copy;
+        private final Set<ShardRouting> failedHedges;
+        // protected by this object's lock
+        private int pendingCopies = 1;
+        private boolean done = false;
+        private ScheduledFuture<?> scheduledHedge;
+        private final Map<ShardRouting, Exception> failures = new LinkedHashMap<>();
+
+        ShardRequest(int shardIndex, SearchShardIterator shardIt, ShardRouting copy, Set<ShardRouting> failedHedges) {
+            this.shardIndex = shardIndex;
+            this.shardIt = shardIt;
+            this.copy = copy;
+            this.failedHedges = failedHedges;
+        }
+
+        SearchActionListener<FirstResult> newListener(ShardRouting copy, Runnable onCompletion) {
+            return new SearchActionListener<FirstResult>(new SearchShardTarget(copy.currentNodeId(), shardIt.shardId(),
+                shardIt.getClusterAlias(), shardIt.getOriginalIndices()), shardIndex) {
+                @Override
+                public void innerOnResponse(FirstResult result) {
+                    try {
+                        onCopyResponse(result);
+                    } finally {
+                        onCompletion.run();
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception t) {
+                    try {
+                        onCopyFailure(copy, t);
+                    } finally {
+                        onCompletion.run();
+                    }
+                }
+            };
+        }
+
+        void maybeScheduleHedge(ShardRouting copy) {
+            final ShardRequestHedging hedging = getHedging();
+            if (hedging == null || hedging.hasHedgesLeft() == false) {
+                return;
+            }
+            final ShardRouting hedgeCopy = nextCopyOnOtherNode(copy);
+            final TimeValue delay = hedgeCopy == null ? null : hedging.getDelay(copy.currentNodeId());
+            if (delay == null) {
+                return;
+            }
+            synchronized (this) {
+                if (done == false) {
+                    try {
+                        scheduledHedge = hedging.schedule(delay, () -> fork(() -> sendHedge(hedging, hedgeCopy)));
+                    } catch (EsRejectedExecutionException e) {
+                        // the node is shutting down, the request is still pending on the copy it was sent to
+                        logger.trace("failed to schedule hedged request", e);
+                    }
+                }
+            }
+        }
+
+        private ShardRouting nextCopyOnOtherNode(ShardRouting copy) {
+            // the copies are ordered by rank, and the ones before the given copy have failed already
+            final List<ShardRouting> copies = shardIt.getShardRoutings();
+            for (int i = copies.indexOf(copy) + 1; i < copies.size(); i++) {
+                if (copies.get(i).currentNodeId().equals(copy.currentNodeId()) == false && failedHedges.contains(copies.get(i)) == false) {
+                    return copies.get(i);
+                }
+            }
+            return null;
+        }
+
+        private void sendHedge(ShardRequestHedging hedging, ShardRouting copy) {
+            // hedged requests count against the concurrent requests of the node they are sent to like any other request
+            final PendingExecutions pendingExecutions = throttleConcurrentRequests ?
+                pendingExecutionsPerNode.computeIfAbsent(copy.currentNodeId(), n -> new PendingExecutions(maxConcurrentRequestsPerNode))
+                : null;
+            Runnable r = () -> {
+                final Thread thread = Thread.currentThread();
+                final boolean send;
+                synchronized (this) {
+                    // the budget is only taken once the request is actually sent
+                    send = done == false && hedging.tryHedge();
+                    if (send) {
+                        pendingCopies++;
+                    }
+                }
+                if (send == false) {
+                    executeNext(pendingExecutions, thread);
+                    return;
+                }
+                logger.trace("{}: hedging request [{}] on [{}]", shardIt.shardId(), request, copy.currentNodeId());
+                try {
+                    executePhaseOnShard(shardIt, copy, newListener(copy, () -> executeNext(pendingExecutions, thread)));
+                } catch (final Exception e) {
+                    try {
+                        onCopyFailure(copy, e);
+                    } finally {
+                        executeNext(pendingExecutions, thread);
+                    }
+                }
+            };
+            if (pendingExecutions == null) {
+                r.run();
+            } else {
+                pendingExecutions.tryRun(r);
+            }
+        }
+
+        private void onCopyResponse(FirstResult result) {
+            final boolean first;
+            synchronized (this) {
+                pendingCopies--;
+                first = done == false;
+                complete();
+            }
+            if (first) {
+                onShardResult(result, shardIt);
+            } else {
+                releaseHedgedResult(result);
+            }
+        }
+
+        private void onCopyFailure(ShardRouting failedCopy, Exception e) {
+            synchronized (this) {
+                pendingCopies--;
+                if (done) {
+                    return;
+                }
+                failures.putIfAbsent(failedCopy, e);
+                if (pendingCopies > 0) {
+                    // another copy might still respond
+                    return;
+                }
+                complete();
+            }
+            Set<ShardRouting> nextFailedHedges = failedHedges;
+            for (Map.Entry<ShardRouting, Exception> entry : failures.entrySet()) {
+                final ShardRouting hedgeCopy = entry.getKey();
+                if (hedgeCopy.equals(copy) == false) {
+                    // the iterator only moves past the copy that the request was sent to, so the hedged copy is
+                    // reported here and skipped once the iterator reaches it
+                    onShardFailure(shardIndex, new SearchShardTarget(hedgeCopy.currentNodeId(), shardIt.shardId(),
+                        shardIt.getClusterAlias(), shardIt.getOriginalIndices()), entry.getValue());
+                    if (nextFailedHedges == failedHedges) {
+                        nextFailedHedges = new HashSet<>(failedHedges);
+                    }
+                    nextFailedHedges.add(hedgeCopy);
+                }
+            }
+            onShardFailure(shardIndex, copy, copy.currentNodeId(), shardIt, failures.get(copy), nextFailedHedges);
+        }
+
+        private void complete() {
+            assert Thread.holdsLock(this);
+            done = true;
+            if (scheduledHedge != null) {
+                scheduledHedge.cancel(false);
+            }
+        }
+    }
+
     private void onShardResult(FirstResult result, SearchShardIterator shardIt) {
         assert result.getShardIndex() != -1 : "shard index is not set";
         assert result.getSearchShardTarget() != null : "search shard target must not be null";
@@ -356,6 +533,21 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
      */
     abstract void onShardSuccess(FirstResult result);
 
+    /**
+     * Returns how requests of this phase are hedged, or <code>null</code> if they are only sent to one copy of a shard at a time.
+     */
+    @Nullable
+    ShardRequestHedging getHedging() {
+        return null;
+    }
+
+    /**
+     * Releases the resources that a shard holds for a result that is not used since another copy of the shard responded first,
+     * see {@link #getHedging()}.
+     */
+    void releaseHedgedResult(FirstResult result) {
+    }
+
     /**
      * Sends the request to the actual shard.
      * @param shardIt the shards iterator
@@ -368,7 +560,7 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
     /**
      * This class acts as a basic result collection that can be extended to do on-the-fly reduction or result processing
      */
-    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> {
+    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> implements Releasable {
         private final int numShards;
 
         protected SearchPhaseResults(int numShards) {
@@ -409,6 +601,12 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         SearchPhaseController.ReducedQueryPhase reduce() {
             throw new UnsupportedOperationException("reduce is not supported");
         }
+
+        /**
+         * Releases the resources that are held on behalf of the collected results, called once the search completed
+         */
+        @Override
+        public void close() {}
     }
 
     /**
@@ -0,0 +1,55 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.index.shard.ShardId;
+
+class ReaderLeaseIdForShard {
+    private final ShardId shardId;
+    private final String node;
+    private final long leaseId;
+
+    ReaderLeaseIdForShard(ShardId shardId, String node, long leaseId) {
+        this.shardId = shardId;
+        this.node = node;
+        this.leaseId = leaseId;
+    }
+
+    public ShardId getShardId() {
+        return shardId;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public long getLeaseId() {
+        return leaseId;
+    }
+
+    @Override
+    public String toString() {
+        return "ReaderLeaseIdForShard{" +
+            "shardId=" + shardId +
+            ", node='" + node + '\'' +
+            ", leaseId=" + leaseId +
+            '}';
+    }
+}
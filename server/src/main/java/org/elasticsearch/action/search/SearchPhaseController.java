@@ -32,6 +32,8 @@ import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.grouping.CollapseTopFieldDocs;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.collect.HppcMaps;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.settings.Settings;
@@ -39,9 +41,13 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
 import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.dfs.AggregatedDfs;
@@ -71,17 +77,25 @@ import java.util.stream.StreamSupport;
 public final class SearchPhaseController extends AbstractComponent {
 
     private static final ScoreDoc[] EMPTY_DOCS = new ScoreDoc[0];
+    // the estimated heap used by an aggregation and by a bucket, without their sub aggregations, see #estimateSize
+    static final long AGGREGATION_BYTES = 256;
+    static final long BUCKET_BYTES = 128;
+    private static final String BREAKER_LABEL = "<reduce_aggs>";
 
     private final Function<Boolean, ReduceContext> reduceContextFunction;
+    private final CircuitBreaker circuitBreaker;
 
     /**
      * Constructor.
      * @param settings Node settings
      * @param reduceContextFunction A function that builds a context for the reduce of an {@link InternalAggregation}
+     * @param circuitBreaker The breaker that accounts for the aggregations that are held on the coordinating node
      */
-    public SearchPhaseController(Settings settings, Function<Boolean, ReduceContext> reduceContextFunction) {
+    public SearchPhaseController(Settings settings, Function<Boolean, ReduceContext> reduceContextFunction,
+                                 CircuitBreaker circuitBreaker) {
         super(settings);
         this.reduceContextFunction = reduceContextFunction;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public AggregatedDfs aggregateDfs(Collection<DfsSearchResult> results) {
@@ -609,13 +623,34 @@ public final class SearchPhaseController extends AbstractComponent {
     }
 
     /**
-     * A {@link InitialSearchPhase.ArraySearchPhaseResults} implementation
-     * that incrementally reduces aggregation results as shard results are consumed.
-     * This implementation can be configured to batch up a certain amount of results and only reduce them
-     * iff the buffer is exhausted.
+     * Returns a cheap estimation of the heap used by the given aggregations, based on the number of aggregations and buckets, which
+     * dominate their size. This only walks the buckets, unlike serializing the aggregations or measuring their exact heap usage.
+     */
+    static long estimateSize(Aggregations aggregations) {
+        if (aggregations == null) {
+            return 0;
+        }
+        long size = 0;
+        for (Aggregation aggregation : aggregations) {
+            size += AGGREGATION_BYTES;
+            if (aggregation instanceof MultiBucketsAggregation) {
+                for (MultiBucketsAggregation.Bucket bucket : ((MultiBucketsAggregation) aggregation).getBuckets()) {
+                    size += BUCKET_BYTES + estimateSize(bucket.getAggregations());
+                }
+            } else if (aggregation instanceof SingleBucketAggregation) {
+                size += BUCKET_BYTES + estimateSize(((SingleBucketAggregation) aggregation).getAggregations());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A {@link InitialSearchPhase.ArraySearchPhaseResults} implementation that incrementally reduces shard results as they are
+     * consumed. The aggregations of each shard are folded into a running partial reduction as soon as they arrive, so that only
+     * the reduced aggregations and the aggregations of a single shard are held at once, whatever the number of shards. Top docs
+     * are small, they are batched up to a certain amount of results and only merged iff the buffer is exhausted.
      */
     static final class QueryPhaseResultConsumer extends InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> {
-        private final InternalAggregations[] aggsBuffer;
         private final TopDocs[] topDocsBuffer;
         private final boolean hasAggs;
         private final boolean hasTopDocs;
@@ -624,34 +659,41 @@ public final class SearchPhaseController extends AbstractComponent {
         private final SearchPhaseController controller;
         private int numReducePhases = 0;
         private final TopDocsStats topDocsStats = new TopDocsStats();
+        private final CircuitBreaker circuitBreaker;
+        // the partial reduction of the aggregations of all shards that were consumed so far
+        private InternalAggregations reducedAggs;
+        // the estimated size of the reduced aggregations that is accounted on the circuit breaker
+        private long aggsBytes;
+        private CircuitBreakingException breakerFailure;
+        private boolean closed;
 
         /**
          * Creates a new {@link QueryPhaseResultConsumer}
          * @param controller a controller instance to reduce the query response objects
          * @param expectedResultSize the expected number of query results. Corresponds to the number of shards queried
-         * @param bufferSize the size of the reduce buffer. if the buffer size is smaller than the number of expected results
-         *                   the buffer is used to incrementally reduce aggregation results before all shards responded.
+         * @param bufferSize the size of the top docs buffer. if the buffer size is smaller than the number of expected results
+         *                   the buffer is used to incrementally merge top docs before all shards responded.
+         * @param circuitBreaker the breaker that accounts for the reduced aggregations until this consumer is closed
          */
         private QueryPhaseResultConsumer(SearchPhaseController controller, int expectedResultSize, int bufferSize,
-                                         boolean hasTopDocs, boolean hasAggs) {
+                                         boolean hasTopDocs, boolean hasAggs, CircuitBreaker circuitBreaker) {
             super(expectedResultSize);
             if (expectedResultSize != 1 && bufferSize < 2) {
                 throw new IllegalArgumentException("buffer size must be >= 2 if there is more than one expected result");
             }
-            if (expectedResultSize <= bufferSize) {
+            if (hasAggs == false && expectedResultSize <= bufferSize) {
                 throw new IllegalArgumentException("buffer size must be less than the expected result size");
             }
             if (hasAggs == false && hasTopDocs == false) {
                 throw new IllegalArgumentException("either aggs or top docs must be present");
             }
             this.controller = controller;
-            // no need to buffer anything if we have less expected results. in this case we don't consume any results ahead of time.
-            this.aggsBuffer = new InternalAggregations[hasAggs ? bufferSize : 0];
-            this.topDocsBuffer = new TopDocs[hasTopDocs ? bufferSize : 0];
+            // no need to buffer more top docs than we expect results
+            this.bufferSize = Math.min(bufferSize, expectedResultSize);
+            this.topDocsBuffer = new TopDocs[hasTopDocs ? this.bufferSize : 0];
             this.hasTopDocs = hasTopDocs;
             this.hasAggs = hasAggs;
-            this.bufferSize = bufferSize;
-
+            this.circuitBreaker = circuitBreaker;
         }
 
         @Override
@@ -662,57 +704,121 @@ public final class SearchPhaseController extends AbstractComponent {
         }
 
         private synchronized void consumeInternal(QuerySearchResult querySearchResult) {
-            if (index == bufferSize) {
-                if (hasAggs) {
-                    InternalAggregations reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(aggsBuffer));
-                    Arrays.fill(aggsBuffer, null);
-                    aggsBuffer[0] = reducedAggs;
+            boolean reduced = false;
+            if (hasAggs) {
+                // always consume the aggregations of the shard, even if they are dropped, so that they can be garbage collected
+                final InternalAggregations aggs = (InternalAggregations) querySearchResult.consumeAggs();
+                if (breakerFailure == null && closed == false && addToBreaker(estimateSize(aggs))) {
+                    if (reducedAggs == null) {
+                        reducedAggs = aggs;
+                    } else {
+                        // fold the aggregations into the running reduction, they are garbage once it is done
+                        reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(reducedAggs, aggs));
+                        // and account for the reduced aggregations instead of the ones they were reduced from
+                        addToBreaker(estimateSize(reducedAggs) - aggsBytes);
+                        reduced = true;
+                    }
                 }
-                if (hasTopDocs) {
+            }
+            if (hasTopDocs) {
+                if (index == bufferSize) {
                     TopDocs reducedTopDocs = controller.mergeTopDocs(Arrays.asList(topDocsBuffer),
                         querySearchResult.from() + querySearchResult.size() // we have to merge here in the same way we collect on a shard
                         , 0);
                     Arrays.fill(topDocsBuffer, null);
                     topDocsBuffer[0] = reducedTopDocs;
+                    index = 1;
+                    reduced = true;
                 }
-                numReducePhases++;
-                index = 1;
-            }
-            final int i = index++;
-            if (hasAggs) {
-                aggsBuffer[i] = (InternalAggregations) querySearchResult.consumeAggs();
-            }
-            if (hasTopDocs) {
                 final TopDocs topDocs = querySearchResult.consumeTopDocs(); // can't be null
                 topDocsStats.add(topDocs);
                 SearchPhaseController.setShardIndex(topDocs, querySearchResult.getShardIndex());
-                topDocsBuffer[i] = topDocs;
+                topDocsBuffer[index] = topDocs;
+            }
+            index++;
+            if (reduced) {
+                numReducePhases++;
             }
         }
 
-        private synchronized List<InternalAggregations> getRemainingAggs() {
-            return hasAggs ? Arrays.asList(aggsBuffer).subList(0, index) : null;
-        }
-
-        private synchronized List<TopDocs> getRemainingTopDocs() {
-            return hasTopDocs ? Arrays.asList(topDocsBuffer).subList(0, index) : null;
+        /**
+         * Adds the given number of bytes to the circuit breaker, or releases them if negative. If the breaker trips, the reduced
+         * aggregations are dropped and the failure is reported when the results are reduced, since the search can't complete
+         * without them.
+         */
+        private boolean addToBreaker(long bytes) {
+            if (breakerFailure != null || closed) {
+                return false;
+            }
+            if (bytes <= 0) {
+                circuitBreaker.addWithoutBreaking(bytes);
+                aggsBytes += bytes;
+                return true;
+            }
+            try {
+                circuitBreaker.addEstimateBytesAndMaybeBreak(bytes, BREAKER_LABEL);
+                aggsBytes += bytes;
+                return true;
+            } catch (CircuitBreakingException e) {
+                breakerFailure = e;
+                reducedAggs = null;
+                circuitBreaker.addWithoutBreaking(-aggsBytes);
+                aggsBytes = 0;
+                return false;
+            }
         }
 
-
         @Override
         public ReducedQueryPhase reduce() {
-            return controller.reducedQueryPhase(results.asList(), getRemainingAggs(), getRemainingTopDocs(), topDocsStats,
+            final List<InternalAggregations> aggs;
+            final List<TopDocs> topDocs;
+            synchronized (this) {
+                if (breakerFailure != null) {
+                    throw breakerFailure;
+                }
+                aggs = hasAggs ? (reducedAggs == null ? Collections.emptyList() : Collections.singletonList(reducedAggs)) : null;
+                topDocs = hasTopDocs ? Arrays.asList(topDocsBuffer).subList(0, index) : null;
+            }
+            final ReducedQueryPhase reducedQueryPhase = controller.reducedQueryPhase(results.asList(), aggs, topDocs, topDocsStats,
                 numReducePhases, false);
+            if (hasAggs) {
+                synchronized (this) {
+                    // the partial reduction is replaced by the final aggregations, which are held until the response was sent
+                    reducedAggs = null;
+                    addToBreaker(estimateSize(reducedQueryPhase.aggregations) - aggsBytes);
+                    if (breakerFailure != null) {
+                        throw breakerFailure;
+                    }
+                }
+            }
+            return reducedQueryPhase;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                reducedAggs = null;
+                circuitBreaker.addWithoutBreaking(-aggsBytes);
+                aggsBytes = 0;
+            }
         }
 
         /**
-         * Returns the number of buffered results
+         * Returns the number of consumed results since the top docs were merged last
          */
         int getNumBuffered() {
             return index;
         }
 
         int getNumReducePhases() { return numReducePhases; }
+
+        /**
+         * Returns the number of bytes that are accounted on the circuit breaker
+         */
+        synchronized long getBreakerBytes() {
+            return aggsBytes;
+        }
     }
 
     /**
@@ -727,17 +833,107 @@ public final class SearchPhaseController extends AbstractComponent {
 
         if (isScrollRequest == false && (hasAggs || hasTopDocs)) {
             // no incremental reduce if scroll is used - we only hit a single shard or sometimes more...
-            if (request.getBatchedReduceSize() < numShards) {
-                // only use this if there are aggs and if there are more shards than we should reduce at once
-                return new QueryPhaseResultConsumer(this, numShards, request.getBatchedReduceSize(), hasTopDocs, hasAggs);
+            if ((hasAggs && numShards > 1) || request.getBatchedReduceSize() < numShards) {
+                // aggregations are always reduced as they arrive, top docs only if there are more shards than we should merge at once
+                return new QueryPhaseResultConsumer(this, numShards, request.getBatchedReduceSize(), hasTopDocs, hasAggs,
+                    circuitBreaker);
+            }
+        }
+        return new AccountingSearchPhaseResults(numShards, hasAggs, isScrollRequest, trackTotalHits);
+    }
+
+    /**
+     * A {@link InitialSearchPhase.ArraySearchPhaseResults} implementation that keeps the results of all shards and reduces them at
+     * once, this is used for scroll requests and searches of a single shard. The aggregations of the results are accounted on the
+     * circuit breaker until they are reduced, and then the reduced aggregations until the search completed.
+     */
+    private final class AccountingSearchPhaseResults extends InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> {
+        private final boolean hasAggs;
+        private final boolean isScrollRequest;
+        private final boolean trackTotalHits;
+        // the estimated size of the aggregations of the results that is accounted on the circuit breaker
+        private long aggsBytes;
+        private CircuitBreakingException breakerFailure;
+        private boolean closed;
+
+        AccountingSearchPhaseResults(int numShards, boolean hasAggs, boolean isScrollRequest, boolean trackTotalHits) {
+            super(numShards);
+            this.hasAggs = hasAggs;
+            this.isScrollRequest = isScrollRequest;
+            this.trackTotalHits = trackTotalHits;
+        }
+
+        @Override
+        void consumeResult(SearchPhaseResult result) {
+            super.consumeResult(result);
+            final QuerySearchResult queryResult = result.queryResult();
+            if (hasAggs && queryResult != null && queryResult.hasAggs()) {
+                // the aggregations stay with the result until it is reduced, we only look at them to account for their size
+                final InternalAggregations aggs = (InternalAggregations) queryResult.consumeAggs();
+                if (addToBreaker(estimateSize(aggs))) {
+                    queryResult.aggregations(aggs);
+                }
+            }
+        }
+
+        /**
+         * Adds the given number of bytes to the circuit breaker, or releases them if negative. If the breaker trips, the failure
+         * is reported when the results are reduced and the aggregations of the remaining results are dropped.
+         */
+        private synchronized boolean addToBreaker(long bytes) {
+            if (breakerFailure != null || closed) {
+                return false;
+            }
+            if (bytes <= 0) {
+                circuitBreaker.addWithoutBreaking(bytes);
+                aggsBytes += bytes;
+                return true;
+            }
+            try {
+                circuitBreaker.addEstimateBytesAndMaybeBreak(bytes, BREAKER_LABEL);
+                aggsBytes += bytes;
+                return true;
+            } catch (CircuitBreakingException e) {
+                breakerFailure = e;
+                return false;
+            }
+        }
+
+        @Override
+        public ReducedQueryPhase reduce() {
+            synchronized (this) {
+                if (breakerFailure != null) {
+                    throw breakerFailure;
+                }
+            }
+            final ReducedQueryPhase reducedQueryPhase = reducedQueryPhase(results.asList(), isScrollRequest, trackTotalHits);
+            if (hasAggs) {
+                synchronized (this) {
+                    // the aggregations of the results were consumed by the reduce and are replaced by the reduced aggregations
+                    addToBreaker(estimateSize(reducedQueryPhase.aggregations) - aggsBytes);
+                    if (breakerFailure != null) {
+                        throw breakerFailure;
+                    }
+                }
             }
+            return reducedQueryPhase;
         }
-        return new InitialSearchPhase.ArraySearchPhaseResults(numShards) {
-            @Override
-            public ReducedQueryPhase reduce() {
-                return reducedQueryPhase(results.asList(), isScrollRequest, trackTotalHits);
+
+        @Override
+        public synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                circuitBreaker.addWithoutBreaking(-aggsBytes);
+                aggsBytes = 0;
             }
-        };
+        }
+
+        /**
+         * Returns the number of bytes that are accounted on the circuit breaker
+         */
+        synchronized long getBreakerBytes() {
+            return aggsBytes;
+        }
     }
 
     static final class TopDocsStats {
@@ -23,6 +23,7 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
@@ -80,6 +81,9 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
 
     private Scroll scroll;
 
+    @Nullable
+    private String readerLease;
+
     private int batchedReduceSize = DEFAULT_BATCHED_REDUCE_SIZE;
 
     private int maxConcurrentShardRequests = 0;
@@ -142,6 +146,9 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         if (in.getVersion().onOrAfter(Version.V_6_3_0)) {
             allowPartialSearchResults = in.readOptionalBoolean();
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            readerLease = in.readOptionalString();
+        }
     }
 
     @Override
@@ -167,6 +174,9 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         if (out.getVersion().onOrAfter(Version.V_6_3_0)) {
             out.writeOptionalBoolean(allowPartialSearchResults);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeOptionalString(readerLease);
+        }
     }
 
     @Override
@@ -188,6 +198,25 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         if (source != null && source.size() == 0 && scroll != null) {
             validationException = addValidationError("[size] cannot be [0] in a scroll context", validationException);
         }
+        if (readerLease != null) {
+            if (scroll != null) {
+                validationException = addValidationError("[reader_lease] cannot be used in a scroll context", validationException);
+            }
+            String[] leasedIndices = null;
+            try {
+                leasedIndices = TransportSearchHelper.parseReaderLeaseId(readerLease).getOriginalIndices().indices();
+            } catch (IllegalArgumentException e) {
+                validationException = addValidationError("[reader_lease] is not a valid reader lease id", validationException);
+            }
+            if (leasedIndices != null && Arrays.equals(indices, leasedIndices) == false) {
+                validationException =
+                    addValidationError("[indices] cannot be used with a [reader_lease], the lease determines the shards to search",
+                        validationException);
+            }
+            if (routing != null) {
+                validationException = addValidationError("[routing] cannot be used with a [reader_lease]", validationException);
+            }
+        }
         return validationException;
     }
 
@@ -350,6 +379,31 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         return scroll(new Scroll(TimeValue.parseTimeValue(keepAlive, null, getClass().getSimpleName() + ".Scroll.keepAlive")));
     }
 
+    /**
+     * The id of the reader lease to search, or <code>null</code> if the search should use the current readers of the shards.
+     */
+    public String readerLease() {
+        return readerLease;
+    }
+
+    /**
+     * Executes the search on the point in time view of the shards held by the given reader lease, see {@link OpenReaderLeaseRequest}.
+     * The shards to search are determined by the lease. Unless indices were set already, the indices and indices options of this
+     * request are set to the ones the lease was opened with, so that the indices of the lease are authorized like the indices of
+     * any other search request. Indices that differ from the ones of the lease fail the validation of the request.
+     *
+     * @throws IllegalArgumentException if the given id is not a valid reader lease id
+     */
+    public SearchRequest readerLease(String readerLease) {
+        if (readerLease != null && indices.length == 0) {
+            final OriginalIndices originalIndices = TransportSearchHelper.parseReaderLeaseId(readerLease).getOriginalIndices();
+            this.indices = originalIndices.indices();
+            this.indicesOptions = originalIndices.indicesOptions();
+        }
+        this.readerLease = readerLease;
+        return this;
+    }
+
     /**
      * Sets if this request should use the request cache or not, assuming that it can (for
      * example, if "now" is used, it will never be cached). By default (not set, or null,
@@ -500,6 +554,7 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
                 Objects.equals(source, that.source) &&
                 Objects.equals(requestCache, that.requestCache)  &&
                 Objects.equals(scroll, that.scroll) &&
+                Objects.equals(readerLease, that.readerLease) &&
                 Arrays.equals(types, that.types) &&
                 Objects.equals(batchedReduceSize, that.batchedReduceSize) &&
                 Objects.equals(maxConcurrentShardRequests, that.maxConcurrentShardRequests) &&
@@ -512,7 +567,7 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
     public int hashCode() {
         return Objects.hash(searchType, Arrays.hashCode(indices), routing, preference, source, requestCache,
                 scroll, Arrays.hashCode(types), indicesOptions, batchedReduceSize, maxConcurrentShardRequests, preFilterShardSize,
-                allowPartialSearchResults);
+                allowPartialSearchResults, readerLease);
     }
 
     @Override
@@ -526,6 +581,7 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
                 ", preference='" + preference + '\'' +
                 ", requestCache=" + requestCache +
                 ", scroll=" + scroll +
+                ", readerLease='" + readerLease + '\'' +
                 ", maxConcurrentShardRequests=" + maxConcurrentShardRequests +
                 ", batchedReduceSize=" + batchedReduceSize +
                 ", preFilterShardSize=" + preFilterShardSize +
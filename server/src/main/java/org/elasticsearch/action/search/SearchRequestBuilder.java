@@ -111,6 +111,14 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Executes the search on the point in time view of the shards held by the given reader lease.
+     */
+    public SearchRequestBuilder setReaderLease(String readerLease) {
+        request.readerLease(readerLease);
+        return this;
+    }
+
     /**
      * An optional timeout to control how long search is allowed to take.
      */
@@ -23,6 +23,7 @@ import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.cluster.routing.PlainShardIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.internal.ReaderLease;
 
 import java.util.List;
 
@@ -33,6 +34,7 @@ import java.util.List;
 public final class SearchShardIterator extends PlainShardIterator {
 
     private final OriginalIndices originalIndices;
+    private final long readerLeaseId;
     private String clusterAlias;
     private boolean skip = false;
 
@@ -44,9 +46,22 @@ public final class SearchShardIterator extends PlainShardIterator {
      * @param shards  shards to iterate
      */
     public SearchShardIterator(String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices) {
+        this(clusterAlias, shardId, shards, originalIndices, ReaderLease.NO_LEASE);
+    }
+
+    /**
+     * Creates a {@link PlainShardIterator} instance that iterates over the copy of a shard that holds the given reader lease.
+     *
+     * @param shardId       shard id of the group
+     * @param shards        shards to iterate
+     * @param readerLeaseId the id of the reader lease on the shard, or {@link ReaderLease#NO_LEASE}
+     */
+    public SearchShardIterator(String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices,
+                               long readerLeaseId) {
         super(shardId, shards);
         this.originalIndices = originalIndices;
         this.clusterAlias = clusterAlias;
+        this.readerLeaseId = readerLeaseId;
     }
 
     /**
@@ -56,6 +71,13 @@ public final class SearchShardIterator extends PlainShardIterator {
         return originalIndices;
     }
 
+    /**
+     * Returns the id of the reader lease that searches on this shard should use, or {@link ReaderLease#NO_LEASE}.
+     */
+    public long getReaderLeaseId() {
+        return readerLeaseId;
+    }
+
     public String getClusterAlias() {
         return clusterAlias;
     }
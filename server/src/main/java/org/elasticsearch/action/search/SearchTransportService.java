@@ -26,11 +26,15 @@ import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.dfs.DfsSearchResult;
@@ -45,6 +49,7 @@ import org.elasticsearch.search.internal.ShardSearchTransportRequest;
 import org.elasticsearch.search.query.QuerySearchRequest;
 import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
+import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteClusterService;
 import org.elasticsearch.transport.Transport;
@@ -71,6 +76,8 @@ public class SearchTransportService extends AbstractComponent {
     public static final String FREE_CONTEXT_SCROLL_ACTION_NAME = "indices:data/read/search[free_context/scroll]";
     public static final String FREE_CONTEXT_ACTION_NAME = "indices:data/read/search[free_context]";
     public static final String CLEAR_SCROLL_CONTEXTS_ACTION_NAME = "indices:data/read/search[clear_scroll_contexts]";
+    public static final String OPEN_READER_LEASE_ACTION_NAME = "indices:data/read/search[open_reader_lease]";
+    public static final String FREE_READER_LEASE_ACTION_NAME = "indices:data/read/search[free_reader_lease]";
     public static final String DFS_ACTION_NAME = "indices:data/read/search[phase/dfs]";
     public static final String QUERY_ACTION_NAME = "indices:data/read/search[phase/query]";
     public static final String QUERY_ID_ACTION_NAME = "indices:data/read/search[phase/query/id]";
@@ -111,6 +118,19 @@ public class SearchTransportService extends AbstractComponent {
             TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, SearchFreeContextResponse::new));
     }
 
+    public void sendOpenReaderLease(Transport.Connection connection, ShardId shardId, TimeValue keepAlive, OriginalIndices originalIndices,
+                                    Task parentTask, ActionListener<ShardOpenReaderLeaseResponse> listener) {
+        transportService.sendChildRequest(connection, OPEN_READER_LEASE_ACTION_NAME,
+            new ShardOpenReaderLeaseRequest(originalIndices, shardId, keepAlive), parentTask, TransportRequestOptions.EMPTY,
+            new ActionListenerResponseHandler<>(listener, ShardOpenReaderLeaseResponse::new));
+    }
+
+    public void sendFreeReaderLease(Transport.Connection connection, long leaseId, OriginalIndices originalIndices,
+                                    ActionListener<SearchFreeContextResponse> listener) {
+        transportService.sendRequest(connection, FREE_READER_LEASE_ACTION_NAME, new SearchFreeContextRequest(originalIndices, leaseId),
+            TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, SearchFreeContextResponse::new));
+    }
+
     public void sendCanMatch(Transport.Connection connection, final ShardSearchTransportRequest request, SearchTask task, final
                             ActionListener<CanMatchResponse> listener) {
         if (connection.getNode().getVersion().onOrAfter(Version.V_5_6_0)) {
@@ -281,6 +301,84 @@ public class SearchTransportService extends AbstractComponent {
         }
     }
 
+    static class ShardOpenReaderLeaseRequest extends TransportRequest implements IndicesRequest {
+        private OriginalIndices originalIndices;
+        private ShardId shardId;
+        private TimeValue keepAlive;
+
+        ShardOpenReaderLeaseRequest(OriginalIndices originalIndices, ShardId shardId, TimeValue keepAlive) {
+            this.originalIndices = originalIndices;
+            this.shardId = shardId;
+            this.keepAlive = keepAlive;
+        }
+
+        ShardOpenReaderLeaseRequest(StreamInput in) throws IOException {
+            super(in);
+            originalIndices = OriginalIndices.readOriginalIndices(in);
+            shardId = ShardId.readShardId(in);
+            keepAlive = in.readTimeValue();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            OriginalIndices.writeOriginalIndices(originalIndices, out);
+            shardId.writeTo(out);
+            out.writeTimeValue(keepAlive);
+        }
+
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        public TimeValue keepAlive() {
+            return keepAlive;
+        }
+
+        @Override
+        public String[] indices() {
+            return originalIndices.indices();
+        }
+
+        @Override
+        public IndicesOptions indicesOptions() {
+            return originalIndices.indicesOptions();
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            throw new UnsupportedOperationException("usage of Streamable is to be replaced by Writeable");
+        }
+    }
+
+    public static class ShardOpenReaderLeaseResponse extends TransportResponse {
+
+        private long leaseId;
+
+        ShardOpenReaderLeaseResponse() {
+        }
+
+        ShardOpenReaderLeaseResponse(long leaseId) {
+            this.leaseId = leaseId;
+        }
+
+        public long getLeaseId() {
+            return leaseId;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            leaseId = in.readLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeLong(leaseId);
+        }
+    }
+
     public static class SearchFreeContextResponse extends TransportResponse {
 
         private boolean freed;
@@ -331,6 +429,20 @@ public class SearchTransportService extends AbstractComponent {
         });
         TransportActionProxy.registerProxyAction(transportService, CLEAR_SCROLL_CONTEXTS_ACTION_NAME,
                 () -> TransportResponse.Empty.INSTANCE);
+        transportService.registerRequestHandler(OPEN_READER_LEASE_ACTION_NAME, ThreadPool.Names.SAME, ShardOpenReaderLeaseRequest::new,
+            (request, channel, task) -> {
+                long leaseId = searchService.openReaderLease(request.shardId(), request.keepAlive());
+                channel.sendResponse(new ShardOpenReaderLeaseResponse(leaseId));
+        });
+        TransportActionProxy.registerProxyAction(transportService, OPEN_READER_LEASE_ACTION_NAME,
+                (Supplier<TransportResponse>) ShardOpenReaderLeaseResponse::new);
+        transportService.registerRequestHandler(FREE_READER_LEASE_ACTION_NAME, ThreadPool.Names.SAME, SearchFreeContextRequest::new,
+            (request, channel, task) -> {
+                boolean freed = searchService.freeReaderLease(request.id(), request);
+                channel.sendResponse(new SearchFreeContextResponse(freed));
+        });
+        TransportActionProxy.registerProxyAction(transportService, FREE_READER_LEASE_ACTION_NAME,
+                (Supplier<TransportResponse>) SearchFreeContextResponse::new);
 
         transportService.registerRequestHandler(DFS_ACTION_NAME, ThreadPool.Names.SAME, ShardSearchTransportRequest::new,
             (request, channel, task) -> {
@@ -420,7 +532,8 @@ public class SearchTransportService extends AbstractComponent {
         transportService.registerRequestHandler(QUERY_CAN_MATCH_NAME, ThreadPool.Names.SAME, ShardSearchTransportRequest::new,
             (request, channel, task) -> {
                 boolean canMatch = searchService.canMatch(request);
-                channel.sendResponse(new CanMatchResponse(canMatch));
+                channel.sendResponse(new CanMatchResponse(canMatch,
+                    searchService.getFieldRanges(request.shardId(), request.cachedFieldRangesVersion())));
             });
         TransportActionProxy.registerProxyAction(transportService, QUERY_CAN_MATCH_NAME,
                 (Supplier<TransportResponse>) CanMatchResponse::new);
@@ -428,12 +541,18 @@ public class SearchTransportService extends AbstractComponent {
 
     public static final class CanMatchResponse extends SearchPhaseResult {
         private boolean canMatch;
+        private ShardFieldRanges fieldRanges;
 
         public CanMatchResponse() {
         }
 
         public CanMatchResponse(boolean canMatch) {
+            this(canMatch, null);
+        }
+
+        public CanMatchResponse(boolean canMatch, @Nullable ShardFieldRanges fieldRanges) {
             this.canMatch = canMatch;
+            this.fieldRanges = fieldRanges;
         }
 
 
@@ -441,17 +560,32 @@ public class SearchTransportService extends AbstractComponent {
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
             canMatch = in.readBoolean();
+            if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                fieldRanges = in.readOptionalWriteable(ShardFieldRanges::new);
+            }
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
             out.writeBoolean(canMatch);
+            if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                out.writeOptionalWriteable(fieldRanges);
+            }
         }
 
         public boolean canMatch() {
             return canMatch;
         }
+
+        /**
+         * The min and max values of the fields of the shard that the coordinating node can cache, or <code>null</code> if they
+         * might still change.
+         */
+        @Nullable
+        public ShardFieldRanges getFieldRanges() {
+            return fieldRanges;
+        }
     }
 
 
@@ -0,0 +1,77 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.index.query.QueryRewriteContext;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the {@link ShardFieldRanges} that shards return with their can_match responses on the coordinating node, so that the
+ * can_match phase of later searches can rewrite their queries against the cached ranges rather than sending a request to the shards.
+ * Shards only return ranges once they no longer accept writes, and an entry is only used as long as the metadata of its index has
+ * not changed since the ranges were computed, which covers blocks being removed and mappings being updated.
+ */
+final class ShardFieldRangesCache {
+
+    private final Cache<ShardId, ShardFieldRanges> cache;
+    private final BiFunction<LongSupplier, ShardFieldRanges, QueryRewriteContext> rewriteContextFactory;
+
+    ShardFieldRangesCache(long size, BiFunction<LongSupplier, ShardFieldRanges, QueryRewriteContext> rewriteContextFactory) {
+        this.cache = CacheBuilder.<ShardId, ShardFieldRanges>builder().setMaximumWeight(size).build();
+        this.rewriteContextFactory = rewriteContextFactory;
+    }
+
+    /**
+     * Returns the cached ranges of the given shard, or <code>null</code> if there are no valid ranges for it in the given cluster
+     * state.
+     */
+    @Nullable
+    ShardFieldRanges get(ShardId shardId, ClusterState clusterState) {
+        final ShardFieldRanges ranges = cache.get(shardId);
+        if (ranges == null) {
+            return null;
+        }
+        final IndexMetaData indexMetaData = clusterState.metaData().index(shardId.getIndex());
+        if (indexMetaData == null || indexMetaData.getVersion() != ranges.getIndexMetaDataVersion()) {
+            cache.invalidate(shardId, ranges);
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns a context to rewrite queries against the given ranges.
+     */
+    QueryRewriteContext getRewriteContext(ShardFieldRanges ranges, LongSupplier nowInMillis) {
+        return rewriteContextFactory.apply(nowInMillis, ranges);
+    }
+
+    void put(ShardId shardId, ShardFieldRanges ranges) {
+        cache.put(shardId, ranges);
+    }
+}
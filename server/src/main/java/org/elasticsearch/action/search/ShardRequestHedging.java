@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.OptionalDouble;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when a shard level request that did not get a response yet is sent to another copy of the shard as well, a so called hedged
+ * request. A request is hedged once it took longer than the node that it was sent to usually takes to respond, see
+ * {@link ResponseCollectorService#getResponseTimeUpperBound(String)}, so that a node that is paused by garbage collections or busy
+ * disks doesn't hold up the whole search. Whichever copy responds first is used. Every search has a budget of hedged requests such
+ * that a search that is slow on all nodes, for instance because it is expensive, doesn't send every shard request twice.
+ */
+class ShardRequestHedging {
+
+    private final ThreadPool threadPool;
+    private final ResponseCollectorService responseCollectorService;
+    private final TimeValue minDelay;
+    private final AtomicInteger hedgesLeft;
+
+    ShardRequestHedging(ThreadPool threadPool, ResponseCollectorService responseCollectorService, TimeValue minDelay, int maxHedges) {
+        this.threadPool = threadPool;
+        this.responseCollectorService = responseCollectorService;
+        this.minDelay = minDelay;
+        this.hedgesLeft = new AtomicInteger(maxHedges);
+    }
+
+    /**
+     * Returns the delay after which a request that was sent to the given node is hedged, or <code>null</code> if it shouldn't be
+     * hedged since the response times of the node are not known yet.
+     */
+    @Nullable
+    TimeValue getDelay(String nodeId) {
+        final OptionalDouble upperBound = responseCollectorService.getResponseTimeUpperBound(nodeId);
+        if (upperBound.isPresent() == false) {
+            return null;
+        }
+        return TimeValue.timeValueNanos(Math.max(minDelay.nanos(), (long) upperBound.getAsDouble()));
+    }
+
+    /**
+     * Returns whether the budget of hedged requests of the search is not used up yet.
+     */
+    boolean hasHedgesLeft() {
+        return hedgesLeft.get() > 0;
+    }
+
+    /**
+     * Takes a hedged request from the budget of the search, returns <code>false</code> if the budget is used up and the request must
+     * not be hedged.
+     */
+    boolean tryHedge() {
+        return hedgesLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0;
+    }
+
+    /**
+     * Schedules the given task, which must fork if it does more than sending a request, to run after the given delay.
+     */
+    ScheduledFuture<?> schedule(TimeValue delay, Runnable task) {
+        return threadPool.schedule(delay, ThreadPool.Names.SAME, task);
+    }
+}
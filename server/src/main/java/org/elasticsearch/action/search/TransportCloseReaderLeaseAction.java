@@ -0,0 +1,96 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransportCloseReaderLeaseAction extends HandledTransportAction<CloseReaderLeaseRequest, CloseReaderLeaseResponse> {
+
+    private final ClusterService clusterService;
+    private final SearchTransportService searchTransportService;
+
+    @Inject
+    public TransportCloseReaderLeaseAction(Settings settings, TransportService transportService, ClusterService clusterService,
+                                           ActionFilters actionFilters, SearchTransportService searchTransportService) {
+        super(settings, CloseReaderLeaseAction.NAME, transportService, actionFilters, CloseReaderLeaseRequest::new);
+        this.clusterService = clusterService;
+        this.searchTransportService = searchTransportService;
+    }
+
+    @Override
+    protected void doExecute(Task task, CloseReaderLeaseRequest request, ActionListener<CloseReaderLeaseResponse> listener) {
+        final ParsedReaderLeaseId readerLeaseId = TransportSearchHelper.parseReaderLeaseId(request.getId());
+        final ReaderLeaseIdForShard[] shards = readerLeaseId.getShards();
+        if (shards.length == 0) {
+            listener.onResponse(new CloseReaderLeaseResponse(true, 0));
+            return;
+        }
+        final DiscoveryNodes nodes = clusterService.state().nodes();
+        final CountDown expectedOps = new CountDown(shards.length);
+        final AtomicBoolean hasFailed = new AtomicBoolean(false);
+        final AtomicInteger freedLeases = new AtomicInteger(0);
+        for (ReaderLeaseIdForShard shard : shards) {
+            final DiscoveryNode node = nodes.get(shard.getNode());
+            try {
+                if (node == null) {
+                    // the node left the cluster, its readers are gone with it
+                    throw new IllegalStateException("no node found for id: " + shard.getNode());
+                }
+                Transport.Connection connection = searchTransportService.getConnection(null, node);
+                searchTransportService.sendFreeReaderLease(connection, shard.getLeaseId(), readerLeaseId.getOriginalIndices(),
+                    ActionListener.wrap(response -> {
+                        if (response.isFreed()) {
+                            freedLeases.incrementAndGet();
+                        }
+                        if (expectedOps.countDown()) {
+                            listener.onResponse(new CloseReaderLeaseResponse(hasFailed.get() == false, freedLeases.get()));
+                        }
+                    }, e -> onFailure(shard, e, hasFailed, expectedOps, freedLeases, listener)));
+            } catch (Exception e) {
+                onFailure(shard, e, hasFailed, expectedOps, freedLeases, listener);
+            }
+        }
+    }
+
+    private void onFailure(ReaderLeaseIdForShard shard, Exception e, AtomicBoolean hasFailed, CountDown expectedOps,
+                           AtomicInteger freedLeases, ActionListener<CloseReaderLeaseResponse> listener) {
+        logger.warn(() -> new ParameterizedMessage("failed to free reader lease {}", shard), e);
+        // set the failure marker before counting down, see ClearScrollController
+        hasFailed.set(true);
+        if (expectedOps.countDown()) {
+            listener.onResponse(new CloseReaderLeaseResponse(false, freedLeases.get()));
+        }
+    }
+}
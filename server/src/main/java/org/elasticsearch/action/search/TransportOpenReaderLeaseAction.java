@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.NoShardAvailableActionException;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens a reader lease on one copy of each of the shards of the requested indices. If the lease can't be opened on a copy the next
+ * copy is tried, if all copies of a shard fail the leases that were opened on the other shards are released and the request fails.
+ */
+public class TransportOpenReaderLeaseAction extends HandledTransportAction<OpenReaderLeaseRequest, OpenReaderLeaseResponse> {
+
+    private final ClusterService clusterService;
+    private final SearchTransportService searchTransportService;
+    private final IndexNameExpressionResolver indexNameExpressionResolver;
+
+    @Inject
+    public TransportOpenReaderLeaseAction(Settings settings, TransportService transportService, ClusterService clusterService,
+                                          ActionFilters actionFilters, SearchTransportService searchTransportService,
+                                          IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(settings, OpenReaderLeaseAction.NAME, transportService, actionFilters, OpenReaderLeaseRequest::new);
+        this.clusterService = clusterService;
+        this.searchTransportService = searchTransportService;
+        this.indexNameExpressionResolver = indexNameExpressionResolver;
+    }
+
+    @Override
+    protected void doExecute(Task task, OpenReaderLeaseRequest request, ActionListener<OpenReaderLeaseResponse> listener) {
+        final ClusterState clusterState = clusterService.state();
+        clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+        final String[] concreteIndices = indexNameExpressionResolver.concreteIndexNames(clusterState, request);
+        for (String index : concreteIndices) {
+            clusterState.blocks().indexBlockedRaiseException(ClusterBlockLevel.READ, index);
+        }
+        final Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, request.routing(),
+            request.indices());
+        final GroupShardsIterator<ShardIterator> shardIterators = clusterService.operationRouting().searchShards(clusterState,
+            concreteIndices, routingMap, request.preference());
+        final OriginalIndices originalIndices = new OriginalIndices(request);
+        final DiscoveryNodes nodes = clusterState.nodes();
+        if (shardIterators.size() == 0) {
+            listener.onResponse(buildResponse(originalIndices, new AtomicArray<>(0)));
+            return;
+        }
+
+        final AtomicArray<ReaderLeaseIdForShard> leases = new AtomicArray<>(shardIterators.size());
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final CountDown countDown = new CountDown(shardIterators.size());
+        int shardIndex = 0;
+        for (ShardIterator shardIterator : shardIterators) {
+            final int index = shardIndex++;
+            openReaderLease(task, shardIterator, nodes, originalIndices, request.keepAlive(), null,
+                new ActionListener<ReaderLeaseIdForShard>() {
+                    @Override
+                    public void onResponse(ReaderLeaseIdForShard lease) {
+                        leases.set(index, lease);
+                        onShardDone();
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        if (failure.compareAndSet(null, e) == false) {
+                            failure.get().addSuppressed(e);
+                        }
+                        onShardDone();
+                    }
+
+                    private void onShardDone() {
+                        if (countDown.countDown()) {
+                            if (failure.get() == null) {
+                                final OpenReaderLeaseResponse response;
+                                try {
+                                    response = buildResponse(originalIndices, leases);
+                                } catch (Exception e) {
+                                    freeReaderLeases(nodes, originalIndices, leases);
+                                    listener.onFailure(e);
+                                    return;
+                                }
+                                listener.onResponse(response);
+                            } else {
+                                freeReaderLeases(nodes, originalIndices, leases);
+                                listener.onFailure(failure.get());
+                            }
+                        }
+                    }
+                });
+        }
+    }
+
+    private void openReaderLease(Task task, ShardIterator shardIterator, DiscoveryNodes nodes, OriginalIndices originalIndices,
+                                 TimeValue keepAlive, Exception lastFailure, ActionListener<ReaderLeaseIdForShard> listener) {
+        final ShardRouting shard = shardIterator.nextOrNull();
+        if (shard == null) {
+            listener.onFailure(lastFailure == null ? new NoShardAvailableActionException(shardIterator.shardId()) : lastFailure);
+            return;
+        }
+        final DiscoveryNode node = nodes.get(shard.currentNodeId());
+        if (node == null) {
+            openReaderLease(task, shardIterator, nodes, originalIndices, keepAlive,
+                new NoShardAvailableActionException(shardIterator.shardId()), listener);
+            return;
+        }
+        try {
+            Transport.Connection connection = searchTransportService.getConnection(null, node);
+            searchTransportService.sendOpenReaderLease(connection, shardIterator.shardId(), keepAlive, originalIndices, task,
+                ActionListener.wrap(
+                    response -> listener.onResponse(new ReaderLeaseIdForShard(shardIterator.shardId(), node.getId(),
+                        response.getLeaseId())),
+                    e -> {
+                        logger.debug(() -> new ParameterizedMessage("{}: failed to open reader lease on node [{}]",
+                            shardIterator.shardId(), node), e);
+                        openReaderLease(task, shardIterator, nodes, originalIndices, keepAlive, e, listener);
+                    }));
+        } catch (Exception e) {
+            openReaderLease(task, shardIterator, nodes, originalIndices, keepAlive, e, listener);
+        }
+    }
+
+    private void freeReaderLeases(DiscoveryNodes nodes, OriginalIndices originalIndices, AtomicArray<ReaderLeaseIdForShard> leases) {
+        for (ReaderLeaseIdForShard lease : leases.asList()) {
+            final DiscoveryNode node = nodes.get(lease.getNode());
+            if (node == null) {
+                continue;
+            }
+            try {
+                Transport.Connection connection = searchTransportService.getConnection(null, node);
+                searchTransportService.sendFreeReaderLease(connection, lease.getLeaseId(), originalIndices, ActionListener.wrap(r -> {},
+                    e -> logger.debug(() -> new ParameterizedMessage("failed to free reader lease {}", lease), e)));
+            } catch (Exception e) {
+                logger.debug(() -> new ParameterizedMessage("failed to free reader lease {}", lease), e);
+            }
+        }
+    }
+
+    private static OpenReaderLeaseResponse buildResponse(OriginalIndices originalIndices,
+                                                         AtomicArray<ReaderLeaseIdForShard> leases) throws IOException {
+        return new OpenReaderLeaseResponse(TransportSearchHelper.buildReaderLeaseId(originalIndices, leases.asList()));
+    }
+}
@@ -31,13 +31,18 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.ShardId;
@@ -55,6 +60,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -70,6 +77,31 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
     public static final Setting<Long> SHARD_COUNT_LIMIT_SETTING = Setting.longSetting(
             "action.search.shard_count.limit", Long.MAX_VALUE, 1L, Property.Dynamic, Property.NodeScope);
 
+    /**
+     * The maximum number of shards whose field ranges are cached to pre-filter shards on the coordinating node, <code>0</code>
+     * disables the cache.
+     */
+    public static final Setting<Integer> FIELD_RANGES_CACHE_SIZE_SETTING = Setting.intSetting(
+            "action.search.field_ranges_cache.size", 10_000, 0, Property.NodeScope);
+
+    /**
+     * Whether shard requests of the query phase that take unusually long for the node they were sent to are also sent to another copy
+     * of the shard, see {@link ShardRequestHedging}.
+     */
+    public static final Setting<Boolean> HEDGED_REQUESTS_ENABLED_SETTING = Setting.boolSetting(
+            "action.search.hedged_requests.enabled", false, Property.Dynamic, Property.NodeScope);
+
+    /** The minimum time to wait for the response of a shard before hedging its request. */
+    public static final Setting<TimeValue> HEDGED_REQUESTS_MIN_DELAY_SETTING = Setting.positiveTimeSetting(
+            "action.search.hedged_requests.min_delay", TimeValue.timeValueMillis(50), Property.Dynamic, Property.NodeScope);
+
+    /**
+     * The maximum number of hedged requests of a search relative to the number of shards that it searches, rounded up. This bounds the
+     * additional load that hedging causes when a search is slow on all nodes.
+     */
+    public static final Setting<Double> HEDGED_REQUESTS_MAX_RATIO_SETTING = Setting.doubleSetting(
+            "action.search.hedged_requests.max_ratio", 0.05, 0.0, Property.Dynamic, Property.NodeScope);
+
     private final ThreadPool threadPool;
     private final ClusterService clusterService;
     private final SearchTransportService searchTransportService;
@@ -77,6 +109,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
     private final SearchPhaseController searchPhaseController;
     private final SearchService searchService;
     private final IndexNameExpressionResolver indexNameExpressionResolver;
+    private final ShardFieldRangesCache fieldRangesCache;
 
     @Inject
     public TransportSearchAction(Settings settings, ThreadPool threadPool, TransportService transportService, SearchService searchService,
@@ -92,14 +125,17 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         this.clusterService = clusterService;
         this.searchService = searchService;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
+        final int fieldRangesCacheSize = FIELD_RANGES_CACHE_SIZE_SETTING.get(settings);
+        this.fieldRangesCache = fieldRangesCacheSize == 0 ? null
+            : new ShardFieldRangesCache(fieldRangesCacheSize, searchService::getCoordinatorRewriteContext);
     }
 
-    private Map<String, AliasFilter> buildPerIndexAliasFilter(SearchRequest request, ClusterState clusterState,
+    private Map<String, AliasFilter> buildPerIndexAliasFilter(String[] indexExpressions, ClusterState clusterState,
                                                               Index[] concreteIndices, Map<String, AliasFilter> remoteAliasMap) {
         final Map<String, AliasFilter> aliasFilterMap = new HashMap<>();
         for (Index index : concreteIndices) {
             clusterState.blocks().indexBlockedRaiseException(ClusterBlockLevel.READ, index.getName());
-            AliasFilter aliasFilter = searchService.buildAliasFilter(clusterState, index.getName(), request.indices());
+            AliasFilter aliasFilter = searchService.buildAliasFilter(clusterState, index.getName(), indexExpressions);
             assert aliasFilter != null;
             aliasFilterMap.put(index.getUUID(), aliasFilter);
         }
@@ -189,12 +225,20 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 searchRequest.source(source);
             }
             final ClusterState clusterState = clusterService.state();
+            if (searchRequest.readerLease() != null) {
+                // the lease determines the shards to search, it can only be opened on the local cluster
+                final ParsedReaderLeaseId readerLease = TransportSearchHelper.parseReaderLeaseId(searchRequest.readerLease());
+                executeSearch((SearchTask) task, timeProvider, searchRequest, readerLease.getOriginalIndices(), Collections.emptyMap(),
+                    Collections.emptyList(), (clusterName, nodeId) -> null, clusterState, Collections.emptyMap(), listener,
+                    SearchResponse.Clusters.EMPTY, readerLease);
+                return;
+            }
             final Map<String, OriginalIndices> remoteClusterIndices = remoteClusterService.groupIndices(searchRequest.indicesOptions(),
                 searchRequest.indices(), idx -> indexNameExpressionResolver.hasIndexOrAlias(idx, clusterState));
             OriginalIndices localIndices = remoteClusterIndices.remove(RemoteClusterAware.LOCAL_CLUSTER_GROUP_KEY);
             if (remoteClusterIndices.isEmpty()) {
                 executeSearch((SearchTask)task, timeProvider, searchRequest, localIndices, remoteClusterIndices, Collections.emptyList(),
-                    (clusterName, nodeId) -> null, clusterState, Collections.emptyMap(), listener, SearchResponse.Clusters.EMPTY);
+                    (clusterName, nodeId) -> null, clusterState, Collections.emptyMap(), listener, SearchResponse.Clusters.EMPTY, null);
             } else {
                 remoteClusterService.collectSearchShards(searchRequest.indicesOptions(), searchRequest.preference(),
                     searchRequest.routing(), remoteClusterIndices, ActionListener.wrap((searchShardsResponses) -> {
@@ -205,7 +249,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                         SearchResponse.Clusters clusters = buildClusters(localIndices, remoteClusterIndices, searchShardsResponses);
                         executeSearch((SearchTask) task, timeProvider, searchRequest, localIndices, remoteClusterIndices,
                             remoteShardIterators, clusterNodeLookup, clusterState, remoteAliasFilters, listener,
-                            clusters);
+                            clusters, null);
                     }, listener::onFailure));
             }
         }, listener::onFailure);
@@ -281,32 +325,43 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                                Map<String, OriginalIndices> remoteClusterIndices, List<SearchShardIterator> remoteShardIterators,
                                BiFunction<String, String, DiscoveryNode> remoteConnections, ClusterState clusterState,
                                Map<String, AliasFilter> remoteAliasMap, ActionListener<SearchResponse> listener,
-                               SearchResponse.Clusters clusters) {
+                               SearchResponse.Clusters clusters, @Nullable ParsedReaderLeaseId readerLease) {
 
         clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
         // TODO: I think startTime() should become part of ActionRequest and that should be used both for index name
         // date math expressions and $now in scripts. This way all apis will deal with now in the same way instead
         // of just for the _search api
         final Index[] indices;
-        if (localIndices.indices().length == 0 && remoteClusterIndices.isEmpty() == false) {
+        if (readerLease != null) {
+            // the shards were resolved when the lease was opened, but only the ones of the indices that the request still resolves to
+            // are searched, the indices of the request may have been narrowed down to the ones the user is authorized for
+            final Index[] requestedIndices = indexNameExpressionResolver.concreteIndices(clusterState, searchRequest.indicesOptions(),
+                timeProvider.getAbsoluteStartMillis(), searchRequest.indices());
+            indices = leasedIndices(clusterState, readerLease, requestedIndices);
+        } else if (localIndices.indices().length == 0 && remoteClusterIndices.isEmpty() == false) {
             indices = Index.EMPTY_ARRAY; // don't search on _all if only remote indices were specified
         } else {
             indices = indexNameExpressionResolver.concreteIndices(clusterState, searchRequest.indicesOptions(),
                 timeProvider.getAbsoluteStartMillis(), localIndices.indices());
         }
-        Map<String, AliasFilter> aliasFilter = buildPerIndexAliasFilter(searchRequest, clusterState, indices, remoteAliasMap);
+        final String[] indexExpressions = readerLease != null ? readerLease.getOriginalIndices().indices() : searchRequest.indices();
+        Map<String, AliasFilter> aliasFilter = buildPerIndexAliasFilter(indexExpressions, clusterState, indices, remoteAliasMap);
         Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, searchRequest.routing(),
-            searchRequest.indices());
+            indexExpressions);
         routingMap = routingMap == null ? Collections.emptyMap() : Collections.unmodifiableMap(routingMap);
-        String[] concreteIndices = new String[indices.length];
-        for (int i = 0; i < indices.length; i++) {
-            concreteIndices[i] = indices[i].getName();
-        }
-        Map<String, Long> nodeSearchCounts = searchTransportService.getPendingSearchRequests();
-        GroupShardsIterator<ShardIterator> localShardsIterator = clusterService.operationRouting().searchShards(clusterState,
+        final GroupShardsIterator<SearchShardIterator> shardIterators;
+        if (readerLease != null) {
+            shardIterators = leasedShardsIterators(clusterState, readerLease, indices);
+        } else {
+            String[] concreteIndices = new String[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                concreteIndices[i] = indices[i].getName();
+            }
+            Map<String, Long> nodeSearchCounts = searchTransportService.getPendingSearchRequests();
+            GroupShardsIterator<ShardIterator> localShardsIterator = clusterService.operationRouting().searchShards(clusterState,
                 concreteIndices, routingMap, searchRequest.preference(), searchService.getResponseCollectorService(), nodeSearchCounts);
-        GroupShardsIterator<SearchShardIterator> shardIterators = mergeShardsIterators(localShardsIterator, localIndices,
-            remoteShardIterators);
+            shardIterators = mergeShardsIterators(localShardsIterator, localIndices, remoteShardIterators);
+        }
 
         failIfOverShardCountLimit(clusterService, shardIterators.size());
 
@@ -341,13 +396,14 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
             return searchTransportService.getConnection(clusterName, discoveryNode);
         };
         boolean preFilterSearchShards = shouldPreFilterSearchShards(searchRequest, shardIterators);
-        searchAsyncAction(task, searchRequest, shardIterators, timeProvider, connectionLookup, clusterState.version(),
+        searchAsyncAction(task, searchRequest, shardIterators, timeProvider, connectionLookup, clusterState,
             Collections.unmodifiableMap(aliasFilter), concreteIndexBoosts, routingMap, listener, preFilterSearchShards, clusters).start();
     }
 
     private boolean shouldPreFilterSearchShards(SearchRequest searchRequest, GroupShardsIterator<SearchShardIterator> shardIterators) {
         SearchSourceBuilder source = searchRequest.source();
         return searchRequest.searchType() == QUERY_THEN_FETCH && // we can't do this for DFS it needs to fan out to all shards all the time
+                searchRequest.readerLease() == null && // the pre-filter phase would look at the current readers rather than the leased ones
                 SearchService.canRewriteToMatchNone(source) &&
                 searchRequest.getPreFilterShardSize() < shardIterators.size();
     }
@@ -362,11 +418,55 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         return new GroupShardsIterator<>(shards);
     }
 
+    /**
+     * Returns the indices of the shards of the reader lease that still exist and are among the given requested indices.
+     */
+    static Index[] leasedIndices(ClusterState clusterState, ParsedReaderLeaseId readerLease, Index[] requestedIndices) {
+        final Set<Index> requested = new HashSet<>(Arrays.asList(requestedIndices));
+        final Set<Index> indices = new LinkedHashSet<>();
+        for (ReaderLeaseIdForShard lease : readerLease.getShards()) {
+            final Index index = lease.getShardId().getIndex();
+            if (clusterState.metaData().index(index) != null && requested.contains(index)) {
+                indices.add(index);
+            }
+        }
+        return indices.toArray(Index.EMPTY_ARRAY);
+    }
+
+    /**
+     * Builds an iterator per shard of the reader lease that only holds the copy of the shard that the lease was opened on. If that
+     * copy is gone the iterator is empty and the shard fails. Shards of existing indices that are not among the given indices to
+     * search are skipped.
+     */
+    static GroupShardsIterator<SearchShardIterator> leasedShardsIterators(ClusterState clusterState, ParsedReaderLeaseId readerLease,
+                                                                         Index[] indicesToSearch) {
+        final Set<Index> toSearch = new HashSet<>(Arrays.asList(indicesToSearch));
+        final List<SearchShardIterator> shards = new ArrayList<>();
+        for (ReaderLeaseIdForShard lease : readerLease.getShards()) {
+            List<ShardRouting> copies = Collections.emptyList();
+            if (clusterState.metaData().index(lease.getShardId().getIndex()) != null) {
+                if (toSearch.contains(lease.getShardId().getIndex()) == false) {
+                    continue;
+                }
+                final IndexShardRoutingTable shardRoutingTable = clusterState.routingTable().shardRoutingTableOrNull(lease.getShardId());
+                if (shardRoutingTable != null) {
+                    for (ShardRouting shardRouting : shardRoutingTable.activeShards()) {
+                        if (lease.getNode().equals(shardRouting.currentNodeId())) {
+                            copies = Collections.singletonList(shardRouting);
+                        }
+                    }
+                }
+            }
+            shards.add(new SearchShardIterator(null, lease.getShardId(), copies, readerLease.getOriginalIndices(), lease.getLeaseId()));
+        }
+        return new GroupShardsIterator<>(shards);
+    }
+
     private AbstractSearchAsyncAction searchAsyncAction(SearchTask task, SearchRequest searchRequest,
                                                         GroupShardsIterator<SearchShardIterator> shardIterators,
                                                         SearchTimeProvider timeProvider,
                                                         BiFunction<String, String, Transport.Connection> connectionLookup,
-                                                        long clusterStateVersion,
+                                                        ClusterState clusterState,
                                                         Map<String, AliasFilter> aliasFilter,
                                                         Map<String, Float> concreteIndexBoosts,
                                                         Map<String, Set<String>> indexRoutings,
@@ -374,19 +474,20 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                                                         boolean preFilter,
                                                         SearchResponse.Clusters clusters) {
         Executor executor = threadPool.executor(ThreadPool.Names.SEARCH);
+        final long clusterStateVersion = clusterState.version();
         if (preFilter) {
             return new CanMatchPreFilterSearchPhase(logger, searchTransportService, connectionLookup,
                 aliasFilter, concreteIndexBoosts, indexRoutings, executor, searchRequest, listener, shardIterators,
                 timeProvider, clusterStateVersion, task, (iter) -> {
                 AbstractSearchAsyncAction action = searchAsyncAction(task, searchRequest, iter, timeProvider, connectionLookup,
-                    clusterStateVersion, aliasFilter, concreteIndexBoosts, indexRoutings, listener, false, clusters);
+                    clusterState, aliasFilter, concreteIndexBoosts, indexRoutings, listener, false, clusters);
                 return new SearchPhase(action.getName()) {
                     @Override
                     public void run() {
                         action.start();
                     }
                 };
-            }, clusters);
+            }, clusters, fieldRangesCache, clusterState);
         } else {
             AbstractSearchAsyncAction searchAsyncAction;
             switch (searchRequest.searchType()) {
@@ -399,7 +500,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 case QUERY_THEN_FETCH:
                     searchAsyncAction = new SearchQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                         aliasFilter, concreteIndexBoosts, indexRoutings, searchPhaseController, executor, searchRequest, listener,
-                        shardIterators, timeProvider, clusterStateVersion, task, clusters);
+                        shardIterators, timeProvider, clusterStateVersion, task, clusters, shardRequestHedging(shardIterators.size()));
                     break;
                 default:
                     throw new IllegalStateException("Unknown search type: [" + searchRequest.searchType() + "]");
@@ -408,6 +509,20 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         }
     }
 
+    @Nullable
+    private ShardRequestHedging shardRequestHedging(int numShards) {
+        final ClusterSettings clusterSettings = clusterService.getClusterSettings();
+        if (clusterSettings.get(HEDGED_REQUESTS_ENABLED_SETTING) == false) {
+            return null;
+        }
+        final int maxHedges = (int) Math.ceil(clusterSettings.get(HEDGED_REQUESTS_MAX_RATIO_SETTING) * numShards);
+        if (maxHedges == 0) {
+            return null;
+        }
+        return new ShardRequestHedging(threadPool, searchService.getResponseCollectorService(),
+            clusterSettings.get(HEDGED_REQUESTS_MIN_DELAY_SETTING), maxHedges);
+    }
+
     private static void failIfOverShardCountLimit(ClusterService clusterService, int shardCount) {
         final long shardCountLimit = clusterService.getClusterSettings().get(SHARD_COUNT_LIMIT_SETTING);
         if (shardCount > shardCountLimit) {
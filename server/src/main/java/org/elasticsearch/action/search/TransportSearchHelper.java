@@ -21,7 +21,12 @@ package org.elasticsearch.action.search;
 
 import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.RAMOutputStream;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
@@ -29,6 +34,7 @@ import org.elasticsearch.transport.RemoteClusterAware;
 
 import java.io.IOException;
 import java.util.Base64;
+import java.util.List;
 
 final class TransportSearchHelper {
 
@@ -84,6 +90,38 @@ final class TransportSearchHelper {
         }
     }
 
+    static String buildReaderLeaseId(OriginalIndices originalIndices, List<ReaderLeaseIdForShard> shards) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            OriginalIndices.writeOriginalIndices(originalIndices, out);
+            out.writeVInt(shards.size());
+            for (ReaderLeaseIdForShard shard : shards) {
+                shard.getShardId().writeTo(out);
+                out.writeString(shard.getNode());
+                out.writeLong(shard.getLeaseId());
+            }
+            return Base64.getUrlEncoder().encodeToString(BytesReference.toBytes(out.bytes()));
+        }
+    }
+
+    static ParsedReaderLeaseId parseReaderLeaseId(String readerLeaseId) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(readerLeaseId);
+            try (StreamInput in = StreamInput.wrap(bytes)) {
+                OriginalIndices originalIndices = OriginalIndices.readOriginalIndices(in);
+                ReaderLeaseIdForShard[] shards = new ReaderLeaseIdForShard[in.readVInt()];
+                for (int i = 0; i < shards.length; ++i) {
+                    shards[i] = new ReaderLeaseIdForShard(ShardId.readShardId(in), in.readString(), in.readLong());
+                }
+                if (in.available() != 0) {
+                    throw new IllegalArgumentException("Not all bytes were read");
+                }
+                return new ParsedReaderLeaseId(readerLeaseId, originalIndices, shards);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot parse reader lease id", e);
+        }
+    }
+
     private TransportSearchHelper() {
 
     }
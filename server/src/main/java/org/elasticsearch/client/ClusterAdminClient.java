@@ -27,6 +27,9 @@ import org.elasticsearch.action.admin.cluster.allocation.ClusterAllocationExplai
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsRequest;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsRequestBuilder;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsResponse;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsRequest;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsRequestBuilder;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsResponse;
@@ -319,6 +322,22 @@ public interface ClusterAdminClient extends ElasticsearchClient {
      */
     NodesHotThreadsRequestBuilder prepareNodesHotThreads(String... nodesIds);
 
+    /**
+     * Returns the top N shards with the highest write load per node. Only the nodes ids specified in the request are queried.
+     */
+    ActionFuture<NodesHotShardsResponse> nodesHotShards(NodesHotShardsRequest request);
+
+    /**
+     * Returns the top N shards with the highest write load per node. Only the nodes ids specified in the request are queried.
+     */
+    void nodesHotShards(NodesHotShardsRequest request, ActionListener<NodesHotShardsResponse> listener);
+
+    /**
+     * Returns a request builder to fetch the top N shards with the highest write load per node. Only the nodes ids provided are
+     * queried. Note: Use {@code *} to fetch the shards of all nodes
+     */
+    NodesHotShardsRequestBuilder prepareNodesHotShards(String... nodesIds);
+
     /**
      * List tasks
      *
@@ -32,6 +32,10 @@ import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsAction;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsRequest;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsRequestBuilder;
+import org.elasticsearch.action.admin.cluster.node.hotshards.NodesHotShardsResponse;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsAction;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsRequest;
 import org.elasticsearch.action.admin.cluster.node.hotthreads.NodesHotThreadsRequestBuilder;
@@ -853,6 +857,21 @@ public abstract class AbstractClient extends AbstractComponent implements Client
             return new NodesHotThreadsRequestBuilder(this, NodesHotThreadsAction.INSTANCE).setNodesIds(nodesIds);
         }
 
+        @Override
+        public ActionFuture<NodesHotShardsResponse> nodesHotShards(NodesHotShardsRequest request) {
+            return execute(NodesHotShardsAction.INSTANCE, request);
+        }
+
+        @Override
+        public void nodesHotShards(NodesHotShardsRequest request, ActionListener<NodesHotShardsResponse> listener) {
+            execute(NodesHotShardsAction.INSTANCE, request, listener);
+        }
+
+        @Override
+        public NodesHotShardsRequestBuilder prepareNodesHotShards(String... nodesIds) {
+            return new NodesHotShardsRequestBuilder(this, NodesHotShardsAction.INSTANCE).setNodesIds(nodesIds);
+        }
+
         @Override
         public ActionFuture<ListTasksResponse> listTasks(final ListTasksRequest request) {
             return execute(ListTasksAction.INSTANCE, request);
@@ -28,6 +28,7 @@ import org.joda.time.DateTimeZone;
 import org.joda.time.IllegalInstantException;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -51,6 +52,119 @@ public abstract class Rounding implements Writeable {
      */
     public abstract long nextRoundingValue(long value);
 
+    /**
+     * Prepares this rounding for rounding values that are mostly within [{@code minUtcMillis}, {@code maxUtcMillis}], like the
+     * values of a field of a shard. If the time zone has offset transitions, the values that this range rounds to are computed once
+     * so that rounding a value is a binary search rather than time zone computations. Values outside of the range are rounded
+     * as usual.
+     */
+    public Prepared prepare(long minUtcMillis, long maxUtcMillis) {
+        final Prepared prepared = prepareForUnknown();
+        if (minUtcMillis > maxUtcMillis || isFixed()) {
+            return prepared;
+        }
+        final double estimatedRoundedValues = ((double) maxUtcMillis - minUtcMillis) / approximateIntervalMillis() + 1;
+        if (estimatedRoundedValues > MAX_LOOKUP_TABLE_SIZE) {
+            return prepared;
+        }
+        try {
+            final LookupTable table = LookupTable.build(this, minUtcMillis, maxUtcMillis);
+            return table == null ? prepared : table;
+        } catch (ArithmeticException e) {
+            // the range is close to the limits of what dates can represent
+            return prepared;
+        }
+    }
+
+    /**
+     * Prepares this rounding for rounding values without knowing their range.
+     */
+    public Prepared prepareForUnknown() {
+        return this::round;
+    }
+
+    /**
+     * Whether the offset of the time zone of this rounding never changes.
+     */
+    abstract boolean isFixed();
+
+    /**
+     * The approximate number of milliseconds between two rounded values.
+     */
+    abstract long approximateIntervalMillis();
+
+    /**
+     * A rounding that was prepared for a range of values, see {@link #prepare(long, long)}, and that rounds like the rounding it was
+     * prepared from.
+     */
+    @FunctionalInterface
+    public interface Prepared {
+        long round(long utcMillis);
+    }
+
+    /**
+     * The maximum number of rounded values that {@link #prepare(long, long)} computes up front.
+     */
+    static final int MAX_LOOKUP_TABLE_SIZE = 4096;
+
+    /**
+     * A {@link Prepared} rounding that looks up the rounded value of a value in the sorted values that a range rounds to.
+     */
+    static final class LookupTable implements Prepared {
+        private final Rounding rounding;
+        private final long[] values;
+        // the first value that is rounded to a value after the last value of the table
+        private final long end;
+
+        private LookupTable(Rounding rounding, long[] values, long end) {
+            this.rounding = rounding;
+            this.values = values;
+            this.end = end;
+        }
+
+        /**
+         * Builds the table for the given range, or returns <code>null</code> if it would have more than
+         * {@link #MAX_LOOKUP_TABLE_SIZE} values or if the rounding doesn't behave as the table expects.
+         */
+        static LookupTable build(Rounding rounding, long minUtcMillis, long maxUtcMillis) {
+            long[] values = new long[16];
+            int count = 0;
+            long rounded = rounding.round(minUtcMillis);
+            while (true) {
+                if (count == MAX_LOOKUP_TABLE_SIZE) {
+                    return null;
+                }
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = rounded;
+                final long next = rounding.round(rounding.nextRoundingValue(rounded));
+                // rounding is monotonic, so if the value right before the next rounded value rounds to the current one, so do all
+                // values in between, which is what makes looking up values in the table correct
+                if (next <= rounded || rounding.round(next - 1) != rounded) {
+                    return null;
+                }
+                if (next > maxUtcMillis) {
+                    return new LookupTable(rounding, Arrays.copyOf(values, count), next);
+                }
+                rounded = next;
+            }
+        }
+
+        @Override
+        public long round(long utcMillis) {
+            if (utcMillis < values[0] || utcMillis >= end) {
+                return rounding.round(utcMillis);
+            }
+            final int index = Arrays.binarySearch(values, utcMillis);
+            return index >= 0 ? values[index] : values[-2 - index];
+        }
+
+        int size() {
+            return values.length;
+        }
+    }
+
     @Override
     public abstract boolean equals(Object obj);
 
@@ -229,6 +343,16 @@ public abstract class Rounding implements Writeable {
             }
         }
 
+        @Override
+        boolean isFixed() {
+            return timeZone.isFixed();
+        }
+
+        @Override
+        long approximateIntervalMillis() {
+            return field.getDurationField().getUnitMillis();
+        }
+
         @Override
         public long nextRoundingValue(long utcMillis) {
             long floor = round(utcMillis);
@@ -364,6 +488,26 @@ public abstract class Rounding implements Writeable {
             return false;
         }
 
+        @Override
+        public Prepared prepareForUnknown() {
+            if (timeZone.isFixed()) {
+                // the rounding doesn't need any time zone computations beyond shifting the value by the offset
+                final long offset = timeZone.getOffset(0);
+                return utcMillis -> roundKey(utcMillis + offset, interval) * interval - offset;
+            }
+            return super.prepareForUnknown();
+        }
+
+        @Override
+        boolean isFixed() {
+            return timeZone.isFixed();
+        }
+
+        @Override
+        long approximateIntervalMillis() {
+            return interval;
+        }
+
         @Override
         public long nextRoundingValue(long time) {
             long timeLocal = time;
@@ -368,6 +368,7 @@ public class BigArrays implements Releasable {
 
     final PageCacheRecycler recycler;
     final CircuitBreakerService breakerService;
+    final String breakerName;
     final boolean checkBreaker;
     private final BigArrays circuitBreakingInstance;
 
@@ -378,13 +379,19 @@ public class BigArrays implements Releasable {
 
     // public for tests
     public BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, boolean checkBreaker) {
+        this(recycler, breakerService, CircuitBreaker.REQUEST, checkBreaker);
+    }
+
+    protected BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, String breakerName,
+                        boolean checkBreaker) {
         this.checkBreaker = checkBreaker;
         this.recycler = recycler;
         this.breakerService = breakerService;
+        this.breakerName = breakerName;
         if (checkBreaker) {
             this.circuitBreakingInstance = this;
         } else {
-            this.circuitBreakingInstance = new BigArrays(recycler, breakerService, true);
+            this.circuitBreakingInstance = new BigArrays(recycler, breakerService, breakerName, true);
         }
     }
 
@@ -398,7 +405,7 @@ public class BigArrays implements Releasable {
      */
     void adjustBreaker(final long delta, final boolean isDataAlreadyCreated) {
         if (this.breakerService != null) {
-            CircuitBreaker breaker = this.breakerService.getBreaker(CircuitBreaker.REQUEST);
+            CircuitBreaker breaker = this.breakerService.getBreaker(breakerName);
             if (this.checkBreaker) {
                 // checking breaker means potentially tripping, but it doesn't
                 // have to if the delta is negative
@@ -433,6 +440,14 @@ public class BigArrays implements Releasable {
         return this.circuitBreakingInstance;
     }
 
+    /**
+     * Return an instance of this BigArrays class that accounts its arrays against the circuit breaker with the given name
+     * instead of the {@link CircuitBreaker#REQUEST request} circuit breaker
+     */
+    public BigArrays withBreaker(String breakerName) {
+        return new BigArrays(recycler, breakerService, breakerName, checkBreaker);
+    }
+
     public CircuitBreakerService breakerService() {
         return this.circuitBreakingInstance.breakerService;
     }
@@ -25,11 +25,15 @@ import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.apache.lucene.util.automaton.Operations;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.Numbers;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -164,16 +168,51 @@ public class XContentMapValues {
      */
     public static Function<Map<String, ?>, Map<String, Object>> filter(String[] includes, String[] excludes) {
         CharacterRunAutomaton matchAllAutomaton = new CharacterRunAutomaton(Automata.makeAnyString());
+        CharacterRunAutomaton include = includeAutomaton(includes, matchAllAutomaton);
+        CharacterRunAutomaton exclude = excludeAutomaton(excludes);
 
-        CharacterRunAutomaton include;
+        // NOTE: We cannot use Operations.minus because of the special case that
+        // we want all sub properties to match as soon as an object matches
+
+        return (map) -> filter(map,
+            include, 0,
+            exclude, 0,
+            matchAllAutomaton);
+    }
+
+    /**
+     * Returns a function that copies the object the given parser is positioned on to the given builder, only keeping the properties
+     * that match the given include and exclude rules. This is equivalent to filtering the map of the object, but the object is
+     * streamed from the parser to the builder without building maps, and the order of its properties is preserved.
+     * @see #filter(Map, String[], String[]) for details
+     */
+    public static CheckedBiConsumer<XContentParser, XContentBuilder, IOException> filterContent(String[] includes, String[] excludes) {
+        CharacterRunAutomaton matchAllAutomaton = new CharacterRunAutomaton(Automata.makeAnyString());
+        CharacterRunAutomaton include = includeAutomaton(includes, matchAllAutomaton);
+        CharacterRunAutomaton exclude = excludeAutomaton(excludes);
+        return (parser, builder) -> {
+            if (parser.currentToken() == null) {
+                parser.nextToken();
+            }
+            if (parser.currentToken() != XContentParser.Token.START_OBJECT) {
+                throw new ElasticsearchParseException("expected an object but got [{}]", parser.currentToken());
+            }
+            builder.startObject();
+            new ContentFilter(parser, builder, matchAllAutomaton).filterObject(include, 0, exclude, 0);
+            builder.endObject();
+        };
+    }
+
+    private static CharacterRunAutomaton includeAutomaton(String[] includes, CharacterRunAutomaton matchAllAutomaton) {
         if (includes == null || includes.length == 0) {
-            include = matchAllAutomaton;
-        } else {
-            Automaton includeA = Regex.simpleMatchToAutomaton(includes);
-            includeA = makeMatchDotsInFieldNames(includeA);
-            include = new CharacterRunAutomaton(includeA);
+            return matchAllAutomaton;
         }
+        Automaton includeA = Regex.simpleMatchToAutomaton(includes);
+        includeA = makeMatchDotsInFieldNames(includeA);
+        return new CharacterRunAutomaton(includeA);
+    }
 
+    private static CharacterRunAutomaton excludeAutomaton(String[] excludes) {
         Automaton excludeA;
         if (excludes == null || excludes.length == 0) {
             excludeA = Automata.makeEmpty();
@@ -181,15 +220,7 @@ public class XContentMapValues {
             excludeA = Regex.simpleMatchToAutomaton(excludes);
             excludeA = makeMatchDotsInFieldNames(excludeA);
         }
-        CharacterRunAutomaton exclude = new CharacterRunAutomaton(excludeA);
-
-        // NOTE: We cannot use Operations.minus because of the special case that
-        // we want all sub properties to match as soon as an object matches
-
-        return (map) -> filter(map,
-            include, 0,
-            exclude, 0,
-            matchAllAutomaton);
+        return new CharacterRunAutomaton(excludeA);
     }
 
     /** Make matches on objects also match dots in field names.
@@ -314,6 +345,155 @@ public class XContentMapValues {
         return filtered;
     }
 
+    /**
+     * The streaming counterpart of the filtering of maps and iterables above, both must be kept in sync. Objects and arrays may end
+     * up empty once filtered, in which case they are omitted, so their start is only written to the builder once they have content.
+     */
+    private static final class ContentFilter {
+        private final XContentParser parser;
+        private final XContentBuilder builder;
+        private final CharacterRunAutomaton matchAllAutomaton;
+        // the objects and arrays that were started but not written yet, the field name is null for values of arrays
+        private final List<String> pendingNames = new ArrayList<>();
+        private final List<Boolean> pendingArrays = new ArrayList<>();
+
+        ContentFilter(XContentParser parser, XContentBuilder builder, CharacterRunAutomaton matchAllAutomaton) {
+            this.parser = parser;
+            this.builder = builder;
+            this.matchAllAutomaton = matchAllAutomaton;
+        }
+
+        private void start(String name, boolean array) {
+            pendingNames.add(name);
+            pendingArrays.add(array);
+        }
+
+        private void writePending() throws IOException {
+            for (int i = 0; i < pendingNames.size(); i++) {
+                if (pendingNames.get(i) != null) {
+                    builder.field(pendingNames.get(i));
+                }
+                if (pendingArrays.get(i)) {
+                    builder.startArray();
+                } else {
+                    builder.startObject();
+                }
+            }
+            pendingNames.clear();
+            pendingArrays.clear();
+        }
+
+        private void end(boolean array, boolean keepIfEmpty) throws IOException {
+            if (pendingNames.isEmpty() == false) {
+                // nothing was written since this object or array was started
+                if (keepIfEmpty == false) {
+                    pendingNames.remove(pendingNames.size() - 1);
+                    pendingArrays.remove(pendingArrays.size() - 1);
+                    return;
+                }
+                writePending();
+            }
+            if (array) {
+                builder.endArray();
+            } else {
+                builder.endObject();
+            }
+        }
+
+        private void copyField(String key) throws IOException {
+            writePending();
+            builder.field(key);
+            builder.copyCurrentStructure(parser);
+        }
+
+        void filterObject(CharacterRunAutomaton includeAutomaton, int initialIncludeState,
+                CharacterRunAutomaton excludeAutomaton, int initialExcludeState) throws IOException {
+            for (XContentParser.Token token = parser.nextToken(); token != XContentParser.Token.END_OBJECT; token = parser.nextToken()) {
+                String key = parser.currentName();
+                token = parser.nextToken();
+
+                int includeState = step(includeAutomaton, key, initialIncludeState);
+                if (includeState == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                int excludeState = step(excludeAutomaton, key, initialExcludeState);
+                if (excludeState != -1 && excludeAutomaton.isAccept(excludeState)) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                CharacterRunAutomaton subIncludeAutomaton = includeAutomaton;
+                int subIncludeState = includeState;
+                if (includeAutomaton.isAccept(includeState)) {
+                    if (excludeState == -1 || excludeAutomaton.step(excludeState, '.') == -1) {
+                        // the exclude has no chances to match inner properties
+                        copyField(key);
+                        continue;
+                    } else {
+                        // the object matched, so consider that the include matches every inner property
+                        // we only care about excludes now
+                        subIncludeAutomaton = matchAllAutomaton;
+                        subIncludeState = 0;
+                    }
+                }
+
+                if (token == XContentParser.Token.START_OBJECT) {
+                    subIncludeState = subIncludeAutomaton.step(subIncludeState, '.');
+                    if (subIncludeState == -1) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (excludeState != -1) {
+                        excludeState = excludeAutomaton.step(excludeState, '.');
+                    }
+                    start(key, false);
+                    filterObject(subIncludeAutomaton, subIncludeState, excludeAutomaton, excludeState);
+                    end(false, includeAutomaton.isAccept(includeState));
+                } else if (token == XContentParser.Token.START_ARRAY) {
+                    start(key, true);
+                    filterArray(subIncludeAutomaton, subIncludeState, excludeAutomaton, excludeState);
+                    end(true, false);
+                } else if (includeAutomaton.isAccept(includeState)
+                        && (excludeState == -1 || excludeAutomaton.isAccept(excludeState) == false)) {
+                    // leaf property
+                    copyField(key);
+                }
+            }
+        }
+
+        private void filterArray(CharacterRunAutomaton includeAutomaton, int initialIncludeState,
+                CharacterRunAutomaton excludeAutomaton, int initialExcludeState) throws IOException {
+            boolean isInclude = includeAutomaton.isAccept(initialIncludeState);
+            for (XContentParser.Token token = parser.nextToken(); token != XContentParser.Token.END_ARRAY; token = parser.nextToken()) {
+                if (token == XContentParser.Token.START_OBJECT) {
+                    int includeState = includeAutomaton.step(initialIncludeState, '.');
+                    if (includeState == -1) {
+                        // no property of the object can match
+                        parser.skipChildren();
+                        continue;
+                    }
+                    int excludeState = initialExcludeState;
+                    if (excludeState != -1) {
+                        excludeState = excludeAutomaton.step(excludeState, '.');
+                    }
+                    start(null, false);
+                    filterObject(includeAutomaton, includeState, excludeAutomaton, excludeState);
+                    end(false, false);
+                } else if (token == XContentParser.Token.START_ARRAY) {
+                    start(null, true);
+                    filterArray(includeAutomaton, initialIncludeState, excludeAutomaton, initialExcludeState);
+                    end(true, false);
+                } else if (isInclude) {
+                    // #22557: only accept this array value if the key we are on is accepted:
+                    writePending();
+                    builder.copyCurrentStructure(parser);
+                }
+            }
+        }
+    }
+
     public static boolean isObject(Object node) {
         return node instanceof Map;
     }
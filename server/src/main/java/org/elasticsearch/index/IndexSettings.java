@@ -181,6 +181,16 @@ public final class IndexSettings {
     public static final Setting<TimeValue> INDEX_REFRESH_INTERVAL_SETTING =
         Setting.timeSetting("index.refresh_interval", DEFAULT_REFRESH_INTERVAL, new TimeValue(-1, TimeUnit.MILLISECONDS),
             Property.Dynamic, Property.IndexScope);
+    /**
+     * Whether the refresh interval of each shard adapts to how often it is searched and written to. If enabled, shards that are
+     * written to but rarely searched are refreshed less often than {@link #INDEX_REFRESH_INTERVAL_SETTING}, up to
+     * {@link #INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING}.
+     */
+    public static final Setting<Boolean> INDEX_REFRESH_ADAPTIVE_ENABLED_SETTING =
+        Setting.boolSetting("index.refresh.adaptive.enabled", false, Property.Dynamic, Property.IndexScope);
+    public static final Setting<TimeValue> INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING =
+        Setting.timeSetting("index.refresh.adaptive.max_interval", TimeValue.timeValueSeconds(30), TimeValue.timeValueMillis(0),
+            Property.Dynamic, Property.IndexScope);
     public static final Setting<ByteSizeValue> INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING =
         Setting.byteSizeSetting("index.translog.flush_threshold_size", new ByteSizeValue(512, ByteSizeUnit.MB),
             /*
@@ -229,6 +239,23 @@ public final class IndexSettings {
                     new ByteSizeValue(Long.MAX_VALUE, ByteSizeUnit.BYTES),
                     Property.Dynamic, Property.IndexScope);
 
+    /**
+     * Controls whether snapshots of translog generations that are no longer written to are read through a memory mapping
+     * of the translog file rather than through positional reads into heap buffers. Operations read through a mapping expose
+     * their serialized bytes which allows peer recoveries and primary-replica resyncs to send them without re-serializing.
+     */
+    public static final Setting<Boolean> INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING =
+        Setting.boolSetting("index.translog.mmap_snapshots", false, Property.IndexScope);
+
+    /**
+     * The codec translog operations are written with. <code>best_compression</code> compresses the operations in blocks which
+     * reduces the size of translog files at the expense of CPU. The codec is recorded per translog generation, changes only apply to
+     * generations that are created after the shard was reopened.
+     */
+    public static final Setting<Translog.Codec> INDEX_TRANSLOG_CODEC_SETTING =
+        new Setting<>("index.translog.codec", Translog.Codec.DEFAULT.name().toLowerCase(Locale.ROOT),
+            (value) -> Translog.Codec.valueOf(value.toUpperCase(Locale.ROOT)), Property.IndexScope);
+
     /**
      * Index setting to enable / disable deletes garbage collection.
      * This setting is realtime updateable
@@ -255,6 +282,13 @@ public final class IndexSettings {
     public static final Setting<Integer> MAX_REGEX_LENGTH_SETTING = Setting.intSetting("index.max_regex_length",
         1000, 1, Property.Dynamic, Property.IndexScope);
 
+    /**
+     * The maximum number of threads that parse the append-only documents of a single shard bulk request concurrently before
+     * they are indexed in order. The default of <code>1</code> parses all documents on the thread that executes the request.
+     */
+    public static final Setting<Integer> BULK_PARSE_PARALLELISM_SETTING = Setting.intSetting("index.bulk.parse_parallelism",
+        1, 1, Property.Dynamic, Property.IndexScope);
+
     public static final Setting<String> DEFAULT_PIPELINE =
        new Setting<>("index.default_pipeline", IngestService.NOOP_PIPELINE_NAME, s -> {
            if (s == null || s.isEmpty()) {
@@ -280,9 +314,13 @@ public final class IndexSettings {
     private volatile Translog.Durability durability;
     private final TimeValue syncInterval;
     private volatile TimeValue refreshInterval;
+    private volatile boolean adaptiveRefreshEnabled;
+    private volatile TimeValue adaptiveRefreshMaxInterval;
     private volatile ByteSizeValue flushThresholdSize;
     private volatile TimeValue translogRetentionAge;
     private volatile ByteSizeValue translogRetentionSize;
+    private final boolean translogMmapSnapshots;
+    private final Translog.Codec translogCodec;
     private volatile ByteSizeValue generationThresholdSize;
     private final MergeSchedulerConfig mergeSchedulerConfig;
     private final MergePolicyConfig mergePolicyConfig;
@@ -318,6 +356,11 @@ public final class IndexSettings {
      */
     private volatile int maxRegexLength;
 
+    /**
+     * The maximum number of threads that parse the documents of a single shard bulk request concurrently.
+     */
+    private volatile int bulkParseParallelism;
+
     /**
      * Returns the default search fields for this index.
      */
@@ -394,10 +437,14 @@ public final class IndexSettings {
         defaultFields = scopedSettings.get(DEFAULT_FIELD_SETTING);
         syncInterval = INDEX_TRANSLOG_SYNC_INTERVAL_SETTING.get(settings);
         refreshInterval = scopedSettings.get(INDEX_REFRESH_INTERVAL_SETTING);
+        adaptiveRefreshEnabled = scopedSettings.get(INDEX_REFRESH_ADAPTIVE_ENABLED_SETTING);
+        adaptiveRefreshMaxInterval = scopedSettings.get(INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING);
         flushThresholdSize = scopedSettings.get(INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING);
         translogRetentionAge = scopedSettings.get(INDEX_TRANSLOG_RETENTION_AGE_SETTING);
         translogRetentionSize = scopedSettings.get(INDEX_TRANSLOG_RETENTION_SIZE_SETTING);
         generationThresholdSize = scopedSettings.get(INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING);
+        translogMmapSnapshots = scopedSettings.get(INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING);
+        translogCodec = scopedSettings.get(INDEX_TRANSLOG_CODEC_SETTING);
         mergeSchedulerConfig = new MergeSchedulerConfig(this);
         gcDeletesInMillis = scopedSettings.get(INDEX_GC_DELETES_SETTING).getMillis();
         warmerEnabled = scopedSettings.get(INDEX_WARMER_ENABLED_SETTING);
@@ -415,6 +462,7 @@ public final class IndexSettings {
         maxAnalyzedOffset = scopedSettings.get(MAX_ANALYZED_OFFSET_SETTING);
         maxTermsCount = scopedSettings.get(MAX_TERMS_COUNT_SETTING);
         maxRegexLength = scopedSettings.get(MAX_REGEX_LENGTH_SETTING);
+        bulkParseParallelism = scopedSettings.get(BULK_PARSE_PARALLELISM_SETTING);
         this.mergePolicyConfig = new MergePolicyConfig(logger, this);
         this.indexSortConfig = new IndexSortConfig(this);
         searchIdleAfter = scopedSettings.get(INDEX_SEARCH_IDLE_AFTER);
@@ -450,6 +498,8 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_AGE_SETTING, this::setTranslogRetentionAge);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_SIZE_SETTING, this::setTranslogRetentionSize);
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_ADAPTIVE_ENABLED_SETTING, this::setAdaptiveRefreshEnabled);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING, this::setAdaptiveRefreshMaxInterval);
         scopedSettings.addSettingsUpdateConsumer(MAX_REFRESH_LISTENERS_PER_SHARD, this::setMaxRefreshListeners);
         scopedSettings.addSettingsUpdateConsumer(MAX_ANALYZED_OFFSET_SETTING, this::setHighlightMaxAnalyzedOffset);
         scopedSettings.addSettingsUpdateConsumer(MAX_TERMS_COUNT_SETTING, this::setMaxTermsCount);
@@ -458,6 +508,7 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_IDLE_AFTER, this::setSearchIdleAfter);
         scopedSettings.addSettingsUpdateConsumer(MAX_REGEX_LENGTH_SETTING, this::setMaxRegexLength);
         scopedSettings.addSettingsUpdateConsumer(DEFAULT_PIPELINE, this::setDefaultPipeline);
+        scopedSettings.addSettingsUpdateConsumer(BULK_PARSE_PARALLELISM_SETTING, this::setBulkParseParallelism);
     }
 
     private void setSearchIdleAfter(TimeValue searchIdleAfter) { this.searchIdleAfter = searchIdleAfter; }
@@ -486,6 +537,14 @@ public final class IndexSettings {
         this.refreshInterval = timeValue;
     }
 
+    private void setAdaptiveRefreshEnabled(boolean adaptiveRefreshEnabled) {
+        this.adaptiveRefreshEnabled = adaptiveRefreshEnabled;
+    }
+
+    private void setAdaptiveRefreshMaxInterval(TimeValue adaptiveRefreshMaxInterval) {
+        this.adaptiveRefreshMaxInterval = adaptiveRefreshMaxInterval;
+    }
+
     /**
      * Returns the settings for this index. These settings contain the node and index level settings where
      * settings that are specified on both index and node level are overwritten by the index settings.
@@ -623,6 +682,20 @@ public final class IndexSettings {
         return refreshInterval;
     }
 
+    /**
+     * Returns <code>true</code> if the refresh interval of each shard adapts to how often it is searched and written to.
+     */
+    public boolean isAdaptiveRefreshEnabled() {
+        return adaptiveRefreshEnabled;
+    }
+
+    /**
+     * Returns the maximum interval in which shards are refreshed if adaptive refreshes are enabled.
+     */
+    public TimeValue getAdaptiveRefreshMaxInterval() {
+        return adaptiveRefreshMaxInterval;
+    }
+
     /**
      * Returns the transaction log threshold size when to forcefully flush the index and clear the transaction log.
      */
@@ -651,6 +724,21 @@ public final class IndexSettings {
         return generationThresholdSize;
     }
 
+    /**
+     * Returns <code>true</code> iff snapshots of translog generations that are no longer written to should be read through a
+     * memory mapping of the translog file.
+     */
+    public boolean isTranslogMmapSnapshots() {
+        return translogMmapSnapshots;
+    }
+
+    /**
+     * Returns the codec new translog generations are written with.
+     */
+    public Translog.Codec getTranslogCodec() {
+        return translogCodec;
+    }
+
     /**
      * Returns the {@link MergeSchedulerConfig}
      */
@@ -813,6 +901,17 @@ public final class IndexSettings {
         this.maxRegexLength = maxRegexLength;
     }
 
+    /**
+     * The maximum number of threads that parse the documents of a single shard bulk request concurrently.
+     */
+    public int getBulkParseParallelism() {
+        return bulkParseParallelism;
+    }
+
+    private void setBulkParseParallelism(int bulkParseParallelism) {
+        this.bulkParseParallelism = bulkParseParallelism;
+    }
+
     /**
      * Returns the index sort config that should be used for this index.
      */
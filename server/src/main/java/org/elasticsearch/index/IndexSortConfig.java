@@ -85,6 +85,15 @@ public final class IndexSortConfig {
         Setting.listSetting("index.sort.missing", Collections.emptyList(),
             IndexSortConfig::validateMissingValue, Setting.Property.IndexScope, Setting.Property.Final);
 
+    /**
+     * Whether the engine tracks if documents arrive in the order of the index sort and adds the documents of append-only bulk
+     * requests to Lucene in that order (ie. <b>true</b> or <b>false</b>). Lucene doesn't need to reorder the documents of a
+     * flushed segment that are already in order, which is typically the case when indexing time series data into indices
+     * that are sorted by timestamp.
+     */
+    public static final Setting<Boolean> INDEX_SORT_PRESORTED_INGEST_SETTING =
+        Setting.boolSetting("index.sort.presorted_ingest", false, Setting.Property.IndexScope, Setting.Property.Final);
+
     private static String validateMissingValue(String missing) {
         if ("_last".equals(missing) == false && "_first".equals(missing) == false) {
             throw new IllegalArgumentException("Illegal missing value:[" + missing + "], " +
@@ -112,6 +121,7 @@ public final class IndexSortConfig {
 
     // visible for tests
     final FieldSortSpec[] sortSpecs;
+    private final boolean presortedIngest;
 
     public IndexSortConfig(IndexSettings indexSettings) {
         final Settings settings = indexSettings.getSettings();
@@ -119,6 +129,7 @@ public final class IndexSortConfig {
         this.sortSpecs = fields.stream()
             .map((name) -> new FieldSortSpec(name))
             .toArray(FieldSortSpec[]::new);
+        this.presortedIngest = INDEX_SORT_PRESORTED_INGEST_SETTING.get(settings);
 
         if (sortSpecs.length > 0 && indexSettings.getIndexVersionCreated().before(Version.V_6_0_0_alpha1)) {
             /**
@@ -171,6 +182,13 @@ public final class IndexSortConfig {
         return sortSpecs.length > 0;
     }
 
+    /**
+     * Returns true if the engine should track and favor documents arriving in the order of the index sort
+     */
+    public boolean isPresortedIngestEnabled() {
+        return presortedIngest && hasIndexSort();
+    }
+
     /**
      * Builds the {@link Sort} order from the settings for this index
      * or returns null if this index has no sort.
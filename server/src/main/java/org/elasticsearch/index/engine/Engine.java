@@ -73,6 +73,7 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Comparator;
@@ -283,6 +284,24 @@ public abstract class Engine implements Closeable {
      */
     public abstract IndexResult index(Index index) throws IOException;
 
+    /**
+     * Perform a batch of append-only index operations, i.e. primary operations of documents with auto-generated IDs, on the engine.
+     * The operations are assigned sequence numbers in the order they are given. The default implementation performs them one by one
+     * via {@link #index(Index)}.
+     *
+     * @param operations the operations to perform
+     * @return the {@link IndexResult} of each operation, in the same order as the given operations
+     *
+     * Note: engine level failures (i.e. persistent engine failures) are thrown
+     */
+    public List<IndexResult> indexAppendOnly(List<Index> operations) throws IOException {
+        final List<IndexResult> results = new ArrayList<>(operations.size());
+        for (Index operation : operations) {
+            results.add(index(operation));
+        }
+        return results;
+    }
+
     /**
      * Perform document delete operation on the engine
      * @param delete operation to perform
@@ -771,6 +790,37 @@ public abstract class Engine implements Closeable {
     /** How much heap is used that would be freed by a refresh.  Note that this may throw {@link AlreadyClosedException}. */
     public abstract long getIndexBufferRAMBytesUsed();
 
+    /**
+     * Returns the time in nanoseconds spent on adding documents to and deleting documents from Lucene, including analysis, since
+     * this engine was opened.
+     */
+    public long getLuceneWriteTimeInNanos() {
+        return 0;
+    }
+
+    /**
+     * Returns the time in nanoseconds spent on adding operations to the translog since this engine was opened.
+     */
+    public long getTranslogWriteTimeInNanos() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of segments that were flushed with their documents already in the order of the index sort, see
+     * {@link org.elasticsearch.index.IndexSortConfig#INDEX_SORT_PRESORTED_INGEST_SETTING}.
+     */
+    public long getPresortedFlushCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of segments that were flushed with their documents out of the order of the index sort, see
+     * {@link org.elasticsearch.index.IndexSortConfig#INDEX_SORT_PRESORTED_INGEST_SETTING}.
+     */
+    public long getUnsortedFlushCount() {
+        return 0;
+    }
+
     protected Segment[] getSegmentInfo(SegmentInfos lastCommittedSegmentInfos, boolean verbose) {
         ensureOpen();
         Map<String, Segment> segments = new HashMap<>();
@@ -112,6 +112,40 @@ public final class EngineConfig {
     public static final Setting<Boolean> INDEX_OPTIMIZE_AUTO_GENERATED_IDS = Setting.boolSetting("index.optimize_auto_generated_id", true,
         Property.IndexScope, Property.Dynamic);
 
+    /**
+     * Index setting to choose how the engine keeps the versions of documents that were changed since the last refresh. <code>heap</code>
+     * keeps them as objects in concurrent hash maps, <code>paged</code> keeps them in {@link org.elasticsearch.common.util.BigArrays}
+     * backed hash tables which produce far less garbage for indices that are indexed into at high rates with external IDs.
+     * This setting is <b>not</b> realtime updateable. The default is <code>heap</code>
+     */
+    public static final Setting<String> INDEX_VERSION_MAP_TYPE_SETTING = new Setting<>("index.version_map.type", "heap", s -> {
+        switch (s) {
+            case "heap":
+            case "paged":
+                return s;
+            default:
+                throw new IllegalArgumentException("unknown value for [index.version_map.type] must be one of [heap, paged] but was: " + s);
+        }
+    }, Property.IndexScope);
+
+    /**
+     * Index setting to choose how the engine tracks the local checkpoint. <code>synchronized</code> guards the tracker by a single
+     * monitor, <code>concurrent</code> uses the lock-free {@link org.elasticsearch.index.seqno.ConcurrentLocalCheckpointTracker}
+     * which scales better when many threads index into the same shard.
+     * This setting is <b>not</b> realtime updateable. The default is <code>synchronized</code>
+     */
+    public static final Setting<String> INDEX_LOCAL_CHECKPOINT_TRACKER_TYPE_SETTING =
+        new Setting<>("index.local_checkpoint_tracker.type", "synchronized", s -> {
+            switch (s) {
+                case "synchronized":
+                case "concurrent":
+                    return s;
+                default:
+                    throw new IllegalArgumentException("unknown value for [index.local_checkpoint_tracker.type] must be one of "
+                        + "[synchronized, concurrent] but was: " + s);
+            }
+        }, Property.IndexScope);
+
     private final TranslogConfig translogConfig;
 
     /**
@@ -352,6 +386,20 @@ public final class EngineConfig {
         return indexSettings.getValue(INDEX_OPTIMIZE_AUTO_GENERATED_IDS);
     }
 
+    /**
+     * returns true if the engine should keep the live versions in {@link org.elasticsearch.common.util.BigArrays} backed tables
+     */
+    public boolean isPagedVersionMapEnabled() {
+        return "paged".equals(indexSettings.getValue(INDEX_VERSION_MAP_TYPE_SETTING));
+    }
+
+    /**
+     * returns true if the engine should track the local checkpoint without acquiring a lock
+     */
+    public boolean isConcurrentLocalCheckpointTrackerEnabled() {
+        return "concurrent".equals(indexSettings.getValue(INDEX_LOCAL_CHECKPOINT_TRACKER_TYPE_SETTING));
+    }
+
     /**
      * Return the sort order of this index, or null if the index has no sort.
      */
@@ -46,6 +46,7 @@ import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.SuppressForbidden;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.LoggerInfoStream;
@@ -64,6 +65,7 @@ import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.merge.OnGoingMerge;
+import org.elasticsearch.index.seqno.ConcurrentLocalCheckpointTracker;
 import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.seqno.SeqNoStats;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -78,6 +80,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -116,7 +119,7 @@ public class InternalEngine extends Engine {
 
     // A uid (in the form of BytesRef) to the version map
     // we use the hashed variant since we iterate over it and check removal and additions on existing keys
-    private final LiveVersionMap versionMap = new LiveVersionMap();
+    private final LiveVersionMap versionMap;
 
     private volatile SegmentInfos lastCommittedSegmentInfos;
 
@@ -140,6 +143,9 @@ public class InternalEngine extends Engine {
     private final CounterMetric numDocDeletes = new CounterMetric();
     private final CounterMetric numDocAppends = new CounterMetric();
     private final CounterMetric numDocUpdates = new CounterMetric();
+    // time spent on writing to Lucene and the translog since this engine was opened, see Engine#getLuceneWriteTimeInNanos
+    private final CounterMetric luceneWriteTimeInNanos = new CounterMetric();
+    private final CounterMetric translogWriteTimeInNanos = new CounterMetric();
 
     /**
      * How many bytes we are currently moving to disk, via either IndexWriter.flush or refresh.  IndexingMemoryController polls this
@@ -152,17 +158,34 @@ public class InternalEngine extends Engine {
     @Nullable
     private final String historyUUID;
 
+    @Nullable
+    private final PresortedIngestTracker presortedIngestTracker;
+
     public InternalEngine(EngineConfig engineConfig) {
-        this(engineConfig, LocalCheckpointTracker::new);
+        this(engineConfig, engineConfig.isConcurrentLocalCheckpointTrackerEnabled()
+            ? ConcurrentLocalCheckpointTracker::new : LocalCheckpointTracker::new);
     }
 
     InternalEngine(
             final EngineConfig engineConfig,
             final BiFunction<Long, Long, LocalCheckpointTracker> localCheckpointTrackerSupplier) {
         super(engineConfig);
+        // the paged version map lives as long as the shard rather than a request, so it is accounted against the accounting circuit
+        // breaker. It never trips the breaker since that would fail operations after they have been applied to Lucene, the memory is
+        // kept in check by the indexing memory controller instead.
+        if (engineConfig.isPagedVersionMapEnabled()) {
+            versionMap = new LiveVersionMap(engineConfig.getTranslogConfig().getBigArrays().withBreaker(CircuitBreaker.ACCOUNTING));
+        } else {
+            versionMap = new LiveVersionMap();
+        }
         if (engineConfig.isAutoGeneratedIDsOptimizationEnabled() == false) {
             maxUnsafeAutoIdTimestamp.set(Long.MAX_VALUE);
         }
+        if (engineConfig.getIndexSort() != null && engineConfig.getIndexSettings().getIndexSortConfig().isPresortedIngestEnabled()) {
+            presortedIngestTracker = PresortedIngestTracker.create(engineConfig.getIndexSort());
+        } else {
+            presortedIngestTracker = null;
+        }
         final TranslogDeletionPolicy translogDeletionPolicy = new TranslogDeletionPolicy(
                 engineConfig.getIndexSettings().getTranslogRetentionSize().getBytes(),
                 engineConfig.getIndexSettings().getTranslogRetentionAge().getMillis()
@@ -206,6 +229,9 @@ public class InternalEngine extends Engine {
             this.internalSearcherManager = internalSearcherManager;
             this.externalSearcherManager = externalSearcherManager;
             internalSearcherManager.addListener(versionMap);
+            if (presortedIngestTracker != null) {
+                internalSearcherManager.addListener(new PresortedIngestRefreshListener());
+            }
             assert pendingTranslogRecovery.get() == false : "translog recovery can't be pending before we set it";
             // don't allow commits until we are done with recovering
             pendingTranslogRecovery.set(true);
@@ -736,6 +762,16 @@ public class InternalEngine extends Engine {
         return localCheckpointTracker.generateSeqNo();
     }
 
+    /**
+     * Generate a range of consecutive sequence numbers for the specified operations.
+     *
+     * @param operations the operations
+     * @return the first sequence number of the range
+     */
+    protected long doGenerateSeqNosForOperations(final List<? extends Operation> operations) {
+        return localCheckpointTracker.generateSeqNos(operations.size());
+    }
+
     private long getPrimaryTerm() {
         return engineConfig.getPrimaryTermSupplier().getAsLong();
     }
@@ -795,6 +831,7 @@ public class InternalEngine extends Engine {
                             plan.versionForIndexing, getPrimaryTerm(), plan.seqNoForIndexing, plan.currentNotFoundOrDeleted);
                 }
                 if (index.origin() != Operation.Origin.LOCAL_TRANSLOG_RECOVERY) {
+                    final long translogStartTime = System.nanoTime();
                     final Translog.Location location;
                     if (indexResult.getResultType() == Result.Type.SUCCESS) {
                         location = translog.add(new Translog.Index(index, indexResult));
@@ -805,6 +842,7 @@ public class InternalEngine extends Engine {
                         location = null;
                     }
                     indexResult.setTranslogLocation(location);
+                    translogWriteTimeInNanos.inc(System.nanoTime() - translogStartTime);
                 }
                 if (plan.indexIntoLucene && indexResult.getResultType() == Result.Type.SUCCESS) {
                     final Translog.Location translogLocation = trackTranslogLocation.get() ? indexResult.getTranslogLocation() : null;
@@ -828,6 +866,143 @@ public class InternalEngine extends Engine {
         }
     }
 
+    @Override
+    public List<IndexResult> indexAppendOnly(List<Index> operations) throws IOException {
+        if (operations.size() <= 1) {
+            return super.indexAppendOnly(operations);
+        }
+        final List<IndexResult> results;
+        try (ReleasableLock releasableLock = readLock.acquire()) {
+            ensureOpen();
+            results = tryIndexAppendOnlyBatch(operations);
+        } catch (RuntimeException | IOException e) {
+            try {
+                maybeFailEngine("index", e);
+            } catch (Exception inner) {
+                e.addSuppressed(inner);
+            }
+            throw e;
+        }
+        if (results == null) {
+            // some operations might have been indexed before, fall back to indexing one by one which consults the version map
+            return super.indexAppendOnly(operations);
+        }
+        return results;
+    }
+
+    /**
+     * Indexes the given append-only operations as a batch: a single range of sequence numbers is generated for all operations, all
+     * documents are added to the index writer at once, the operations are added to the translog as a single block and the local
+     * checkpoint tracker is updated once for the whole range. The uid locks of all operations are held throughout, just as
+     * {@link #index(Index)} holds the lock of a single operation.
+     *
+     * @return the results of the operations or <code>null</code> if the operations can't be safely indexed as a batch
+     */
+    private List<IndexResult> tryIndexAppendOnlyBatch(List<Index> operations) throws IOException {
+        final List<BytesRef> uids = new ArrayList<>(operations.size());
+        for (Index index : operations) {
+            assert Objects.equals(index.uid().field(), IdFieldMapper.NAME) : index.uid().field();
+            assert index.origin() == Operation.Origin.PRIMARY : "batches must only contain primary operations but got "
+                + index.origin();
+            assert assertIncomingSequenceNumber(index.origin(), index.seqNo());
+            uids.add(index.uid().bytes());
+        }
+        final List<Releasable> locks = new ArrayList<>(2);
+        // the uid locks are acquired in a global order, locking them in the order of the operations could deadlock with a
+        // concurrent batch whose uids map to the same lock stripes in a different order
+        locks.add(versionMap.acquireLocks(uids));
+        try {
+            for (Index index : operations) {
+                // see the note about append only optimizations in #index, retries must go through the version map
+                if (canOptimizeAddDocument(index) == false || index.isRetry()
+                    || maxUnsafeAutoIdTimestamp.get() >= index.getAutoGeneratedIdTimestamp()) {
+                    return null;
+                }
+            }
+            final boolean doThrottle = operations.get(0).origin().isRecovery() == false;
+            locks.add(doThrottle ? () -> {} : throttle.acquireThrottle());
+            lastWriteNanos = operations.get(0).startTime();
+
+            final int numOps = operations.size();
+            final long firstSeqNo = doGenerateSeqNosForOperations(operations);
+            /*
+             * The sequence numbers were assigned in the order of the operations but the documents are added in the order of the index
+             * sort if possible. This is safe since all operations are append-only: each of them creates a new document with a distinct
+             * auto-generated id, no operation of the batch can observe or replace the document of another one, the uid locks of all of
+             * them are held and the local checkpoint only advances once the whole block was added. The order of the documents within
+             * a segment is therefore independent of their sequence numbers, just like with concurrent indexing threads.
+             */
+            assert operations.stream().map(op -> op.uid().bytes()).distinct().count() == numOps : "batch contains duplicate ids";
+            final Integer[] sortOrder = presortedIngestTracker != null ? presortedIngestTracker.sortOrder(operations) : null;
+            final List<ParseContext.Document> docs = new ArrayList<>();
+            for (int i = 0; i < numOps; i++) {
+                final Index index = operations.get(i);
+                index.parsedDoc().updateSeqID(firstSeqNo + i, index.primaryTerm());
+                index.parsedDoc().version().setLongValue(1L);
+                assert assertDocDoesNotExist(index, false);
+            }
+            for (int i = 0; i < numOps; i++) {
+                docs.addAll(operations.get(sortOrder != null ? sortOrder[i] : i).docs());
+            }
+            final IndexResult[] results = new IndexResult[numOps];
+            final long luceneStartTime = System.nanoTime();
+            try {
+                indexWriter.addDocuments(docs);
+                luceneWriteTimeInNanos.inc(System.nanoTime() - luceneStartTime);
+                numDocAppends.inc(docs.size());
+                if (presortedIngestTracker != null) {
+                    for (int i = 0; i < numOps; i++) {
+                        presortedIngestTracker.onDocument(operations.get(sortOrder != null ? sortOrder[i] : i).parsedDoc().rootDoc());
+                    }
+                }
+                for (int i = 0; i < numOps; i++) {
+                    results[i] = new IndexResult(1L, getPrimaryTerm(), firstSeqNo + i, true);
+                }
+            } catch (Exception ex) {
+                if (indexWriter.getTragicException() != null) {
+                    throw ex;
+                }
+                // a document failure aborts the whole block, add the documents one by one such that only the offending ones fail
+                for (int i = 0; i < numOps; i++) {
+                    results[i] = indexIntoLucene(operations.get(i), IndexingStrategy.optimizedAppendOnly(firstSeqNo + i));
+                }
+            }
+
+            final List<Translog.Operation> translogOps = new ArrayList<>(numOps);
+            for (int i = 0; i < numOps; i++) {
+                final Index index = operations.get(i);
+                final IndexResult result = results[i];
+                if (result.getResultType() == Result.Type.SUCCESS) {
+                    translogOps.add(new Translog.Index(index, result));
+                } else {
+                    // if we have document failure, record it as a no-op in the translog with the generated seq_no
+                    translogOps.add(new Translog.NoOp(result.getSeqNo(), index.primaryTerm(), result.getFailure().getMessage()));
+                }
+            }
+            final long translogStartTime = System.nanoTime();
+            final Translog.Location[] locations = translog.add(translogOps);
+            translogWriteTimeInNanos.inc(System.nanoTime() - translogStartTime);
+            for (int i = 0; i < numOps; i++) {
+                final Index index = operations.get(i);
+                final IndexResult result = results[i];
+                result.setTranslogLocation(locations[i]);
+                if (result.getResultType() == Result.Type.SUCCESS) {
+                    final Translog.Location translogLocation = trackTranslogLocation.get() ? locations[i] : null;
+                    versionMap.maybePutIndexUnderLock(index.uid().bytes(),
+                        new IndexVersionValue(translogLocation, 1L, result.getSeqNo(), index.primaryTerm()));
+                }
+            }
+            localCheckpointTracker.markSeqNoRangeAsCompleted(firstSeqNo, firstSeqNo + numOps - 1);
+            for (int i = 0; i < numOps; i++) {
+                results[i].setTook(System.nanoTime() - operations.get(i).startTime());
+                results[i].freeze();
+            }
+            return Arrays.asList(results);
+        } finally {
+            Releasables.close(locks);
+        }
+    }
+
     private IndexingStrategy planIndexingAsNonPrimary(Index index) throws IOException {
         final IndexingStrategy plan;
         final boolean appendOnlyRequest = canOptimizeAddDocument(index);
@@ -927,6 +1102,7 @@ public class InternalEngine extends Engine {
         index.parsedDoc().updateSeqID(plan.seqNoForIndexing, index.primaryTerm());
         index.parsedDoc().version().setLongValue(plan.versionForIndexing);
         try {
+            final long luceneStartTime = System.nanoTime();
             if (plan.useLuceneUpdateDocument) {
                 updateDocs(index.uid(), index.docs(), indexWriter);
             } else {
@@ -934,6 +1110,10 @@ public class InternalEngine extends Engine {
                 assert assertDocDoesNotExist(index, canOptimizeAddDocument(index) == false);
                 addDocs(index.docs(), indexWriter);
             }
+            luceneWriteTimeInNanos.inc(System.nanoTime() - luceneStartTime);
+            if (presortedIngestTracker != null) {
+                presortedIngestTracker.onDocument(index.parsedDoc().rootDoc());
+            }
             return new IndexResult(plan.versionForIndexing, getPrimaryTerm(), plan.seqNoForIndexing, plan.currentNotFoundOrDeleted);
         } catch (Exception ex) {
             if (indexWriter.getTragicException() == null) {
@@ -991,6 +1171,40 @@ public class InternalEngine extends Engine {
         numDocAppends.inc(docs.size());
     }
 
+    /**
+     * Notifies the {@link PresortedIngestTracker} about refreshes of the internal reader, along with the refreshed reader such that
+     * the tracker can count the newly flushed segments.
+     */
+    private final class PresortedIngestRefreshListener implements ReferenceManager.RefreshListener {
+
+        private boolean hasInitialReader;
+
+        @Override
+        public void beforeRefresh() throws IOException {
+            if (hasInitialReader == false) {
+                // the segments of the reader that the engine was opened with must not be counted as flushed segments
+                final IndexSearcher searcher = internalSearcherManager.acquire();
+                try {
+                    presortedIngestTracker.onReaderOpened(searcher.getIndexReader());
+                } finally {
+                    internalSearcherManager.release(searcher);
+                }
+                hasInitialReader = true;
+            }
+            presortedIngestTracker.beforeRefresh();
+        }
+
+        @Override
+        public void afterRefresh(boolean didRefresh) throws IOException {
+            final IndexSearcher searcher = internalSearcherManager.acquire();
+            try {
+                presortedIngestTracker.afterRefresh(searcher.getIndexReader());
+            } finally {
+                internalSearcherManager.release(searcher);
+            }
+        }
+    }
+
     private static final class IndexingStrategy {
         final boolean currentNotFoundOrDeleted;
         final boolean useLuceneUpdateDocument;
@@ -1104,6 +1318,7 @@ public class InternalEngine extends Engine {
                         plan.versionOfDeletion, getPrimaryTerm(), plan.seqNoOfDeletion, plan.currentlyDeleted == false);
             }
             if (delete.origin() != Operation.Origin.LOCAL_TRANSLOG_RECOVERY) {
+                final long translogStartTime = System.nanoTime();
                 final Translog.Location location;
                 if (deleteResult.getResultType() == Result.Type.SUCCESS) {
                     location = translog.add(new Translog.Delete(delete, deleteResult));
@@ -1114,6 +1329,7 @@ public class InternalEngine extends Engine {
                     location = null;
                 }
                 deleteResult.setTranslogLocation(location);
+                translogWriteTimeInNanos.inc(System.nanoTime() - translogStartTime);
             }
             if (deleteResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
                 localCheckpointTracker.markSeqNoAsCompleted(deleteResult.getSeqNo());
@@ -1198,7 +1414,9 @@ public class InternalEngine extends Engine {
             if (plan.currentlyDeleted == false) {
                 // any exception that comes from this is a either an ACE or a fatal exception there
                 // can't be any document failures  coming from this
+                final long luceneStartTime = System.nanoTime();
                 indexWriter.deleteDocuments(delete.uid());
+                luceneWriteTimeInNanos.inc(System.nanoTime() - luceneStartTime);
                 numDocDeletes.inc();
             }
             versionMap.putDeleteUnderLock(delete.uid().bytes(),
@@ -1801,6 +2019,26 @@ public class InternalEngine extends Engine {
         stats.updateMaxUnsafeAutoIdTimestamp(maxUnsafeAutoIdTimestamp.get());
     }
 
+    @Override
+    public long getLuceneWriteTimeInNanos() {
+        return luceneWriteTimeInNanos.count();
+    }
+
+    @Override
+    public long getTranslogWriteTimeInNanos() {
+        return translogWriteTimeInNanos.count();
+    }
+
+    @Override
+    public long getPresortedFlushCount() {
+        return presortedIngestTracker == null ? 0 : presortedIngestTracker.getPresortedFlushCount();
+    }
+
+    @Override
+    public long getUnsortedFlushCount() {
+        return presortedIngestTracker == null ? 0 : presortedIngestTracker.getUnsortedFlushCount();
+    }
+
     @Override
     public long getIndexBufferRAMBytesUsed() {
         // We don't guard w/ readLock here, so we could throw AlreadyClosedException
@@ -19,24 +19,108 @@
 
 package org.elasticsearch.index.engine;
 
+import com.carrotsearch.hppc.BitMixer;
 import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.KeyedLock;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
 
-/** Maps _uid value to its version information. */
+/**
+ * Maps _uid value to its version information. By default the versions are kept in concurrent hash maps of {@link VersionValue}
+ * objects and uids are locked through a {@link KeyedLock}. Alternatively the versions can be kept in {@link BigArrays} backed
+ * tables (see {@link PagedVersionTable}) with a fixed set of striped uid locks, which avoids allocating objects per indexed uid.
+ */
 final class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
-    private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
+    /**
+     * The storage behind a single generation of the version map, i.e. the versions added between two refreshes. Implementations must
+     * support concurrent access to different uids; accesses to the same uid are serialized through the uid lock.
+     */
+    interface VersionTable extends Releasable {
+
+        VersionValue get(BytesRef uid);
+
+        /**
+         * Adds or replaces the version of the given uid and returns by how many bytes the RAM used by this table changed.
+         */
+        long put(BytesRef uid, VersionValue version);
+
+        /**
+         * Removes the version of the given uid if present and returns by how many bytes the RAM used by this table changed.
+         */
+        long remove(BytesRef uid);
+
+        int size();
+
+        /**
+         * Returns the versions of this table. This might be a live view or a point in time copy, depending on the implementation.
+         */
+        Map<BytesRef, VersionValue> snapshot();
+    }
+
+    private static final class ConcurrentMapVersionTable implements VersionTable {
+        private final Map<BytesRef, VersionValue> map;
+
+        ConcurrentMapVersionTable(Map<BytesRef, VersionValue> map) {
+            this.map = map;
+        }
+
+        @Override
+        public VersionValue get(BytesRef uid) {
+            return map.get(uid);
+        }
+
+        @Override
+        public long put(BytesRef uid, VersionValue version) {
+            long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
+            long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
+            VersionValue previousValue = map.put(uid, version);
+            ramAccounting += previousValue == null ? 0 : -(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed);
+            return ramAccounting;
+        }
+
+        @Override
+        public long remove(BytesRef uid) {
+            VersionValue previousValue = map.remove(uid);
+            if (previousValue != null) {
+                long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
+                return -(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed);
+            }
+            return 0;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Map<BytesRef, VersionValue> snapshot() {
+            return map;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 
     private static final class VersionLookup {
 
@@ -44,8 +128,8 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
          *  for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not clear this RAM. */
         final AtomicLong ramBytesUsed = new AtomicLong();
 
-        private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap());
-        private final Map<BytesRef, VersionValue> map;
+        private static final VersionLookup EMPTY = new VersionLookup(new ConcurrentMapVersionTable(Collections.emptyMap()));
+        private final VersionTable table;
 
         // each version map has a notion of safe / unsafe which allows us to apply certain optimization in the auto-generated ID usecase
         // where we know that documents can't have any duplicates so we can skip the version map entirely. This reduces
@@ -63,24 +147,31 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // the tombstone
         private final AtomicLong minDeleteTimestamp = new AtomicLong(Long.MAX_VALUE);
 
-        private VersionLookup(Map<BytesRef, VersionValue> map) {
-            this.map = map;
+        private VersionLookup(VersionTable table) {
+            this.table = table;
         }
 
         VersionValue get(BytesRef key) {
-            return map.get(key);
+            return table.get(key);
+        }
+
+        void put(BytesRef key, VersionValue value) {
+            adjustRam(table.put(key, value));
         }
 
-        VersionValue put(BytesRef key, VersionValue value) {
-            return map.put(key, value);
+        void adjustRam(long value) {
+            if (value != 0) {
+                long v = ramBytesUsed.addAndGet(value);
+                assert v >= 0 : "bytes=" + v;
+            }
         }
 
         boolean isEmpty() {
-            return map.isEmpty();
+            return table.size() == 0;
         }
 
         int size() {
-            return map.size();
+            return table.size();
         }
 
         boolean isUnsafe() {
@@ -91,8 +182,12 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             unsafe = true;
         }
 
-        public VersionValue remove(BytesRef uid) {
-            return map.remove(uid);
+        public void remove(BytesRef uid) {
+            adjustRam(table.remove(uid));
+        }
+
+        void close() {
+            table.close();
         }
 
         public void updateMinDeletedTimestamp(DeleteVersionValue delete) {
@@ -115,15 +210,18 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         boolean needsSafeAccess;
         final boolean previousMapsNeededSafeAccess;
 
+        // creates the table of a new generation given the number of versions it is expected to hold
+        private final IntFunction<VersionTable> tableFactory;
 
-        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess) {
+        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess, IntFunction<VersionTable> tableFactory) {
             this.current = current;
             this.old = old;
             this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
+            this.tableFactory = tableFactory;
         }
 
-        Maps() {
-            this(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()), VersionLookup.EMPTY, false);
+        Maps(IntFunction<VersionTable> tableFactory) {
+            this(new VersionLookup(tableFactory.apply(0)), VersionLookup.EMPTY, false, tableFactory);
         }
 
         boolean isSafeAccessMode() {
@@ -141,39 +239,23 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
          * Builds a new map for the refresh transition this should be called in beforeRefresh()
          */
         Maps buildTransitionMap() {
-            return new Maps(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(current.size())), current,
-                shouldInheritSafeAccess());
+            return new Maps(new VersionLookup(tableFactory.apply(current.size())), current, shouldInheritSafeAccess(), tableFactory);
         }
 
         /**
          * builds a new map that invalidates the old map but maintains the current. This should be called in afterRefresh()
          */
         Maps invalidateOldMap() {
-            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
+            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess, tableFactory);
         }
 
         void put(BytesRef uid, VersionValue version) {
-            long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-            long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
-            VersionValue previousValue = current.put(uid, version);
-            ramAccounting += previousValue == null ? 0 : -(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed);
-            adjustRam(ramAccounting);
-        }
-
-        void adjustRam(long value) {
-            if (value != 0) {
-                long v = current.ramBytesUsed.addAndGet(value);
-                assert v >= 0 : "bytes=" + v;
-            }
+            current.put(uid, version);
         }
 
         void remove(BytesRef uid, DeleteVersionValue deleted) {
-            VersionValue previousValue = current.remove(uid);
+            current.remove(uid);
             current.updateMinDeletedTimestamp(deleted);
-            if (previousValue != null) {
-                long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-                adjustRam(-(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed));
-            }
             if (old != VersionLookup.EMPTY) {
                 // we also need to remove it from the old map here to make sure we don't read this stale value while
                 // we are in the middle of a refresh. Most of the time the old map is an empty map so we can skip it there.
@@ -189,10 +271,53 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef, DeleteVersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    private final IntFunction<VersionTable> tableFactory;
+    private volatile Maps maps;
     // we maintain a second map that only receives the updates that we skip on the actual map (unsafe ops)
     // this map is only maintained if assertions are enabled
-    private volatile Maps unsafeKeysMap = new Maps();
+    private volatile Maps unsafeKeysMap = new Maps(LiveVersionMap::newConcurrentMapVersionTable);
+
+    // exactly one of the following is used to lock uids, depending on how versions are stored
+    private final KeyedLock<BytesRef> keyedLock;
+    private final ReentrantLock[] uidLocks;
+    private final Releasable[] uidLockReleasers;
+
+    /**
+     * Creates a version map that keeps versions in concurrent hash maps and locks uids through a {@link KeyedLock}.
+     */
+    LiveVersionMap() {
+        this.tableFactory = LiveVersionMap::newConcurrentMapVersionTable;
+        this.maps = new Maps(tableFactory);
+        this.keyedLock = new KeyedLock<>();
+        this.uidLocks = null;
+        this.uidLockReleasers = null;
+    }
+
+    /**
+     * Creates a version map that keeps versions in {@link PagedVersionTable}s allocated from the given {@link BigArrays} and locks uids
+     * through a fixed number of striped locks.
+     */
+    LiveVersionMap(BigArrays bigArrays) {
+        this.tableFactory = expectedSize -> new PagedVersionTable(bigArrays, expectedSize);
+        this.maps = new Maps(tableFactory);
+        this.keyedLock = null;
+        this.uidLocks = new ReentrantLock[NUM_UID_LOCKS];
+        this.uidLockReleasers = new Releasable[NUM_UID_LOCKS];
+        for (int i = 0; i < NUM_UID_LOCKS; i++) {
+            final ReentrantLock lock = new ReentrantLock();
+            uidLocks[i] = lock;
+            uidLockReleasers[i] = lock::unlock;
+        }
+    }
+
+    private static VersionTable newConcurrentMapVersionTable(int expectedSize) {
+        return new ConcurrentMapVersionTable(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(expectedSize));
+    }
+
+    /**
+     * The number of striped uid locks, must be a power of two.
+     */
+    private static final int NUM_UID_LOCKS = 1024;
 
     /**
      * Bytes consumed for each BytesRef UID:
@@ -255,8 +380,11 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // reopen, and so any concurrent indexing requests can still sneak in a few additions to that current map that are in fact reflected
         // in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe:
 
-        maps = maps.invalidateOldMap();
+        final Maps previousMaps = maps;
+        maps = previousMaps.invalidateOldMap();
         assert (unsafeKeysMap = unsafeKeysMap.invalidateOldMap()) != null;
+        // lookups that still hold on to the previous maps find nothing in the released table and fall back to the refreshed searcher
+        previousMaps.old.close();
 
     }
 
@@ -391,7 +519,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             // we won't collect the tombstone below since it must be newer than this one.
             if (canRemoveTombstone(maxTimestampToPrune, maxSeqNoToPrune, entry.getValue())) {
                 final BytesRef uid = entry.getKey();
-                try (Releasable lock = keyedLock.tryAcquire(uid)) {
+                try (Releasable lock = tryAcquireLock(uid)) {
                     // we use tryAcquire here since this is a best effort and we try to be least disruptive
                     // this method is also called under lock in the engine under certain situations such that this can lead to deadlocks
                     // if we do use a blocking acquire. see #28714
@@ -413,7 +541,10 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Called when this index is closed.
      */
     synchronized void clear() {
-        maps = new Maps();
+        final Maps previousMaps = maps;
+        maps = new Maps(tableFactory);
+        previousMaps.current.close();
+        previousMaps.old.close();
         tombstones.clear();
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the index
@@ -444,7 +575,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Returns the current internal versions as a point in time snapshot
      */
     Map<BytesRef, VersionValue> getAllCurrent() {
-        return maps.current.map;
+        return maps.current.table.snapshot();
     }
 
     /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones (exposed via reader but not yet GC'd). */
@@ -459,11 +590,68 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * @see KeyedLock
      */
     Releasable acquireLock(BytesRef uid) {
-        return keyedLock.acquire(uid);
+        if (keyedLock != null) {
+            return keyedLock.acquire(uid);
+        }
+        final int index = uidLockIndex(uid);
+        uidLocks[index].lock();
+        return uidLockReleasers[index];
+    }
+
+    /**
+     * Acquires the locks of all given uids and returns a single {@link Releasable} that releases them. Locks are always acquired in a
+     * global order (sorted uids or sorted lock stripes) and each lock is acquired only once, such that concurrent callers that lock
+     * overlapping sets of uids, or uids that map to the same stripes, can't deadlock.
+     */
+    Releasable acquireLocks(Collection<BytesRef> uids) {
+        final List<Releasable> releasables;
+        if (keyedLock != null) {
+            final SortedSet<BytesRef> sortedUids = new TreeSet<>(uids);
+            releasables = new ArrayList<>(sortedUids.size());
+            try {
+                for (BytesRef uid : sortedUids) {
+                    releasables.add(keyedLock.acquire(uid));
+                }
+            } catch (RuntimeException e) {
+                Releasables.close(releasables);
+                throw e;
+            }
+        } else {
+            final int[] indices = new int[uids.size()];
+            int numIndices = 0;
+            for (BytesRef uid : uids) {
+                indices[numIndices++] = uidLockIndex(uid);
+            }
+            Arrays.sort(indices);
+            releasables = new ArrayList<>(indices.length);
+            for (int i = 0; i < numIndices; i++) {
+                if (i == 0 || indices[i] != indices[i - 1]) {
+                    uidLocks[indices[i]].lock();
+                    releasables.add(uidLockReleasers[indices[i]]);
+                }
+            }
+        }
+        return () -> Releasables.close(releasables);
+    }
+
+    /**
+     * Tries to acquire the lock for the given uid without blocking and returns <code>null</code> if the lock is held by another thread.
+     */
+    private Releasable tryAcquireLock(BytesRef uid) {
+        if (keyedLock != null) {
+            return keyedLock.tryAcquire(uid);
+        }
+        final int index = uidLockIndex(uid);
+        return uidLocks[index].tryLock() ? uidLockReleasers[index] : null;
+    }
+
+    static int uidLockIndex(BytesRef uid) {
+        return BitMixer.mix32(uid.hashCode()) & (NUM_UID_LOCKS - 1);
     }
 
     private boolean assertKeyedLockHeldByCurrentThread(BytesRef uid) {
-        assert keyedLock.isHeldByCurrentThread(uid) : "Thread [" + Thread.currentThread().getName() + "], uid [" + uid.utf8ToString() + "]";
+        final boolean held = keyedLock != null ? keyedLock.isHeldByCurrentThread(uid) : uidLocks[uidLockIndex(uid)].isHeldByCurrentThread();
+        assert held : "Thread [" + Thread.currentThread().getName() + "], uid [" + uid.utf8ToString() + "]";
         return true;
     }
 }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link LiveVersionMap.VersionTable} that keeps uids and their index versions in {@link BigArrays} backed open addressing
+ * hash tables rather than in a {@link java.util.concurrent.ConcurrentHashMap} of {@link VersionValue} objects. The uid bytes are
+ * appended to paged byte arrays and seq#, primary term, version and translog location are stored in parallel primitive arrays,
+ * which keeps the garbage produced by append heavy workloads with external IDs low and lets the memory be accounted by
+ * {@link BigArrays}. The table is split into stripes that are each guarded by their own monitor. Stripes are allocated lazily
+ * on first write and all pages are released when the table is closed, which happens once a refresh made its versions visible.
+ * Removed uids are only marked as such since the whole table is dropped on the next refresh anyway.
+ */
+final class PagedVersionTable implements LiveVersionMap.VersionTable {
+
+    private static final int NUM_STRIPES = 16;
+    // values of the location size array that don't represent an actual location size
+    private static final int NO_LOCATION = -1;
+    private static final int REMOVED = -2;
+
+    private final Stripe[] stripes;
+
+    PagedVersionTable(BigArrays bigArrays, long expectedSize) {
+        final long expectedSizePerStripe = Math.max(16, expectedSize / NUM_STRIPES);
+        stripes = new Stripe[NUM_STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(bigArrays, expectedSizePerStripe);
+        }
+    }
+
+    private Stripe stripe(BytesRef uid) {
+        return stripes[BitMixer.mix32(uid.hashCode()) & (NUM_STRIPES - 1)];
+    }
+
+    @Override
+    public VersionValue get(BytesRef uid) {
+        return stripe(uid).get(uid);
+    }
+
+    @Override
+    public long put(BytesRef uid, VersionValue version) {
+        assert version.isDelete() == false : "deletes are tracked as tombstones";
+        return stripe(uid).put(uid, version);
+    }
+
+    @Override
+    public long remove(BytesRef uid) {
+        stripe(uid).remove(uid);
+        return 0; // pages are only released on close
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.liveCount;
+        }
+        return size;
+    }
+
+    @Override
+    public Map<BytesRef, VersionValue> snapshot() {
+        final Map<BytesRef, VersionValue> snapshot = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            stripe.addTo(snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    private static final class Stripe {
+        private final BigArrays bigArrays;
+        private final long initialCapacity;
+        private final BytesRef spare = new BytesRef();
+        // all the following are protected by this stripe's monitor
+        private BytesRefHash uids;
+        private LongArray versions;
+        private LongArray seqNos;
+        private LongArray terms;
+        private LongArray locationGenerations;
+        private LongArray locationOffsets;
+        private IntArray locationSizes;
+        private boolean closed;
+        // only written under the monitor but read without it for size estimations
+        private volatile int liveCount;
+
+        Stripe(BigArrays bigArrays, long initialCapacity) {
+            this.bigArrays = bigArrays;
+            this.initialCapacity = initialCapacity;
+        }
+
+        synchronized VersionValue get(BytesRef uid) {
+            if (uids == null) {
+                // nothing was added yet or we are closed, in which case a refresh made all versions visible
+                return null;
+            }
+            final long id = uids.find(uid);
+            if (id < 0) {
+                return null;
+            }
+            final int locationSize = locationSizes.get(id);
+            if (locationSize == REMOVED) {
+                return null;
+            }
+            final Translog.Location location = locationSize == NO_LOCATION ? null :
+                new Translog.Location(locationGenerations.get(id), locationOffsets.get(id), locationSize);
+            return new IndexVersionValue(location, versions.get(id), seqNos.get(id), terms.get(id));
+        }
+
+        synchronized long put(BytesRef uid, VersionValue version) {
+            if (closed) {
+                throw new AlreadyClosedException("version table is closed");
+            }
+            final long ramBytesUsedBefore = ramBytesUsed();
+            if (uids == null) {
+                allocate();
+            }
+            long id = uids.add(uid);
+            if (id < 0) {
+                id = -1 - id;
+                if (locationSizes.get(id) == REMOVED) {
+                    liveCount++;
+                }
+            } else {
+                versions = bigArrays.grow(versions, id + 1);
+                seqNos = bigArrays.grow(seqNos, id + 1);
+                terms = bigArrays.grow(terms, id + 1);
+                locationGenerations = bigArrays.grow(locationGenerations, id + 1);
+                locationOffsets = bigArrays.grow(locationOffsets, id + 1);
+                locationSizes = bigArrays.grow(locationSizes, id + 1);
+                liveCount++;
+            }
+            versions.set(id, version.version);
+            seqNos.set(id, version.seqNo);
+            terms.set(id, version.term);
+            final Translog.Location location = version.getLocation();
+            if (location == null) {
+                locationSizes.set(id, NO_LOCATION);
+            } else {
+                locationGenerations.set(id, location.generation);
+                locationOffsets.set(id, location.translogLocation);
+                locationSizes.set(id, location.size);
+            }
+            return ramBytesUsed() - ramBytesUsedBefore;
+        }
+
+        synchronized void remove(BytesRef uid) {
+            if (uids == null) {
+                return;
+            }
+            final long id = uids.find(uid);
+            if (id >= 0 && locationSizes.get(id) != REMOVED) {
+                locationSizes.set(id, REMOVED);
+                liveCount--;
+            }
+        }
+
+        synchronized void addTo(Map<BytesRef, VersionValue> snapshot) {
+            if (uids == null) {
+                return;
+            }
+            for (long id = 0; id < uids.size(); id++) {
+                final BytesRef uid = BytesRef.deepCopyOf(uids.get(id, spare));
+                final VersionValue value = get(uid);
+                if (value != null) {
+                    snapshot.put(uid, value);
+                }
+            }
+        }
+
+        private void allocate() {
+            assert Thread.holdsLock(this);
+            boolean success = false;
+            try {
+                uids = new BytesRefHash(initialCapacity, bigArrays);
+                versions = bigArrays.newLongArray(initialCapacity, false);
+                seqNos = bigArrays.newLongArray(initialCapacity, false);
+                terms = bigArrays.newLongArray(initialCapacity, false);
+                locationGenerations = bigArrays.newLongArray(initialCapacity, false);
+                locationOffsets = bigArrays.newLongArray(initialCapacity, false);
+                locationSizes = bigArrays.newIntArray(initialCapacity, false);
+                success = true;
+            } finally {
+                if (success == false) {
+                    release();
+                }
+            }
+        }
+
+        private long ramBytesUsed() {
+            assert Thread.holdsLock(this);
+            if (uids == null) {
+                return 0;
+            }
+            return uids.ramBytesUsed() + versions.ramBytesUsed() + seqNos.ramBytesUsed() + terms.ramBytesUsed()
+                + locationGenerations.ramBytesUsed() + locationOffsets.ramBytesUsed() + locationSizes.ramBytesUsed();
+        }
+
+        private void release() {
+            assert Thread.holdsLock(this);
+            Releasables.close(uids, versions, seqNos, terms, locationGenerations, locationOffsets, locationSizes);
+            uids = null;
+            versions = seqNos = terms = locationGenerations = locationOffsets = null;
+            locationSizes = null;
+        }
+
+        synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.index.mapper.ParseContext;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks whether the documents that are added to the index writer between two refreshes arrive in the order of the index sort,
+ * see {@link org.elasticsearch.index.IndexSortConfig#INDEX_SORT_PRESORTED_INGEST_SETTING}. Lucene skips the reordering of the
+ * documents of a flushed segment if they are already sorted, this tracker counts how many flushed segments are expected to be
+ * in order and lets the engine add the documents of append-only batches in sort order to make it more likely. Only the primary
+ * sort field is considered and only if it is a numeric field, which covers the common case of indices that are sorted by timestamp.
+ * Documents that are indexed concurrently may be observed in a slightly different order than they are buffered by the index
+ * writer and the segments that the index writer flushes on its own are attributed to the next refresh, the counts are therefore an
+ * estimation.
+ */
+final class PresortedIngestTracker {
+
+    private final String field;
+    private final boolean reverse;
+    private final SortedNumericSelector.Type selector;
+    // if the index is sorted by multiple fields, documents with the same primary key must be ordered by the other fields
+    private final boolean strict;
+
+    private final CounterMetric presortedFlushes = new CounterMetric();
+    private final CounterMetric unsortedFlushes = new CounterMetric();
+
+    // the documents that were added since the last refresh, swapped atomically on refresh
+    private final AtomicReference<Window> currentWindow;
+    // the window that was closed by the ongoing refresh, only accessed under the refresh lock of the internal reader manager
+    private Window refreshedWindow;
+    // the names of the segments of the last refreshed reader, only accessed under the refresh lock of the internal reader manager
+    private Set<String> knownSegments = new HashSet<>();
+
+    private PresortedIngestTracker(String field, boolean reverse, SortedNumericSelector.Type selector, boolean strict) {
+        this.field = field;
+        this.reverse = reverse;
+        this.selector = selector;
+        this.strict = strict;
+        this.currentWindow = new AtomicReference<>(new Window(initialKey()));
+    }
+
+    /**
+     * Creates a tracker for the given index sort or returns <code>null</code> if the primary sort field isn't numeric.
+     */
+    static PresortedIngestTracker create(Sort indexSort) {
+        final SortField[] sortFields = indexSort.getSort();
+        if (sortFields.length == 0 || sortFields[0] instanceof SortedNumericSortField == false) {
+            return null;
+        }
+        final SortedNumericSortField sortField = (SortedNumericSortField) sortFields[0];
+        return new PresortedIngestTracker(sortField.getField(), sortField.getReverse(), sortField.getSelector(),
+            sortFields.length > 1);
+    }
+
+    private long initialKey() {
+        return reverse ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the sort key of the given document or <code>null</code> if the document has no value for the sort field. Values of
+     * floating point fields are indexed as sortable longs, comparing the raw doc values is therefore correct for all numeric types.
+     */
+    Long sortKey(ParseContext.Document rootDoc) {
+        Long key = null;
+        for (IndexableField indexableField : rootDoc.getFields(field)) {
+            if (indexableField.fieldType().docValuesType() != DocValuesType.SORTED_NUMERIC) {
+                continue;
+            }
+            final long value = indexableField.numericValue().longValue();
+            if (key == null) {
+                key = value;
+            } else if (selector == SortedNumericSelector.Type.MIN) {
+                key = Math.min(key, value);
+            } else {
+                key = Math.max(key, value);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Records that the given document was added to the index writer. This may be called concurrently by indexing threads.
+     */
+    void onDocument(ParseContext.Document rootDoc) {
+        final Window window = currentWindow.get();
+        if (window.outOfOrder.get()) {
+            return;
+        }
+        final Long key = sortKey(rootDoc);
+        if (key == null) {
+            // missing values are sorted according to the missing value of the sort, we don't bother
+            window.outOfOrder.set(true);
+            return;
+        }
+        final long previous = window.lastKey.getAndAccumulate(key, reverse ? Math::min : Math::max);
+        if (reverse ? key > previous : key < previous) {
+            window.outOfOrder.set(true);
+        } else if (strict && key == previous) {
+            window.outOfOrder.set(true);
+        }
+    }
+
+    /**
+     * Returns the positions of the given operations in the order of their sort keys, or <code>null</code> if they are already in
+     * order or if any of them has no sort key. Operations with equal keys keep their relative order.
+     */
+    Integer[] sortOrder(List<Engine.Index> operations) {
+        final long[] keys = new long[operations.size()];
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            final Long key = sortKey(operations.get(i).parsedDoc().rootDoc());
+            if (key == null) {
+                return null;
+            }
+            keys[i] = key;
+            if (i > 0 && (reverse ? keys[i] > keys[i - 1] : keys[i] < keys[i - 1])) {
+                sorted = false;
+            }
+        }
+        if (sorted) {
+            return null;
+        }
+        final Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Arrays#sort is stable for objects
+        Arrays.sort(order, (a, b) -> reverse ? Long.compare(keys[b], keys[a]) : Long.compare(keys[a], keys[b]));
+        return order;
+    }
+
+    /**
+     * Called before the internal reader is refreshed, which flushes the buffered documents. Documents that are added from now on
+     * belong to the next segments.
+     */
+    void beforeRefresh() {
+        refreshedWindow = currentWindow.getAndSet(new Window(initialKey()));
+    }
+
+    /**
+     * Called after the internal reader was refreshed with the refreshed reader. Every segment of the reader that was flushed since
+     * the last refresh is counted as presorted or out of order, depending on the order of the documents that were added before the
+     * refresh.
+     */
+    void afterRefresh(IndexReader reader) {
+        final int flushedSegments = updateKnownSegments(reader);
+        if (refreshedWindow != null && refreshedWindow.outOfOrder.get()) {
+            unsortedFlushes.inc(flushedSegments);
+        } else {
+            presortedFlushes.inc(flushedSegments);
+        }
+        refreshedWindow = null;
+    }
+
+    /**
+     * Called with the reader that the internal reader manager was opened with, the segments that it contains are never counted.
+     */
+    void onReaderOpened(IndexReader reader) {
+        updateKnownSegments(reader);
+    }
+
+    /**
+     * Remembers the segments of the given reader and returns how many of them were flushed and weren't known before.
+     */
+    private int updateKnownSegments(IndexReader reader) {
+        final Set<String> segments = new HashSet<>(reader.leaves().size());
+        int flushedSegments = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final SegmentCommitInfo info = Lucene.segmentReader(leaf.reader()).getSegmentInfo();
+            segments.add(info.info.name);
+            if (knownSegments.contains(info.info.name) == false
+                && IndexWriter.SOURCE_FLUSH.equals(info.info.getDiagnostics().get(IndexWriter.SOURCE))) {
+                flushedSegments++;
+            }
+        }
+        knownSegments = segments;
+        return flushedSegments;
+    }
+
+    /**
+     * Returns the number of flushed segments whose documents were added in the order of the index sort.
+     */
+    long getPresortedFlushCount() {
+        return presortedFlushes.count();
+    }
+
+    /**
+     * Returns the number of flushed segments whose documents had to be reordered according to the index sort.
+     */
+    long getUnsortedFlushCount() {
+        return unsortedFlushes.count();
+    }
+
+    /**
+     * The order of the documents that were added to the index writer between two refreshes.
+     */
+    private static final class Window {
+        final AtomicLong lastKey;
+        final AtomicBoolean outOfOrder = new AtomicBoolean();
+
+        Window(long initialKey) {
+            this.lastKey = new AtomicLong(initialKey);
+        }
+    }
+}
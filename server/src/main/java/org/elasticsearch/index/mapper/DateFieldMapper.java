@@ -176,7 +176,7 @@ public class DateFieldMapper extends FieldMapper {
         protected FormatDateTimeFormatter dateTimeFormatter;
         protected DateMathParser dateMathParser;
 
-        DateFieldType() {
+        public DateFieldType() {
             super();
             setTokenized(false);
             setHasDocValues(true);
@@ -316,6 +316,24 @@ public class DateFieldMapper extends FieldMapper {
         public Relation isFieldWithinQuery(IndexReader reader,
                 Object from, Object to, boolean includeLower, boolean includeUpper,
                 DateTimeZone timeZone, DateMathParser dateParser, QueryRewriteContext context) throws IOException {
+            final boolean hasValues = PointValues.size(reader, name()) > 0;
+            long minValue = 0;
+            long maxValue = 0;
+            if (hasValues) {
+                minValue = LongPoint.decodeDimension(PointValues.getMinPackedValue(reader, name()), 0);
+                maxValue = LongPoint.decodeDimension(PointValues.getMaxPackedValue(reader, name()), 0);
+            }
+            return isFieldWithinQuery(hasValues, minValue, maxValue, from, to, includeLower, includeUpper, timeZone, dateParser, context);
+        }
+
+        /**
+         * Same as {@link #isFieldWithinQuery(IndexReader, Object, Object, boolean, boolean, DateTimeZone, DateMathParser,
+         * QueryRewriteContext)} but with the min and max values of the field rather than a reader, <code>hasValues</code> is false
+         * if no document has a value.
+         */
+        public Relation isFieldWithinQuery(boolean hasValues, long minValue, long maxValue,
+                Object from, Object to, boolean includeLower, boolean includeUpper,
+                DateTimeZone timeZone, DateMathParser dateParser, QueryRewriteContext context) {
             if (dateParser == null) {
                 dateParser = this.dateMathParser;
             }
@@ -345,14 +363,11 @@ public class DateFieldMapper extends FieldMapper {
             // This check needs to be done after fromInclusive and toInclusive
             // are resolved so we can throw an exception if they are invalid
             // even if there are no points in the shard
-            if (PointValues.size(reader, name()) == 0) {
+            if (hasValues == false) {
                 // no points, so nothing matches
                 return Relation.DISJOINT;
             }
 
-            long minValue = LongPoint.decodeDimension(PointValues.getMinPackedValue(reader, name()), 0);
-            long maxValue = LongPoint.decodeDimension(PointValues.getMaxPackedValue(reader, name()), 0);
-
             if (minValue >= fromInclusive && maxValue <= toInclusive) {
                 return Relation.WITHIN;
             } else if (maxValue < fromInclusive || minValue > toInclusive) {
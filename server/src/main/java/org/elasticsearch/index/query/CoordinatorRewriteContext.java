@@ -0,0 +1,152 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.query;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.joda.time.DateTimeZone;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Context object used to rewrite {@link QueryBuilder} instances on the coordinating node against the {@link ShardFieldRanges} of
+ * a shard, so that the shard can be skipped without asking it if the query rewrites to a {@link MatchNoneQueryBuilder}.
+ */
+public class CoordinatorRewriteContext extends QueryRewriteContext {
+    private final ShardFieldRanges fieldRanges;
+
+    public CoordinatorRewriteContext(NamedXContentRegistry xContentRegistry, NamedWriteableRegistry writeableRegistry, Client client,
+                                     LongSupplier nowInMillis, ShardFieldRanges fieldRanges) {
+        super(xContentRegistry, writeableRegistry, client, nowInMillis);
+        this.fieldRanges = fieldRanges;
+    }
+
+    @Override
+    public CoordinatorRewriteContext convertToCoordinatorRewriteContext() {
+        return this;
+    }
+
+    /**
+     * Returns the relation of the values of a field in the shard with a range. Like on the shard, a field without values is
+     * {@link MappedFieldType.Relation#DISJOINT}, and ranges that can't be resolved on the coordinating node intersect.
+     */
+    public MappedFieldType.Relation getRelation(String field, Object from, Object to, boolean includeLower, boolean includeUpper,
+                                                DateTimeZone timeZone, DateMathParser forcedDateParser) {
+        final ShardFieldRanges.FieldRange range = fieldRanges.getRange(field);
+        if (range == null) {
+            // the field is not mapped or its values are not summarized
+            return MappedFieldType.Relation.INTERSECTS;
+        }
+        if (range.getType().equals(DateFieldMapper.CONTENT_TYPE)) {
+            final DateFieldMapper.DateFieldType fieldType = new DateFieldMapper.DateFieldType();
+            fieldType.setName(field);
+            fieldType.setDateTimeFormatter(Joda.forPattern(range.getFormat(), range.getLocale()));
+            return fieldType.isFieldWithinQuery(range.hasValues(), range.getMin(), range.getMax(), from, to, includeLower, includeUpper,
+                timeZone, forcedDateParser, this);
+        }
+        final NumberFieldMapper.NumberType numberType = numberType(range.getType());
+        long fromInclusive = Long.MIN_VALUE;
+        if (from != null) {
+            final Long value = toLong(from, numberType);
+            if (value == null) {
+                return MappedFieldType.Relation.INTERSECTS;
+            }
+            fromInclusive = value;
+            if (includeLower == false) {
+                if (fromInclusive == Long.MAX_VALUE) {
+                    return MappedFieldType.Relation.DISJOINT;
+                }
+                ++fromInclusive;
+            }
+        }
+        long toInclusive = Long.MAX_VALUE;
+        if (to != null) {
+            final Long value = toLong(to, numberType);
+            if (value == null) {
+                return MappedFieldType.Relation.INTERSECTS;
+            }
+            toInclusive = value;
+            if (includeUpper == false) {
+                if (toInclusive == Long.MIN_VALUE) {
+                    return MappedFieldType.Relation.DISJOINT;
+                }
+                --toInclusive;
+            }
+        }
+        if (range.hasValues() == false) {
+            return MappedFieldType.Relation.DISJOINT;
+        } else if (range.getMin() >= fromInclusive && range.getMax() <= toInclusive) {
+            return MappedFieldType.Relation.WITHIN;
+        } else if (range.getMax() < fromInclusive || range.getMin() > toInclusive) {
+            return MappedFieldType.Relation.DISJOINT;
+        } else {
+            return MappedFieldType.Relation.INTERSECTS;
+        }
+    }
+
+    private static NumberFieldMapper.NumberType numberType(String typeName) {
+        for (NumberFieldMapper.NumberType numberType : NumberFieldMapper.NumberType.values()) {
+            if (numberType.typeName().equals(typeName)) {
+                return numberType;
+            }
+        }
+        throw new IllegalArgumentException("unexpected type of field range [" + typeName + "]");
+    }
+
+    /**
+     * Returns the value of a bound if it is an integer within the range of the provided type, <code>null</code> otherwise. Other
+     * bounds, like decimals or out of range values, are left to the shard, which rounds them or rejects them.
+     */
+    private static Long toLong(Object bound, NumberFieldMapper.NumberType numberType) {
+        final long value;
+        if (bound instanceof Long || bound instanceof Integer || bound instanceof Short || bound instanceof Byte) {
+            value = ((Number) bound).longValue();
+        } else if (bound instanceof BytesRef || bound instanceof String) {
+            final String string = bound instanceof BytesRef ? ((BytesRef) bound).utf8ToString() : (String) bound;
+            try {
+                value = Long.parseLong(string);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        switch (numberType) {
+            case LONG:
+                return value;
+            case INTEGER:
+                return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? value : null;
+            case SHORT:
+                return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ? value : null;
+            case BYTE:
+                return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? value : null;
+            default:
+                return null;
+        }
+    }
+}
@@ -75,6 +75,13 @@ public class QueryRewriteContext {
         return null;
     }
 
+    /**
+     * Returns an instance of {@link CoordinatorRewriteContext} if available or null otherwise
+     */
+    public CoordinatorRewriteContext convertToCoordinatorRewriteContext() {
+        return null;
+    }
+
     /**
      * Registers an async action that must be executed before the next rewrite round in order to make progress.
      * This should be used if a rewriteabel needs to fetch some external resources in order to be executed ie. a document
@@ -82,6 +82,7 @@ public class QueryShardContext extends QueryRewriteContext {
     private final String clusterAlias;
     private String[] types = Strings.EMPTY_ARRAY;
     private boolean cachable = true;
+    private boolean compiledScripts = false;
     private final SetOnce<Boolean> frozen = new SetOnce<>();
     private final Index fullyQualifiedIndex;
 
@@ -330,9 +331,17 @@ public class QueryShardContext extends QueryRewriteContext {
     /** Return the script service to allow compiling scripts. */
     public final ScriptService getScriptService() {
         failIfFrozen();
+        compiledScripts = true;
         return scriptService;
     }
 
+    /**
+     * Returns <code>true</code> if the script service was accessed through this context to compile scripts.
+     */
+    public final boolean hasCompiledScripts() {
+        return compiledScripts;
+    }
+
     /**
      * if this method is called the query context will throw exception if methods are accessed
      * that could yield different results across executions like {@link #getClient()}
@@ -443,6 +443,11 @@ public class RangeQueryBuilder extends AbstractQueryBuilder<RangeQueryBuilder> i
 
     // Overridable for testing only
     protected MappedFieldType.Relation getRelation(QueryRewriteContext queryRewriteContext) throws IOException {
+        final CoordinatorRewriteContext coordinatorContext = queryRewriteContext.convertToCoordinatorRewriteContext();
+        if (coordinatorContext != null) {
+            // rewrite against the values of the shard that the coordinating node has cached
+            return coordinatorContext.getRelation(fieldName, from, to, includeLower, includeUpper, timeZone, getForceDateParser());
+        }
         QueryShardContext shardContext = queryRewriteContext.convertToShardContext();
         // If the context is null we are not on the shard and cannot
         // rewrite so just pretend there is an intersection so that the rewrite is a noop
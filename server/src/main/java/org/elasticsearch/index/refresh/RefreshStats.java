@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.refresh;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -41,14 +42,30 @@ public class RefreshStats implements Streamable, ToXContentFragment {
      */
     private int listeners;
 
+    /**
+     * Number of segments that were flushed with their documents already in the order of the index sort.
+     */
+    private long presortedFlushes;
+
+    /**
+     * Number of segments that were flushed with their documents out of the order of the index sort.
+     */
+    private long unsortedFlushes;
+
     public RefreshStats() {
 
     }
 
     public RefreshStats(long total, long totalTimeInMillis, int listeners) {
+        this(total, totalTimeInMillis, listeners, 0, 0);
+    }
+
+    public RefreshStats(long total, long totalTimeInMillis, int listeners, long presortedFlushes, long unsortedFlushes) {
         this.total = total;
         this.totalTimeInMillis = totalTimeInMillis;
         this.listeners = listeners;
+        this.presortedFlushes = presortedFlushes;
+        this.unsortedFlushes = unsortedFlushes;
     }
 
     public void add(RefreshStats refreshStats) {
@@ -62,6 +79,8 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         this.total += refreshStats.total;
         this.totalTimeInMillis += refreshStats.totalTimeInMillis;
         this.listeners += refreshStats.listeners;
+        this.presortedFlushes += refreshStats.presortedFlushes;
+        this.unsortedFlushes += refreshStats.unsortedFlushes;
     }
 
     /**
@@ -92,12 +111,33 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         return listeners;
     }
 
+    /**
+     * The number of segments that were flushed with their documents already in the order of the index sort, which means that
+     * Lucene didn't need to reorder them.
+     */
+    public long getPresortedFlushes() {
+        return presortedFlushes;
+    }
+
+    /**
+     * The number of segments that were flushed with their documents out of the order of the index sort.
+     */
+    public long getUnsortedFlushes() {
+        return unsortedFlushes;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject("refresh");
         builder.field("total", total);
         builder.humanReadableField("total_time_in_millis", "total_time", getTotalTime());
         builder.field("listeners", listeners);
+        if (presortedFlushes > 0 || unsortedFlushes > 0) {
+            builder.startObject("index_sort");
+            builder.field("presorted_total", presortedFlushes);
+            builder.field("out_of_order_total", unsortedFlushes);
+            builder.endObject();
+        }
         builder.endObject();
         return builder;
     }
@@ -107,6 +147,10 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         total = in.readVLong();
         totalTimeInMillis = in.readVLong();
         listeners = in.readVInt();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            presortedFlushes = in.readVLong();
+            unsortedFlushes = in.readVLong();
+        }
     }
 
     @Override
@@ -114,6 +158,10 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         out.writeVLong(total);
         out.writeVLong(totalTimeInMillis);
         out.writeVInt(listeners);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeVLong(presortedFlushes);
+            out.writeVLong(unsortedFlushes);
+        }
     }
 
     @Override
@@ -124,11 +172,13 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         RefreshStats rhs = (RefreshStats) obj;
         return total == rhs.total
                 && totalTimeInMillis == rhs.totalTimeInMillis
-                && listeners == rhs.listeners;
+                && listeners == rhs.listeners
+                && presortedFlushes == rhs.presortedFlushes
+                && unsortedFlushes == rhs.unsortedFlushes;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(total, totalTimeInMillis, listeners);
+        return Objects.hash(total, totalTimeInMillis, listeners, presortedFlushes, unsortedFlushes);
     }
 }
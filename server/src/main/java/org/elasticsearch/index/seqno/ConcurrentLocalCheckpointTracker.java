@@ -0,0 +1,348 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.seqno;
+
+import org.elasticsearch.common.SuppressForbidden;
+
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link LocalCheckpointTracker} that generates sequence numbers and advances the local checkpoint without acquiring a lock.
+ * Completed sequence numbers are recorded in a fixed ring of atomic words. Each word holds the bits of {@link #BITS_PER_WORD}
+ * consecutive sequence numbers in its lower half and the generation of the ring these sequence numbers belong to in its upper half.
+ * A word that is tagged with an older generation is known to be fully processed, it is therefore reused without ever having to be
+ * cleared. The thread that completes the sequence number following the local checkpoint moves the checkpoint forward by a compare
+ * and swap, consuming whole runs of consecutive bits at once.
+ * <p>
+ * Sequence numbers that are too far ahead of the local checkpoint to fit in the ring, which is possible on replicas that miss
+ * operations, are kept in a sorted overflow set under a lock and moved to the ring once the checkpoint caught up with them.
+ */
+public class ConcurrentLocalCheckpointTracker extends LocalCheckpointTracker {
+
+    /**
+     * The number of sequence numbers tracked by a single word of the ring.
+     */
+    static final int BITS_PER_WORD = 32;
+
+    /**
+     * The number of words of the ring, must be a power of two.
+     */
+    static final int RING_WORDS = 1024;
+
+    /**
+     * The number of sequence numbers following the local checkpoint that can be tracked in the ring.
+     */
+    static final int RING_SIZE = RING_WORDS * BITS_PER_WORD;
+
+    private static final int WORD_SHIFT = Integer.numberOfTrailingZeros(BITS_PER_WORD);
+    private static final int GENERATION_SHIFT = WORD_SHIFT + Integer.numberOfTrailingZeros(RING_WORDS);
+    private static final long BITS_MASK = (1L << BITS_PER_WORD) - 1;
+    private static final long GENERATION_MASK = (1L << (Long.SIZE - BITS_PER_WORD)) - 1;
+
+    private final AtomicLongArray words = new AtomicLongArray(RING_WORDS);
+
+    private final AtomicLong localCheckpoint;
+
+    private final AtomicLong nextSeqNo;
+
+    /**
+     * Sequence numbers that didn't fit in the ring yet, protected by its own monitor.
+     */
+    private final TreeSet<Long> overflow = new TreeSet<>();
+
+    /**
+     * The smallest sequence number in the overflow set or {@link Long#MAX_VALUE} if it is empty, only written under the monitor of
+     * the overflow set.
+     */
+    private volatile long firstOverflowSeqNo = Long.MAX_VALUE;
+
+    private final Object waitMutex = new Object();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Initialize the local checkpoint service. The {@code maxSeqNo} should be set to the last sequence number assigned, or
+     * {@link SequenceNumbers#NO_OPS_PERFORMED} and {@code localCheckpoint} should be set to the last known local checkpoint,
+     * or {@link SequenceNumbers#NO_OPS_PERFORMED}.
+     *
+     * @param maxSeqNo        the last sequence number assigned, or {@link SequenceNumbers#NO_OPS_PERFORMED}
+     * @param localCheckpoint the last known local checkpoint, or {@link SequenceNumbers#NO_OPS_PERFORMED}
+     */
+    public ConcurrentLocalCheckpointTracker(final long maxSeqNo, final long localCheckpoint) {
+        super(maxSeqNo, localCheckpoint);
+        this.nextSeqNo = new AtomicLong(maxSeqNo == SequenceNumbers.NO_OPS_PERFORMED ? 0 : maxSeqNo + 1);
+        this.localCheckpoint = new AtomicLong(localCheckpoint);
+        clearRing(localCheckpoint);
+    }
+
+    @Override
+    public long generateSeqNo() {
+        return nextSeqNo.getAndIncrement();
+    }
+
+    @Override
+    public long generateSeqNos(final int count) {
+        assert count > 0 : "count must be positive but was [" + count + "]";
+        return nextSeqNo.getAndAdd(count);
+    }
+
+    @Override
+    public void markSeqNoAsCompleted(final long seqNo) {
+        updateMaxSeqNo(seqNo);
+        if (markInRing(seqNo, seqNo) == false) {
+            addToOverflow(seqNo, seqNo);
+        }
+        updateCheckpoint();
+    }
+
+    @Override
+    public void markSeqNoRangeAsCompleted(final long fromSeqNo, final long toSeqNo) {
+        assert fromSeqNo <= toSeqNo : "invalid range [" + fromSeqNo + "-" + toSeqNo + "]";
+        updateMaxSeqNo(toSeqNo);
+        long seqNo = Math.max(fromSeqNo, localCheckpoint.get() + 1);
+        while (seqNo <= toSeqNo) {
+            final long lastSeqNoInWord = Math.min(toSeqNo, seqNo | (BITS_PER_WORD - 1));
+            if (markInRing(seqNo, lastSeqNoInWord) == false) {
+                // the following words are even further ahead of the checkpoint
+                addToOverflow(seqNo, toSeqNo);
+                break;
+            }
+            seqNo = lastSeqNoInWord + 1;
+        }
+        updateCheckpoint();
+    }
+
+    /**
+     * Resets the checkpoint to the specified value. Unlike the other methods of this tracker this method must not be called
+     * concurrently with operations being marked as completed.
+     *
+     * @param checkpoint the local checkpoint to reset this tracker to
+     */
+    @Override
+    public void resetCheckpoint(final long checkpoint) {
+        assert checkpoint != SequenceNumbers.UNASSIGNED_SEQ_NO;
+        assert checkpoint <= localCheckpoint.get();
+        synchronized (overflow) {
+            overflow.clear();
+            firstOverflowSeqNo = Long.MAX_VALUE;
+        }
+        clearRing(checkpoint);
+        localCheckpoint.set(checkpoint);
+    }
+
+    @Override
+    public long getCheckpoint() {
+        return localCheckpoint.get();
+    }
+
+    @Override
+    public long getMaxSeqNo() {
+        return nextSeqNo.get() - 1;
+    }
+
+    @Override
+    public SeqNoStats getStats(final long globalCheckpoint) {
+        // the checkpoint must be read first: it never exceeds the max seq no which only increases
+        final long checkpoint = getCheckpoint();
+        return new SeqNoStats(getMaxSeqNo(), checkpoint, globalCheckpoint);
+    }
+
+    @Override
+    @SuppressForbidden(reason = "Object#wait")
+    public void waitForOpsToComplete(final long seqNo) throws InterruptedException {
+        if (localCheckpoint.get() >= seqNo) {
+            return;
+        }
+        synchronized (waitMutex) {
+            // registering before checking the checkpoint ensures that threads advancing it after our check see us waiting
+            waiters.incrementAndGet();
+            try {
+                while (localCheckpoint.get() < seqNo) {
+                    // notified by notifyWaiters
+                    waitMutex.wait();
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+
+    private void updateMaxSeqNo(final long seqNo) {
+        // make sure we track highest seen sequence number
+        if (seqNo >= nextSeqNo.get()) {
+            nextSeqNo.accumulateAndGet(seqNo + 1, Math::max);
+        }
+    }
+
+    /**
+     * Marks the given sequence numbers, which must belong to the same word, as completed in the ring.
+     *
+     * @return <code>false</code> if the word is too far ahead of the local checkpoint to be tracked in the ring
+     */
+    private boolean markInRing(final long fromSeqNo, final long toSeqNo) {
+        assert fromSeqNo >>> WORD_SHIFT == toSeqNo >>> WORD_SHIFT : "[" + fromSeqNo + "-" + toSeqNo + "] spans multiple words";
+        final int index = wordIndex(fromSeqNo);
+        final long generation = generation(fromSeqNo);
+        final long bits = ((1L << (toSeqNo - fromSeqNo + 1)) - 1) << bitOffset(fromSeqNo);
+        while (true) {
+            final long checkpoint = localCheckpoint.get();
+            if (toSeqNo <= checkpoint) {
+                // this is possible during recovery where we might replay an operation that was also replicated
+                return true;
+            }
+            if (fitsInRing(fromSeqNo, checkpoint) == false) {
+                return false;
+            }
+            final long word = words.get(index);
+            final long wordGeneration = word >>> BITS_PER_WORD;
+            final long update;
+            if (wordGeneration == generation) {
+                update = word | bits;
+            } else if ((int) (wordGeneration - generation) > 0) {
+                // the word was already reused by a newer generation, the checkpoint moved past our sequence numbers meanwhile
+                return true;
+            } else {
+                // all sequence numbers of the older generation are below the checkpoint, we can take the word over
+                update = (generation << BITS_PER_WORD) | bits;
+            }
+            if (update == word || words.compareAndSet(index, word, update)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves the checkpoint to the last consecutively processed sequence number and moves sequence numbers that fit in the ring
+     * from the overflow set to the ring until the checkpoint can't be advanced any further.
+     */
+    private void updateCheckpoint() {
+        while (true) {
+            final long checkpoint = advanceCheckpoint();
+            if (fitsInRing(firstOverflowSeqNo, checkpoint) == false || drainOverflow() == false) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the checkpoint over all consecutive sequence numbers that are marked as completed in the ring.
+     *
+     * @return the last checkpoint that was observed
+     */
+    private long advanceCheckpoint() {
+        long checkpoint = localCheckpoint.get();
+        while (true) {
+            final long next = checkpoint + 1;
+            final long word = words.get(wordIndex(next));
+            final int run;
+            if (word >>> BITS_PER_WORD == generation(next)) {
+                // the number of consecutive bits that are set starting with the one of the next sequence number
+                run = Long.numberOfTrailingZeros(~((word & BITS_MASK) >>> bitOffset(next)));
+            } else {
+                run = 0;
+            }
+            if (run == 0) {
+                final long current = localCheckpoint.get();
+                if (current == checkpoint) {
+                    return checkpoint;
+                }
+                checkpoint = current;
+            } else if (localCheckpoint.compareAndSet(checkpoint, checkpoint + run)) {
+                checkpoint += run;
+                notifyWaiters();
+            } else {
+                checkpoint = localCheckpoint.get();
+            }
+        }
+    }
+
+    private void addToOverflow(final long fromSeqNo, final long toSeqNo) {
+        synchronized (overflow) {
+            for (long seqNo = fromSeqNo; seqNo <= toSeqNo; seqNo++) {
+                overflow.add(seqNo);
+            }
+            firstOverflowSeqNo = overflow.first();
+        }
+    }
+
+    /**
+     * Moves all sequence numbers from the overflow set to the ring that fit in it.
+     *
+     * @return <code>true</code> if at least one sequence number was moved
+     */
+    private boolean drainOverflow() {
+        synchronized (overflow) {
+            boolean drained = false;
+            while (overflow.isEmpty() == false) {
+                final long seqNo = overflow.first();
+                if (markInRing(seqNo, seqNo) == false) {
+                    // the set is sorted, all other sequence numbers are even further ahead
+                    break;
+                }
+                overflow.pollFirst();
+                drained = true;
+            }
+            firstOverflowSeqNo = overflow.isEmpty() ? Long.MAX_VALUE : overflow.first();
+            return drained;
+        }
+    }
+
+    @SuppressForbidden(reason = "Object#notifyAll")
+    private void notifyWaiters() {
+        if (waiters.get() > 0) {
+            synchronized (waitMutex) {
+                // notifies waiters in waitForOpsToComplete
+                waitMutex.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Tags all words with the generation preceding the one of the sequence number following the given checkpoint, which marks them
+     * as fully processed.
+     */
+    private void clearRing(final long checkpoint) {
+        final long previousGeneration = (generation(checkpoint + 1) - 1) & GENERATION_MASK;
+        for (int i = 0; i < RING_WORDS; i++) {
+            words.set(i, previousGeneration << BITS_PER_WORD);
+        }
+    }
+
+    private static boolean fitsInRing(final long seqNo, final long checkpoint) {
+        return (seqNo >>> WORD_SHIFT) - ((checkpoint + 1) >>> WORD_SHIFT) < RING_WORDS;
+    }
+
+    private static int wordIndex(final long seqNo) {
+        return (int) (seqNo >>> WORD_SHIFT) & (RING_WORDS - 1);
+    }
+
+    private static int bitOffset(final long seqNo) {
+        return (int) seqNo & (BITS_PER_WORD - 1);
+    }
+
+    private static long generation(final long seqNo) {
+        // generations wrap around, which is fine as long as words are compared with generations that are close to each other
+        return (seqNo >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+}
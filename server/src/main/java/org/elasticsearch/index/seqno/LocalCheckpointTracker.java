@@ -81,6 +81,19 @@ public class LocalCheckpointTracker {
         return nextSeqNo++;
     }
 
+    /**
+     * Issue a range of consecutive sequence numbers.
+     *
+     * @param count the number of sequence numbers to issue
+     * @return the first sequence number of the assigned range
+     */
+    public synchronized long generateSeqNos(final int count) {
+        assert count > 0 : "count must be positive but was [" + count + "]";
+        final long seqNo = nextSeqNo;
+        nextSeqNo += count;
+        return seqNo;
+    }
+
     /**
      * Marks the processing of the provided sequence number as completed as updates the checkpoint if possible.
      *
@@ -103,6 +116,33 @@ public class LocalCheckpointTracker {
         }
     }
 
+    /**
+     * Marks the processing of all sequence numbers in the provided range as completed and updates the checkpoint if possible. This
+     * is equivalent to calling {@link #markSeqNoAsCompleted(long)} for every sequence number in the range but only acquires the
+     * monitor of this tracker once.
+     *
+     * @param fromSeqNo the first sequence number of the range to mark as completed (inclusive)
+     * @param toSeqNo   the last sequence number of the range to mark as completed (inclusive)
+     */
+    public synchronized void markSeqNoRangeAsCompleted(final long fromSeqNo, final long toSeqNo) {
+        assert fromSeqNo <= toSeqNo : "invalid range [" + fromSeqNo + "-" + toSeqNo + "]";
+        // make sure we track highest seen sequence number
+        if (toSeqNo >= nextSeqNo) {
+            nextSeqNo = toSeqNo + 1;
+        }
+        if (toSeqNo <= checkpoint) {
+            // this is possible during recovery where we might replay an operation that was also replicated
+            return;
+        }
+        final long firstPending = Math.max(fromSeqNo, checkpoint + 1);
+        for (long seqNo = firstPending; seqNo <= toSeqNo; seqNo++) {
+            getBitSetForSeqNo(seqNo).set(seqNoToBitSetOffset(seqNo));
+        }
+        if (firstPending == checkpoint + 1) {
+            updateCheckpoint();
+        }
+    }
+
     /**
      * Resets the checkpoint to the specified value.
      *
@@ -0,0 +1,129 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+/**
+ * Decides whether a scheduled refresh of a shard should be executed when adaptive refreshes are enabled, see
+ * {@link org.elasticsearch.index.IndexSettings#INDEX_REFRESH_ADAPTIVE_ENABLED_SETTING}. The refresh interval of the index is the
+ * lower bound of the interval of the shard. Shards that are searched at least once per refresh interval are refreshed at that
+ * interval. Shards that are written to but searched less often are refreshed roughly once per search, since every refresh in between
+ * produces a small segment that nobody reads, and the interval is stretched further as the number of segments grows. The interval
+ * never exceeds the configured maximum. The search and indexing rates are tracked as exponentially weighted moving averages.
+ */
+final class AdaptiveRefreshPolicy {
+
+    /**
+     * The weight of the latest observation in the moving averages of the search and indexing rates.
+     */
+    static final double ALPHA = 0.3;
+
+    /**
+     * The number of segments above which the interval of rarely searched shards is stretched proportionally.
+     */
+    static final int SEGMENT_COUNT_THRESHOLD = 20;
+
+    // all the following are protected by this policy's monitor
+    private long lastObservationInMillis = -1;
+    private long lastRefreshInMillis;
+    private long lastSearchCount;
+    private long lastIndexCount;
+    private boolean hasRates;
+    private double searchesPerSecond;
+    private double indexOpsPerSecond;
+    private long intervalInMillis;
+
+    /**
+     * Records the latest observations of the shard and returns whether it should be refreshed now. If <code>true</code> is returned
+     * the caller is expected to refresh the shard.
+     *
+     * @param nowInMillis         the current relative time in milliseconds
+     * @param searchCount         the total number of searches executed against the shard so far
+     * @param indexCount          the total number of index operations executed on the shard so far
+     * @param segmentCount        the number of segments of the shard
+     * @param minIntervalInMillis the minimum refresh interval, this is the refresh interval of the index
+     * @param maxIntervalInMillis the maximum refresh interval
+     */
+    synchronized boolean shouldRefresh(long nowInMillis, long searchCount, long indexCount, int segmentCount,
+                                       long minIntervalInMillis, long maxIntervalInMillis) {
+        if (lastObservationInMillis < 0) {
+            lastObservationInMillis = lastRefreshInMillis = nowInMillis;
+            lastSearchCount = searchCount;
+            lastIndexCount = indexCount;
+            intervalInMillis = Math.max(0, minIntervalInMillis);
+            return true;
+        }
+        final long elapsedInMillis = nowInMillis - lastObservationInMillis;
+        if (elapsedInMillis > 0) {
+            final double searchRate = (searchCount - lastSearchCount) * 1000d / elapsedInMillis;
+            final double indexRate = (indexCount - lastIndexCount) * 1000d / elapsedInMillis;
+            if (hasRates) {
+                searchesPerSecond = ALPHA * searchRate + (1 - ALPHA) * searchesPerSecond;
+                indexOpsPerSecond = ALPHA * indexRate + (1 - ALPHA) * indexOpsPerSecond;
+            } else {
+                searchesPerSecond = searchRate;
+                indexOpsPerSecond = indexRate;
+                hasRates = true;
+            }
+            lastObservationInMillis = nowInMillis;
+            lastSearchCount = searchCount;
+            lastIndexCount = indexCount;
+        }
+        intervalInMillis = computeInterval(segmentCount, minIntervalInMillis, maxIntervalInMillis);
+        if (nowInMillis - lastRefreshInMillis >= intervalInMillis) {
+            lastRefreshInMillis = nowInMillis;
+            return true;
+        }
+        return false;
+    }
+
+    private long computeInterval(int segmentCount, long minIntervalInMillis, long maxIntervalInMillis) {
+        if (minIntervalInMillis <= 0 || maxIntervalInMillis <= minIntervalInMillis) {
+            return Math.max(0, minIntervalInMillis);
+        }
+        final double minIntervalInSeconds = minIntervalInMillis / 1000d;
+        if (searchesPerSecond * minIntervalInSeconds >= 1 || indexOpsPerSecond * minIntervalInSeconds < 1) {
+            // either searched frequently enough to keep the freshness of the refresh interval or barely written to, in which
+            // case refreshing is cheap
+            return minIntervalInMillis;
+        }
+        double interval = searchesPerSecond > 0 ? 1000d / searchesPerSecond : maxIntervalInMillis;
+        if (segmentCount > SEGMENT_COUNT_THRESHOLD) {
+            interval *= (double) segmentCount / SEGMENT_COUNT_THRESHOLD;
+        }
+        return Math.max(minIntervalInMillis, Math.min(maxIntervalInMillis, (long) interval));
+    }
+
+    /**
+     * Records that the shard was refreshed, no matter whether the refresh was scheduled, explicitly requested or triggered by a flush,
+     * such that the interval is measured from the latest refresh.
+     *
+     * @param nowInMillis the current relative time in milliseconds
+     */
+    synchronized void onRefresh(long nowInMillis) {
+        lastRefreshInMillis = Math.max(lastRefreshInMillis, nowInMillis);
+    }
+
+    /**
+     * Returns the refresh interval that was computed for the shard on the last observation.
+     */
+    synchronized long getIntervalInMillis() {
+        return intervalInMillis;
+    }
+}
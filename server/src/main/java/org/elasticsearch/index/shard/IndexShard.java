@@ -140,6 +140,7 @@ import java.io.PrintStream;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
@@ -212,6 +213,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     private final MeanMetric refreshMetric = new MeanMetric();
     private final MeanMetric flushMetric = new MeanMetric();
     private final CounterMetric periodicFlushMetric = new CounterMetric();
+    private final CounterMetric parseTimeInNanos = new CounterMetric();
 
     private final ShardEventListener shardEventListener = new ShardEventListener();
 
@@ -241,6 +243,13 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     private final AtomicLong lastSearcherAccess = new AtomicLong();
     private final AtomicReference<Translog.Location> pendingRefreshLocation = new AtomicReference<>();
+    private final CounterMetric searchAccessCount = new CounterMetric();
+    private final AdaptiveRefreshPolicy adaptiveRefreshPolicy = new AdaptiveRefreshPolicy();
+    // the number of segments and of live documents of the internal reader as of its last refresh, the latter is -1 until then
+    private volatile int segmentCountAfterRefresh;
+    private volatile long docCountAfterRefresh = -1;
+    // the field ranges that were computed last, along with the version of the reader they were computed from
+    private volatile Tuple<Long, ShardFieldRanges> fieldRanges;
 
     public IndexShard(
             ShardRouting shardRouting,
@@ -668,6 +677,71 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse);
     }
 
+    /**
+     * Parses the given source into an index operation on the primary without executing it. This allows to parse the documents
+     * of a bulk request concurrently ahead of executing them via {@link #applyIndexOperationOnPrimary(Engine.Index)}.
+     * Parsing failures are thrown.
+     */
+    public Engine.Index prepareIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
+                                                       long autoGeneratedTimestamp, boolean isRetry) {
+        assert versionType.validateVersionForWrites(version);
+        final Engine.Index operation = prepareIndex(docMapper(sourceToParse.type()), indexSettings.getIndexVersionCreated(),
+            sourceToParse, SequenceNumbers.UNASSIGNED_SEQ_NO, operationPrimaryTerm, version, versionType, Engine.Operation.Origin.PRIMARY,
+            autoGeneratedTimestamp, isRetry);
+        parseTimeInNanos.inc(System.nanoTime() - operation.startTime());
+        return operation;
+    }
+
+    /**
+     * Executes an index operation that was parsed via {@link #prepareIndexOperationOnPrimary}. Operations that require a
+     * mapping update are not executed and must be parsed again once the mapping has been updated.
+     */
+    public Engine.IndexResult applyIndexOperationOnPrimary(Engine.Index operation) throws IOException {
+        assert operation.origin() == Engine.Operation.Origin.PRIMARY : "expected primary operation but was " + operation.origin();
+        assert operation.primaryTerm() == operationPrimaryTerm : "op term [ " + operation.primaryTerm() + " ] != shard term ["
+            + operationPrimaryTerm + "]";
+        ensureWriteAllowed(operation.origin());
+        Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
+        if (update != null) {
+            return new Engine.IndexResult(update);
+        }
+        return index(getEngine(), operation);
+    }
+
+    /**
+     * Executes a batch of append-only index operations that were parsed via {@link #prepareIndexOperationOnPrimary} and don't
+     * require a mapping update. The operations are assigned sequence numbers in the given order, see
+     * {@link Engine#indexAppendOnly(List)}.
+     */
+    public List<Engine.IndexResult> applyIndexOperationsOnPrimary(List<Engine.Index> operations) throws IOException {
+        ensureWriteAllowed(Engine.Operation.Origin.PRIMARY);
+        final List<Engine.Index> preparedOperations = new ArrayList<>(operations.size());
+        for (Engine.Index operation : operations) {
+            assert operation.origin() == Engine.Operation.Origin.PRIMARY : "expected primary operation but was " + operation.origin();
+            assert operation.parsedDoc().dynamicMappingsUpdate() == null : "operation requires a mapping update";
+            assert operation.primaryTerm() == operationPrimaryTerm : "op term [ " + operation.primaryTerm() + " ] != shard term ["
+                + operationPrimaryTerm + "]";
+            preparedOperations.add(indexingOperationListeners.preIndex(shardId, operation));
+        }
+        active.set(true);
+        if (logger.isTraceEnabled()) {
+            logger.trace("index [{}] append-only operations", preparedOperations.size());
+        }
+        final List<Engine.IndexResult> results;
+        try {
+            results = getEngine().indexAppendOnly(preparedOperations);
+        } catch (Exception e) {
+            for (Engine.Index operation : preparedOperations) {
+                indexingOperationListeners.postIndex(shardId, operation, e);
+            }
+            throw e;
+        }
+        for (int i = 0; i < preparedOperations.size(); i++) {
+            indexingOperationListeners.postIndex(shardId, preparedOperations.get(i), results.get(i));
+        }
+        return results;
+    }
+
     public Engine.IndexResult applyIndexOperationOnReplica(long seqNo, long version, long autoGeneratedTimeStamp,
                                                            boolean isRetry, SourceToParse sourceToParse)
         throws IOException {
@@ -686,6 +760,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             operation = prepareIndex(docMapper(sourceToParse.type()), indexSettings.getIndexVersionCreated(), sourceToParse, seqNo,
                     opPrimaryTerm, version, versionType, origin,
                 autoGeneratedTimeStamp, isRetry);
+            parseTimeInNanos.inc(System.nanoTime() - operation.startTime());
             Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
                 return new Engine.IndexResult(update);
@@ -859,7 +934,60 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     public RefreshStats refreshStats() {
         int listeners = refreshListeners.pendingCount();
-        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()), listeners);
+        final Engine engine = getEngineOrNull();
+        final long presortedFlushes = engine == null ? 0 : engine.getPresortedFlushCount();
+        final long unsortedFlushes = engine == null ? 0 : engine.getUnsortedFlushCount();
+        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()), listeners,
+            presortedFlushes, unsortedFlushes);
+    }
+
+    /**
+     * Returns the time this shard spent on the different stages of writing documents.
+     */
+    public WriteLoadStats writeLoadStats() {
+        final Engine engine = getEngineOrNull();
+        if (engine == null) {
+            return new WriteLoadStats(parseTimeInNanos.count(), 0, 0, 0);
+        }
+        final MergeStats mergeStats = engine.getMergeStats();
+        final long mergeTimeInMillis = mergeStats.getTotalTimeInMillis() - mergeStats.getTotalThrottledTimeInMillis()
+            - mergeStats.getTotalStoppedTimeInMillis();
+        return new WriteLoadStats(parseTimeInNanos.count(), engine.getLuceneWriteTimeInNanos(), engine.getTranslogWriteTimeInNanos(),
+            TimeUnit.MILLISECONDS.toNanos(Math.max(0, mergeTimeInMillis)));
+    }
+
+    /**
+     * Returns the min and max values of the date and integral numeric fields of this shard if they can't change anymore, that is if
+     * the index is blocked for writes and all of its operations are visible to searches, or <code>null</code> otherwise. They are
+     * computed once per reader and index metadata, so again after refreshes, merges and mapping updates.
+     */
+    @Nullable
+    public ShardFieldRanges fieldRanges() throws IOException {
+        final IndexMetaData indexMetaData = indexSettings.getIndexMetaData();
+        if (IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.get(indexMetaData.getSettings()) == false
+                && IndexMetaData.INDEX_READ_ONLY_SETTING.get(indexMetaData.getSettings()) == false) {
+            return null;
+        }
+        final SeqNoStats seqNoStats = seqNoStats();
+        if (seqNoStats.getMaxSeqNo() != seqNoStats.getLocalCheckpoint() || seqNoStats.getMaxSeqNo() != seqNoStats.getGlobalCheckpoint()) {
+            // some operations are still in flight
+            return null;
+        }
+        final Engine engine = getEngine();
+        if (engine.refreshNeeded()) {
+            return null;
+        }
+        try (Engine.Searcher searcher = engine.acquireSearcher("field_ranges", Engine.SearcherScope.EXTERNAL)) {
+            final long readerVersion = searcher.getDirectoryReader().getVersion();
+            final Tuple<Long, ShardFieldRanges> current = this.fieldRanges;
+            if (current != null && current.v1() == readerVersion
+                    && current.v2().getIndexMetaDataVersion() == indexMetaData.getVersion()) {
+                return current.v2();
+            }
+            final ShardFieldRanges ranges = ShardFieldRanges.compute(indexMetaData.getVersion(), mapperService, searcher.reader());
+            this.fieldRanges = new Tuple<>(readerVersion, ranges);
+            return ranges;
+        }
     }
 
     public FlushStats flushStats() {
@@ -895,6 +1023,21 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return new DocsStats(numDocs, numDeletedDocs, sizeInBytes);
     }
 
+    /**
+     * Returns the number of live documents of this shard as of the last refresh of its internal reader, or as of its last commit if
+     * it wasn't refreshed since the engine was opened. Unlike {@link #docStats()} this doesn't acquire a searcher, which makes it
+     * suitable for estimates that are made for every search request.
+     *
+     * @throws AlreadyClosedException if shard is closed
+     */
+    public long approximateDocCount() {
+        final long docCount = docCountAfterRefresh;
+        if (docCount >= 0) {
+            return docCount;
+        }
+        return commitStats().getNumDocs();
+    }
+
     /**
      * @return {@link CommitStats}
      * @throws AlreadyClosedException if shard is closed
@@ -1163,7 +1306,24 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     private Engine.Searcher acquireSearcher(String source, Engine.SearcherScope scope) {
         readAllowed();
         final Engine engine = getEngine();
-        final Engine.Searcher searcher = engine.acquireSearcher(source, scope);
+        return wrapSearcher(engine.acquireSearcher(source, scope));
+    }
+
+    /**
+     * Acquires a searcher that is not wrapped by the {@link IndexSearcherWrapper} of this shard. Such a searcher can be held on to
+     * in order to search the same point in time view of the shard on behalf of different requests, each of them must wrap it
+     * with {@link #wrapSearcher(Engine.Searcher)} before searching it.
+     */
+    public Engine.Searcher acquireUnwrappedSearcher(String source) {
+        readAllowed();
+        return getEngine().acquireSearcher(source, Engine.SearcherScope.EXTERNAL);
+    }
+
+    /**
+     * Wraps the given searcher with the {@link IndexSearcherWrapper} of this shard, closing the returned searcher closes the given
+     * one. The given searcher is closed if it can't be wrapped.
+     */
+    public Engine.Searcher wrapSearcher(Engine.Searcher searcher) {
         boolean success = false;
         try {
             final Engine.Searcher wrappedSearcher = searcherWrapper == null ? searcher : searcherWrapper.wrap(searcher);
@@ -1901,6 +2061,16 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         internalIndexingStats.noopUpdate(type);
     }
 
+    /**
+     * Should be called once the documents of a bulk request have been parsed concurrently to increment relevant statistics.
+     *
+     * @param count       the number of documents that have been parsed
+     * @param tookInNanos the time it took to parse all documents
+     */
+    public void parallelParse(int count, long tookInNanos) {
+        internalIndexingStats.parallelParse(count, tookInNanos);
+    }
+
     void checkIndex() throws IOException {
         if (store.tryIncRef()) {
             try {
@@ -2190,7 +2360,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             indexCache.query(), cachingPolicy, translogConfig,
             IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING.get(indexSettings.getSettings()),
             Collections.singletonList(refreshListeners),
-            Collections.singletonList(new RefreshMetricUpdater(refreshMetric)),
+            Arrays.asList(new RefreshMetricUpdater(refreshMetric), new RefreshedReaderUpdater()),
             indexSort, this::runTranslogRecovery, circuitBreakerService, replicationTracker, () -> operationPrimaryTerm);
     }
 
@@ -2515,6 +2685,10 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                 engine.maybePruneDeletes(); // try to prune the deletes in the engine if we accumulated some
                 setRefreshPending(engine);
                 return false;
+            } else if (listenerNeedsRefresh == false && indexSettings.isAdaptiveRefreshEnabled() && isAdaptiveRefreshDue() == false) {
+                // the shard is written to more often than it is searched, delay the refresh to create fewer but larger segments
+                getEngine().maybePruneDeletes();
+                return false;
             } else {
                 refresh("schedule");
                 return true;
@@ -2525,6 +2699,20 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return false;
     }
 
+    private boolean isAdaptiveRefreshDue() {
+        // the segment count only changes on refreshes, it is recorded by the RefreshedReaderUpdater rather than on every tick
+        return adaptiveRefreshPolicy.shouldRefresh(threadPool.relativeTimeInMillis(), searchAccessCount.count(),
+            internalIndexingStats.indexCount(), segmentCountAfterRefresh, indexSettings.getRefreshInterval().millis(),
+            indexSettings.getAdaptiveRefreshMaxInterval().millis());
+    }
+
+    /**
+     * Returns the refresh interval that was last computed for this shard if adaptive refreshes are enabled.
+     */
+    final long getAdaptiveRefreshIntervalInMillis() {
+        return adaptiveRefreshPolicy.getIntervalInMillis();
+    }
+
     /**
      * Returns true if this shards is search idle
      */
@@ -2558,6 +2746,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      *                 <code>true</code> if the listener was registered to wait for a refresh.
      */
     public final void awaitShardSearchActive(Consumer<Boolean> listener) {
+        searchAccessCount.inc();
         if (isSearchIdle()) {
             markSearcherAccessed(); // move the shard into non-search idle
         }
@@ -2599,6 +2788,36 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         }
     }
 
+    /**
+     * Records the segment and document counts of the internal reader after every refresh, including refreshes that were explicitly
+     * requested or triggered by a flush, and records the refresh with the {@link AdaptiveRefreshPolicy} if it is enabled.
+     */
+    private class RefreshedReaderUpdater implements ReferenceManager.RefreshListener {
+
+        @Override
+        public void beforeRefresh() {
+        }
+
+        @Override
+        public void afterRefresh(boolean didRefresh) {
+            if (didRefresh == false) {
+                return;
+            }
+            final Engine engine = getEngineOrNull();
+            if (engine != null) {
+                try (Engine.Searcher searcher = engine.acquireSearcher("refreshed_reader", Engine.SearcherScope.INTERNAL)) {
+                    segmentCountAfterRefresh = searcher.reader().leaves().size();
+                    docCountAfterRefresh = searcher.reader().numDocs();
+                } catch (AlreadyClosedException e) {
+                    // the engine is closing, the counts don't matter anymore
+                }
+            }
+            if (indexSettings.isAdaptiveRefreshEnabled()) {
+                adaptiveRefreshPolicy.onRefresh(threadPool.relativeTimeInMillis());
+            }
+        }
+    }
+
     private static class RefreshMetricUpdater implements ReferenceManager.RefreshListener {
 
         private final MeanMetric refreshMetric;
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.shard;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -46,10 +47,19 @@ public class IndexingStats implements Streamable, ToXContentFragment {
         private long noopUpdateCount;
         private long throttleTimeInMillis;
         private boolean isThrottled;
+        private long parallelParseCount;
+        private long parallelParseTimeInMillis;
 
         Stats() {}
 
         public Stats(long indexCount, long indexTimeInMillis, long indexCurrent, long indexFailedCount, long deleteCount, long deleteTimeInMillis, long deleteCurrent, long noopUpdateCount, boolean isThrottled, long throttleTimeInMillis) {
+            this(indexCount, indexTimeInMillis, indexCurrent, indexFailedCount, deleteCount, deleteTimeInMillis, deleteCurrent,
+                noopUpdateCount, isThrottled, throttleTimeInMillis, 0, 0);
+        }
+
+        public Stats(long indexCount, long indexTimeInMillis, long indexCurrent, long indexFailedCount, long deleteCount,
+                     long deleteTimeInMillis, long deleteCurrent, long noopUpdateCount, boolean isThrottled, long throttleTimeInMillis,
+                     long parallelParseCount, long parallelParseTimeInMillis) {
             this.indexCount = indexCount;
             this.indexTimeInMillis = indexTimeInMillis;
             this.indexCurrent = indexCurrent;
@@ -60,6 +70,8 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             this.noopUpdateCount = noopUpdateCount;
             this.isThrottled = isThrottled;
             this.throttleTimeInMillis = throttleTimeInMillis;
+            this.parallelParseCount = parallelParseCount;
+            this.parallelParseTimeInMillis = parallelParseTimeInMillis;
         }
 
         public void add(Stats stats) {
@@ -77,6 +89,8 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             if (isThrottled != stats.isThrottled) {
                 isThrottled = true; //When combining if one is throttled set result to throttled.
             }
+            parallelParseCount += stats.parallelParseCount;
+            parallelParseTimeInMillis += stats.parallelParseTimeInMillis;
         }
 
         /**
@@ -132,6 +146,18 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             return noopUpdateCount;
         }
 
+        /**
+         * Returns the number of documents of bulk requests that were parsed concurrently ahead of being indexed
+         */
+        public long getParallelParseCount() {
+            return parallelParseCount;
+        }
+
+        /**
+         * The total amount of time bulk requests spent on parsing their documents concurrently.
+         */
+        public TimeValue getParallelParseTime() { return new TimeValue(parallelParseTimeInMillis); }
+
         public static Stats readStats(StreamInput in) throws IOException {
             Stats stats = new Stats();
             stats.readFrom(in);
@@ -150,6 +176,10 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             noopUpdateCount = in.readVLong();
             isThrottled = in.readBoolean();
             throttleTimeInMillis = in.readLong();
+            if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                parallelParseCount = in.readVLong();
+                parallelParseTimeInMillis = in.readVLong();
+            }
         }
 
         @Override
@@ -164,7 +194,10 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             out.writeVLong(noopUpdateCount);
             out.writeBoolean(isThrottled);
             out.writeLong(throttleTimeInMillis);
-
+            if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                out.writeVLong(parallelParseCount);
+                out.writeVLong(parallelParseTimeInMillis);
+            }
         }
 
         @Override
@@ -182,6 +215,9 @@ public class IndexingStats implements Streamable, ToXContentFragment {
 
             builder.field(Fields.IS_THROTTLED, isThrottled);
             builder.humanReadableField(Fields.THROTTLED_TIME_IN_MILLIS, Fields.THROTTLED_TIME, getThrottleTime());
+
+            builder.field(Fields.PARALLEL_PARSE_TOTAL, parallelParseCount);
+            builder.humanReadableField(Fields.PARALLEL_PARSE_TIME_IN_MILLIS, Fields.PARALLEL_PARSE_TIME, getParallelParseTime());
             return builder;
         }
     }
@@ -273,6 +309,9 @@ public class IndexingStats implements Streamable, ToXContentFragment {
         static final String IS_THROTTLED = "is_throttled";
         static final String THROTTLED_TIME_IN_MILLIS = "throttle_time_in_millis";
         static final String THROTTLED_TIME = "throttle_time";
+        static final String PARALLEL_PARSE_TOTAL = "parallel_parse_total";
+        static final String PARALLEL_PARSE_TIME = "parallel_parse_time";
+        static final String PARALLEL_PARSE_TIME_IN_MILLIS = "parallel_parse_time_in_millis";
     }
 
     @Override
@@ -148,6 +148,22 @@ final class InternalIndexingStats implements IndexingOperationListener {
         typeStats(type).noopUpdates.inc();
     }
 
+    /**
+     * Records that the given number of documents of a bulk request have been parsed concurrently. These documents are only
+     * accounted in the total stats as the documents of a bulk request may belong to different types.
+     */
+    void parallelParse(int count, long tookInNanos) {
+        totalStats.parallelParseCount.inc(count);
+        totalStats.parallelParseTimeInNanos.inc(tookInNanos);
+    }
+
+    /**
+     * Returns the total number of index operations that were executed successfully.
+     */
+    long indexCount() {
+        return totalStats.indexMetric.count();
+    }
+
     private StatsHolder typeStats(String type) {
         StatsHolder stats = typesStats.get(type);
         if (stats == null) {
@@ -169,12 +185,15 @@ final class InternalIndexingStats implements IndexingOperationListener {
         private final CounterMetric indexFailed = new CounterMetric();
         private final CounterMetric deleteCurrent = new CounterMetric();
         private final CounterMetric noopUpdates = new CounterMetric();
+        private final CounterMetric parallelParseCount = new CounterMetric();
+        private final CounterMetric parallelParseTimeInNanos = new CounterMetric();
 
         IndexingStats.Stats stats(boolean isThrottled, long currentThrottleMillis) {
             return new IndexingStats.Stats(
                 indexMetric.count(), TimeUnit.NANOSECONDS.toMillis(indexMetric.sum()), indexCurrent.count(), indexFailed.count(),
                 deleteMetric.count(), TimeUnit.NANOSECONDS.toMillis(deleteMetric.sum()), deleteCurrent.count(),
-                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis));
+                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis), parallelParseCount.count(),
+                TimeUnit.NANOSECONDS.toMillis(parallelParseTimeInNanos.count()));
         }
 
         void clear() {
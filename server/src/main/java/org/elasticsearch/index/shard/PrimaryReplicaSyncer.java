@@ -26,6 +26,8 @@ import org.elasticsearch.action.resync.ResyncReplicationRequest;
 import org.elasticsearch.action.resync.ResyncReplicationResponse;
 import org.elasticsearch.action.resync.TransportResyncReplicationAction;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -112,6 +114,11 @@ public class PrimaryReplicaSyncer extends AbstractComponent {
                     }
                     return originalSnapshot.next();
                 }
+
+                @Override
+                public synchronized BytesReference serializedOperation() {
+                    return originalSnapshot.serializedOperation();
+                }
             };
             final ActionListener<ResyncTask> resyncListener = new ActionListener<ResyncTask>() {
                 @Override
@@ -232,6 +239,8 @@ public class PrimaryReplicaSyncer extends AbstractComponent {
         protected void doRun() throws Exception {
             long size = 0;
             final List<Translog.Operation> operations = new ArrayList<>();
+            // the operations as they were read from the translog, only used if they are available for all operations of the batch
+            final List<BytesReference> serializedOperations = new ArrayList<>();
 
             task.setPhase("collecting_ops");
             task.setResyncedOperations(totalSentOps.get());
@@ -246,6 +255,11 @@ public class PrimaryReplicaSyncer extends AbstractComponent {
                     continue;
                 }
                 operations.add(operation);
+                final BytesReference serializedOperation = snapshot.serializedOperation();
+                if (serializedOperation != null) {
+                    // strip the size and checksum, resync requests only carry the operations
+                    serializedOperations.add(serializedOperation.slice(Integer.BYTES, serializedOperation.length() - 2 * Integer.BYTES));
+                }
                 size += operation.estimateSize();
                 totalSentOps.incrementAndGet();
 
@@ -259,8 +273,10 @@ public class PrimaryReplicaSyncer extends AbstractComponent {
             // have to send sync request even in case of there are no operations to sync - have to sync trimmedAboveSeqNo at least
             if (!operations.isEmpty() || trimmedAboveSeqNo != SequenceNumbers.UNASSIGNED_SEQ_NO) {
                 task.setPhase("sending_ops");
+                final BytesReference serialized = operations.isEmpty() == false && serializedOperations.size() == operations.size() ?
+                    new CompositeBytesReference(serializedOperations.toArray(new BytesReference[0])) : null;
                 ResyncReplicationRequest request =
-                    new ResyncReplicationRequest(shardId, trimmedAboveSeqNo, operations.toArray(EMPTY_ARRAY));
+                    new ResyncReplicationRequest(shardId, trimmedAboveSeqNo, operations.toArray(EMPTY_ARRAY), serialized);
                 logger.trace("{} sending batch of [{}][{}] (total sent: [{}], skipped: [{}])", shardId, operations.size(),
                     new ByteSizeValue(size), totalSentOps.get(), totalSkippedOps.get());
                 firstMessage.set(false);
@@ -21,6 +21,7 @@ package org.elasticsearch.index.shard;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.search.internal.ReaderLease;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.transport.TransportRequest;
 
@@ -114,6 +115,20 @@ public interface SearchOperationListener {
      */
     default void validateSearchContext(SearchContext context, TransportRequest transportRequest) {}
 
+    /**
+     * Executed when a new {@link ReaderLease} was opened, before any request can use it
+     * @param lease the opened reader lease
+     */
+    default void onNewReaderLease(ReaderLease lease) {}
+
+    /**
+     * Executed prior to searching or freeing a {@link ReaderLease} on behalf of a request. If the request is not allowed to use the
+     * lease a runtime exception can be thrown, which will prevent the lease from being used.
+     * @param lease the reader lease retrieved from the open leases
+     * @param transportRequest the request that is going to search or free the reader lease
+     */
+    default void validateReaderLease(ReaderLease lease, TransportRequest transportRequest) {}
+
     /**
      * A Composite listener that multiplexes calls to each of the listeners methods.
      */
@@ -248,5 +263,29 @@ public interface SearchOperationListener {
             }
             ExceptionsHelper.reThrowIfNotNull(exception);
         }
+
+        @Override
+        public void onNewReaderLease(ReaderLease lease) {
+            for (SearchOperationListener listener : listeners) {
+                try {
+                    listener.onNewReaderLease(lease);
+                } catch (Exception e) {
+                    logger.warn(() -> new ParameterizedMessage("onNewReaderLease listener [{}] failed", listener), e);
+                }
+            }
+        }
+
+        @Override
+        public void validateReaderLease(ReaderLease lease, TransportRequest request) {
+            Exception exception = null;
+            for (SearchOperationListener listener : listeners) {
+                try {
+                    listener.validateReaderLease(lease, request);
+                } catch (Exception e) {
+                    exception = ExceptionsHelper.useOrSuppress(exception, e);
+                }
+            }
+            ExceptionsHelper.reThrowIfNotNull(exception);
+        }
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.PointValues;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The min and max values of the date and integral numeric fields of a shard, which the coordinating node caches to rewrite range
+ * queries without asking the shard. They are only valid as long as the metadata of the index has the version they were computed at.
+ */
+public final class ShardFieldRanges implements Writeable {
+
+    private final long indexMetaDataVersion;
+    private final Map<String, FieldRange> ranges;
+
+    public ShardFieldRanges(long indexMetaDataVersion, Map<String, FieldRange> ranges) {
+        this.indexMetaDataVersion = indexMetaDataVersion;
+        this.ranges = Collections.unmodifiableMap(ranges);
+    }
+
+    public ShardFieldRanges(StreamInput in) throws IOException {
+        indexMetaDataVersion = in.readVLong();
+        ranges = Collections.unmodifiableMap(in.readMap(StreamInput::readString, FieldRange::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(indexMetaDataVersion);
+        out.writeMap(ranges, StreamOutput::writeString, (o, range) -> range.writeTo(o));
+    }
+
+    /**
+     * Computes the ranges of the indexed date and integral numeric fields of the provided reader.
+     */
+    public static ShardFieldRanges compute(long indexMetaDataVersion, MapperService mapperService, IndexReader reader)
+            throws IOException {
+        final Map<String, FieldRange> ranges = new HashMap<>();
+        for (MappedFieldType fieldType : mapperService.fieldTypes()) {
+            if (fieldType.indexOptions() == IndexOptions.NONE) {
+                continue;
+            }
+            final String format;
+            final Locale locale;
+            if (fieldType instanceof DateFieldMapper.DateFieldType) {
+                final FormatDateTimeFormatter formatter = ((DateFieldMapper.DateFieldType) fieldType).dateTimeFormatter();
+                format = formatter.format();
+                locale = formatter.locale();
+            } else if (fieldType instanceof NumberFieldMapper.NumberFieldType && isIntegral(fieldType.typeName())) {
+                format = null;
+                locale = null;
+            } else {
+                continue;
+            }
+            final String field = fieldType.name();
+            if (PointValues.size(reader, field) == 0) {
+                ranges.put(field, new FieldRange(fieldType.typeName(), format, locale, false, 0, 0));
+            } else {
+                final long min = decode(PointValues.getMinPackedValue(reader, field));
+                final long max = decode(PointValues.getMaxPackedValue(reader, field));
+                ranges.put(field, new FieldRange(fieldType.typeName(), format, locale, true, min, max));
+            }
+        }
+        return new ShardFieldRanges(indexMetaDataVersion, ranges);
+    }
+
+    private static boolean isIntegral(String typeName) {
+        return typeName.equals(NumberFieldMapper.NumberType.LONG.typeName())
+            || typeName.equals(NumberFieldMapper.NumberType.INTEGER.typeName())
+            || typeName.equals(NumberFieldMapper.NumberType.SHORT.typeName())
+            || typeName.equals(NumberFieldMapper.NumberType.BYTE.typeName());
+    }
+
+    private static long decode(byte[] packedValue) {
+        // dates and longs are indexed as long points, the other integral types as int points
+        return packedValue.length == Long.BYTES ? LongPoint.decodeDimension(packedValue, 0) : IntPoint.decodeDimension(packedValue, 0);
+    }
+
+    /**
+     * The version of the metadata of the index at which the ranges were computed.
+     */
+    public long getIndexMetaDataVersion() {
+        return indexMetaDataVersion;
+    }
+
+    /**
+     * Returns the range of the provided field, or <code>null</code> if the field is not mapped or its values are not summarized.
+     */
+    @Nullable
+    public FieldRange getRange(String field) {
+        return ranges.get(field);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ShardFieldRanges that = (ShardFieldRanges) o;
+        return indexMetaDataVersion == that.indexMetaDataVersion && ranges.equals(that.ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexMetaDataVersion, ranges);
+    }
+
+    /**
+     * The min and max values of a field, along with the format and the locale of date fields that bounds of queries are parsed with.
+     */
+    public static final class FieldRange implements Writeable {
+        private final String type;
+        @Nullable
+        private final String format;
+        @Nullable
+        private final Locale locale;
+        private final boolean hasValues;
+        private final long min;
+        private final long max;
+
+        public FieldRange(String type, @Nullable String format, @Nullable Locale locale, boolean hasValues, long min, long max) {
+            this.type = Objects.requireNonNull(type);
+            this.format = format;
+            this.locale = locale;
+            this.hasValues = hasValues;
+            this.min = min;
+            this.max = max;
+        }
+
+        FieldRange(StreamInput in) throws IOException {
+            type = in.readString();
+            format = in.readOptionalString();
+            final String languageTag = in.readOptionalString();
+            locale = languageTag == null ? null : Locale.forLanguageTag(languageTag);
+            hasValues = in.readBoolean();
+            min = in.readZLong();
+            max = in.readZLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(type);
+            out.writeOptionalString(format);
+            out.writeOptionalString(locale == null ? null : locale.toLanguageTag());
+            out.writeBoolean(hasValues);
+            out.writeZLong(min);
+            out.writeZLong(max);
+        }
+
+        /**
+         * The type of the field, as in its mapping.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * The format of a date field, <code>null</code> for numeric fields.
+         */
+        @Nullable
+        public String getFormat() {
+            return format;
+        }
+
+        /**
+         * The locale of a date field, <code>null</code> for numeric fields.
+         */
+        @Nullable
+        public Locale getLocale() {
+            return locale;
+        }
+
+        /**
+         * Whether any document of the shard has a value for the field, the min and max values are meaningless otherwise.
+         */
+        public boolean hasValues() {
+            return hasValues;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FieldRange that = (FieldRange) o;
+            return hasValues == that.hasValues
+                && min == that.min
+                && max == that.max
+                && type.equals(that.type)
+                && Objects.equals(format, that.format)
+                && Objects.equals(locale, that.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, format, locale, hasValues, min, max);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time a shard spent on the different stages of writing documents: parsing documents, adding them to Lucene, which
+ * includes analysis, writing them to the translog and merging segments. The times are cumulative since the shard, or its engine
+ * for all stages but parsing, was created.
+ */
+public class WriteLoadStats implements Writeable, ToXContentFragment {
+
+    private final long parseTimeInNanos;
+    private final long indexTimeInNanos;
+    private final long translogTimeInNanos;
+    private final long mergeTimeInNanos;
+
+    public WriteLoadStats(long parseTimeInNanos, long indexTimeInNanos, long translogTimeInNanos, long mergeTimeInNanos) {
+        this.parseTimeInNanos = parseTimeInNanos;
+        this.indexTimeInNanos = indexTimeInNanos;
+        this.translogTimeInNanos = translogTimeInNanos;
+        this.mergeTimeInNanos = mergeTimeInNanos;
+    }
+
+    public WriteLoadStats(StreamInput in) throws IOException {
+        parseTimeInNanos = in.readVLong();
+        indexTimeInNanos = in.readVLong();
+        translogTimeInNanos = in.readVLong();
+        mergeTimeInNanos = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(parseTimeInNanos);
+        out.writeVLong(indexTimeInNanos);
+        out.writeVLong(translogTimeInNanos);
+        out.writeVLong(mergeTimeInNanos);
+    }
+
+    /**
+     * The time spent on parsing documents into Lucene documents.
+     */
+    public long getParseTimeInNanos() {
+        return parseTimeInNanos;
+    }
+
+    /**
+     * The time spent on adding documents to and deleting documents from Lucene, including analysis.
+     */
+    public long getIndexTimeInNanos() {
+        return indexTimeInNanos;
+    }
+
+    /**
+     * The time spent on adding operations to the translog.
+     */
+    public long getTranslogTimeInNanos() {
+        return translogTimeInNanos;
+    }
+
+    /**
+     * The time spent on merging segments, excluding the time merges were throttled or stopped.
+     */
+    public long getMergeTimeInNanos() {
+        return mergeTimeInNanos;
+    }
+
+    /**
+     * The total time spent on all stages.
+     */
+    public long getTotalTimeInNanos() {
+        return parseTimeInNanos + indexTimeInNanos + translogTimeInNanos + mergeTimeInNanos;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.WRITE_LOAD);
+        builder.humanReadableField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, toTimeValue(getTotalTimeInNanos()));
+        builder.humanReadableField(Fields.PARSE_TIME_IN_MILLIS, Fields.PARSE_TIME, toTimeValue(parseTimeInNanos));
+        builder.humanReadableField(Fields.INDEX_TIME_IN_MILLIS, Fields.INDEX_TIME, toTimeValue(indexTimeInNanos));
+        builder.humanReadableField(Fields.TRANSLOG_TIME_IN_MILLIS, Fields.TRANSLOG_TIME, toTimeValue(translogTimeInNanos));
+        builder.humanReadableField(Fields.MERGE_TIME_IN_MILLIS, Fields.MERGE_TIME, toTimeValue(mergeTimeInNanos));
+        builder.endObject();
+        return builder;
+    }
+
+    private static TimeValue toTimeValue(long nanos) {
+        return new TimeValue(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WriteLoadStats that = (WriteLoadStats) o;
+        return parseTimeInNanos == that.parseTimeInNanos
+            && indexTimeInNanos == that.indexTimeInNanos
+            && translogTimeInNanos == that.translogTimeInNanos
+            && mergeTimeInNanos == that.mergeTimeInNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(parseTimeInNanos, indexTimeInNanos, translogTimeInNanos, mergeTimeInNanos);
+    }
+
+    static final class Fields {
+        static final String WRITE_LOAD = "write_load";
+        static final String TOTAL_TIME = "total_time";
+        static final String TOTAL_TIME_IN_MILLIS = "total_time_in_millis";
+        static final String PARSE_TIME = "parse_time";
+        static final String PARSE_TIME_IN_MILLIS = "parse_time_in_millis";
+        static final String INDEX_TIME = "index_time";
+        static final String INDEX_TIME_IN_MILLIS = "index_time_in_millis";
+        static final String TRANSLOG_TIME = "translog_time";
+        static final String TRANSLOG_TIME_IN_MILLIS = "translog_time_in_millis";
+        static final String MERGE_TIME = "merge_time";
+        static final String MERGE_TIME_IN_MILLIS = "merge_time_in_millis";
+    }
+}
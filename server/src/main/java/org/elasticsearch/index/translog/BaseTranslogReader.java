@@ -110,15 +110,24 @@ public abstract class BaseTranslogReader implements Comparable<BaseTranslogReade
 
     protected Translog.Operation read(BufferedChecksumStreamInput inStream) throws IOException {
         final Translog.Operation op = Translog.readOperation(inStream);
+        ensurePrimaryTermIsValid(op);
+        return op;
+    }
+
+    protected final void ensurePrimaryTermIsValid(Translog.Operation op) {
         if (op.primaryTerm() > getPrimaryTerm() && getPrimaryTerm() != TranslogHeader.UNKNOWN_PRIMARY_TERM) {
             throw new TranslogCorruptedException(
                     path.toString(),
                     "operation's term is newer than translog header term; " +
                     "operation term[" + op.primaryTerm() + "], translog header term [" + getPrimaryTerm() + "]");
         }
-        return op;
     }
 
+    /**
+     * Returns the index of the blocks of this generation, only called for generations that were written with a compressing codec.
+     */
+    abstract TranslogCompression.BlockIndex getBlockIndex() throws IOException;
+
     /**
      * reads bytes at position into the given buffer, filling it.
      */
@@ -148,6 +157,9 @@ public abstract class BaseTranslogReader implements Comparable<BaseTranslogReade
      */
     Translog.Operation read(Translog.Location location) throws IOException {
         assert location.generation == this.generation : "generation mismatch expected: " + generation + " got: " + location.generation;
+        if (header.getCodec() != Translog.Codec.DEFAULT) {
+            return read(TranslogCompression.readOperation(this, getBlockIndex(), location));
+        }
         ByteBuffer buffer = ByteBuffer.allocate(location.size);
         return read(checksummedStream(buffer, location.translogLocation, location.size, null));
     }
@@ -20,6 +20,7 @@
 package org.elasticsearch.index.translog;
 
 import com.carrotsearch.hppc.LongObjectHashMap;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.seqno.CountedBitSet;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 
@@ -86,6 +87,11 @@ final class MultiSnapshot implements Translog.Snapshot {
         return null;
     }
 
+    @Override
+    public BytesReference serializedOperation() {
+        return index >= 0 ? translogs[index].serializedOperation() : null;
+    }
+
     @Override
     public void close() throws IOException {
         onClose.close();
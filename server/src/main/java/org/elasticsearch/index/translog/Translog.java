@@ -27,6 +27,7 @@ import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -119,6 +120,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final TranslogConfig config;
+    private final Codec codec;
     private final LongSupplier globalCheckpointSupplier;
     private final LongSupplier primaryTermSupplier;
     private final String translogUUID;
@@ -146,6 +148,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         final LongSupplier globalCheckpointSupplier, final LongSupplier primaryTermSupplier) throws IOException {
         super(config.getShardId(), config.getIndexSettings());
         this.config = config;
+        this.codec = config.getIndexSettings().getTranslogCodec();
         this.globalCheckpointSupplier = globalCheckpointSupplier;
         this.primaryTermSupplier = primaryTermSupplier;
         this.deletionPolicy = deletionPolicy;
@@ -169,7 +172,10 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             //
             // For this to happen we must have already copied the translog.ckp file into translog-gen.ckp so we first check if that file exists
             // if not we don't even try to clean it up and wait until we fail creating it
-            assert Files.exists(nextTranslogFile) == false || Files.size(nextTranslogFile) <= TranslogHeader.headerSizeInBytes(translogUUID) : "unexpected translog file: [" + nextTranslogFile + "]";
+            // the file might have been written with a different codec, the header of non-default codecs is the largest
+            assert Files.exists(nextTranslogFile) == false
+                || Files.size(nextTranslogFile) <= TranslogHeader.headerSizeInBytes(translogUUID, Codec.BEST_COMPRESSION)
+                : "unexpected translog file: [" + nextTranslogFile + "]";
             if (Files.exists(currentCheckpointFile) // current checkpoint is already copied
                 && Files.deleteIfExists(nextTranslogFile)) { // delete it and log a warning
                 logger.warn("deleted previously created, but not yet committed, next generation [{}]. This can happen due to a tragic exception when creating a new generation", nextTranslogFile.getFileName());
@@ -437,8 +443,9 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      */
     TranslogWriter createWriter(long fileGeneration) throws IOException {
         final TranslogWriter writer = createWriter(fileGeneration, getMinFileGeneration(), globalCheckpointSupplier.getAsLong());
-        assert writer.sizeInBytes() == DEFAULT_HEADER_SIZE_IN_BYTES : "Mismatch translog header size; " +
-            "empty translog size [" + writer.sizeInBytes() + ", header size [" + DEFAULT_HEADER_SIZE_IN_BYTES + "]";
+        assert writer.sizeInBytes() == TranslogHeader.headerSizeInBytes(translogUUID, codec) : "Mismatch translog header size; " +
+            "empty translog size [" + writer.sizeInBytes() + ", header size [" + TranslogHeader.headerSizeInBytes(translogUUID, codec)
+            + "]";
         return writer;
     }
 
@@ -462,7 +469,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                 getChannelFactory(),
                 config.getBufferSize(),
                 initialMinTranslogGen, initialGlobalCheckpoint,
-                globalCheckpointSupplier, this::getMinFileGeneration, primaryTermSupplier.getAsLong());
+                globalCheckpointSupplier, this::getMinFileGeneration, primaryTermSupplier.getAsLong(), codec);
         } catch (final IOException e) {
             throw new TranslogException(shardId, "failed to create new translog file", e);
         }
@@ -479,24 +486,11 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public Location add(final Operation operation) throws IOException {
         final ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
         try {
-            final long start = out.position();
-            out.skip(Integer.BYTES);
-            writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
-            final long end = out.position();
-            final int operationSize = (int) (end - Integer.BYTES - start);
-            out.seek(start);
-            out.writeInt(operationSize);
-            out.seek(end);
+            writeOperationWithSize(out, operation);
             final ReleasablePagedBytesReference bytes = out.bytes();
             try (ReleasableLock ignored = readLock.acquire()) {
                 ensureOpen();
-                if (operation.primaryTerm() > current.getPrimaryTerm()) {
-                    assert false :
-                        "Operation term is newer than the current term; "
-                            + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]";
-                    throw new IllegalArgumentException("Operation term is newer than the current term; "
-                        + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]");
-                }
+                ensureValidPrimaryTerm(operation);
                 return current.add(bytes, operation.seqNo());
             }
         } catch (final AlreadyClosedException | IOException ex) {
@@ -510,6 +504,71 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         }
     }
 
+    /**
+     * Adds the given operations to the transaction log as a single contiguous block. Each operation is still written with its own
+     * size and checksum and can be read back individually, but all operations are serialized up front and written to the current
+     * generation at once.
+     *
+     * @param operations the operations to add
+     * @return the locations of the operations in the translog, in the same order as the given operations
+     * @throws IOException if adding the operations to the translog resulted in an I/O exception
+     */
+    public Location[] add(final List<Operation> operations) throws IOException {
+        final ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
+        try {
+            final int[] sizes = new int[operations.size()];
+            final long[] seqNos = new long[operations.size()];
+            for (int i = 0; i < operations.size(); i++) {
+                sizes[i] = writeOperationWithSize(out, operations.get(i));
+                seqNos[i] = operations.get(i).seqNo();
+            }
+            final ReleasablePagedBytesReference bytes = out.bytes();
+            try (ReleasableLock ignored = readLock.acquire()) {
+                ensureOpen();
+                for (Operation operation : operations) {
+                    ensureValidPrimaryTerm(operation);
+                }
+                return current.add(bytes, sizes, seqNos);
+            }
+        } catch (final AlreadyClosedException | IOException ex) {
+            closeOnTragicEvent(ex);
+            throw ex;
+        } catch (final Exception ex) {
+            closeOnTragicEvent(ex);
+            throw new TranslogException(shardId, "Failed to write [" + operations.size() + "] operations", ex);
+        } finally {
+            Releasables.close(out);
+        }
+    }
+
+    /**
+     * Writes the given operation including its size and checksum to the given output.
+     *
+     * @return the number of bytes that were written
+     */
+    private int writeOperationWithSize(final BytesStreamOutput out, final Operation operation) throws IOException {
+        final long start = out.position();
+        out.skip(Integer.BYTES);
+        writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+        final long end = out.position();
+        final int operationSize = (int) (end - Integer.BYTES - start);
+        out.seek(start);
+        out.writeInt(operationSize);
+        out.seek(end);
+        return (int) (end - start);
+    }
+
+    private void ensureValidPrimaryTerm(final Operation operation) {
+        assert readLock.isHeldByCurrentThread() || writeLock.isHeldByCurrentThread();
+        if (operation.primaryTerm() > current.getPrimaryTerm()) {
+            assert false :
+                "Operation term is newer than the current term; "
+                    + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]";
+            throw new IllegalArgumentException("Operation term is newer than the current term; "
+                + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]");
+        }
+    }
+
     /**
      * Tests whether or not the translog generation should be rolled to a new generation. This test
      * is based on the size of the current generation compared to the configured generation
@@ -534,7 +593,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
              * 1. Translog.Location's compareTo doesn't actually pay attention to size even though it's equals method does.
              * 2. It feels more right to return a *position* that is before the next write's position rather than rely on the size.
              */
-            return new Location(current.generation, current.sizeInBytes() - 1, Integer.MAX_VALUE);
+            return new Location(current.generation, current.getLocationOffset() - 1, Integer.MAX_VALUE);
         }
     }
 
@@ -568,7 +627,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             }
             TranslogSnapshot[] snapshots = Stream.concat(readers.stream(), Stream.of(current))
                 .filter(reader -> reader.getGeneration() >= minGeneration)
-                .map(BaseTranslogReader::newSnapshot).toArray(TranslogSnapshot[]::new);
+                .map(this::newReaderSnapshot).toArray(TranslogSnapshot[]::new);
             return newMultiSnapshot(snapshots);
         }
     }
@@ -606,12 +665,23 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public Snapshot newSnapshotFromMinSeqNo(long minSeqNo) throws IOException {
         try (ReleasableLock ignored = readLock.acquire()) {
             ensureOpen();
-            TranslogSnapshot[] snapshots = readersAboveMinSeqNo(minSeqNo).map(BaseTranslogReader::newSnapshot)
+            TranslogSnapshot[] snapshots = readersAboveMinSeqNo(minSeqNo).map(this::newReaderSnapshot)
                 .toArray(TranslogSnapshot[]::new);
             return newMultiSnapshot(snapshots);
         }
     }
 
+    /**
+     * Creates a snapshot of the given reader. Generations that are not written to anymore are read through a memory mapping if
+     * {@link IndexSettings#INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING} is enabled.
+     */
+    private TranslogSnapshot newReaderSnapshot(BaseTranslogReader reader) {
+        if (reader instanceof TranslogReader && indexSettings().isTranslogMmapSnapshots()) {
+            return new TranslogSnapshot(reader, reader.sizeInBytes(), true);
+        }
+        return reader.newSnapshot();
+    }
+
     private Snapshot newMultiSnapshot(TranslogSnapshot[] snapshots) throws IOException {
         final Closeable onClose;
         if (snapshots.length == 0) {
@@ -904,6 +974,16 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
          */
         Translog.Operation next() throws IOException;
 
+        /**
+         * Returns the serialized form of the operation that was last returned by {@link #next()} as it is stored in the translog,
+         * that is the operation's size, the operation and its checksum, which has already been verified. The bytes are in the
+         * format written by {@link #writeOperations(StreamOutput, List)} and can be sent as-is instead of serializing the
+         * operation again. Returns <code>null</code> if the snapshot doesn't expose the serialized form of that operation.
+         */
+        default BytesReference serializedOperation() {
+            return null;
+        }
+
     }
 
     /**
@@ -1409,6 +1489,44 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         }
     }
 
+    /**
+     * The codec new translog generations are written with. The codec of a generation is recorded in its {@link TranslogHeader}
+     * such that generations written with different codecs can be read. Operations are serialized the same way with every codec,
+     * the codec only determines how they are stored in the file.
+     */
+    public enum Codec {
+
+        /**
+         * Operations are written uncompressed.
+         */
+        DEFAULT((byte) 0),
+        /**
+         * Operations are compressed with DEFLATE in blocks, see {@link TranslogCompression}.
+         */
+        BEST_COMPRESSION((byte) 1);
+
+        private final byte id;
+
+        Codec(byte id) {
+            this.id = id;
+        }
+
+        public byte id() {
+            return id;
+        }
+
+        public static Codec fromId(byte id) {
+            switch (id) {
+                case 0:
+                    return DEFAULT;
+                case 1:
+                    return BEST_COMPRESSION;
+                default:
+                    throw new IllegalArgumentException("no translog codec mapped for [" + id + "]");
+            }
+        }
+    }
+
     public enum Durability {
 
         /**
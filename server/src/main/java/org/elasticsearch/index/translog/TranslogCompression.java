@@ -0,0 +1,297 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the blocks of translog files written with {@link Translog.Codec#BEST_COMPRESSION}. Operations are
+ * serialized like in uncompressed files, that is their size, the operation and its checksum, and the serialized operations that
+ * are flushed from the writer's buffer together are compressed as one block. A block is written as the int length of the rest of
+ * the block, the int length of the uncompressed operations, the raw DEFLATE data and a CRC32 checksum of the uncompressed length
+ * and the DEFLATE data. Operations never span blocks.
+ * <p>
+ * A {@link Translog.Location} of a compressed generation is the position of the operation in the uncompressed stream of
+ * operations, which starts right after the header, while the checkpoint of such a generation records the length of the file.
+ * Decompressed operations are in the same format as operations of uncompressed generations and can therefore be shipped to
+ * other nodes as they are, see {@link Translog.Snapshot#serializedOperation()}.
+ * <p>
+ * Deflaters and inflaters are expensive to create and hold native memory, they are therefore kept per thread similar to
+ * {@link org.elasticsearch.common.hash.MessageDigests}.
+ */
+final class TranslogCompression {
+
+    /**
+     * The number of bytes that precede the compressed data of a block, the length of the block and the uncompressed length
+     */
+    static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
+    // the same level that Lucene uses for the best_compression codec of stored fields
+    private static final int LEVEL = 6;
+    private static final int BUFFER_SIZE = 4096;
+    // larger buffers are not kept around for the next block
+    private static final int MAX_CACHED_BUFFER_SIZE = 1 << 20;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(LEVEL, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private TranslogCompression() {}
+
+    /**
+     * Compresses the given serialized operations into a single block and writes it to the given stream.
+     *
+     * @return the number of bytes that were written
+     */
+    static int writeBlock(byte[] operations, int offset, int length, OutputStream out) throws IOException {
+        assert length > 0 : "blocks must not be empty";
+        final Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(operations, offset, length);
+        deflater.finish();
+        byte[] buffer = BUFFER.get();
+        // the compressed data is written after the block header and followed by the checksum
+        int end = BLOCK_HEADER_SIZE;
+        while (deflater.finished() == false) {
+            if (end + Integer.BYTES >= buffer.length) {
+                buffer = Arrays.copyOf(buffer, ArrayUtil.oversize(end + Integer.BYTES + 1, Byte.BYTES));
+            }
+            end += deflater.deflate(buffer, end, buffer.length - end - Integer.BYTES);
+        }
+        final ByteBuffer block = ByteBuffer.wrap(buffer);
+        // the length of the rest of the block is the uncompressed length, the compressed data and the checksum
+        block.putInt(0, end);
+        block.putInt(Integer.BYTES, length);
+        final CRC32 checksum = new CRC32();
+        checksum.update(buffer, Integer.BYTES, end - Integer.BYTES);
+        block.putInt(end, (int) checksum.getValue());
+        end += Integer.BYTES;
+        out.write(buffer, 0, end);
+        if (buffer.length <= MAX_CACHED_BUFFER_SIZE) {
+            BUFFER.set(buffer);
+        }
+        return end;
+    }
+
+    /**
+     * Reads and decompresses the block at the given position of the given file.
+     *
+     * @param reader   the reader of the file
+     * @param position the position of the block in the file
+     */
+    static Block readBlock(BaseTranslogReader reader, long position) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        reader.readBytes(header, position);
+        header.flip();
+        final int blockLength = header.getInt();
+        final int uncompressedLength = header.getInt();
+        validateBlock(reader, position, blockLength, uncompressedLength);
+        // the compressed data and the checksum
+        final ByteBuffer compressed = ByteBuffer.allocate(blockLength - Integer.BYTES);
+        reader.readBytes(compressed, position + BLOCK_HEADER_SIZE);
+        final int compressedLength = compressed.capacity() - Integer.BYTES;
+        final CRC32 checksum = new CRC32();
+        checksum.update(header.array(), Integer.BYTES, Integer.BYTES);
+        checksum.update(compressed.array(), 0, compressedLength);
+        final long expectedChecksum = checksum.getValue();
+        final long readChecksum = Integer.toUnsignedLong(compressed.getInt(compressedLength));
+        if (readChecksum != expectedChecksum) {
+            throw new TranslogCorruptedException(reader.path().toString(), "checksum verification failed - expected: 0x" +
+                Long.toHexString(expectedChecksum) + ", got: 0x" + Long.toHexString(readChecksum));
+        }
+        final byte[] uncompressed = new byte[uncompressedLength];
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedLength);
+        int read = 0;
+        try {
+            while (read < uncompressedLength) {
+                final int inflated = inflater.inflate(uncompressed, read, uncompressedLength - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new TranslogCorruptedException(reader.path().toString(), "failed to decompress block", e);
+        }
+        if (read != uncompressedLength) {
+            throw new TranslogCorruptedException(reader.path().toString(), "compressed block is truncated, expected ["
+                + uncompressedLength + "] uncompressed bytes but got [" + read + "]");
+        }
+        return new Block(uncompressed, Integer.BYTES + blockLength);
+    }
+
+    /**
+     * Returns the size of the operation that starts at the given offset of a decompressed block, including the size itself.
+     */
+    static int readOperationSize(BaseTranslogReader reader, byte[] block, int offset) {
+        if (block.length - offset < Integer.BYTES) {
+            throw new TranslogCorruptedException(reader.path().toString(), "operation size is truncated at block offset [" + offset
+                + "] of [" + block.length + "]");
+        }
+        // Add an extra 4 to account for the operation size integer itself
+        final int size = ByteBuffer.wrap(block).getInt(offset) + Integer.BYTES;
+        final int maxSize = block.length - offset;
+        if (size < 0 || size > maxSize) {
+            throw new TranslogCorruptedException(reader.path().toString(),
+                "operation size is corrupted must be [0.." + maxSize + "] but was: " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns a stream to read the serialized operation at the given location of a compressed generation from.
+     */
+    static BufferedChecksumStreamInput readOperation(BaseTranslogReader reader, BlockIndex index, Translog.Location location)
+        throws IOException {
+        final long[] start = index.floor(location.translogLocation);
+        if (start == null) {
+            throw new TranslogCorruptedException(reader.path().toString(), "no block found for location " + location);
+        }
+        // the index is sparse, skip over the blocks before the block that contains the location
+        long logicalOffset = start[0];
+        long position = start[1];
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        while (true) {
+            header.clear();
+            reader.readBytes(header, position);
+            header.flip();
+            final int blockLength = header.getInt();
+            final int uncompressedLength = header.getInt();
+            validateBlock(reader, position, blockLength, uncompressedLength);
+            if (location.translogLocation < logicalOffset + uncompressedLength) {
+                break;
+            }
+            logicalOffset += uncompressedLength;
+            position += Integer.BYTES + blockLength;
+        }
+        final Block block = readBlock(reader, position);
+        final int offset = Math.toIntExact(location.translogLocation - logicalOffset);
+        if (location.size > block.bytes.length - offset) {
+            throw new TranslogCorruptedException(reader.path().toString(), "location " + location + " exceeds the block at ["
+                + position + "] that holds [" + logicalOffset + ".." + (logicalOffset + block.bytes.length) + "]");
+        }
+        return new BufferedChecksumStreamInput(new ByteBufferStreamInput(ByteBuffer.wrap(block.bytes, offset, location.size)),
+            reader.path().toString());
+    }
+
+    private static void validateBlock(BaseTranslogReader reader, long position, int blockLength, int uncompressedLength) {
+        // the block holds at least the uncompressed length and the checksum
+        final long maxLength = reader.sizeInBytes() - position - Integer.BYTES;
+        if (blockLength < 2 * Integer.BYTES || blockLength > maxLength) {
+            throw new TranslogCorruptedException(reader.path().toString(),
+                "block length is corrupted must be [8.." + maxLength + "] but was: " + blockLength);
+        }
+        if (uncompressedLength <= 0) {
+            throw new TranslogCorruptedException(reader.path().toString(),
+                "uncompressed block length must be positive but was: " + uncompressedLength);
+        }
+    }
+
+    /**
+     * A decompressed block.
+     */
+    static final class Block {
+        /** the serialized operations of the block */
+        final byte[] bytes;
+        /** the number of bytes the block takes in the file */
+        final int sizeInBytes;
+
+        Block(byte[] bytes, int sizeInBytes) {
+            this.bytes = bytes;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+    /**
+     * A sparse index of the blocks of a compressed generation that maps positions in the uncompressed stream of operations to the
+     * position of the block in the file. Only the first block of every {@link #INTERVAL} bytes of the file is indexed, such that
+     * the index stays small if operations are synced one by one. Looking up a location needs to skip over the headers of the
+     * blocks that are not indexed.
+     */
+    static final class BlockIndex {
+
+        static final long INTERVAL = 64 * 1024;
+
+        private long[] logicalOffsets = new long[8];
+        private long[] physicalOffsets = new long[8];
+        private int size;
+
+        /**
+         * Creates an index of the blocks of the given file that start between the given positions.
+         */
+        static BlockIndex build(BaseTranslogReader reader, long logicalOffset, long from, long to) throws IOException {
+            final BlockIndex index = new BlockIndex();
+            final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            long position = from;
+            while (position < to) {
+                header.clear();
+                reader.readBytes(header, position);
+                header.flip();
+                final int blockLength = header.getInt();
+                final int uncompressedLength = header.getInt();
+                validateBlock(reader, position, blockLength, uncompressedLength);
+                index.onBlock(logicalOffset, position);
+                logicalOffset += uncompressedLength;
+                position += Integer.BYTES + blockLength;
+            }
+            return index;
+        }
+
+        /**
+         * Called for every block that is appended to the file, in order.
+         */
+        synchronized void onBlock(long logicalOffset, long physicalOffset) {
+            assert size == 0 || logicalOffsets[size - 1] < logicalOffset : "blocks must be added in order";
+            if (size == 0 || physicalOffset - physicalOffsets[size - 1] >= INTERVAL) {
+                if (size == logicalOffsets.length) {
+                    logicalOffsets = ArrayUtil.grow(logicalOffsets, size + 1);
+                    physicalOffsets = ArrayUtil.grow(physicalOffsets, size + 1);
+                }
+                logicalOffsets[size] = logicalOffset;
+                physicalOffsets[size] = physicalOffset;
+                size++;
+            }
+        }
+
+        /**
+         * Returns the position in the uncompressed stream and the position in the file of the last indexed block that starts at or
+         * before the given position in the uncompressed stream, or <code>null</code> if there is no such block.
+         */
+        synchronized long[] floor(long logicalOffset) {
+            int index = Arrays.binarySearch(logicalOffsets, 0, size, logicalOffset);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return index < 0 ? null : new long[] { logicalOffsets[index], physicalOffsets[index] };
+        }
+    }
+}
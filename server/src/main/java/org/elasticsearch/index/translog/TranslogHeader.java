@@ -43,12 +43,14 @@ final class TranslogHeader {
     public static final int VERSION_CHECKSUMS    = 1; // pre-2.0 - unsupported
     public static final int VERSION_CHECKPOINTS  = 2; // added checkpoints
     public static final int VERSION_PRIMARY_TERM = 3; // added primary term
-    public static final int CURRENT_VERSION = VERSION_PRIMARY_TERM;
+    public static final int VERSION_CODEC        = 4; // added the codec of the operations, only used for non-default codecs
+    public static final int CURRENT_VERSION = VERSION_CODEC;
 
     public static final long UNKNOWN_PRIMARY_TERM = 0L;
 
     private final String translogUUID;
     private final long primaryTerm;
+    private final Translog.Codec codec;
     private final int headerSizeInBytes;
 
     /**
@@ -60,13 +62,27 @@ final class TranslogHeader {
      *                     All operations' terms in this translog file are enforced to be at most this term.
      */
     TranslogHeader(String translogUUID, long primaryTerm) {
-        this(translogUUID, primaryTerm, headerSizeInBytes(translogUUID));
+        this(translogUUID, primaryTerm, Translog.Codec.DEFAULT);
+    }
+
+    /**
+     * Creates a new translog header with the given uuid, primary term and codec.
+     *
+     * @param translogUUID this UUID is used to prevent accidental recovery from a transaction log that belongs to a
+     *                     different engine
+     * @param primaryTerm  the primary term of the owning index shard when creating (eg. rolling) this translog file.
+     *                     All operations' terms in this translog file are enforced to be at most this term.
+     * @param codec        the codec all operations in this translog file are written with
+     */
+    TranslogHeader(String translogUUID, long primaryTerm, Translog.Codec codec) {
+        this(translogUUID, primaryTerm, codec, headerSizeInBytes(translogUUID, codec));
         assert primaryTerm >= 0 : "Primary term must be non-negative; term [" + primaryTerm + "]";
     }
 
-    private TranslogHeader(String translogUUID, long primaryTerm, int headerSizeInBytes) {
+    private TranslogHeader(String translogUUID, long primaryTerm, Translog.Codec codec, int headerSizeInBytes) {
         this.translogUUID = translogUUID;
         this.primaryTerm = primaryTerm;
+        this.codec = codec;
         this.headerSizeInBytes = headerSizeInBytes;
     }
 
@@ -82,6 +98,13 @@ final class TranslogHeader {
         return primaryTerm;
     }
 
+    /**
+     * Returns the codec the operations in this translog file are written with.
+     */
+    public Translog.Codec getCodec() {
+        return codec;
+    }
+
     /**
      * Returns the header size in bytes. This value can be used as the offset of the first translog operation.
      * See {@link BaseTranslogReader#getFirstOperationOffset()}
@@ -91,7 +114,11 @@ final class TranslogHeader {
     }
 
     static int headerSizeInBytes(String translogUUID) {
-        return headerSizeInBytes(CURRENT_VERSION, new BytesRef(translogUUID).length);
+        return headerSizeInBytes(translogUUID, Translog.Codec.DEFAULT);
+    }
+
+    static int headerSizeInBytes(String translogUUID, Translog.Codec codec) {
+        return headerSizeInBytes(writeVersion(codec), new BytesRef(translogUUID).length);
     }
 
     private static int headerSizeInBytes(int version, int uuidLength) {
@@ -101,9 +128,20 @@ final class TranslogHeader {
             size += Long.BYTES;    // primary term
             size += Integer.BYTES; // checksum
         }
+        if (version >= VERSION_CODEC) {
+            size += Byte.BYTES;    // codec
+        }
         return size;
     }
 
+    /**
+     * Translog files with the default codec are still written with {@link #VERSION_PRIMARY_TERM} such that they remain readable
+     * by nodes that don't know about translog codecs.
+     */
+    private static int writeVersion(Translog.Codec codec) {
+        return codec == Translog.Codec.DEFAULT ? VERSION_PRIMARY_TERM : VERSION_CODEC;
+    }
+
     /**
      * Read a translog header from the given path and file channel
      */
@@ -115,7 +153,7 @@ final class TranslogHeader {
                     path.toString());
         final int version;
         try {
-            version = CodecUtil.checkHeader(new InputStreamDataInput(in), TRANSLOG_CODEC, VERSION_CHECKSUMS, VERSION_PRIMARY_TERM);
+            version = CodecUtil.checkHeader(new InputStreamDataInput(in), TRANSLOG_CODEC, VERSION_CHECKSUMS, CURRENT_VERSION);
         } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
             tryReportOldVersionError(path, channel);
             throw new TranslogCorruptedException(path.toString(), "translog header corrupted", e);
@@ -142,13 +180,24 @@ final class TranslogHeader {
         }
         // Read the primary term
         final long primaryTerm;
-        if (version == VERSION_PRIMARY_TERM) {
+        if (version >= VERSION_PRIMARY_TERM) {
             primaryTerm = in.readLong();
             assert primaryTerm >= 0 : "Primary term must be non-negative [" + primaryTerm + "]; translog path [" + path + "]";
         } else {
             assert version == VERSION_CHECKPOINTS : "Unknown header version [" + version + "]";
             primaryTerm = UNKNOWN_PRIMARY_TERM;
         }
+        // Read the codec
+        final Translog.Codec codec;
+        if (version >= VERSION_CODEC) {
+            try {
+                codec = Translog.Codec.fromId(in.readByte());
+            } catch (IllegalArgumentException e) {
+                throw new TranslogCorruptedException(path.toString(), "translog header has an unknown codec", e);
+            }
+        } else {
+            codec = Translog.Codec.DEFAULT;
+        }
         // Verify the checksum
         if (version >= VERSION_PRIMARY_TERM) {
             Translog.verifyChecksum(in);
@@ -156,7 +205,7 @@ final class TranslogHeader {
         final int headerSizeInBytes = headerSizeInBytes(version, uuid.length);
         assert channel.position() == headerSizeInBytes :
             "Header is not fully read; header size [" + headerSizeInBytes + "], position [" + channel.position() + "]";
-        return new TranslogHeader(translogUUID, primaryTerm, headerSizeInBytes);
+        return new TranslogHeader(translogUUID, primaryTerm, codec, headerSizeInBytes);
     }
 
     private static void tryReportOldVersionError(final Path path, final FileChannel channel) throws IOException {
@@ -179,20 +228,25 @@ final class TranslogHeader {
     }
 
     /**
-     * Writes this header with the latest format into the file channel
+     * Writes this header into the file channel, using the latest format only if the operations are written with a non-default codec
      */
     void write(final FileChannel channel) throws IOException {
         // This output is intentionally not closed because closing it will close the FileChannel.
         @SuppressWarnings({"IOResourceOpenedButNotSafelyClosed", "resource"})
         final BufferedChecksumStreamOutput out = new BufferedChecksumStreamOutput(
             new OutputStreamStreamOutput(java.nio.channels.Channels.newOutputStream(channel)));
-        CodecUtil.writeHeader(new OutputStreamDataOutput(out), TRANSLOG_CODEC, CURRENT_VERSION);
+        final int version = writeVersion(codec);
+        CodecUtil.writeHeader(new OutputStreamDataOutput(out), TRANSLOG_CODEC, version);
         // Write uuid
         final BytesRef uuid = new BytesRef(translogUUID);
         out.writeInt(uuid.length);
         out.writeBytes(uuid.bytes, uuid.offset, uuid.length);
         // Write primary term
         out.writeLong(primaryTerm);
+        // Write codec
+        if (version >= VERSION_CODEC) {
+            out.writeByte(codec.id());
+        }
         // Checksum header
         out.writeInt((int) out.getChecksum());
         out.flush();
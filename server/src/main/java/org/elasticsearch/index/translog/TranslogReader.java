@@ -43,6 +43,8 @@ public class TranslogReader extends BaseTranslogReader implements Closeable {
     private final int totalOperations;
     private final Checkpoint checkpoint;
     protected final AtomicBoolean closed = new AtomicBoolean(false);
+    // built on the first read of a location of a compressed generation
+    private TranslogCompression.BlockIndex blockIndex;
 
     /**
      * Create a translog writer against the specified translog file channel.
@@ -121,6 +123,14 @@ public class TranslogReader extends BaseTranslogReader implements Closeable {
         return checkpoint;
     }
 
+    @Override
+    synchronized TranslogCompression.BlockIndex getBlockIndex() throws IOException {
+        if (blockIndex == null) {
+            blockIndex = TranslogCompression.BlockIndex.build(this, getFirstOperationOffset(), getFirstOperationOffset(), length);
+        }
+        return blockIndex;
+    }
+
     /**
      * reads an operation at the given position into the given buffer.
      */
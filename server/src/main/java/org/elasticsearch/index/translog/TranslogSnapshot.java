@@ -18,15 +18,22 @@
  */
 package org.elasticsearch.index.translog;
 
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.ByteBufferReference;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.Channels;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
 
 final class TranslogSnapshot extends BaseTranslogReader {
 
+    private final BaseTranslogReader reader;
     private final int totalOperations;
     private final Checkpoint checkpoint;
     protected final long length;
@@ -37,12 +44,35 @@ final class TranslogSnapshot extends BaseTranslogReader {
     private int readOperations;
     private BufferedChecksumStreamInput reuse;
 
+    // only set if this snapshot reads through a memory mapping, see #readMappedOperation
+    private final boolean mmap;
+    private ByteBuffer mappedBuffer;
+    private CRC32 checksum;
+    private BytesReference serializedOperation;
+
+    // only set for compressed generations, the last decompressed block and the position of the next operation in it
+    private byte[] block;
+    private int blockPosition;
+
     /**
      * Create a snapshot of translog file channel.
      */
     TranslogSnapshot(final BaseTranslogReader reader, final long length) {
+        this(reader, length, false);
+    }
+
+    /**
+     * Create a snapshot of translog file channel. If <code>mmap</code> is <code>true</code> the file is memory mapped on the first
+     * read and operations are read from the mapping rather than copied into heap buffers. This must only be used for files that
+     * are not written to anymore.
+     */
+    TranslogSnapshot(final BaseTranslogReader reader, final long length, final boolean mmap) {
         super(reader.generation, reader.channel, reader.path, reader.header);
+        // a single mapping can't be larger than 2GB, we fall back to positional reads for such generations. Compressed
+        // blocks are decompressed into heap buffers anyway, so we don't map them.
+        this.mmap = mmap && length <= Integer.MAX_VALUE && reader.header.getCodec() == Translog.Codec.DEFAULT;
         this.length = length;
+        this.reader = reader;
         this.totalOperations = reader.totalOperations();
         this.checkpoint = reader.getCheckpoint();
         this.reusableBuffer = ByteBuffer.allocate(1024);
@@ -65,6 +95,11 @@ final class TranslogSnapshot extends BaseTranslogReader {
         return checkpoint;
     }
 
+    @Override
+    TranslogCompression.BlockIndex getBlockIndex() throws IOException {
+        return reader.getBlockIndex();
+    }
+
     public Translog.Operation next() throws IOException {
         while (readOperations < totalOperations) {
             final Translog.Operation operation = readOperation();
@@ -77,14 +112,92 @@ final class TranslogSnapshot extends BaseTranslogReader {
     }
 
     protected Translog.Operation readOperation() throws IOException {
-        final int opSize = readSize(reusableBuffer, position);
-        reuse = checksummedStream(reusableBuffer, position, opSize, reuse);
-        Translog.Operation op = read(reuse);
-        position += opSize;
+        final Translog.Operation op;
+        if (header.getCodec() != Translog.Codec.DEFAULT) {
+            op = readCompressedOperation();
+        } else {
+            if (mmap && mappedBuffer == null) {
+                mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                checksum = new CRC32();
+            }
+            final int opSize = readSize(reusableBuffer, position);
+            if (mappedBuffer != null) {
+                op = readMappedOperation(opSize);
+            } else {
+                reuse = checksummedStream(reusableBuffer, position, opSize, reuse);
+                op = read(reuse);
+            }
+            position += opSize;
+        }
         readOperations++;
         return op;
     }
 
+    /**
+     * Reads the next operation of a compressed generation, decompressing the next block if all operations of the current block
+     * have been read. The serialized operation is a slice of the decompressed block, in the same format as in uncompressed
+     * generations.
+     */
+    private Translog.Operation readCompressedOperation() throws IOException {
+        if (block == null || blockPosition == block.length) {
+            final TranslogCompression.Block next = TranslogCompression.readBlock(this, position);
+            block = next.bytes;
+            blockPosition = 0;
+            position += next.sizeInBytes;
+        }
+        final int opSize = TranslogCompression.readOperationSize(this, block, blockPosition);
+        reuse = new BufferedChecksumStreamInput(new ByteBufferStreamInput(ByteBuffer.wrap(block, blockPosition, opSize)),
+            path.toString(), reuse);
+        final Translog.Operation op = read(reuse);
+        serializedOperation = new BytesArray(block, blockPosition, opSize);
+        blockPosition += opSize;
+        return op;
+    }
+
+    /**
+     * Reads the operation at the current position from the memory mapping. The checksum is verified on the mapped bytes up-front
+     * and the operation is then de-serialized without copying its source, which remains a slice of the mapping.
+     */
+    private Translog.Operation readMappedOperation(final int opSize) throws IOException {
+        if (opSize < 2 * Integer.BYTES) { // 4 bytes for the size and 4 bytes for the checksum
+            throw new TranslogCorruptedException(path.toString(), "operation size must be at least 4 but was: " + (opSize - 4));
+        }
+        final int start = Math.toIntExact(position);
+        final ByteBuffer operationBuffer = mappedBuffer.duplicate();
+        operationBuffer.limit(start + opSize - Integer.BYTES);
+        operationBuffer.position(start + Integer.BYTES);
+        checksum.reset();
+        checksum.update(operationBuffer.duplicate());
+        final long expectedChecksum = checksum.getValue();
+        final long readChecksum = Integer.toUnsignedLong(mappedBuffer.getInt(start + opSize - Integer.BYTES));
+        if (readChecksum != expectedChecksum) {
+            throw new TranslogCorruptedException(path.toString(), "checksum verification failed - expected: 0x" +
+                Long.toHexString(expectedChecksum) + ", got: 0x" + Long.toHexString(readChecksum));
+        }
+        final Translog.Operation op;
+        try {
+            op = Translog.Operation.readOperation(new SlicingStreamInput(operationBuffer));
+        } catch (EOFException e) {
+            throw new TruncatedTranslogException(path.toString(), "reached premature end of file, translog is truncated", e);
+        }
+        ensurePrimaryTermIsValid(op);
+        final ByteBuffer serialized = mappedBuffer.duplicate();
+        serialized.limit(start + opSize);
+        serialized.position(start);
+        serializedOperation = new ByteBufferReference(serialized);
+        return op;
+    }
+
+    /**
+     * Returns the serialized form of the operation that was read last, that is its size, the operation and its already verified
+     * checksum, as it is stored in the translog file. Returns <code>null</code> if this snapshot doesn't read through a memory
+     * mapping or a compressed generation. The returned bytes are a slice of the mapping or of the decompressed block and are not
+     * copied.
+     */
+    BytesReference serializedOperation() {
+        return serializedOperation;
+    }
+
     public long sizeInBytes() {
         return length;
     }
@@ -99,7 +212,18 @@ final class TranslogSnapshot extends BaseTranslogReader {
         if (position < getFirstOperationOffset()) {
             throw new IOException("read requested before position of first ops. pos [" + position + "] first op on: [" + getFirstOperationOffset() + "], generation: [" + getGeneration() + "], path: [" + path + "]");
         }
-        Channels.readFromFileChannelWithEofException(channel, position, buffer);
+        if (mappedBuffer != null) {
+            if (position + buffer.remaining() > length) {
+                throw new EOFException("read requested past EOF. pos [" + position + "] length [" + buffer.remaining() + "] end: ["
+                    + length + "], generation: [" + getGeneration() + "], path: [" + path + "]");
+            }
+            final ByteBuffer mapped = mappedBuffer.duplicate();
+            mapped.limit(Math.toIntExact(position + buffer.remaining()));
+            mapped.position(Math.toIntExact(position));
+            buffer.put(mapped);
+        } else {
+            Channels.readFromFileChannelWithEofException(channel, position, buffer);
+        }
     }
 
     @Override
@@ -111,6 +235,32 @@ final class TranslogSnapshot extends BaseTranslogReader {
                 ", length=" + length +
                 ", generation=" + generation +
                 ", reusableBuffer=" + reusableBuffer +
+                ", mmap=" + mmap +
                 '}';
     }
+
+    /**
+     * A stream over a slice of the memory mapping that returns slices of the mapping rather than copies from
+     * {@link #readBytesReference(int)}.
+     */
+    private static final class SlicingStreamInput extends ByteBufferStreamInput {
+        private final ByteBuffer buffer;
+
+        SlicingStreamInput(ByteBuffer buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public BytesReference readBytesReference(int length) throws IOException {
+            if (length == 0) {
+                return BytesArray.EMPTY;
+            }
+            ensureCanReadBytes(length);
+            final ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + length);
+            buffer.position(buffer.position() + length);
+            return new ByteBufferReference(slice);
+        }
+    }
 }
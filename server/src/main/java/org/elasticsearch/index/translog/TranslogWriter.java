@@ -20,12 +20,14 @@
 package org.elasticsearch.index.translog;
 
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.ArrayUtil;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.Assertions;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.Channels;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.ShardId;
@@ -38,6 +40,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -48,13 +51,19 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
     private final ChannelFactory channelFactory;
     // the last checkpoint that was written when the translog was last synced
     private volatile Checkpoint lastSyncedCheckpoint;
+    // the offset of the operations that were synced along with the last checkpoint, in the offsets of Translog.Location. This is the
+    // offset of the last checkpoint unless this generation is compressed, since checkpoints record the length of the file
+    private volatile long lastSyncedOffset;
     /* the number of translog operations written to this file */
     private volatile int operationCounter;
     /* if we hit an exception that we can't recover from we assign it to this var and ship it with every AlreadyClosedException we throw */
     private volatile Exception tragedy;
     /* A buffered outputstream what writes to the writers channel */
     private final OutputStream outputStream;
-    /* the total offset of this file including the bytes written to the file as well as into the buffer */
+    /* the same stream as outputStream if this generation is compressed, null otherwise */
+    private final CompressingChannelOutputStream compressingOutputStream;
+    /* the total offset of this file including the bytes written to the file as well as into the buffer, for compressed generations
+     * this is the offset in the uncompressed stream of operations */
     private volatile long totalOffset;
 
     private volatile long minSeqNo;
@@ -84,8 +93,17 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         this.shardId = shardId;
         this.channelFactory = channelFactory;
         this.minTranslogGenerationSupplier = minTranslogGenerationSupplier;
-        this.outputStream = new BufferedChannelOutputStream(java.nio.channels.Channels.newOutputStream(channel), bufferSize.bytesAsInt());
+        if (header.getCodec() == Translog.Codec.DEFAULT) {
+            this.compressingOutputStream = null;
+            this.outputStream =
+                new BufferedChannelOutputStream(java.nio.channels.Channels.newOutputStream(channel), bufferSize.bytesAsInt());
+        } else {
+            this.compressingOutputStream = new CompressingChannelOutputStream(java.nio.channels.Channels.newOutputStream(channel),
+                bufferSize.bytesAsInt(), initialCheckpoint.offset);
+            this.outputStream = compressingOutputStream;
+        }
         this.lastSyncedCheckpoint = initialCheckpoint;
+        this.lastSyncedOffset = initialCheckpoint.offset;
         this.totalOffset = initialCheckpoint.offset;
         assert initialCheckpoint.minSeqNo == SequenceNumbers.NO_OPS_PERFORMED : initialCheckpoint.minSeqNo;
         this.minSeqNo = initialCheckpoint.minSeqNo;
@@ -101,9 +119,18 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
                                         final LongSupplier globalCheckpointSupplier, final LongSupplier minTranslogGenerationSupplier,
                                         final long primaryTerm)
         throws IOException {
+        return create(shardId, translogUUID, fileGeneration, file, channelFactory, bufferSize, initialMinTranslogGen,
+            initialGlobalCheckpoint, globalCheckpointSupplier, minTranslogGenerationSupplier, primaryTerm, Translog.Codec.DEFAULT);
+    }
+
+    public static TranslogWriter create(ShardId shardId, String translogUUID, long fileGeneration, Path file, ChannelFactory channelFactory,
+                                        ByteSizeValue bufferSize, final long initialMinTranslogGen, long initialGlobalCheckpoint,
+                                        final LongSupplier globalCheckpointSupplier, final LongSupplier minTranslogGenerationSupplier,
+                                        final long primaryTerm, final Translog.Codec codec)
+        throws IOException {
         final FileChannel channel = channelFactory.open(file);
         try {
-            final TranslogHeader header = new TranslogHeader(translogUUID, primaryTerm);
+            final TranslogHeader header = new TranslogHeader(translogUUID, primaryTerm, codec);
             header.write(channel);
             final Checkpoint checkpoint = Checkpoint.emptyTranslogCheckpoint(header.sizeInBytes(), fileGeneration,
                 initialGlobalCheckpoint, initialMinTranslogGen);
@@ -171,6 +198,9 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         final long offset = totalOffset;
         try {
             data.writeTo(outputStream);
+            if (compressingOutputStream != null) {
+                compressingOutputStream.maybeFlush();
+            }
         } catch (final Exception ex) {
             closeWithTragicEvent(ex);
             throw ex;
@@ -194,6 +224,45 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         return new Translog.Location(generation, offset, data.length());
     }
 
+    /**
+     * Adds a block of consecutive serialized operations to the current translog file. The block is written at once, but each
+     * operation gets its own location.
+     *
+     * @param data   the serialized operations
+     * @param sizes  the number of bytes of each operation in the block, including its size and checksum
+     * @param seqNos the sequence number of each operation in the block
+     * @return the locations of the operations, in the same order as they appear in the block
+     * @throws IOException if writing to the translog resulted in an I/O exception
+     */
+    public synchronized Translog.Location[] add(final BytesReference data, final int[] sizes, final long[] seqNos) throws IOException {
+        assert sizes.length == seqNos.length : "got [" + sizes.length + "] sizes but [" + seqNos.length + "] seq#";
+        ensureOpen();
+        final long offset = totalOffset;
+        try {
+            data.writeTo(outputStream);
+            if (compressingOutputStream != null) {
+                compressingOutputStream.maybeFlush();
+            }
+        } catch (final Exception ex) {
+            closeWithTragicEvent(ex);
+            throw ex;
+        }
+        totalOffset += data.length();
+
+        final Translog.Location[] locations = new Translog.Location[sizes.length];
+        int position = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            minSeqNo = SequenceNumbers.min(minSeqNo, seqNos[i]);
+            maxSeqNo = SequenceNumbers.max(maxSeqNo, seqNos[i]);
+            operationCounter++;
+            assert assertNoSeqNumberConflict(seqNos[i], data.slice(position, sizes[i]));
+            locations[i] = new Translog.Location(generation, offset + position, sizes[i]);
+            position += sizes[i];
+        }
+        assert position == data.length() : "sizes add up to [" + position + "] but block has [" + data.length() + "] bytes";
+        return locations;
+    }
+
     private synchronized boolean assertNoSeqNumberConflict(long seqNo, BytesReference data) throws IOException {
         if (seqNo == SequenceNumbers.UNASSIGNED_SEQ_NO) {
             // nothing to do
@@ -252,7 +321,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
      * checkpoint has not yet been fsynced
      */
     public boolean syncNeeded() {
-        return totalOffset != lastSyncedCheckpoint.offset ||
+        return totalOffset != lastSyncedOffset ||
             globalCheckpointSupplier.getAsLong() != lastSyncedCheckpoint.globalCheckpoint ||
             minTranslogGenerationSupplier.getAsLong() != lastSyncedCheckpoint.minTranslogGeneration;
     }
@@ -264,16 +333,47 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
 
     @Override
     synchronized Checkpoint getCheckpoint() {
-        return new Checkpoint(totalOffset, operationCounter, generation, minSeqNo, maxSeqNo,
+        // the checkpoint records the length of the file, which only covers the flushed operations of compressed generations
+        final long offset = compressingOutputStream == null ? totalOffset : compressingOutputStream.writtenOffset;
+        return new Checkpoint(offset, operationCounter, generation, minSeqNo, maxSeqNo,
             globalCheckpointSupplier.getAsLong(), minTranslogGenerationSupplier.getAsLong(),
             SequenceNumbers.UNASSIGNED_SEQ_NO);
     }
 
     @Override
     public long sizeInBytes() {
+        if (compressingOutputStream != null) {
+            return compressingOutputStream.sizeInBytes();
+        }
+        return totalOffset;
+    }
+
+    /**
+     * Returns the offset the next operation will be written at, in the offsets of {@link Translog.Location}. This is the size of the
+     * file unless this generation is compressed.
+     */
+    long getLocationOffset() {
         return totalOffset;
     }
 
+    @Override
+    Translog.Operation read(Translog.Location location) throws IOException {
+        if (compressingOutputStream != null) {
+            // the operation might not have been compressed into a block yet
+            final byte[] buffered = compressingOutputStream.copyBufferedOperation(location);
+            if (buffered != null) {
+                return read(new BufferedChecksumStreamInput(new ByteBufferStreamInput(ByteBuffer.wrap(buffered)), path.toString()));
+            }
+        }
+        return super.read(location);
+    }
+
+    @Override
+    TranslogCompression.BlockIndex getBlockIndex() {
+        assert compressingOutputStream != null : "translog [" + generation + "] is not compressed";
+        return compressingOutputStream.blockIndex;
+    }
+
     /**
      * Closes this writer and transfers its underlying file channel to a new immutable {@link TranslogReader}
      * @return a new {@link TranslogReader}
@@ -330,17 +430,19 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
      * @return <code>true</code> if this call caused an actual sync operation
      */
     public boolean syncUpTo(long offset) throws IOException {
-        if (lastSyncedCheckpoint.offset < offset && syncNeeded()) {
+        if (lastSyncedOffset < offset && syncNeeded()) {
             synchronized (syncLock) { // only one sync/checkpoint should happen concurrently but we wait
-                if (lastSyncedCheckpoint.offset < offset && syncNeeded()) {
+                if (lastSyncedOffset < offset && syncNeeded()) {
                     // double checked locking - we don't want to fsync unless we have to and now that we have
                     // the lock we should check again since if this code is busy we might have fsynced enough already
                     final Checkpoint checkpointToSync;
+                    final long offsetToSync;
                     synchronized (this) {
                         ensureOpen();
                         try {
                             outputStream.flush();
                             checkpointToSync = getCheckpoint();
+                            offsetToSync = totalOffset;
                         } catch (final Exception ex) {
                             closeWithTragicEvent(ex);
                             throw ex;
@@ -358,6 +460,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
                     assert lastSyncedCheckpoint.offset <= checkpointToSync.offset :
                         "illegal state: " + lastSyncedCheckpoint.offset + " <= " + checkpointToSync.offset;
                     lastSyncedCheckpoint = checkpointToSync; // write protected by syncLock
+                    lastSyncedOffset = offsetToSync;
                     return true;
                 }
             }
@@ -449,4 +552,102 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         }
     }
 
+    /**
+     * Buffers the serialized operations of a compressed generation and writes them to the channel as a single compressed block
+     * whenever the buffer is flushed, see {@link TranslogCompression}.
+     */
+    private final class CompressingChannelOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final int blockSize;
+        private final TranslogCompression.BlockIndex blockIndex = new TranslogCompression.BlockIndex();
+        private byte[] buffer;
+        private int count;
+        // the offset of the first buffered byte in the uncompressed stream of operations
+        private volatile long flushedOffset;
+        // the number of bytes written to the file
+        private volatile long writtenOffset;
+
+        CompressingChannelOutputStream(OutputStream out, int blockSize, long offset) {
+            this.out = out;
+            this.blockSize = blockSize;
+            this.buffer = new byte[blockSize];
+            this.flushedOffset = offset;
+            this.writtenOffset = offset;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) {
+            if (count + len > buffer.length) {
+                buffer = ArrayUtil.grow(buffer, count + len);
+            }
+        }
+
+        /**
+         * Flushes the buffered operations once they exceed the block size. This must only be called after a complete operation has
+         * been written since operations must not span blocks.
+         */
+        synchronized void maybeFlush() throws IOException {
+            if (count >= blockSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (count > 0) {
+                try {
+                    ensureOpen();
+                    blockIndex.onBlock(flushedOffset, writtenOffset);
+                    final int written = TranslogCompression.writeBlock(buffer, 0, count, out);
+                    flushedOffset += count;
+                    writtenOffset += written;
+                    count = 0;
+                    if (buffer.length > blockSize) {
+                        // don't hold on to the buffer of a large operation
+                        buffer = new byte[blockSize];
+                    }
+                } catch (final Exception ex) {
+                    closeWithTragicEvent(ex);
+                    throw ex;
+                }
+            }
+        }
+
+        synchronized long sizeInBytes() {
+            // the buffered operations will take less space once they are compressed
+            return writtenOffset + count;
+        }
+
+        /**
+         * Returns a copy of the serialized operation at the given location if it hasn't been flushed yet, <code>null</code> otherwise.
+         */
+        synchronized byte[] copyBufferedOperation(Translog.Location location) {
+            if (location.translogLocation < flushedOffset) {
+                return null;
+            }
+            final int offset = Math.toIntExact(location.translogLocation - flushedOffset);
+            assert offset + location.size <= count : "location " + location + " is beyond the buffered operations";
+            return Arrays.copyOfRange(buffer, offset, offset + location.size);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the stream is intentionally not closed because
+            // closing it will close the FileChannel
+            throw new IllegalStateException("never close this stream");
+        }
+    }
 }
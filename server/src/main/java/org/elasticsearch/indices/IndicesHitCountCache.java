@@ -0,0 +1,176 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The indices hit count cache caches the number of documents that match a query on a segment, for count-only requests. Unlike the
+ * {@link IndicesRequestCache}, whose entries can no longer be used once a shard was refreshed, entries are keyed on the core of
+ * the segment, which stays the same across refreshes until the segment is merged away, and on its number of live documents.
+ * Deletes only ever remove documents from a segment, so the same number of live documents means the same live documents.
+ * Requests that count the hits of the same query over and over thus only need to count them on the new segments of a shard,
+ * and on the segments that documents were deleted from.
+ * <p>
+ * Entries are evicted based on their size, and entries of segments that were closed are cleaned up periodically.
+ */
+public final class IndicesHitCountCache extends AbstractComponent implements Closeable {
+
+    public static final Setting<ByteSizeValue> INDICES_HIT_COUNT_CACHE_SIZE =
+        Setting.memorySizeSetting("indices.hit_count.cache.size", "1%", Property.NodeScope);
+
+    // the estimated memory usage of queries that don't report it, like in Lucene's query cache
+    private static final long QUERY_DEFAULT_RAM_BYTES_USED = 1024;
+
+    private final Set<IndexReader.CacheKey> registeredClosedListeners = ConcurrentCollections.newConcurrentSet();
+    private final Set<IndexReader.CacheKey> keysToClean = ConcurrentCollections.newConcurrentSet();
+    private final Cache<Key, Integer> cache;
+
+    public IndicesHitCountCache(Settings settings) {
+        super(settings);
+        final long sizeInBytes = INDICES_HIT_COUNT_CACHE_SIZE.get(settings).getBytes();
+        cache = CacheBuilder.<Key, Integer>builder().setMaximumWeight(sizeInBytes).weigher((k, v) -> k.ramBytesUsed()).build();
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the cached number of hits of the given query on the segment of the given reader, or <code>null</code> if it isn't
+     * cached or the reader doesn't support caching.
+     */
+    public Integer get(LeafReader reader, Query query) {
+        final IndexReader.CacheHelper coreCacheHelper = reader.getCoreCacheHelper();
+        if (coreCacheHelper == null) {
+            return null;
+        }
+        return cache.get(new Key(coreCacheHelper.getKey(), reader.numDocs(), query));
+    }
+
+    /**
+     * Caches the number of hits of the given query on the segment of the given reader, unless the reader doesn't support caching.
+     */
+    public void put(LeafReader reader, Query query, int count) {
+        final IndexReader.CacheHelper coreCacheHelper = reader.getCoreCacheHelper();
+        if (coreCacheHelper == null) {
+            return;
+        }
+        final IndexReader.CacheKey coreKey = coreCacheHelper.getKey();
+        // see if its the first time we see this segment, and make sure to register a cleanup key
+        if (registeredClosedListeners.add(coreKey)) {
+            coreCacheHelper.addClosedListener(this::onClose);
+        }
+        cache.put(new Key(coreKey, reader.numDocs(), query), count);
+    }
+
+    private void onClose(IndexReader.CacheKey coreKey) {
+        if (registeredClosedListeners.remove(coreKey)) {
+            keysToClean.add(coreKey);
+        }
+    }
+
+    /**
+     * Removes the entries of all segments that were closed since the last cleanup.
+     */
+    synchronized void cleanCache() {
+        final Set<IndexReader.CacheKey> currentKeysToClean = new HashSet<>();
+        for (Iterator<IndexReader.CacheKey> iterator = keysToClean.iterator(); iterator.hasNext(); ) {
+            currentKeysToClean.add(iterator.next());
+            iterator.remove();
+        }
+        if (currentKeysToClean.isEmpty() == false) {
+            for (Iterator<Key> iterator = cache.keys().iterator(); iterator.hasNext(); ) {
+                if (currentKeysToClean.contains(iterator.next().coreKey)) {
+                    iterator.remove();
+                }
+            }
+        }
+        cache.refresh();
+    }
+
+    /**
+     * Returns the current size of the cache
+     */
+    int count() {
+        return cache.count();
+    }
+
+    int numRegisteredCloseListeners() { // for testing
+        return registeredClosedListeners.size();
+    }
+
+    static final class Key implements Accountable {
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+        final IndexReader.CacheKey coreKey;
+        final int numDocs;
+        final Query query;
+
+        Key(IndexReader.CacheKey coreKey, int numDocs, Query query) {
+            this.coreKey = coreKey;
+            this.numDocs = numDocs;
+            this.query = query;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            final long queryRamBytesUsed = query instanceof Accountable
+                ? ((Accountable) query).ramBytesUsed() : QUERY_DEFAULT_RAM_BYTES_USED;
+            return BASE_RAM_BYTES_USED + queryRamBytesUsed + Integer.BYTES;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return coreKey == key.coreKey && numDocs == key.numDocs && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(coreKey, numDocs, query);
+        }
+    }
+}
@@ -87,6 +87,7 @@ import org.elasticsearch.index.flush.FlushStats;
 import org.elasticsearch.index.get.GetStats;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.query.CoordinatorRewriteContext;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.recovery.RecoveryStats;
@@ -99,6 +100,7 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.IndexingOperationListener;
 import org.elasticsearch.index.shard.IndexingStats;
+import org.elasticsearch.index.shard.ShardFieldRanges;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.IndexStore;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
@@ -177,8 +179,10 @@ public class IndicesService extends AbstractLifecycleComponent
     private final MapperRegistry mapperRegistry;
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final IndexingMemoryController indexingMemoryController;
+    private final WriteLoadMonitor writeLoadMonitor;
     private final TimeValue cleanInterval;
     private final IndicesRequestCache indicesRequestCache;
+    private final IndicesHitCountCache indicesHitCountCache;
     private final IndicesQueryCache indicesQueryCache;
     private final MetaStateService metaStateService;
     private final Collection<Function<IndexSettings, Optional<EngineFactory>>> engineFactoryProviders;
@@ -206,12 +210,14 @@ public class IndicesService extends AbstractLifecycleComponent
         this.analysisRegistry = analysisRegistry;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
         this.indicesRequestCache = new IndicesRequestCache(settings);
+        this.indicesHitCountCache = new IndicesHitCountCache(settings);
         this.indicesQueryCache = new IndicesQueryCache(settings);
         this.mapperRegistry = mapperRegistry;
         this.namedWriteableRegistry = namedWriteableRegistry;
         indexingMemoryController = new IndexingMemoryController(settings, threadPool,
                                                                 // ensure we pull an iter with new shards - flatten makes a copy
                                                                 () -> Iterables.flatten(this).iterator());
+        writeLoadMonitor = new WriteLoadMonitor(settings, threadPool, () -> Iterables.flatten(this).iterator());
         this.indexScopedSettings = indexScopedSettings;
         this.circuitBreakerService = circuitBreakerService;
         this.bigArrays = bigArrays;
@@ -225,7 +231,8 @@ public class IndicesService extends AbstractLifecycleComponent
             }
         });
         this.cleanInterval = INDICES_CACHE_CLEAN_INTERVAL_SETTING.get(settings);
-        this.cacheCleaner = new CacheCleaner(indicesFieldDataCache, indicesRequestCache,  logger, threadPool, this.cleanInterval);
+        this.cacheCleaner = new CacheCleaner(indicesFieldDataCache, indicesRequestCache, indicesHitCountCache, logger, threadPool,
+            this.cleanInterval);
         this.metaStateService = metaStateService;
         this.engineFactoryProviders = engineFactoryProviders;
         this.indexStoreFactories = indexStoreFactories;
@@ -260,7 +267,8 @@ public class IndicesService extends AbstractLifecycleComponent
 
     @Override
     protected void doClose() {
-        IOUtils.closeWhileHandlingException(analysisRegistry, indexingMemoryController, indicesFieldDataCache, cacheCleaner, indicesRequestCache, indicesQueryCache);
+        IOUtils.closeWhileHandlingException(analysisRegistry, indexingMemoryController, writeLoadMonitor, indicesFieldDataCache,
+            cacheCleaner, indicesRequestCache, indicesHitCountCache, indicesQueryCache);
     }
 
     /**
@@ -631,6 +639,14 @@ public class IndicesService extends AbstractLifecycleComponent
         return indicesQueryCache;
     }
 
+    public IndicesHitCountCache getIndicesHitCountCache() {
+        return indicesHitCountCache;
+    }
+
+    public WriteLoadMonitor getWriteLoadMonitor() {
+        return writeLoadMonitor;
+    }
+
     static class OldShardsStats implements IndexEventListener {
 
         final SearchStats searchStats = new SearchStats();
@@ -1085,10 +1101,13 @@ public class IndicesService extends AbstractLifecycleComponent
         private final TimeValue interval;
         private final AtomicBoolean closed = new AtomicBoolean(false);
         private final IndicesRequestCache requestCache;
+        private final IndicesHitCountCache hitCountCache;
 
-        CacheCleaner(IndicesFieldDataCache cache, IndicesRequestCache requestCache, Logger logger, ThreadPool threadPool, TimeValue interval) {
+        CacheCleaner(IndicesFieldDataCache cache, IndicesRequestCache requestCache, IndicesHitCountCache hitCountCache, Logger logger,
+                     ThreadPool threadPool, TimeValue interval) {
             this.cache = cache;
             this.requestCache = requestCache;
+            this.hitCountCache = hitCountCache;
             this.logger = logger;
             this.threadPool = threadPool;
             this.interval = interval;
@@ -1114,6 +1133,11 @@ public class IndicesService extends AbstractLifecycleComponent
             } catch (Exception e) {
                 logger.warn("Exception during periodic request cache cleanup:", e);
             }
+            try {
+                this.hitCountCache.cleanCache();
+            } catch (Exception e) {
+                logger.warn("Exception during periodic hit count cache cleanup:", e);
+            }
             // Reschedule itself to run again if not closed
             if (closed.get() == false) {
                 threadPool.schedule(interval, ThreadPool.Names.SAME, this);
@@ -1126,6 +1150,26 @@ public class IndicesService extends AbstractLifecycleComponent
         }
     }
 
+    /**
+     * Can the hit counts of the shard request be cached per segment? Only count-only requests, with a size of 0 and no
+     * aggregations, use the hit count cache, since the collectors of other requests still have to visit every segment. Requests
+     * and indices that disable the request cache don't use it either, document level security relies on it.
+     */
+    public boolean canCacheHitCounts(ShardSearchRequest request, SearchContext context) {
+        if (context.size() != 0 || context.aggregations() != null) {
+            return false;
+        }
+        // if not explicitly set in the request, use the index setting, if not, use the request
+        if (request.requestCache() == null) {
+            if (context.indexShard().indexSettings().getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING) == false) {
+                return false;
+            }
+        } else if (request.requestCache() == false) {
+            return false;
+        }
+        // queries that use now or scripts can match different documents of the same segment
+        return context.getQueryShardContext().isCachable();
+    }
 
     /**
      * Can the shard request be cached at all?
@@ -1308,6 +1352,13 @@ public class IndicesService extends AbstractLifecycleComponent
         return new QueryRewriteContext(xContentRegistry, namedWriteableRegistry, client, nowInMillis);
     }
 
+    /**
+     * Returns a new {@link CoordinatorRewriteContext} that rewrites queries against the field ranges of a shard.
+     */
+    public CoordinatorRewriteContext getCoordinatorRewriteContext(LongSupplier nowInMillis, ShardFieldRanges fieldRanges) {
+        return new CoordinatorRewriteContext(xContentRegistry, namedWriteableRegistry, client, nowInMillis, fieldRanges);
+    }
+
     /**
      * Clears the caches for the given shard id if the shard is still allocated on this node
      */
@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.WriteLoadStats;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The write load of a shard over the windows of {@link WriteLoadMonitor.Window}. The load is the average number of threads that
+ * were busy writing to the shard, so a load of <code>1.0</code> corresponds to one fully used core.
+ */
+public class ShardWriteLoad implements Writeable, ToXContentObject {
+
+    private final ShardId shardId;
+    private final boolean primary;
+    private final double[] loads;
+    private final WriteLoadStats stats;
+
+    public ShardWriteLoad(ShardId shardId, boolean primary, double[] loads, WriteLoadStats stats) {
+        assert loads.length == WriteLoadMonitor.Window.values().length : "expected a load per window but got " + loads.length;
+        this.shardId = shardId;
+        this.primary = primary;
+        this.loads = loads;
+        this.stats = stats;
+    }
+
+    public ShardWriteLoad(StreamInput in) throws IOException {
+        shardId = ShardId.readShardId(in);
+        primary = in.readBoolean();
+        loads = in.readDoubleArray();
+        stats = new WriteLoadStats(in);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        shardId.writeTo(out);
+        out.writeBoolean(primary);
+        out.writeDoubleArray(loads);
+        stats.writeTo(out);
+    }
+
+    public ShardId getShardId() {
+        return shardId;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * Returns the write load of the shard over the given window.
+     */
+    public double getLoad(WriteLoadMonitor.Window window) {
+        return loads[window.ordinal()];
+    }
+
+    /**
+     * Returns the cumulative time the shard spent on the different stages of writing documents.
+     */
+    public WriteLoadStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field("index", shardId.getIndexName());
+        builder.field("shard", shardId.id());
+        builder.field("primary", primary);
+        builder.startObject("load");
+        for (WriteLoadMonitor.Window window : WriteLoadMonitor.Window.values()) {
+            builder.field(window.getId(), getLoad(window));
+        }
+        builder.endObject();
+        stats.toXContent(builder, params);
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ShardWriteLoad that = (ShardWriteLoad) o;
+        return primary == that.primary
+            && shardId.equals(that.shardId)
+            && Arrays.equals(loads, that.loads)
+            && stats.equals(that.stats);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(shardId, primary, Arrays.hashCode(loads), stats);
+    }
+}
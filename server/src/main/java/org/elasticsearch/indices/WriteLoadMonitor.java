@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.WriteLoadStats;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPool.Names;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Periodically samples the {@link WriteLoadStats} of all shards of this node and keeps their write load over sliding windows of
+ * one, five and fifteen minutes, similar to the load average of operating systems. The write load of a shard is the time spent on
+ * writing to it divided by the elapsed time, and the windows are exponentially weighted moving averages of it.
+ */
+public class WriteLoadMonitor extends AbstractComponent implements Closeable {
+
+    /** How frequently the write load of shards is sampled (default: 5 seconds). */
+    public static final Setting<TimeValue> WRITE_LOAD_INTERVAL_SETTING =
+        Setting.positiveTimeSetting("indices.write_load.interval", TimeValue.timeValueSeconds(5), Property.NodeScope);
+
+    /**
+     * The windows over which the write load of shards is averaged.
+     */
+    public enum Window {
+        ONE_MINUTE("1m", TimeValue.timeValueMinutes(1)),
+        FIVE_MINUTES("5m", TimeValue.timeValueMinutes(5)),
+        FIFTEEN_MINUTES("15m", TimeValue.timeValueMinutes(15));
+
+        private final String id;
+        private final TimeValue length;
+
+        Window(String id, TimeValue length) {
+            this.id = id;
+            this.length = length;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public TimeValue getLength() {
+            return length;
+        }
+
+        public static Window fromId(String id) {
+            for (Window window : values()) {
+                if (window.id.equals(id)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "unknown write load window [%s], must be one of [1m, 5m, 15m]",
+                id));
+        }
+    }
+
+    private final Iterable<IndexShard> indexShards;
+    private final TimeValue interval;
+    // protected by this monitor's lock
+    private final Map<ShardId, ShardSample> samples = new HashMap<>();
+
+    private final Cancellable scheduler;
+
+    WriteLoadMonitor(Settings settings, ThreadPool threadPool, Iterable<IndexShard> indexShards) {
+        super(settings);
+        this.indexShards = indexShards;
+        this.interval = WRITE_LOAD_INTERVAL_SETTING.get(settings);
+        this.scheduler = scheduleTask(threadPool);
+    }
+
+    protected Cancellable scheduleTask(ThreadPool threadPool) {
+        // it's fine to run it on the scheduler thread, sampling only reads counters
+        return threadPool.scheduleWithFixedDelay(() -> sample(System.nanoTime()), interval, Names.SAME);
+    }
+
+    @Override
+    public void close() {
+        scheduler.cancel();
+    }
+
+    /**
+     * Samples the write load of all shards, shards that are no longer allocated to this node are dropped.
+     */
+    synchronized void sample(long nowInNanos) {
+        final Map<ShardId, ShardSample> current = new HashMap<>();
+        for (IndexShard shard : indexShards) {
+            if (shard.state() == IndexShardState.CLOSED) {
+                continue;
+            }
+            final WriteLoadStats stats;
+            try {
+                stats = shard.writeLoadStats();
+            } catch (AlreadyClosedException e) {
+                // the shard was closed concurrently
+                continue;
+            }
+            ShardSample sample = samples.get(shard.shardId());
+            if (sample == null || sample.shard != shard) {
+                sample = new ShardSample(shard, nowInNanos, stats);
+            } else {
+                sample.update(nowInNanos, stats);
+            }
+            current.put(shard.shardId(), sample);
+        }
+        samples.clear();
+        samples.putAll(current);
+    }
+
+    /**
+     * Returns the shards of this node with the highest write load over the given window, hottest first.
+     */
+    public synchronized List<ShardWriteLoad> hottestShards(Window window, int size) {
+        final List<ShardWriteLoad> shards = new ArrayList<>(samples.size());
+        for (ShardSample sample : samples.values()) {
+            shards.add(new ShardWriteLoad(sample.shard.shardId(), sample.shard.routingEntry().primary(), sample.loads.clone(),
+                sample.lastStats));
+        }
+        shards.sort(Comparator.comparingDouble((ShardWriteLoad shard) -> shard.getLoad(window)).reversed());
+        return shards.size() > size ? new ArrayList<>(shards.subList(0, size)) : shards;
+    }
+
+    static final class ShardSample {
+        final IndexShard shard;
+        final double[] loads = new double[Window.values().length];
+        private long lastSampleInNanos;
+        private WriteLoadStats lastStats;
+
+        ShardSample(IndexShard shard, long nowInNanos, WriteLoadStats stats) {
+            this.shard = shard;
+            this.lastSampleInNanos = nowInNanos;
+            this.lastStats = stats;
+        }
+
+        void update(long nowInNanos, WriteLoadStats stats) {
+            final long elapsedInNanos = nowInNanos - lastSampleInNanos;
+            if (elapsedInNanos <= 0) {
+                return;
+            }
+            // the engine of the shard might have been reset, in which case its times start from scratch
+            final long busyInNanos = Math.max(0, stats.getTotalTimeInNanos() - lastStats.getTotalTimeInNanos());
+            final double load = (double) busyInNanos / elapsedInNanos;
+            for (Window window : Window.values()) {
+                final double alpha = 1 - Math.exp(-(double) elapsedInNanos / window.getLength().nanos());
+                loads[window.ordinal()] += alpha * (load - loads[window.ordinal()]);
+            }
+            lastSampleInNanos = nowInNanos;
+            lastStats = stats;
+        }
+    }
+}
@@ -37,6 +37,8 @@ import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.lucene.store.InputStreamIndexInput;
@@ -571,6 +573,8 @@ public class RecoverySourceHandler {
         int totalSentOps = 0;
         final AtomicLong targetLocalCheckpoint = new AtomicLong(SequenceNumbers.UNASSIGNED_SEQ_NO);
         final List<Translog.Operation> operations = new ArrayList<>();
+        // the serialized form of the operations, only used if the snapshot exposes it for all operations of a batch
+        final List<BytesReference> serializedOperations = new ArrayList<>();
         final LocalCheckpointTracker requiredOpsTracker = new LocalCheckpointTracker(endingSeqNo, requiredSeqNoRangeStart - 1);
 
         final int expectedTotalOps = snapshot.totalOperations();
@@ -578,8 +582,14 @@ public class RecoverySourceHandler {
             logger.trace("no translog operations to send");
         }
 
-        final CancellableThreads.IOInterruptable sendBatch =
-                () -> targetLocalCheckpoint.set(recoveryTarget.indexTranslogOperations(operations, expectedTotalOps));
+        final CancellableThreads.IOInterruptable sendBatch = () -> {
+            if (operations.isEmpty() == false && serializedOperations.size() == operations.size()) {
+                final BytesReference serialized = new CompositeBytesReference(serializedOperations.toArray(new BytesReference[0]));
+                targetLocalCheckpoint.set(recoveryTarget.indexTranslogOperations(operations, serialized, expectedTotalOps));
+            } else {
+                targetLocalCheckpoint.set(recoveryTarget.indexTranslogOperations(operations, expectedTotalOps));
+            }
+        };
 
         // send operations in batches
         Translog.Operation operation;
@@ -595,6 +605,10 @@ public class RecoverySourceHandler {
                 continue;
             }
             operations.add(operation);
+            final BytesReference serializedOperation = snapshot.serializedOperation();
+            if (serializedOperation != null) {
+                serializedOperations.add(serializedOperation);
+            }
             ops++;
             size += operation.estimateSize();
             totalSentOps++;
@@ -607,6 +621,7 @@ public class RecoverySourceHandler {
                 ops = 0;
                 size = 0;
                 operations.clear();
+                serializedOperations.clear();
             }
         }
 
@@ -66,6 +66,20 @@ public interface RecoveryTargetHandler {
      */
     long indexTranslogOperations(List<Translog.Operation> operations, int totalTranslogOps) throws IOException;
 
+    /**
+     * Index a set of translog operations on the target
+     * @param operations           operations to index
+     * @param serializedOperations the given operations as they were read from the translog, in the format written by
+     *                             {@link Translog#writeOperations}, which may be sent instead of serializing the operations again
+     * @param totalTranslogOps     current number of total operations expected to be indexed
+     *
+     * @return the local checkpoint on the target shard
+     */
+    default long indexTranslogOperations(List<Translog.Operation> operations, BytesReference serializedOperations,
+                                         int totalTranslogOps) throws IOException {
+        return indexTranslogOperations(operations, totalTranslogOps);
+    }
+
     /**
      * Notifies the target of the files it is going to receive
      */
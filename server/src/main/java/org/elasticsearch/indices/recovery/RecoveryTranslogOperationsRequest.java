@@ -19,6 +19,9 @@
 
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.index.shard.ShardId;
@@ -33,15 +36,27 @@ public class RecoveryTranslogOperationsRequest extends TransportRequest {
     private long recoveryId;
     private ShardId shardId;
     private List<Translog.Operation> operations;
+    @Nullable
+    private BytesReference serializedOperations; // only set on the sending side
     private int totalTranslogOps = RecoveryState.Translog.UNKNOWN;
 
     public RecoveryTranslogOperationsRequest() {
     }
 
     RecoveryTranslogOperationsRequest(long recoveryId, ShardId shardId, List<Translog.Operation> operations, int totalTranslogOps) {
+        this(recoveryId, shardId, operations, null, totalTranslogOps);
+    }
+
+    /**
+     * @param serializedOperations the given operations in the format written by {@link Translog#writeOperations}, if available. These
+     *                             bytes are sent as they are instead of serializing the operations again.
+     */
+    RecoveryTranslogOperationsRequest(long recoveryId, ShardId shardId, List<Translog.Operation> operations,
+                                      @Nullable BytesReference serializedOperations, int totalTranslogOps) {
         this.recoveryId = recoveryId;
         this.shardId = shardId;
         this.operations = operations;
+        this.serializedOperations = serializedOperations;
         this.totalTranslogOps = totalTranslogOps;
     }
 
@@ -75,7 +90,13 @@ public class RecoveryTranslogOperationsRequest extends TransportRequest {
         super.writeTo(out);
         out.writeLong(recoveryId);
         shardId.writeTo(out);
-        Translog.writeOperations(out, operations);
+        if (serializedOperations != null && out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            // the operations are shipped in the format they were written to the translog in, which older nodes might not understand
+            out.writeInt(operations.size());
+            serializedOperations.writeTo(out);
+        } else {
+            Translog.writeOperations(out, operations);
+        }
         out.writeVInt(totalTranslogOps);
     }
 }
@@ -111,8 +111,14 @@ public class RemoteRecoveryTargetHandler implements RecoveryTargetHandler {
 
     @Override
     public long indexTranslogOperations(List<Translog.Operation> operations, int totalTranslogOps) {
+        return indexTranslogOperations(operations, null, totalTranslogOps);
+    }
+
+    @Override
+    public long indexTranslogOperations(List<Translog.Operation> operations, BytesReference serializedOperations,
+                                        int totalTranslogOps) {
         final RecoveryTranslogOperationsRequest translogOperationsRequest =
-                new RecoveryTranslogOperationsRequest(recoveryId, shardId, operations, totalTranslogOps);
+                new RecoveryTranslogOperationsRequest(recoveryId, shardId, operations, serializedOperations, totalTranslogOps);
         final TransportFuture<RecoveryTranslogOperationsResponse> future = transportService.submitRequest(
                 targetNode,
                 PeerRecoveryTargetService.Actions.TRANSLOG_OPS,
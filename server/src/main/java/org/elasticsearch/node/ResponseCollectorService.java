@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -47,6 +48,12 @@ public final class ResponseCollectorService extends AbstractComponent implements
 
     private static final double ALPHA = 0.3;
 
+    /**
+     * How many deviations from the average response time of a node a response time may be before it is unusually slow, four like
+     * TCP's retransmission timeout.
+     */
+    private static final int RESPONSE_TIME_DEVIATIONS = 4;
+
     private final ConcurrentMap<String, NodeStatistics> nodeIdToStats = ConcurrentCollections.newConcurrentMap();
 
     public ResponseCollectorService(Settings settings, ClusterService clusterService) {
@@ -72,9 +79,13 @@ public final class ResponseCollectorService extends AbstractComponent implements
             if (ns == null) {
                 ExponentiallyWeightedMovingAverage queueEWMA = new ExponentiallyWeightedMovingAverage(ALPHA, queueSize);
                 ExponentiallyWeightedMovingAverage responseEWMA = new ExponentiallyWeightedMovingAverage(ALPHA, responseTimeNanos);
-                return new NodeStatistics(nodeId, queueEWMA, responseEWMA, avgServiceTimeNanos);
+                // without any variation seen yet assume that response times vary by half of the first one
+                ExponentiallyWeightedMovingAverage responseDeviationEWMA = new ExponentiallyWeightedMovingAverage(ALPHA,
+                    responseTimeNanos / 2.0);
+                return new NodeStatistics(nodeId, queueEWMA, responseEWMA, responseDeviationEWMA, avgServiceTimeNanos);
             } else {
                 ns.queueSize.addValue((double) queueSize);
+                ns.responseTimeDeviation.addValue(Math.abs(responseTimeNanos - ns.responseTime.getAverage()));
                 ns.responseTime.addValue((double) responseTimeNanos);
                 ns.serviceTime = avgServiceTimeNanos;
                 return ns;
@@ -106,6 +117,21 @@ public final class ResponseCollectorService extends AbstractComponent implements
         return Optional.ofNullable(nodeIdToStats.get(nodeId)).map(ns -> new ComputedNodeStats(clientNum, ns));
     }
 
+    /**
+     * Returns an estimate of a high percentile of the response times of the given node in nanoseconds, or an empty
+     * {@code OptionalDouble} if no response time was collected for the node yet. The estimate is the EWMA of the response time plus
+     * a multiple of the EWMA of its deviation, like the retransmission timeout of TCP, so response times above it are unusually slow
+     * for the node.
+     */
+    public OptionalDouble getResponseTimeUpperBound(final String nodeId) {
+        final NodeStatistics nodeStats = nodeIdToStats.get(nodeId);
+        if (nodeStats == null) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(nodeStats.responseTime.getAverage()
+            + RESPONSE_TIME_DEVIATIONS * nodeStats.responseTimeDeviation.getAverage());
+    }
+
     /**
      * Struct-like class encapsulating a point-in-time snapshot of a particular
      * node's statistics. This includes the EWMA of queue size, response time,
@@ -206,22 +232,25 @@ public final class ResponseCollectorService extends AbstractComponent implements
 
     /**
      * Class encapsulating a node's exponentially weighted queue size, response
-     * time, and service time, however, this class is private and intended only
+     * time, response time deviation, and service time, however, this class is private and intended only
      * to be used for the internal accounting of {@code ResponseCollectorService}.
      */
     private static class NodeStatistics {
         final String nodeId;
         final ExponentiallyWeightedMovingAverage queueSize;
         final ExponentiallyWeightedMovingAverage responseTime;
+        final ExponentiallyWeightedMovingAverage responseTimeDeviation;
         double serviceTime;
 
         NodeStatistics(String nodeId,
                        ExponentiallyWeightedMovingAverage queueSizeEWMA,
                        ExponentiallyWeightedMovingAverage responseTimeEWMA,
+                       ExponentiallyWeightedMovingAverage responseTimeDeviationEWMA,
                        double serviceTimeEWMA) {
             this.nodeId = nodeId;
             this.queueSize = queueSizeEWMA;
             this.responseTime = responseTimeEWMA;
+            this.responseTimeDeviation = responseTimeDeviationEWMA;
             this.serviceTime = serviceTimeEWMA;
         }
     }
@@ -72,6 +72,7 @@ public class RestNodesStatsAction extends BaseRestHandler {
         metrics.put("discovery", r -> r.discovery(true));
         metrics.put("ingest", r -> r.ingest(true));
         metrics.put("adaptive_selection", r -> r.adaptiveSelection(true));
+        metrics.put("search_admission", r -> r.searchAdmission(true));
         METRICS = Collections.unmodifiableMap(metrics);
     }
 
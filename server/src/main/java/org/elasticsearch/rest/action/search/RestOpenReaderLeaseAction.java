@@ -0,0 +1,61 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.search;
+
+import org.elasticsearch.action.search.OpenReaderLeaseAction;
+import org.elasticsearch.action.search.OpenReaderLeaseRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+
+import java.io.IOException;
+
+import static org.elasticsearch.common.unit.TimeValue.parseTimeValue;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+public class RestOpenReaderLeaseAction extends BaseRestHandler {
+    public RestOpenReaderLeaseAction(Settings settings, RestController controller) {
+        super(settings);
+
+        controller.registerHandler(POST, "/_reader_lease", this);
+        controller.registerHandler(POST, "/{index}/_reader_lease", this);
+    }
+
+    @Override
+    public String getName() {
+        return "open_reader_lease_action";
+    }
+
+    @Override
+    public RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        OpenReaderLeaseRequest openRequest = new OpenReaderLeaseRequest();
+        openRequest.indices(Strings.splitStringByCommaToArray(request.param("index")));
+        openRequest.indicesOptions(IndicesOptions.fromRequest(request, openRequest.indicesOptions()));
+        openRequest.keepAlive(parseTimeValue(request.param("keep_alive"), null, "keep_alive"));
+        openRequest.routing(request.param("routing"));
+        openRequest.preference(request.param("preference"));
+        return channel -> client.execute(OpenReaderLeaseAction.INSTANCE, openRequest, new RestToXContentListener<>(channel));
+    }
+}
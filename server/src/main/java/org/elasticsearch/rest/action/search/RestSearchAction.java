@@ -149,6 +149,7 @@ public class RestSearchAction extends BaseRestHandler {
         if (scroll != null) {
             searchRequest.scroll(new Scroll(parseTimeValue(scroll, null, "scroll")));
         }
+        searchRequest.readerLease(request.param("reader_lease"));
 
         final boolean includeTypeName = request.paramAsBoolean("include_type_name", true);
         String types = request.param("type");
@@ -23,13 +23,16 @@ import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.TopDocs;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.ResourceNotFoundException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
@@ -43,6 +46,7 @@ import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.query.CoordinatorRewriteContext;
 import org.elasticsearch.index.query.InnerHitContextBuilder;
 import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.MatchNoneQueryBuilder;
@@ -53,11 +57,16 @@ import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.script.SearchScript;
+import org.elasticsearch.search.admission.SearchAdmissionController;
+import org.elasticsearch.search.admission.SearchAdmissionStats;
+import org.elasticsearch.search.admission.SearchCost;
 import org.elasticsearch.search.aggregations.AggregationInitializationException;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -76,7 +85,9 @@ import org.elasticsearch.search.fetch.subphase.DocValueFieldsContext;
 import org.elasticsearch.search.fetch.subphase.ScriptFieldsContext.ScriptField;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
+import org.elasticsearch.search.internal.ReaderLease;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
@@ -129,6 +140,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     public static final Setting<Boolean> LOW_LEVEL_CANCELLATION_SETTING =
         Setting.boolSetting("search.low_level_cancellation", false, Property.Dynamic, Property.NodeScope);
 
+    /**
+     * Enables the concurrent search of the segments of a shard in the query phase. The segments are grouped into slices that are
+     * searched on the {@link Names#SEARCH_WORKER} thread pool, which speeds up heavy searches on large shards at the cost of
+     * using more threads per search request.
+     */
+    public static final Setting<Boolean> CONCURRENT_SEGMENT_SEARCH_SETTING =
+        Setting.boolSetting("search.concurrent_segment_search", false, Property.Dynamic, Property.NodeScope);
+
     public static final TimeValue NO_TIMEOUT = timeValueMillis(-1);
     public static final Setting<TimeValue> DEFAULT_SEARCH_TIMEOUT_SETTING =
         Setting.timeSetting("search.default_search_timeout", NO_TIMEOUT, Property.Dynamic, Property.NodeScope);
@@ -164,14 +183,20 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private volatile boolean lowLevelCancellation;
 
+    private volatile boolean concurrentSegmentSearch;
+
     private final Cancellable keepAliveReaper;
 
     private final AtomicLong idGenerator = new AtomicLong();
 
     private final ConcurrentMapLong<SearchContext> activeContexts = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
 
+    private final ConcurrentMapLong<ReaderLease> readerLeases = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
+
     private final MultiBucketConsumerService multiBucketConsumerService;
 
+    private final SearchAdmissionController admissionController;
+
     public SearchService(ClusterService clusterService, IndicesService indicesService,
                          ThreadPool threadPool, ScriptService scriptService, BigArrays bigArrays, FetchPhase fetchPhase,
                          ResponseCollectorService responseCollectorService) {
@@ -185,6 +210,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.queryPhase = new QueryPhase(settings);
         this.fetchPhase = fetchPhase;
         this.multiBucketConsumerService = new MultiBucketConsumerService(clusterService, settings);
+        this.admissionController = new SearchAdmissionController(settings, clusterService.getClusterSettings(),
+            threadPool.executor(Names.SEARCH), threadPool, threadPool.info(Names.SEARCH).getMax());
 
         TimeValue keepAliveInterval = KEEPALIVE_INTERVAL_SETTING.get(settings);
         setKeepAlives(DEFAULT_KEEPALIVE_SETTING.get(settings), MAX_KEEPALIVE_SETTING.get(settings));
@@ -204,6 +231,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
         lowLevelCancellation = LOW_LEVEL_CANCELLATION_SETTING.get(settings);
         clusterService.getClusterSettings().addSettingsUpdateConsumer(LOW_LEVEL_CANCELLATION_SETTING, this::setLowLevelCancellation);
+
+        concurrentSegmentSearch = CONCURRENT_SEGMENT_SEARCH_SETTING.get(settings);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(CONCURRENT_SEGMENT_SEARCH_SETTING,
+            this::setConcurrentSegmentSearch);
     }
 
     private void validateKeepAlives(TimeValue defaultKeepAlive, TimeValue maxKeepAlive) {
@@ -236,6 +267,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.lowLevelCancellation = lowLevelCancellation;
     }
 
+    private void setConcurrentSegmentSearch(boolean concurrentSegmentSearch) {
+        this.concurrentSegmentSearch = concurrentSegmentSearch;
+    }
+
     @Override
     public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
         // once an index is removed due to deletion or closing, we can just clean up all the pending search context information
@@ -245,6 +280,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         // to release memory and let references to the filesystem go etc.
         if (reason == IndexRemovalReason.DELETED || reason == IndexRemovalReason.CLOSED) {
             freeAllContextForIndex(index);
+            freeAllReaderLeasesForIndex(index);
         }
 
     }
@@ -267,6 +303,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         for (final SearchContext context : activeContexts.values()) {
             freeContext(context.id());
         }
+        for (final ReaderLease lease : readerLeases.values()) {
+            freeReaderLease(lease.id());
+        }
     }
 
     @Override
@@ -328,11 +367,18 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         rewriteShardRequest(request, new ActionListener<ShardSearchRequest>() {
             @Override
             public void onResponse(ShardSearchRequest request) {
+                final SearchCost cost;
                 try {
-                    listener.onResponse(executeQueryPhase(request, task));
+                    cost = estimateCost(request);
                 } catch (Exception e) {
                     onFailure(e);
+                    return;
                 }
+                admissionController.admit(cost, task, ActionListener.wrap(releasable -> {
+                    try (Releasable ignored = releasable) {
+                        listener.onResponse(executeQueryPhase(request, task));
+                    }
+                }, this::onFailure));
             }
 
             @Override
@@ -342,6 +388,18 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         });
     }
 
+    private SearchCost estimateCost(ShardSearchRequest request) {
+        final IndexShard indexShard = indicesService.indexServiceSafe(request.shardId().getIndex()).getShard(request.shardId().id());
+        return SearchCost.estimate(request.source(), indexShard.approximateDocCount());
+    }
+
+    /**
+     * Returns statistics about the admission of shard level search requests on this node.
+     */
+    public SearchAdmissionStats admissionStats() {
+        return admissionController.stats();
+    }
+
     SearchPhaseResult executeQueryPhase(ShardSearchRequest request, SearchTask task) throws IOException {
         final SearchContext context = createAndPutContext(request);
         final SearchOperationListener operationListener = context.indexShard().getSearchOperationListener();
@@ -593,6 +651,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             }
             contextScrollKeepAlive(context, keepAlive);
             context.lowLevelCancellation(lowLevelCancellation);
+            // scripts share the lookup of the search context, which must not be accessed concurrently
+            if (concurrentSegmentSearch && context.getQueryShardContext().hasCompiledScripts() == false) {
+                context.searcher().setExecutor(threadPool.executor(Names.SEARCH_WORKER), threadPool.info(Names.SEARCH_WORKER).getMax(),
+                    ContextIndexSearcher.DEFAULT_MIN_DOCS_PER_SLICE);
+            }
+            if (indicesService.canCacheHitCounts(request, context)) {
+                context.searcher().setHitCountCache(indicesService.getIndicesHitCountCache());
+            }
         } catch (Exception e) {
             context.close();
             throw ExceptionsHelper.convertToRuntime(e);
@@ -613,7 +679,12 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         IndexShard indexShard = indexService.getShard(request.shardId().getId());
         SearchShardTarget shardTarget = new SearchShardTarget(clusterService.localNode().getId(),
                 indexShard.shardId(), request.getClusterAlias(), OriginalIndices.NONE);
-        Engine.Searcher engineSearcher = indexShard.acquireSearcher("search");
+        final Engine.Searcher engineSearcher;
+        if (request.readerLeaseId() != ReaderLease.NO_LEASE) {
+            engineSearcher = acquireLeasedSearcher(request, indexShard);
+        } else {
+            engineSearcher = indexShard.acquireSearcher("search");
+        }
 
         final DefaultSearchContext searchContext = new DefaultSearchContext(idGenerator.incrementAndGet(), request, shardTarget,
             engineSearcher, clusterService, indexService, indexShard, bigArrays, threadPool.estimatedTimeInMillisCounter(), timeout,
@@ -635,6 +706,86 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return searchContext;
     }
 
+    private Engine.Searcher acquireLeasedSearcher(ShardSearchRequest request, IndexShard indexShard) {
+        final long leaseId = request.readerLeaseId();
+        if (request instanceof TransportRequest == false) {
+            // the request must be validated against the lease, like requests that use a scroll context
+            throw new IllegalArgumentException("reader lease [" + leaseId + "] can only be searched by shard requests");
+        }
+        final ReaderLease lease = findReaderLease(leaseId, (TransportRequest) request);
+        final Engine.Searcher searcher = lease.tryAcquireSearcher("search");
+        if (searcher == null) {
+            throw new ResourceNotFoundException("no reader lease found for id [{}]", leaseId);
+        }
+        if (lease.indexShard() != indexShard) {
+            searcher.close();
+            throw new IllegalArgumentException("reader lease [" + leaseId + "] was opened on shard " + lease.shardId()
+                + " but the request targets shard " + indexShard.shardId());
+        }
+        return indexShard.wrapSearcher(searcher);
+    }
+
+    private ReaderLease findReaderLease(long id, TransportRequest request) {
+        final ReaderLease lease = readerLeases.get(id);
+        if (lease == null) {
+            throw new ResourceNotFoundException("no reader lease found for id [{}]", id);
+        }
+        lease.indexShard().getSearchOperationListener().validateReaderLease(lease, request);
+        return lease;
+    }
+
+    /**
+     * Opens a lease on the current reader of the given shard that is kept alive for the given time after it was searched for the last
+     * time, and returns its id. Searches can reference the lease by its id in order to search the same point in time view of the
+     * shard, see {@link ShardSearchRequest#readerLeaseId()}.
+     */
+    public long openReaderLease(ShardId shardId, TimeValue keepAlive) {
+        if (keepAlive.millis() > maxKeepAlive) {
+            throw new IllegalArgumentException(
+                "Keep alive for reader lease (" + keepAlive + ") is too large. " +
+                    "It must be less than (" + TimeValue.timeValueMillis(maxKeepAlive) + "). " +
+                    "This limit can be set by changing the [" + MAX_KEEPALIVE_SETTING.getKey() + "] cluster level setting.");
+        }
+        final IndexShard indexShard = indicesService.indexServiceSafe(shardId.getIndex()).getShard(shardId.id());
+        final Engine.Searcher searcher = indexShard.acquireUnwrappedSearcher("reader_lease");
+        final ReaderLease lease = new ReaderLease(idGenerator.incrementAndGet(), indexShard, searcher, keepAlive.millis(),
+            threadPool::relativeTimeInMillis);
+        indexShard.getSearchOperationListener().onNewReaderLease(lease);
+        final ReaderLease previous = readerLeases.put(lease.id(), lease);
+        assert previous == null;
+        return lease.id();
+    }
+
+    /**
+     * Frees the reader lease with the given id on behalf of the given request, its reader is closed once the searches that currently
+     * use it completed. The request is validated against the lease like the requests that search it.
+     */
+    public boolean freeReaderLease(long id, TransportRequest request) {
+        try {
+            findReaderLease(id, request);
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
+        return freeReaderLease(id);
+    }
+
+    private boolean freeReaderLease(long id) {
+        final ReaderLease lease = readerLeases.remove(id);
+        if (lease != null) {
+            lease.decRef();
+            return true;
+        }
+        return false;
+    }
+
+    private void freeAllReaderLeasesForIndex(Index index) {
+        for (ReaderLease lease : readerLeases.values()) {
+            if (index.equals(lease.shardId().getIndex())) {
+                freeReaderLease(lease.id());
+            }
+        }
+    }
+
     private void freeAllContextForIndex(Index index) {
         assert index != null;
         for (SearchContext ctx : activeContexts.values()) {
@@ -931,6 +1082,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return this.activeContexts.size();
     }
 
+    /**
+     * Returns the number of reader leases that are open on this node.
+     */
+    public int getOpenReaderLeases() {
+        return readerLeases.size();
+    }
+
     public ResponseCollectorService getResponseCollectorService() {
         return this.responseCollectorService;
     }
@@ -952,6 +1110,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                     freeContext(context.id());
                 }
             }
+            for (ReaderLease lease : readerLeases.values()) {
+                if (lease.isExpired(time)) {
+                    logger.debug("freeing reader lease [{}], time [{}], lastAccessTime [{}], keepAlive [{}]", lease.id(), time,
+                        lease.lastAccessTime(), lease.keepAlive());
+                    freeReaderLease(lease.id());
+                }
+            }
         }
     }
 
@@ -976,6 +1141,21 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    /**
+     * Returns the min and max values of the date and integral numeric fields of the shard that the coordinating node can cache to
+     * rewrite queries without asking the shard, or <code>null</code> if they might still change. See {@link IndexShard#fieldRanges()}.
+     * Also returns <code>null</code> if the coordinating node has ranges cached for the current version of the index metadata already,
+     * since these remain valid until the metadata changes. This avoids computing and sending them with every can_match response.
+     */
+    @Nullable
+    public ShardFieldRanges getFieldRanges(ShardId shardId, long cachedFieldRangesVersion) throws IOException {
+        final IndexShard indexShard = indicesService.getShardOrNull(shardId);
+        if (indexShard == null || indexShard.indexSettings().getIndexMetaData().getVersion() == cachedFieldRangesVersion) {
+            return null;
+        }
+        return indexShard.fieldRanges();
+    }
+
     /**
      * Returns true iff the given search source builder can be early terminated by rewriting to a match none query. Or in other words
      * if the execution of a the search request can be early terminated without executing it. This is for instance not possible if
@@ -1034,6 +1214,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return indicesService.getRewriteContext(nowInMillis);
     }
 
+    /**
+     * Returns a new {@link CoordinatorRewriteContext} that rewrites queries against the given field ranges of a shard
+     */
+    public CoordinatorRewriteContext getCoordinatorRewriteContext(LongSupplier nowInMillis, ShardFieldRanges fieldRanges) {
+        return indicesService.getCoordinatorRewriteContext(nowInMillis, fieldRanges);
+    }
+
     public IndicesService getIndicesService() {
         return indicesService;
     }
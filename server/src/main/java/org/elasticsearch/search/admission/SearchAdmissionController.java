@@ -0,0 +1,293 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.admission;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.FutureUtils;
+import org.elasticsearch.search.admission.SearchCost.CostClass;
+import org.elasticsearch.tasks.TaskCancelledException;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits shard level search requests based on their estimated {@link SearchCost}. Cheap requests are always admitted, other
+ * requests are admitted as long as the memory they are estimated to need fits into the memory budget of the node, and expensive
+ * requests are additionally limited to half of the search threads so that they can't take all of them. Requests that can't be
+ * admitted are delayed in order of arrival until enough running requests completed, or rejected if too many requests are delayed
+ * already or if they were delayed for too long. Delayed requests don't hold a search thread, they are forked to the given executor
+ * once they are admitted, unless their task was cancelled in the meantime.
+ */
+public class SearchAdmissionController extends AbstractComponent {
+
+    /** The estimated memory that requests which are not cheap may use concurrently (default: 10% of the heap). */
+    public static final Setting<ByteSizeValue> MEMORY_BUDGET_SETTING =
+        Setting.memorySizeSetting("search.admission.memory_budget", "10%", Property.Dynamic, Property.NodeScope);
+
+    /** The maximum number of requests that wait for admission before further requests are rejected (default: 1000). */
+    public static final Setting<Integer> MAX_DELAYED_REQUESTS_SETTING =
+        Setting.intSetting("search.admission.max_delayed_requests", 1000, 0, Property.Dynamic, Property.NodeScope);
+
+    /** The maximum time that a request waits for admission before it is rejected (default: 30s). */
+    public static final Setting<TimeValue> MAX_DELAY_SETTING =
+        Setting.positiveTimeSetting("search.admission.max_delay", TimeValue.timeValueSeconds(30), Property.Dynamic, Property.NodeScope);
+
+    private static final Releasable NO_OP = () -> {};
+
+    private final Executor executor;
+    private final Scheduler scheduler;
+    private final int maxConcurrentExpensive;
+    private volatile long memoryBudgetInBytes;
+    private volatile int maxDelayedRequests;
+    private volatile TimeValue maxDelay;
+
+    // protected by this controller's lock
+    private long usedInBytes;
+    private int runningExpensive;
+    private final Deque<DelayedRequest> delayedRequests = new ArrayDeque<>();
+
+    private final CounterMetric[] admitted = newCounters();
+    private final CounterMetric[] delayed = newCounters();
+    private final CounterMetric[] rejected = newCounters();
+
+    public SearchAdmissionController(Settings settings, ClusterSettings clusterSettings, Executor executor, Scheduler scheduler,
+                                     int searchThreads) {
+        super(settings);
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.maxConcurrentExpensive = Math.max(1, searchThreads / 2);
+        this.memoryBudgetInBytes = MEMORY_BUDGET_SETTING.get(settings).getBytes();
+        this.maxDelayedRequests = MAX_DELAYED_REQUESTS_SETTING.get(settings);
+        this.maxDelay = MAX_DELAY_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(MEMORY_BUDGET_SETTING, this::setMemoryBudget);
+        clusterSettings.addSettingsUpdateConsumer(MAX_DELAYED_REQUESTS_SETTING, this::setMaxDelayedRequests);
+        clusterSettings.addSettingsUpdateConsumer(MAX_DELAY_SETTING, this::setMaxDelay);
+    }
+
+    private static CounterMetric[] newCounters() {
+        final CounterMetric[] counters = new CounterMetric[CostClass.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new CounterMetric();
+        }
+        return counters;
+    }
+
+    private void setMemoryBudget(ByteSizeValue memoryBudget) {
+        this.memoryBudgetInBytes = memoryBudget.getBytes();
+    }
+
+    private void setMaxDelayedRequests(int maxDelayedRequests) {
+        this.maxDelayedRequests = maxDelayedRequests;
+    }
+
+    private void setMaxDelay(TimeValue maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Admits a request of the given cost. The listener is notified with a {@link Releasable} that must be closed once the request
+     * completed, either right away on the calling thread or, if the request is delayed, on a thread of the executor once it is
+     * admitted. The listener is notified of an {@link EsRejectedExecutionException} if the request is rejected, and of a
+     * {@link TaskCancelledException} if the task of a delayed request is cancelled before the request is admitted.
+     */
+    public void admit(SearchCost cost, SearchTask task, ActionListener<Releasable> listener) {
+        final long memoryBudgetInBytes = this.memoryBudgetInBytes;
+        final CostClass costClass = cost.classify(memoryBudgetInBytes);
+        if (costClass == CostClass.CHEAP) {
+            admitted[costClass.ordinal()].inc();
+            listener.onResponse(NO_OP);
+            return;
+        }
+        // a single request may use the whole budget but no more, otherwise it would never be admitted
+        final Permit permit = new Permit(costClass, Math.min(cost.getMemoryInBytes(), memoryBudgetInBytes));
+        final boolean admit;
+        final DelayedRequest delayedRequest;
+        synchronized (this) {
+            // requests are admitted in order of arrival so that expensive requests can't be starved by medium ones
+            if (delayedRequests.isEmpty() && tryAcquire(permit)) {
+                admit = true;
+                delayedRequest = null;
+            } else if (delayedRequests.size() < maxDelayedRequests) {
+                admit = false;
+                delayedRequest = new DelayedRequest(permit, task, listener);
+                delayedRequests.add(delayedRequest);
+                delayed[costClass.ordinal()].inc();
+            } else {
+                admit = false;
+                delayedRequest = null;
+            }
+        }
+        if (delayedRequest != null) {
+            final TimeValue maxDelay = this.maxDelay;
+            // the request may be admitted before the timeout is set, in which case the timeout finds it dequeued and does nothing
+            delayedRequest.timeout = scheduler.schedule(maxDelay, ThreadPool.Names.SAME, () -> onTimeout(delayedRequest, maxDelay));
+        } else if (admit) {
+            admitted[costClass.ordinal()].inc();
+            listener.onResponse(permit);
+        } else {
+            rejected[costClass.ordinal()].inc();
+            listener.onFailure(new EsRejectedExecutionException("rejected search request of cost class [" + costClass.getId()
+                + "] with estimated memory [" + new ByteSizeValue(cost.getMemoryInBytes()) + "], [" + maxDelayedRequests
+                + "] requests are waiting for admission already"));
+        }
+    }
+
+    private boolean tryAcquire(Permit permit) {
+        assert Thread.holdsLock(this);
+        if (usedInBytes > 0 && usedInBytes + permit.bytes > memoryBudgetInBytes) {
+            return false;
+        }
+        if (permit.costClass == CostClass.EXPENSIVE) {
+            if (runningExpensive >= maxConcurrentExpensive) {
+                return false;
+            }
+            runningExpensive++;
+        }
+        usedInBytes += permit.bytes;
+        return true;
+    }
+
+    private void onTimeout(DelayedRequest request, TimeValue maxDelay) {
+        final boolean timedOut;
+        synchronized (this) {
+            timedOut = delayedRequests.remove(request);
+        }
+        if (timedOut) {
+            rejected[request.permit.costClass.ordinal()].inc();
+            request.listener.onFailure(new EsRejectedExecutionException("rejected search request of cost class ["
+                + request.permit.costClass.getId() + "], it waited for admission for more than [" + maxDelay + "]"));
+        }
+    }
+
+    private void release(Permit permit) {
+        final List<DelayedRequest> toAdmit = new ArrayList<>();
+        final List<DelayedRequest> cancelled = new ArrayList<>();
+        synchronized (this) {
+            usedInBytes -= permit.bytes;
+            assert usedInBytes >= 0 : "used more bytes than acquired: " + usedInBytes;
+            if (permit.costClass == CostClass.EXPENSIVE) {
+                runningExpensive--;
+            }
+            DelayedRequest next;
+            while ((next = delayedRequests.peek()) != null) {
+                // cancelled requests must neither take the budget of the requests behind them nor wait for it
+                if (next.task.isCancelled()) {
+                    cancelled.add(delayedRequests.poll());
+                } else if (tryAcquire(next.permit)) {
+                    toAdmit.add(delayedRequests.poll());
+                } else {
+                    break;
+                }
+            }
+        }
+        for (DelayedRequest request : cancelled) {
+            FutureUtils.cancel(request.timeout);
+            request.listener.onFailure(new TaskCancelledException("cancelled while waiting for admission"));
+        }
+        for (DelayedRequest request : toAdmit) {
+            FutureUtils.cancel(request.timeout);
+            admitted[request.permit.costClass.ordinal()].inc();
+            executor.execute(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    request.permit.close();
+                    request.listener.onFailure(e);
+                }
+
+                @Override
+                protected void doRun() {
+                    if (request.task.isCancelled()) {
+                        throw new TaskCancelledException("cancelled while waiting for admission");
+                    }
+                    request.listener.onResponse(request.permit);
+                }
+            });
+        }
+    }
+
+    public SearchAdmissionStats stats() {
+        final long usedInBytes;
+        final int currentDelayed;
+        synchronized (this) {
+            usedInBytes = this.usedInBytes;
+            currentDelayed = delayedRequests.size();
+        }
+        return new SearchAdmissionStats(memoryBudgetInBytes, usedInBytes, currentDelayed, counts(admitted), counts(delayed),
+            counts(rejected));
+    }
+
+    private static long[] counts(CounterMetric[] counters) {
+        final long[] counts = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counts[i] = counters[i].count();
+        }
+        return counts;
+    }
+
+    private final class Permit implements Releasable {
+        private final CostClass costClass;
+        private final long bytes;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Permit(CostClass costClass, long bytes) {
+            this.costClass = costClass;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+
+    private static final class DelayedRequest {
+        final Permit permit;
+        final SearchTask task;
+        final ActionListener<Releasable> listener;
+        volatile ScheduledFuture<?> timeout;
+
+        DelayedRequest(Permit permit, SearchTask task, ActionListener<Releasable> listener) {
+            this.permit = permit;
+            this.task = task;
+            this.listener = listener;
+        }
+    }
+}
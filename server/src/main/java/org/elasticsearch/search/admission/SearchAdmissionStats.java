@@ -0,0 +1,174 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.admission;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.admission.SearchCost.CostClass;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Statistics about the admission of shard level search requests, the number of requests that were admitted right away, delayed
+ * and rejected are counted per {@link CostClass}.
+ */
+public class SearchAdmissionStats implements Writeable, ToXContentFragment {
+
+    private final long memoryBudgetInBytes;
+    private final long usedInBytes;
+    private final int currentDelayed;
+    private final long[] admitted;
+    private final long[] delayed;
+    private final long[] rejected;
+
+    public SearchAdmissionStats(long memoryBudgetInBytes, long usedInBytes, int currentDelayed,
+                                long[] admitted, long[] delayed, long[] rejected) {
+        assert admitted.length == CostClass.values().length && delayed.length == CostClass.values().length
+            && rejected.length == CostClass.values().length : "expected counts per cost class";
+        this.memoryBudgetInBytes = memoryBudgetInBytes;
+        this.usedInBytes = usedInBytes;
+        this.currentDelayed = currentDelayed;
+        this.admitted = admitted;
+        this.delayed = delayed;
+        this.rejected = rejected;
+    }
+
+    public SearchAdmissionStats(StreamInput in) throws IOException {
+        memoryBudgetInBytes = in.readVLong();
+        usedInBytes = in.readVLong();
+        currentDelayed = in.readVInt();
+        admitted = in.readVLongArray();
+        delayed = in.readVLongArray();
+        rejected = in.readVLongArray();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(memoryBudgetInBytes);
+        out.writeVLong(usedInBytes);
+        out.writeVInt(currentDelayed);
+        out.writeVLongArray(admitted);
+        out.writeVLongArray(delayed);
+        out.writeVLongArray(rejected);
+    }
+
+    /**
+     * The estimated memory that non cheap requests may use concurrently.
+     */
+    public long getMemoryBudgetInBytes() {
+        return memoryBudgetInBytes;
+    }
+
+    /**
+     * The estimated memory used by the requests that are currently executing.
+     */
+    public long getUsedInBytes() {
+        return usedInBytes;
+    }
+
+    /**
+     * The number of requests that are waiting to be admitted.
+     */
+    public int getCurrentDelayed() {
+        return currentDelayed;
+    }
+
+    /**
+     * The number of requests of the given class that were admitted, either right away or after they were delayed.
+     */
+    public long getAdmitted(CostClass costClass) {
+        return admitted[costClass.ordinal()];
+    }
+
+    /**
+     * The number of requests of the given class that had to wait before they were admitted.
+     */
+    public long getDelayed(CostClass costClass) {
+        return delayed[costClass.ordinal()];
+    }
+
+    /**
+     * The number of requests of the given class that were rejected because too many requests were delayed already.
+     */
+    public long getRejected(CostClass costClass) {
+        return rejected[costClass.ordinal()];
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.SEARCH_ADMISSION);
+        builder.humanReadableField(Fields.MEMORY_BUDGET_IN_BYTES, Fields.MEMORY_BUDGET, new ByteSizeValue(memoryBudgetInBytes));
+        builder.humanReadableField(Fields.USED_IN_BYTES, Fields.USED, new ByteSizeValue(usedInBytes));
+        builder.field(Fields.CURRENT_DELAYED, currentDelayed);
+        builder.startObject(Fields.COST_CLASSES);
+        for (CostClass costClass : CostClass.values()) {
+            builder.startObject(costClass.getId());
+            builder.field(Fields.ADMITTED, getAdmitted(costClass));
+            builder.field(Fields.DELAYED, getDelayed(costClass));
+            builder.field(Fields.REJECTED, getRejected(costClass));
+            builder.endObject();
+        }
+        builder.endObject();
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchAdmissionStats that = (SearchAdmissionStats) o;
+        return memoryBudgetInBytes == that.memoryBudgetInBytes
+            && usedInBytes == that.usedInBytes
+            && currentDelayed == that.currentDelayed
+            && Arrays.equals(admitted, that.admitted)
+            && Arrays.equals(delayed, that.delayed)
+            && Arrays.equals(rejected, that.rejected);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(memoryBudgetInBytes, usedInBytes, currentDelayed, Arrays.hashCode(admitted), Arrays.hashCode(delayed),
+            Arrays.hashCode(rejected));
+    }
+
+    static final class Fields {
+        static final String SEARCH_ADMISSION = "search_admission";
+        static final String MEMORY_BUDGET = "memory_budget";
+        static final String MEMORY_BUDGET_IN_BYTES = "memory_budget_in_bytes";
+        static final String USED = "used";
+        static final String USED_IN_BYTES = "used_in_bytes";
+        static final String CURRENT_DELAYED = "current_delayed";
+        static final String COST_CLASSES = "cost_classes";
+        static final String ADMITTED = "admitted";
+        static final String DELAYED = "delayed";
+        static final String REJECTED = "rejected";
+    }
+}
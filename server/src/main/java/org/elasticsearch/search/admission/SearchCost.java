@@ -0,0 +1,251 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.admission;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.ConstantScoreQueryBuilder;
+import org.elasticsearch.index.query.DisMaxQueryBuilder;
+import org.elasticsearch.index.query.FuzzyQueryBuilder;
+import org.elasticsearch.index.query.PrefixQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.elasticsearch.index.query.RegexpQueryBuilder;
+import org.elasticsearch.index.query.ScriptQueryBuilder;
+import org.elasticsearch.index.query.WildcardQueryBuilder;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanksAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.scripted.ScriptedMetricAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHitsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A rough estimate of the resources a shard level search request needs, derived from the shape of its query and aggregation tree
+ * and from the number of documents of the shard. The memory is an estimate of the bytes that the aggregations of the request hold
+ * while collecting, and the work is an estimate of the number of documents visited by all the clauses and aggregations of the request.
+ * The estimates are not accurate, they only need to tell cheap requests from expensive ones.
+ */
+public final class SearchCost {
+
+    /**
+     * The classes of cost that requests are admitted by.
+     */
+    public enum CostClass {
+        CHEAP, MEDIUM, EXPENSIVE;
+
+        public String getId() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** The memory below which a request is cheap, provided it doesn't do too much work either. */
+    static final long CHEAP_MEMORY_IN_BYTES = ByteSizeUnit.MB.toBytes(1);
+    /** The work below which a request is cheap, provided it doesn't need too much memory either. */
+    static final long CHEAP_WORK = 10_000_000L;
+    /** The work above which a request is expensive no matter how much memory it needs. */
+    static final long EXPENSIVE_WORK = 1_000_000_000L;
+
+    // the estimated overhead of a single bucket of a bucket aggregation, including the bookkeeping of its sub aggregations
+    static final long BUCKET_BYTES = 128;
+    static final long METRIC_BYTES = 64;
+    static final int DEFAULT_BUCKETS = 100;
+    static final int HISTOGRAM_BUCKETS = 1000;
+    // the default precision threshold of the cardinality aggregation and the maximum one it supports
+    static final long DEFAULT_PRECISION_THRESHOLD = 3000;
+    static final long MAX_PRECISION_THRESHOLD = 40000;
+    static final long PERCENTILES_BYTES = ByteSizeUnit.KB.toBytes(8);
+    static final long SCRIPTED_METRIC_BYTES = ByteSizeUnit.KB.toBytes(16);
+    static final long TOP_HITS_BYTES_PER_HIT = 64;
+    // multi term queries and scripts are charged as if they were made of several clauses
+    static final int EXPENSIVE_QUERY_WEIGHT = 10;
+
+    private final long memoryInBytes;
+    private final long work;
+
+    public SearchCost(long memoryInBytes, long work) {
+        this.memoryInBytes = memoryInBytes;
+        this.work = work;
+    }
+
+    /**
+     * The estimated bytes that the request holds while it is executed.
+     */
+    public long getMemoryInBytes() {
+        return memoryInBytes;
+    }
+
+    /**
+     * The estimated number of documents that the request visits.
+     */
+    public long getWork() {
+        return work;
+    }
+
+    /**
+     * Returns the class of this cost given the memory budget of the node.
+     */
+    public CostClass classify(long memoryBudgetInBytes) {
+        if (memoryInBytes < CHEAP_MEMORY_IN_BYTES && work < CHEAP_WORK) {
+            return CostClass.CHEAP;
+        }
+        // a single request may take a twentieth of the budget before it is considered expensive
+        if (memoryInBytes >= memoryBudgetInBytes / 20 || work >= EXPENSIVE_WORK) {
+            return CostClass.EXPENSIVE;
+        }
+        return CostClass.MEDIUM;
+    }
+
+    /**
+     * Estimates the cost of executing the given search source on a shard with the given number of documents.
+     */
+    public static SearchCost estimate(@Nullable SearchSourceBuilder source, long numDocs) {
+        numDocs = Math.max(numDocs, 0);
+        if (source == null) {
+            // match_all without aggregations
+            return new SearchCost(0, numDocs);
+        }
+        long weight = queryWeight(source.query()) + queryWeight(source.postFilter());
+        long memoryInBytes = 0;
+        if (source.aggregations() != null) {
+            final List<AggregationBuilder> aggregations = source.aggregations().getAggregatorFactories();
+            memoryInBytes = aggregationsBytes(aggregations, 1, numDocs);
+            weight += countAggregations(aggregations);
+        }
+        if (source.sorts() != null && source.sorts().isEmpty() == false) {
+            weight++;
+        }
+        return new SearchCost(memoryInBytes, multiplyCapped(numDocs, Math.max(weight, 1)));
+    }
+
+    /**
+     * The number of clauses of the query, where clauses that expand to many terms or run scripts count more than others.
+     */
+    static long queryWeight(@Nullable QueryBuilder query) {
+        if (query == null) {
+            return 0;
+        }
+        if (query instanceof BoolQueryBuilder) {
+            final BoolQueryBuilder bool = (BoolQueryBuilder) query;
+            return queryWeight(bool.must()) + queryWeight(bool.filter()) + queryWeight(bool.should()) + queryWeight(bool.mustNot());
+        } else if (query instanceof ConstantScoreQueryBuilder) {
+            return queryWeight(((ConstantScoreQueryBuilder) query).innerQuery());
+        } else if (query instanceof DisMaxQueryBuilder) {
+            return queryWeight(((DisMaxQueryBuilder) query).innerQueries());
+        } else if (query instanceof FunctionScoreQueryBuilder) {
+            return queryWeight(((FunctionScoreQueryBuilder) query).query()) + 1;
+        } else if (query instanceof WildcardQueryBuilder || query instanceof RegexpQueryBuilder || query instanceof FuzzyQueryBuilder
+            || query instanceof PrefixQueryBuilder || query instanceof ScriptQueryBuilder || query instanceof QueryStringQueryBuilder) {
+            return EXPENSIVE_QUERY_WEIGHT;
+        }
+        return 1;
+    }
+
+    private static long queryWeight(List<QueryBuilder> queries) {
+        long weight = 0;
+        for (QueryBuilder query : queries) {
+            weight += queryWeight(query);
+        }
+        return weight;
+    }
+
+    private static long countAggregations(Collection<AggregationBuilder> aggregations) {
+        long count = 0;
+        for (AggregationBuilder aggregation : aggregations) {
+            count += 1 + countAggregations(aggregation.getSubAggregations());
+        }
+        return count;
+    }
+
+    /**
+     * The bytes held by the given aggregations when they are collected into the given number of parent buckets. The number of
+     * buckets on every level is bounded by the number of documents of the shard since empty buckets are not created.
+     */
+    static long aggregationsBytes(Collection<AggregationBuilder> aggregations, long parentBuckets, long numDocs) {
+        long bytes = 0;
+        for (AggregationBuilder aggregation : aggregations) {
+            final long bytesPerParent;
+            final List<AggregationBuilder> subAggregations = aggregation.getSubAggregations();
+            if (aggregation instanceof MultiBucketAggregationBuilder) {
+                final long buckets = Math.min(multiplyCapped(parentBuckets, estimateBuckets(aggregation)), Math.max(numDocs, 1));
+                bytes = addCapped(bytes, multiplyCapped(buckets, BUCKET_BYTES));
+                bytes = addCapped(bytes, aggregationsBytes(subAggregations, buckets, numDocs));
+                continue;
+            } else if (aggregation instanceof CardinalityAggregationBuilder) {
+                final Long precisionThreshold = ((CardinalityAggregationBuilder) aggregation).precisionThreshold();
+                bytesPerParent = Math.min(precisionThreshold == null ? DEFAULT_PRECISION_THRESHOLD : precisionThreshold,
+                    MAX_PRECISION_THRESHOLD) * Integer.BYTES;
+            } else if (aggregation instanceof PercentilesAggregationBuilder
+                || aggregation instanceof PercentileRanksAggregationBuilder) {
+                bytesPerParent = PERCENTILES_BYTES;
+            } else if (aggregation instanceof TopHitsAggregationBuilder) {
+                bytesPerParent = ((TopHitsAggregationBuilder) aggregation).size() * TOP_HITS_BYTES_PER_HIT + ByteSizeUnit.KB.toBytes(1);
+            } else if (aggregation instanceof ScriptedMetricAggregationBuilder) {
+                bytesPerParent = SCRIPTED_METRIC_BYTES;
+            } else {
+                // single bucket aggregations like filter and nested and simple metrics
+                bytesPerParent = METRIC_BYTES;
+            }
+            bytes = addCapped(bytes, multiplyCapped(parentBuckets, bytesPerParent));
+            bytes = addCapped(bytes, aggregationsBytes(subAggregations, parentBuckets, numDocs));
+        }
+        return bytes;
+    }
+
+    private static long estimateBuckets(AggregationBuilder aggregation) {
+        if (aggregation instanceof TermsAggregationBuilder) {
+            final TermsAggregationBuilder terms = (TermsAggregationBuilder) aggregation;
+            // same default as the terms aggregator when the shard size is not set
+            return terms.shardSize() > 0 ? terms.shardSize() : (long) (terms.size() * 1.5 + 10);
+        } else if (aggregation instanceof HistogramAggregationBuilder || aggregation instanceof DateHistogramAggregationBuilder) {
+            return HISTOGRAM_BUCKETS;
+        }
+        return DEFAULT_BUCKETS;
+    }
+
+    private static long multiplyCapped(long a, long b) {
+        final long result = a * b;
+        if (a != 0 && (result / a != b || result < 0)) {
+            return Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    private static long addCapped(long a, long b) {
+        final long result = a + b;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCost{memoryInBytes=" + memoryInBytes + ", work=" + work + "}";
+    }
+}
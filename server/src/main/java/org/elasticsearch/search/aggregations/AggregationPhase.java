@@ -19,6 +19,7 @@
 package org.elasticsearch.search.aggregations;
 
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.Query;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.search.Queries;
@@ -33,6 +34,7 @@ import org.elasticsearch.search.query.QueryPhaseExecutionException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -66,6 +68,8 @@ public class AggregationPhase implements SearchPhase {
                         collector = new InternalProfileCollector(collector, CollectorResult.REASON_AGGREGATION,
                                 // TODO: report on child aggs as well
                                 Collections.emptyList());
+                    } else if (factories.supportsConcurrentCollection()) {
+                        context.aggregations().sliceCollectorManager(new SliceCollectorManager(context));
                     }
                     context.queryCollectors().put(AggregationPhase.class, collector);
                 }
@@ -122,17 +126,20 @@ public class AggregationPhase implements SearchPhase {
             }
         }
 
-        List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
-        context.aggregations().resetBucketMultiConsumer();
-        for (Aggregator aggregator : context.aggregations().aggregators()) {
-            try {
-                aggregator.postCollection();
-                aggregations.add(aggregator.buildAggregation(0));
-            } catch (IOException e) {
-                throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+        InternalAggregations aggregations = buildAggregations(context, context.aggregations().aggregators());
+        final List<Aggregator[]> sliceAggregators = context.aggregations().sliceAggregators();
+        if (sliceAggregators.isEmpty() == false) {
+            // the slices of the index were searched concurrently, their aggregations are reduced like the ones of different shards
+            final List<InternalAggregations> sliceAggregations = new ArrayList<>(sliceAggregators.size() + 1);
+            sliceAggregations.add(aggregations);
+            for (Aggregator[] slice : sliceAggregators) {
+                sliceAggregations.add(buildAggregations(context, slice));
             }
+            // scripts only run on the final reduce
+            aggregations = InternalAggregations.reduce(sliceAggregations,
+                new InternalAggregation.ReduceContext(context.bigArrays(), null, false));
         }
-        context.queryResult().aggregations(new InternalAggregations(aggregations));
+        context.queryResult().aggregations(aggregations);
         try {
             List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
             List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
@@ -155,4 +162,52 @@ public class AggregationPhase implements SearchPhase {
         context.queryCollectors().remove(AggregationPhase.class);
     }
 
+    private static InternalAggregations buildAggregations(SearchContext context, Aggregator[] aggregators) {
+        List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
+        // the buckets of each slice are checked on their own
+        context.aggregations().resetBucketMultiConsumer();
+        for (Aggregator aggregator : aggregators) {
+            try {
+                aggregator.postCollection();
+                aggregations.add(aggregator.buildAggregation(0));
+            } catch (IOException e) {
+                throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+            }
+        }
+        return new InternalAggregations(aggregations);
+    }
+
+    /**
+     * Creates the top level aggregators of the slices of the index that are searched concurrently, except the first one which is
+     * collected by the aggregators of the search context. The aggregations of the slices are built and reduced by
+     * {@link #execute(SearchContext)}.
+     */
+    private static final class SliceCollectorManager implements CollectorManager<Collector, Void> {
+        private final SearchContext context;
+
+        SliceCollectorManager(SearchContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Collector newCollector() throws IOException {
+            final List<Aggregator> aggregators = new ArrayList<>();
+            for (Aggregator aggregator : context.aggregations().factories().createTopLevelAggregators()) {
+                // global aggregators are collected by the aggregation phase
+                if (aggregator instanceof GlobalAggregator == false) {
+                    aggregators.add(aggregator);
+                }
+            }
+            context.aggregations().addSliceAggregators(aggregators.toArray(new Aggregator[0]));
+            final BucketCollector collector = BucketCollector.wrap(aggregators);
+            collector.preCollection();
+            return collector;
+        }
+
+        @Override
+        public Void reduce(Collection<Collector> collectors) {
+            return null;
+        }
+    }
+
 }
@@ -31,6 +31,7 @@ import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
+import java.util.function.BiConsumer;
 
 /**
  * An Aggregator.
@@ -101,6 +102,16 @@ public abstract class Aggregator extends BucketCollector implements Releasable {
      */
     public abstract InternalAggregation buildEmptyAggregation();
 
+    /**
+     * Collect debugging information about how this aggregator collected the documents, which is reported in the profile of the
+     * aggregation. Called once collection is done.
+     *
+     * @param add called with a key and a value for each piece of information, values must be serializable with
+     *            {@link StreamOutput#writeGenericValue}
+     */
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+    }
+
     /** Aggregation mode for sub aggregations. */
     public enum SubAggCollectionMode implements Writeable {
 
@@ -223,6 +223,19 @@ public class AggregatorFactories {
         return aggregators;
     }
 
+    /**
+     * Returns whether all the aggregators created by these factories support the concurrent collection of the slices of the index,
+     * see {@link AggregatorFactory#supportsConcurrentCollection()}.
+     */
+    public boolean supportsConcurrentCollection() {
+        for (AggregatorFactory<?> factory : factories) {
+            if (factory.supportsConcurrentCollection() == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the number of sub-aggregator factories not including pipeline
      *         aggregator factories
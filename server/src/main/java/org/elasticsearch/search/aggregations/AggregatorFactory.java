@@ -220,6 +220,15 @@ public abstract class AggregatorFactory<AF extends AggregatorFactory<AF>> {
         return parent;
     }
 
+    /**
+     * Returns whether the aggregators of this factory and of its sub-factories can collect the slices of the index that are searched
+     * concurrently with an aggregator per slice, in which case the aggregations of the slices are reduced like the aggregations of
+     * different shards. Factories whose aggregations depend on seeing all documents of the shard at once must return false.
+     */
+    public boolean supportsConcurrentCollection() {
+        return factories.supportsConcurrentCollection();
+    }
+
     /**
      * Utility method. Given an {@link AggregatorFactory} that creates
      * {@link Aggregator}s that only know how to collect bucket {@code 0}, this
@@ -18,6 +18,11 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntConsumer;
 
 import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
@@ -30,6 +35,8 @@ public class SearchContextAggregations {
     private final AggregatorFactories factories;
     private final MultiBucketConsumer multiBucketConsumer;
     private Aggregator[] aggregators;
+    private CollectorManager<Collector, Void> sliceCollectorManager;
+    private final List<Aggregator[]> sliceAggregators = new ArrayList<>();
 
     /**
      * Creates a new aggregation context with the parsed aggregator factories
@@ -56,6 +63,36 @@ public class SearchContextAggregations {
         this.aggregators = aggregators;
     }
 
+    /**
+     * Returns the manager of the collectors of the slices of the index, except the first one which is collected by
+     * {@link #aggregators()}, if the slices are searched concurrently. Returns <code>null</code> if the aggregations don't support
+     * concurrent collection.
+     */
+    public CollectorManager<Collector, Void> sliceCollectorManager() {
+        return sliceCollectorManager;
+    }
+
+    /**
+     * Registers the manager of the collectors of the slices of the index that are searched concurrently.
+     */
+    public void sliceCollectorManager(CollectorManager<Collector, Void> sliceCollectorManager) {
+        this.sliceCollectorManager = sliceCollectorManager;
+    }
+
+    /**
+     * Returns the top level aggregators of the slices of the index, except the first one, that were searched concurrently.
+     */
+    public List<Aggregator[]> sliceAggregators() {
+        return sliceAggregators;
+    }
+
+    /**
+     * Registers the top level aggregators of a slice of the index that is searched concurrently.
+     */
+    public void addSliceAggregators(Aggregator[] aggregators) {
+        sliceAggregators.add(aggregators);
+    }
+
     /**
      * Returns a consumer for multi bucket aggregation that checks the total number of buckets
      * created in the response
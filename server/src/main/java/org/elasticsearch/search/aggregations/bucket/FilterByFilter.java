@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.search.aggregations.AggregationInitializationException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts the documents that match the query of the search and each of a list of filters filter by filter: the documents of a segment
+ * that match the conjunction of the query and a filter are counted by iterating over them, rather than collecting every document that
+ * matches the query and checking all filters for it. This is only correct for aggregators whose buckets only need a doc count, see
+ * {@link #canCountFilterByFilter}, and only faster if the filters are selective compared to the query, which is decided per segment
+ * from the cost of the scorers, see {@link #countOrNull}.
+ *
+ * Note that the slices of the index can be collected concurrently by an aggregator per slice that share the instance of their factory,
+ * hence the synchronization.
+ */
+public final class FilterByFilter {
+
+    /** The documents are collected and checked against all filters. */
+    public static final String COLLECT = "collect";
+    /** The documents that match each filter are counted. */
+    public static final String FILTER_BY_FILTER = "filter_by_filter";
+    /** Some segments are collected and the others counted filter by filter. */
+    public static final String MIXED = "mixed";
+
+    private final String name;
+    private final SearchContext context;
+    private final Query[] filters;
+
+    // lazily created, so that no weights are created for aggregations that don't collect anything
+    private Weight queryWeight;
+    private Weight[] weights;
+
+    public FilterByFilter(String name, SearchContext context, Query[] filters) {
+        this.name = name;
+        this.context = context;
+        this.filters = filters;
+    }
+
+    /**
+     * Returns whether the buckets of an aggregator can be counted filter by filter: the aggregator must be a top level aggregator
+     * without sub-aggregations, so that its buckets only need doc counts, and every document that matches the query must be counted.
+     */
+    public static boolean canCountFilterByFilter(SearchContext context, Aggregator parent, AggregatorFactories factories) {
+        return parent == null
+            && factories.countAggregators() == 0
+            && context.minimumScore() == null
+            && context.terminateAfter() == SearchContext.DEFAULT_TERMINATE_AFTER;
+    }
+
+    private synchronized Weight[] getWeights() {
+        if (weights == null) {
+            try {
+                final IndexSearcher searcher = context.searcher();
+                final Query query = context.query();
+                if (query != null && query.getClass() != MatchAllDocsQuery.class) {
+                    queryWeight = searcher.createNormalizedWeight(query, false);
+                }
+                final Weight[] weights = new Weight[filters.length];
+                for (int i = 0; i < filters.length; i++) {
+                    Query filter = filters[i];
+                    if (queryWeight != null) {
+                        filter = new BooleanQuery.Builder()
+                            .add(query, BooleanClause.Occur.FILTER)
+                            .add(filter, BooleanClause.Occur.FILTER)
+                            .build();
+                    }
+                    weights[i] = searcher.createNormalizedWeight(filter, false);
+                }
+                this.weights = weights;
+            } catch (IOException e) {
+                throw new AggregationInitializationException("Failed to initialise filters for aggregation [" + name + "]", e);
+            }
+        }
+        return weights;
+    }
+
+    private synchronized Weight getQueryWeight() {
+        return queryWeight;
+    }
+
+    /**
+     * Returns the number of documents of the segment that match the query and each of the filters, or <code>null</code> if collecting
+     * the documents of the segment is expected to be cheaper than counting them filter by filter.
+     */
+    public int[] countOrNull(LeafReaderContext ctx) throws IOException {
+        final Weight[] weights = getWeights();
+        final Weight queryWeight = getQueryWeight();
+        final long queryCost;
+        if (queryWeight == null) {
+            queryCost = ctx.reader().maxDoc();
+        } else {
+            final ScorerSupplier querySupplier = queryWeight.scorerSupplier(ctx);
+            if (querySupplier == null) {
+                // no document of the segment matches the query
+                return new int[filters.length];
+            }
+            queryCost = querySupplier.cost();
+        }
+
+        final ScorerSupplier[] suppliers = new ScorerSupplier[weights.length];
+        long filterByFilterCost = 0;
+        for (int i = 0; i < weights.length; i++) {
+            suppliers[i] = weights[i].scorerSupplier(ctx);
+            if (suppliers[i] != null) {
+                // the cost of a conjunction is the one of its most selective clause, but the other clause needs to be advanced too
+                filterByFilterCost += queryWeight == null ? suppliers[i].cost() : 2 * suppliers[i].cost();
+            }
+        }
+        // collecting checks every filter for every document that matches the query
+        if (filterByFilterCost >= queryCost * filters.length) {
+            return null;
+        }
+
+        final Bits liveDocs = ctx.reader().getLiveDocs();
+        final int[] counts = new int[filters.length];
+        for (int i = 0; i < suppliers.length; i++) {
+            if (suppliers[i] == null) {
+                continue;
+            }
+            // the filter leads the iteration
+            final DocIdSetIterator iterator = suppliers[i].get(Long.MAX_VALUE).iterator();
+            int count = 0;
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    count++;
+                }
+            }
+            counts[i] = count;
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the strategy that an aggregator used to the debugging information of its profile, given the number of segments that it
+     * counted filter by filter and collected.
+     */
+    public static void collectDebugInfo(BiConsumer<String, Object> add, int segmentsCounted, int segmentsCollected) {
+        final String strategy;
+        if (segmentsCounted == 0) {
+            strategy = COLLECT;
+        } else if (segmentsCollected == 0) {
+            strategy = FILTER_BY_FILTER;
+        } else {
+            strategy = MIXED;
+        }
+        add.accept("strategy", strategy);
+        add.accept("segments_counted_filter_by_filter", segmentsCounted);
+        add.accept("segments_collected", segmentsCollected);
+    }
+}
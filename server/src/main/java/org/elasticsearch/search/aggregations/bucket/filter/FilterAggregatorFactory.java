@@ -51,10 +51,10 @@ public class FilterAggregatorFactory extends AggregatorFactory<FilterAggregatorF
      * if the aggregation collects documents reducing the overhead of the
      * aggregation in teh case where no documents are collected.
      * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     * Note that the slices of the index can be collected concurrently, see
+     * {@link #supportsConcurrentCollection()}, hence the synchronization.
      */
-    public Weight getWeight() {
+    public synchronized Weight getWeight() {
         if (weight == null) {
             IndexSearcher contextSearcher = context.searcher();
             try {
@@ -22,6 +22,7 @@ package org.elasticsearch.search.aggregations.bucket.filter;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -37,6 +38,7 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.FilterByFilter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -45,6 +47,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 public class FiltersAggregator extends BucketsAggregator {
@@ -121,14 +124,18 @@ public class FiltersAggregator extends BucketsAggregator {
     private final boolean showOtherBucket;
     private final String otherBucketKey;
     private final int totalNumKeys;
+    private final FilterByFilter filterByFilter;
+    private int segmentsCounted;
+    private int segmentsCollected;
 
-    public FiltersAggregator(String name, AggregatorFactories factories, String[] keys, Supplier<Weight[]> filters, boolean keyed,
-            String otherBucketKey, SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
-            Map<String, Object> metaData) throws IOException {
+    public FiltersAggregator(String name, AggregatorFactories factories, String[] keys, Supplier<Weight[]> filters,
+            @Nullable FilterByFilter filterByFilter, boolean keyed, String otherBucketKey, SearchContext context, Aggregator parent,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, factories, context, parent, pipelineAggregators, metaData);
         this.keyed = keyed;
         this.keys = keys;
         this.filters = filters;
+        this.filterByFilter = filterByFilter;
         this.showOtherBucket = otherBucketKey != null;
         this.otherBucketKey = otherBucketKey;
         if (showOtherBucket) {
@@ -141,6 +148,19 @@ public class FiltersAggregator extends BucketsAggregator {
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (filterByFilter != null) {
+            final int[] counts = filterByFilter.countOrNull(ctx);
+            if (counts != null) {
+                segmentsCounted++;
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        incrementBucketDocCount(bucketOrd(0, i), counts[i]);
+                    }
+                }
+                return LeafBucketCollector.NO_OP_COLLECTOR;
+            }
+        }
+        segmentsCollected++;
         // no need to provide deleted docs to the filter
         Weight[] filters = this.filters.get();
         final Bits[] bits = new Bits[filters.length];
@@ -164,6 +184,11 @@ public class FiltersAggregator extends BucketsAggregator {
         };
     }
 
+    @Override
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+        FilterByFilter.collectDebugInfo(add, segmentsCounted, segmentsCollected);
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         consumeBucketsAndMaybeBreak(keys.length + (showOtherBucket ? 1 : 0));
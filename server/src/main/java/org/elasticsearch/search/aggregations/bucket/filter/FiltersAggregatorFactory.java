@@ -26,6 +26,7 @@ import org.elasticsearch.search.aggregations.AggregationInitializationException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.FilterByFilter;
 import org.elasticsearch.search.aggregations.bucket.filter.FiltersAggregator.KeyedFilter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.internal.SearchContext;
@@ -39,6 +40,7 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
     private final String[] keys;
     private final Query[] filters;
     private Weight[] weights;
+    private final FilterByFilter filterByFilter;
     private final boolean keyed;
     private final boolean otherBucket;
     private final String otherBucketKey;
@@ -57,6 +59,7 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
             this.keys[i] = keyedFilter.key();
             this.filters[i] = keyedFilter.filter().toFilter(context.getQueryShardContext());
         }
+        this.filterByFilter = new FilterByFilter(name, context, this.filters);
     }
 
     /**
@@ -65,10 +68,10 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
      * created if the aggregation collects documents reducing the overhead of
      * the aggregation in the case where no documents are collected.
      * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     * Note that the slices of the index can be collected concurrently, see
+     * {@link #supportsConcurrentCollection()}, hence the synchronization.
      */
-    public Weight[] getWeights() {
+    public synchronized Weight[] getWeights() {
         if (weights == null) {
             try {
                 IndexSearcher contextSearcher = context.searcher();
@@ -86,8 +89,10 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
-        return new FiltersAggregator(name, factories, keys, () -> getWeights(), keyed, otherBucket ? otherBucketKey : null, context, parent,
-                pipelineAggregators, metaData);
+        // the other bucket needs to see the documents that match none of the filters
+        final boolean countFilterByFilter = otherBucket == false && FilterByFilter.canCountFilterByFilter(context, parent, factories);
+        return new FiltersAggregator(name, factories, keys, () -> getWeights(), countFilterByFilter ? filterByFilter : null, keyed,
+                otherBucket ? otherBucketKey : null, context, parent, pipelineAggregators, metaData);
     }
 
 
@@ -52,6 +52,12 @@ public class GeoHashGridAggregatorFactory extends ValuesSourceAggregatorFactory<
         this.shardSize = shardSize;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the top shard_size cells must be computed for the whole shard, truncating the cells of each slice would change them
+        return false;
+    }
+
     @Override
     protected Aggregator createUnmapped(Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException {
@@ -153,7 +153,13 @@ public class AutoDateHistogramAggregationBuilder
             throw new IllegalArgumentException(NUM_BUCKETS_FIELD.getPreferredName()+
                 " must be less than " + bucketCeiling);
         }
-        return new AutoDateHistogramAggregatorFactory(name, config, numBuckets, roundings, context, parent, subFactoriesBuilder, metaData);
+        Rounding.Prepared[] preparedRoundings = new Rounding.Prepared[roundings.length];
+        for (int i = 0; i < roundings.length; i++) {
+            preparedRoundings[i] = DateHistogramAggregationBuilder.prepareRounding(roundings[i].rounding, 0,
+                context.getQueryShardContext(), config);
+        }
+        return new AutoDateHistogramAggregatorFactory(name, config, numBuckets, roundings, preparedRoundings, context, parent,
+            subFactoriesBuilder, metaData);
     }
 
     private static Rounding createRounding(DateTimeUnit interval, DateTimeZone timeZone) {
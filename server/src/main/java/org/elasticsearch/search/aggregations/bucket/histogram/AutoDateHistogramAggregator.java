@@ -57,6 +57,7 @@ class AutoDateHistogramAggregator extends DeferableBucketAggregator {
     private final ValuesSource.Numeric valuesSource;
     private final DocValueFormat formatter;
     private final RoundingInfo[] roundingInfos;
+    private final Rounding.Prepared[] preparedRoundings;
     private int roundingIdx = 0;
 
     private LongHash bucketOrds;
@@ -64,14 +65,16 @@ class AutoDateHistogramAggregator extends DeferableBucketAggregator {
     private MergingBucketsDeferringCollector deferringCollector;
 
     AutoDateHistogramAggregator(String name, AggregatorFactories factories, int numBuckets, RoundingInfo[] roundingInfos,
-            @Nullable ValuesSource.Numeric valuesSource, DocValueFormat formatter, SearchContext aggregationContext, Aggregator parent,
-            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+            Rounding.Prepared[] preparedRoundings, @Nullable ValuesSource.Numeric valuesSource, DocValueFormat formatter,
+            SearchContext aggregationContext, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, pipelineAggregators, metaData);
         this.targetBuckets = numBuckets;
         this.valuesSource = valuesSource;
         this.formatter = formatter;
         this.roundingInfos = roundingInfos;
+        this.preparedRoundings = preparedRoundings;
 
         bucketOrds = new LongHash(1, aggregationContext.bigArrays());
 
@@ -110,7 +113,7 @@ class AutoDateHistogramAggregator extends DeferableBucketAggregator {
                     long previousRounded = Long.MIN_VALUE;
                     for (int i = 0; i < valuesCount; ++i) {
                         long value = values.nextValue();
-                        long rounded = roundingInfos[roundingIdx].rounding.round(value);
+                        long rounded = preparedRoundings[roundingIdx].round(value);
                         assert rounded >= previousRounded;
                         if (rounded == previousRounded) {
                             continue;
@@ -135,7 +138,7 @@ class AutoDateHistogramAggregator extends DeferableBucketAggregator {
                 try (LongHash oldBucketOrds = bucketOrds) {
                     LongHash newBucketOrds = new LongHash(1, context.bigArrays());
                     long[] mergeMap = new long[(int) oldBucketOrds.size()];
-                    Rounding newRounding = roundingInfos[++roundingIdx].rounding;
+                    Rounding.Prepared newRounding = preparedRoundings[++roundingIdx];
                     for (int i = 0; i < oldBucketOrds.size(); i++) {
                         long oldKey = oldBucketOrds.get(i);
                         long newKey = newRounding.round(oldKey);
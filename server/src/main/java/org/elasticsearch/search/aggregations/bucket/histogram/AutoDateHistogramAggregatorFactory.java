@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.elasticsearch.common.rounding.Rounding;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
@@ -39,13 +40,15 @@ public final class AutoDateHistogramAggregatorFactory
 
     private final int numBuckets;
     private RoundingInfo[] roundingInfos;
+    private final Rounding.Prepared[] preparedRoundings;
 
     public AutoDateHistogramAggregatorFactory(String name, ValuesSourceConfig<Numeric> config, int numBuckets, RoundingInfo[] roundingInfos,
-            SearchContext context, AggregatorFactory<?> parent, AggregatorFactories.Builder subFactoriesBuilder,
-            Map<String, Object> metaData) throws IOException {
+            Rounding.Prepared[] preparedRoundings, SearchContext context, AggregatorFactory<?> parent,
+            AggregatorFactories.Builder subFactoriesBuilder, Map<String, Object> metaData) throws IOException {
         super(name, config, context, parent, subFactoriesBuilder, metaData);
         this.numBuckets = numBuckets;
         this.roundingInfos = roundingInfos;
+        this.preparedRoundings = preparedRoundings;
     }
 
     @Override
@@ -59,9 +62,8 @@ public final class AutoDateHistogramAggregatorFactory
 
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
-        return new AutoDateHistogramAggregator(name, factories, numBuckets, roundingInfos, valuesSource, config.format(), context, parent,
-                pipelineAggregators,
-                metaData);
+        return new AutoDateHistogramAggregator(name, factories, numBuckets, roundingInfos, preparedRoundings, valuesSource,
+                config.format(), context, parent, pipelineAggregators, metaData);
     }
 
     @Override
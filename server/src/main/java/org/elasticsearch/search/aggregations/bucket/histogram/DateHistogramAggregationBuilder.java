@@ -19,8 +19,11 @@
 
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -35,6 +38,7 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.fielddata.AtomicNumericFieldData;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.mapper.DateFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MappedFieldType.Relation;
 import org.elasticsearch.index.query.QueryShardContext;
@@ -435,13 +439,54 @@ public class DateHistogramAggregationBuilder extends ValuesSourceAggregationBuil
             shardRounding = createRounding(rewrittenTimeZone);
         }
 
+        // the aggregator rounds values that are shifted by the offset
+        final Rounding.Prepared preparedShardRounding = prepareRounding(shardRounding, offset, context.getQueryShardContext(), config);
+
         ExtendedBounds roundedBounds = null;
         if (this.extendedBounds != null) {
             // parse any string bounds to longs and round
             roundedBounds = this.extendedBounds.parseAndValidate(name, context, config.format()).round(rounding);
         }
         return new DateHistogramAggregatorFactory(name, config, offset, order, keyed, minDocCount,
-                rounding, shardRounding, roundedBounds, context, parent, subFactoriesBuilder, metaData);
+                rounding, preparedShardRounding, roundedBounds, context, parent, subFactoriesBuilder, metaData);
+    }
+
+    /**
+     * Prepares the given rounding for the values of the field of the given config on this shard, shifted by the given offset, see
+     * {@link Rounding#prepare(long, long)}. The range of the values is taken from the points of the field, so the rounding is only
+     * prepared for the range if the values are those of an indexed date field rather than coming from a script or a missing value.
+     */
+    public static Rounding.Prepared prepareRounding(Rounding rounding, long offset, QueryShardContext context,
+                                                    ValuesSourceConfig<?> config) throws IOException {
+        final IndexReader reader = context.getIndexReader();
+        final String field = indexedDateFieldOrNull(config);
+        if (reader == null || field == null) {
+            return rounding.prepareForUnknown();
+        }
+        final byte[] minPackedValue = PointValues.getMinPackedValue(reader, field);
+        final byte[] maxPackedValue = PointValues.getMaxPackedValue(reader, field);
+        if (minPackedValue == null || maxPackedValue == null) {
+            // no document has a value
+            return rounding.prepareForUnknown();
+        }
+        final long min = LongPoint.decodeDimension(minPackedValue, 0);
+        final long max = LongPoint.decodeDimension(maxPackedValue, 0);
+        return rounding.prepare(min - offset, max - offset);
+    }
+
+    /**
+     * Returns the name of the field of the given config if its values are those of an indexed date field, so that they can be read
+     * from the points of the field, or <code>null</code> if they come from a script or a missing value.
+     */
+    static String indexedDateFieldOrNull(ValuesSourceConfig<?> config) {
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        if (fieldType instanceof DateFieldMapper.DateFieldType == false || fieldType.indexOptions() == IndexOptions.NONE) {
+            return null;
+        }
+        return fieldType.name();
     }
 
     /** Return the interval as a date time unit if applicable. If this returns
@@ -18,8 +18,16 @@
  */
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.util.CollectionUtil;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasables;
@@ -55,7 +63,7 @@ class DateHistogramAggregator extends BucketsAggregator {
     private final ValuesSource.Numeric valuesSource;
     private final DocValueFormat formatter;
     private final Rounding rounding;
-    private final Rounding shardRounding;
+    private final Rounding.Prepared shardRounding;
     private final BucketOrder order;
     private final boolean keyed;
 
@@ -65,10 +73,15 @@ class DateHistogramAggregator extends BucketsAggregator {
     private final LongHash bucketOrds;
     private long offset;
 
-    DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, Rounding shardRounding,
+    // the field whose points are counted instead of collecting documents, null if the documents need to be collected
+    private final String pointsField;
+    // the range of values of the points field that the query matches
+    private final long[] pointsQueryRange;
+
+    DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, Rounding.Prepared shardRounding,
             long offset, BucketOrder order, boolean keyed,
             long minDocCount, @Nullable ExtendedBounds extendedBounds, @Nullable ValuesSource.Numeric valuesSource,
-            DocValueFormat formatter, SearchContext aggregationContext,
+            @Nullable String pointsField, DocValueFormat formatter, SearchContext aggregationContext,
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, pipelineAggregators, metaData);
@@ -83,6 +96,45 @@ class DateHistogramAggregator extends BucketsAggregator {
         this.formatter = formatter;
 
         bucketOrds = new LongHash(1, aggregationContext.bigArrays());
+
+        // counting points only works if all matching documents are counted and nothing else needs to see them
+        if (pointsField != null && parent == null && subAggregators.length == 0
+                && aggregationContext.minimumScore() == null
+                && aggregationContext.terminateAfter() == SearchContext.DEFAULT_TERMINATE_AFTER) {
+            this.pointsQueryRange = queryRangeOrNull(aggregationContext.query(), pointsField);
+        } else {
+            this.pointsQueryRange = null;
+        }
+        this.pointsField = pointsQueryRange == null ? null : pointsField;
+    }
+
+    /**
+     * Returns the range of values of the given field that the query matches as {@code [min, max]} if the query matches exactly the
+     * documents that have a value of the field within the range, or <code>null</code> otherwise.
+     */
+    static long[] queryRangeOrNull(Query query, String field) {
+        if (query instanceof ConstantScoreQuery) {
+            query = ((ConstantScoreQuery) query).getQuery();
+        }
+        if (query instanceof IndexOrDocValuesQuery) {
+            query = ((IndexOrDocValuesQuery) query).getIndexQuery();
+        }
+        if (query == null || query.getClass() == MatchAllDocsQuery.class) {
+            return new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+        }
+        if (query instanceof DocValuesFieldExistsQuery && field.equals(((DocValuesFieldExistsQuery) query).getField())) {
+            return new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+        }
+        if (query instanceof PointRangeQuery) {
+            final PointRangeQuery rangeQuery = (PointRangeQuery) query;
+            if (field.equals(rangeQuery.getField()) && rangeQuery.getNumDims() == 1 && rangeQuery.getBytesPerDim() == Long.BYTES) {
+                return new long[] {
+                    LongPoint.decodeDimension(rangeQuery.getLowerPoint(), 0),
+                    LongPoint.decodeDimension(rangeQuery.getUpperPoint(), 0)
+                };
+            }
+        }
+        return null;
     }
 
     @Override
@@ -96,6 +148,17 @@ class DateHistogramAggregator extends BucketsAggregator {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        if (pointsField != null && ctx.reader().getLiveDocs() == null) {
+            final PointValues pointValues = ctx.reader().getPointValues(pointsField);
+            // with multiple values per document, documents would be counted once per value rather than once per bucket
+            if (pointValues != null && pointValues.size() == pointValues.getDocCount()) {
+                final PointsBucketCounter counter = new PointsBucketCounter(pointsQueryRange[0], pointsQueryRange[1]);
+                pointValues.intersect(counter);
+                counter.flush();
+                // all documents of the segment are counted, the doc values don't need to be read at all
+                return LeafBucketCollector.NO_OP_COLLECTOR;
+            }
+        }
         final SortedNumericDocValues values = valuesSource.longValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -107,9 +170,7 @@ class DateHistogramAggregator extends BucketsAggregator {
                     long previousRounded = Long.MIN_VALUE;
                     for (int i = 0; i < valuesCount; ++i) {
                         long value = values.nextValue();
-                        // We can use shardRounding here, which is sometimes more efficient
-                        // if daylight saving times are involved.
-                        long rounded = shardRounding.round(value - offset) + offset;
+                        long rounded = round(value);
                         assert rounded >= previousRounded;
                         if (rounded == previousRounded) {
                             continue;
@@ -128,6 +189,82 @@ class DateHistogramAggregator extends BucketsAggregator {
         };
     }
 
+    private long round(long value) {
+        // We can use shardRounding here, which is sometimes more efficient
+        // if daylight saving times are involved.
+        return shardRounding.round(value - offset) + offset;
+    }
+
+    /**
+     * Counts the documents of a segment per bucket from the points of the field. Cells of the BKD tree whose values all round to the
+     * same bucket are counted from their doc ids only, so only the cells at the boundaries of buckets need their values decoded.
+     */
+    private class PointsBucketCounter implements PointValues.IntersectVisitor {
+        private final long minValue;
+        private final long maxValue;
+
+        // the bucket of the cell whose documents are visited without their values
+        private long cellBucket;
+        private long currentBucket;
+        private int currentCount;
+
+        PointsBucketCounter(long minValue, long maxValue) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        @Override
+        public void visit(int docID) {
+            count(cellBucket);
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+            final long value = LongPoint.decodeDimension(packedValue, 0);
+            if (value >= minValue && value <= maxValue) {
+                count(round(value));
+            }
+        }
+
+        @Override
+        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final long min = LongPoint.decodeDimension(minPackedValue, 0);
+            final long max = LongPoint.decodeDimension(maxPackedValue, 0);
+            if (max < minValue || min > maxValue) {
+                return PointValues.Relation.CELL_OUTSIDE_QUERY;
+            }
+            if (min >= minValue && max <= maxValue) {
+                final long rounded = round(min);
+                // rounding is monotonic, so all values of the cell round to the same bucket
+                if (rounded == round(max)) {
+                    cellBucket = rounded;
+                    return PointValues.Relation.CELL_INSIDE_QUERY;
+                }
+            }
+            return PointValues.Relation.CELL_CROSSES_QUERY;
+        }
+
+        private void count(long bucket) {
+            if (currentCount > 0 && bucket != currentBucket) {
+                flush();
+            }
+            currentBucket = bucket;
+            currentCount++;
+        }
+
+        void flush() {
+            if (currentCount == 0) {
+                return;
+            }
+            long bucketOrd = bucketOrds.add(currentBucket);
+            if (bucketOrd < 0) { // already seen
+                bucketOrd = -1 - bucketOrd;
+            }
+            incrementBucketDocCount(bucketOrd, currentCount);
+            currentCount = 0;
+        }
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         assert owningBucketOrdinal == 0;
@@ -44,11 +44,11 @@ public final class DateHistogramAggregatorFactory
     private final long minDocCount;
     private final ExtendedBounds extendedBounds;
     private final Rounding rounding;
-    private final Rounding shardRounding;
+    private final Rounding.Prepared shardRounding;
 
     public DateHistogramAggregatorFactory(String name, ValuesSourceConfig<Numeric> config,
             long offset, BucketOrder order, boolean keyed, long minDocCount,
-            Rounding rounding, Rounding shardRounding, ExtendedBounds extendedBounds, SearchContext context,
+            Rounding rounding, Rounding.Prepared shardRounding, ExtendedBounds extendedBounds, SearchContext context,
             AggregatorFactory<?> parent, AggregatorFactories.Builder subFactoriesBuilder,
             Map<String, Object> metaData) throws IOException {
         super(name, config, context, parent, subFactoriesBuilder, metaData);
@@ -76,8 +76,9 @@ public final class DateHistogramAggregatorFactory
 
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
+        final String pointsField = valuesSource == null ? null : DateHistogramAggregationBuilder.indexedDateFieldOrNull(config);
         return new DateHistogramAggregator(name, factories, rounding, shardRounding, offset, order, keyed, minDocCount, extendedBounds,
-                valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
+                valuesSource, pointsField, config.format(), context, parent, pipelineAggregators, metaData);
     }
 
     @Override
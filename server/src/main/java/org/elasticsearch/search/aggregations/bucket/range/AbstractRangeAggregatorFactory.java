@@ -19,9 +19,18 @@
 
 package org.elasticsearch.search.aggregations.bucket.range;
 
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.FilterByFilter;
 import org.elasticsearch.search.aggregations.bucket.range.RangeAggregator.Range;
 import org.elasticsearch.search.aggregations.bucket.range.RangeAggregator.Unmapped;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
@@ -41,6 +50,7 @@ public class AbstractRangeAggregatorFactory<AF extends AbstractRangeAggregatorFa
     private final InternalRange.Factory<?, ?> rangeFactory;
     private final R[] ranges;
     private final boolean keyed;
+    private final FilterByFilter filterByFilter;
 
     public AbstractRangeAggregatorFactory(String name, ValuesSourceConfig<Numeric> config, R[] ranges, boolean keyed,
             InternalRange.Factory<?, ?> rangeFactory, SearchContext context, AggregatorFactory<?> parent,
@@ -49,6 +59,68 @@ public class AbstractRangeAggregatorFactory<AF extends AbstractRangeAggregatorFa
         this.ranges = ranges;
         this.keyed = keyed;
         this.rangeFactory = rangeFactory;
+        final Query[] rangeFilters = rangeFiltersOrNull(config, ranges);
+        this.filterByFilter = rangeFilters == null ? null : new FilterByFilter(name, context, rangeFilters);
+    }
+
+    // doubles represent all integers up to this value exactly
+    private static final long MAX_EXACT_INTEGER = 1L << 53;
+
+    /**
+     * Builds a query per range that matches the documents that the aggregator collects into the range, or returns <code>null</code>
+     * if the values don't come from a field of integers whose points can be queried.
+     */
+    static Query[] rangeFiltersOrNull(ValuesSourceConfig<Numeric> config, Range[] ranges) {
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        if (fieldType.indexOptions() == IndexOptions.NONE) {
+            return null;
+        }
+        final boolean intPoints;
+        if (fieldType instanceof DateFieldMapper.DateFieldType) {
+            intPoints = false;
+        } else if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+            switch (fieldType.typeName()) {
+                case "long":
+                    intPoints = false;
+                    break;
+                case "integer":
+                case "short":
+                case "byte":
+                    intPoints = true;
+                    break;
+                default:
+                    return null;
+            }
+        } else {
+            return null;
+        }
+
+        final Query[] filters = new Query[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            final double from = ranges[i].from;
+            final double to = ranges[i].to;
+            // the aggregator compares the values as doubles, which only gives the same result as comparing them as integers if the
+            // bounds are exact integers
+            if ((Double.isInfinite(from) == false && Math.abs(from) > MAX_EXACT_INTEGER)
+                    || (Double.isInfinite(to) == false && Math.abs(to) > MAX_EXACT_INTEGER)) {
+                return null;
+            }
+            // the range is [from, to), so it contains the integers within [ceil(from), ceil(to) - 1]
+            final long lower = from == Double.NEGATIVE_INFINITY ? Long.MIN_VALUE : (long) Math.ceil(from);
+            final long upper = to == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) Math.ceil(to) - 1;
+            if (lower > upper) {
+                filters[i] = new MatchNoDocsQuery("empty range");
+            } else if (intPoints) {
+                filters[i] = IntPoint.newRangeQuery(fieldType.name(), (int) Math.max(lower, Integer.MIN_VALUE),
+                    (int) Math.min(upper, Integer.MAX_VALUE));
+            } else {
+                filters[i] = LongPoint.newRangeQuery(fieldType.name(), lower, upper);
+            }
+        }
+        return filters;
     }
 
     @Override
@@ -60,8 +132,9 @@ public class AbstractRangeAggregatorFactory<AF extends AbstractRangeAggregatorFa
     @Override
     protected Aggregator doCreateInternal(ValuesSource.Numeric valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
-        return new RangeAggregator(name, factories, valuesSource, config.format(), rangeFactory, ranges, keyed, context, parent,
-                pipelineAggregators, metaData);
+        final boolean countFilterByFilter = filterByFilter != null && FilterByFilter.canCountFilterByFilter(context, parent, factories);
+        return new RangeAggregator(name, factories, valuesSource, config.format(), rangeFactory, ranges, keyed,
+                countFilterByFilter ? filterByFilter : null, context, parent, pipelineAggregators, metaData);
     }
 
 
@@ -19,6 +19,7 @@
 package org.elasticsearch.search.aggregations.bucket.range;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -37,6 +38,7 @@ import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.NonCollectingAggregator;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.FilterByFilter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.internal.SearchContext;
@@ -46,6 +48,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 public class RangeAggregator extends BucketsAggregator {
 
@@ -224,9 +227,14 @@ public class RangeAggregator extends BucketsAggregator {
 
     final double[] maxTo;
 
+    private final FilterByFilter filterByFilter;
+    private int segmentsCounted;
+    private int segmentsCollected;
+
     public RangeAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
-            InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, SearchContext context,
-            Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+            InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, @Nullable FilterByFilter filterByFilter,
+            SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
 
         super(name, factories, context, parent, pipelineAggregators, metaData);
         assert valuesSource != null;
@@ -234,6 +242,7 @@ public class RangeAggregator extends BucketsAggregator {
         this.format = format;
         this.keyed = keyed;
         this.rangeFactory = rangeFactory;
+        this.filterByFilter = filterByFilter;
 
         this.ranges = ranges;
 
@@ -253,6 +262,19 @@ public class RangeAggregator extends BucketsAggregator {
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (filterByFilter != null) {
+            final int[] counts = filterByFilter.countOrNull(ctx);
+            if (counts != null) {
+                segmentsCounted++;
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        incrementBucketDocCount(subBucketOrdinal(0, i), counts[i]);
+                    }
+                }
+                return LeafBucketCollector.NO_OP_COLLECTOR;
+            }
+        }
+        segmentsCollected++;
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -321,6 +343,11 @@ public class RangeAggregator extends BucketsAggregator {
         return owningBucketOrdinal * ranges.length + rangeOrd;
     }
 
+    @Override
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+        FilterByFilter.collectDebugInfo(add, segmentsCounted, segmentsCollected);
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         consumeBucketsAndMaybeBreak(ranges.length);
@@ -39,6 +39,12 @@ public class SamplerAggregatorFactory extends AggregatorFactory<SamplerAggregato
         this.shardSize = shardSize;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the sample must hold the best matching documents of the whole shard
+        return false;
+    }
+
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
@@ -155,6 +155,12 @@ public class SignificantTextAggregatorFactory extends AggregatorFactory<Signific
         }
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the background frequencies of terms are computed for the whole shard and would be counted once per slice
+        return false;
+    }
+
     @Override
     protected Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
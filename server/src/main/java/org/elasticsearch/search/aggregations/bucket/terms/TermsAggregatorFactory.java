@@ -79,6 +79,13 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         this.showTermDocCountError = showTermDocCountError;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the top shard_size terms and their doc count errors must be computed for the whole shard, truncating the terms of each
+        // slice would change both
+        return false;
+    }
+
     @Override
     protected Aggregator createUnmapped(Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException {
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.index.fielddata.FieldData;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+
+import java.io.IOException;
+
+/**
+ * A {@link LeafBucketCollector} for metrics aggregations over numeric values, which decodes the values of documents into an array of
+ * doubles and hands them over to {@link #collectValues} block by block, so that metrics are computed by tight loops over primitive
+ * arrays rather than through a virtual call per value.
+ *
+ * Top level aggregations collect all documents into bucket <code>0</code>, so their collectors can buffer the documents and collect
+ * them {@link #BLOCK_SIZE} at a time. The documents that are still buffered when the segment is done are collected by {@link #flush()},
+ * see {@link NumericMetricsAggregator#collectInBlocks}.
+ */
+public abstract class DoubleValuesLeafCollector extends LeafBucketCollectorBase {
+
+    /** The maximum number of documents that are buffered before they are collected. */
+    public static final int BLOCK_SIZE = 128;
+
+    private final SortedNumericDoubleValues values;
+    // not null if documents have at most one value in this segment, which saves reading the number of values of every document
+    private final NumericDoubleValues singleValues;
+    // null if documents are collected as they come
+    private final int[] bufferedDocs;
+    private int numBufferedDocs;
+    private double[] buffer = new double[BLOCK_SIZE];
+
+    /**
+     * @param sub       The leaf collector for sub aggregations.
+     * @param values    The values to collect.
+     * @param bufferDocs Whether documents can be buffered, which is only correct if all of them are collected into bucket
+     *                  <code>0</code> and their values don't depend on the current score.
+     */
+    protected DoubleValuesLeafCollector(LeafBucketCollector sub, SortedNumericDoubleValues values, boolean bufferDocs) {
+        this(sub, values, values, bufferDocs);
+    }
+
+    /**
+     * Same as {@link #DoubleValuesLeafCollector(LeafBucketCollector, SortedNumericDoubleValues, boolean)}, for values that are derived
+     * from <code>scorerAware</code>, like the minimum value of each document.
+     */
+    protected DoubleValuesLeafCollector(LeafBucketCollector sub, Object scorerAware, SortedNumericDoubleValues values,
+                                        boolean bufferDocs) {
+        super(sub, scorerAware);
+        this.values = values;
+        this.singleValues = FieldData.unwrapSingleton(values);
+        this.bufferedDocs = bufferDocs ? new int[BLOCK_SIZE] : null;
+    }
+
+    /**
+     * Collects the given values into the given bucket. The values are the first <code>count</code> values of the given array, in
+     * the order of the documents they belong to, and <code>count</code> might be <code>0</code> if none of the collected documents
+     * has a value.
+     */
+    protected abstract void collectValues(double[] values, int count, long bucket) throws IOException;
+
+    @Override
+    public final void collect(int doc, long bucket) throws IOException {
+        if (bufferedDocs == null) {
+            collectValues(buffer, readValues(doc, 0), bucket);
+        } else if (bucket == 0) {
+            bufferedDocs[numBufferedDocs++] = doc;
+            if (numBufferedDocs == BLOCK_SIZE) {
+                flush();
+            }
+        } else {
+            // keep documents in order
+            flush();
+            collectValues(buffer, readValues(doc, 0), bucket);
+        }
+    }
+
+    @Override
+    public final void collect(int[] docs, int count, long bucket) throws IOException {
+        int valueCount = 0;
+        for (int i = 0; i < count; i++) {
+            valueCount = readValues(docs[i], valueCount);
+        }
+        collectValues(buffer, valueCount, bucket);
+    }
+
+    /**
+     * Collects the buffered documents.
+     */
+    public final void flush() throws IOException {
+        if (numBufferedDocs > 0) {
+            final int count = numBufferedDocs;
+            numBufferedDocs = 0;
+            collect(bufferedDocs, count, 0);
+        }
+    }
+
+    /**
+     * Reads the values of the given document into the buffer, starting at <code>offset</code>, and returns the offset after the last
+     * value.
+     */
+    private int readValues(int doc, int offset) throws IOException {
+        if (singleValues != null) {
+            if (singleValues.advanceExact(doc)) {
+                if (offset == buffer.length) {
+                    buffer = ArrayUtil.grow(buffer, offset + 1);
+                }
+                buffer[offset++] = singleValues.doubleValue();
+            }
+        } else if (values.advanceExact(doc)) {
+            final int docValueCount = values.docValueCount();
+            if (offset + docValueCount > buffer.length) {
+                buffer = ArrayUtil.grow(buffer, offset + docValueCount);
+            }
+            for (int i = 0; i < docValueCount; i++) {
+                buffer[offset++] = values.nextValue();
+            }
+        }
+        return offset;
+    }
+}
@@ -19,7 +19,9 @@
 package org.elasticsearch.search.aggregations.metrics;
 
 import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
@@ -28,11 +30,47 @@ import java.util.Map;
 
 public abstract class NumericMetricsAggregator extends MetricsAggregator {
 
+    // the collector of the last segment, which might still have buffered documents
+    private DoubleValuesLeafCollector lastCollector;
+
     private NumericMetricsAggregator(String name, SearchContext context, Aggregator parent,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, context, parent, pipelineAggregators, metaData);
     }
 
+    /**
+     * Returns whether the documents can be buffered and collected in blocks: a top level aggregator collects all of them into
+     * bucket <code>0</code>, and buffering is only correct if values don't depend on the score of the document being collected.
+     */
+    protected final boolean canCollectInBlocks(ValuesSource valuesSource) {
+        return parent() == null && valuesSource.needsScores() == false;
+    }
+
+    /**
+     * Returns the given collector for the current segment after collecting the documents that the collector of the previous segment
+     * still buffers. The documents buffered for the last segment are collected by {@link #doPostCollection()}.
+     */
+    protected final LeafBucketCollector collectInBlocks(DoubleValuesLeafCollector collector) throws IOException {
+        flushLastCollector();
+        lastCollector = collector;
+        return collector;
+    }
+
+    private void flushLastCollector() throws IOException {
+        if (lastCollector != null) {
+            try {
+                lastCollector.flush();
+            } finally {
+                lastCollector = null;
+            }
+        }
+    }
+
+    @Override
+    protected void doPostCollection() throws IOException {
+        flushLastCollector();
+    }
+
     public abstract static class SingleValue extends NumericMetricsAggregator {
 
         protected SingleValue(String name, SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
@@ -28,7 +28,7 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
-import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.DoubleValuesLeafCollector;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -73,23 +73,22 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         }
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
-        return new LeafBucketCollectorBase(sub, values) {
+        return collectInBlocks(new DoubleValuesLeafCollector(sub, values, canCollectInBlocks(valuesSource)) {
             @Override
-            public void collect(int doc, long bucket) throws IOException {
+            protected void collectValues(double[] values, int count, long bucket) {
                 counts = bigArrays.grow(counts, bucket + 1);
                 sums = bigArrays.grow(sums, bucket + 1);
                 compensations = bigArrays.grow(compensations, bucket + 1);
 
-                if (values.advanceExact(doc)) {
-                    final int valueCount = values.docValueCount();
-                    counts.increment(bucket, valueCount);
+                if (count > 0) {
+                    counts.increment(bucket, count);
                     // Compute the sum of double values with Kahan summation algorithm which is more
                     // accurate than naive summation.
                     double sum = sums.get(bucket);
                     double compensation = compensations.get(bucket);
 
-                    for (int i = 0; i < valueCount; i++) {
-                        double value = values.nextValue();
+                    for (int i = 0; i < count; i++) {
+                        double value = values[i];
                         if (Double.isFinite(value) == false) {
                             sum += value;
                         } else if (Double.isFinite(sum)) {
@@ -103,7 +102,7 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
                     compensations.set(bucket, compensation);
                 }
             }
-        };
+        });
     }
 
     @Override
@@ -127,6 +127,7 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     @Override
     protected void doPostCollection() throws IOException {
+        super.doPostCollection();
         postCollectLastCollector();
     }
 
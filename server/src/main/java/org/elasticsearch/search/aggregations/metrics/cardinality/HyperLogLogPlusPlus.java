@@ -19,7 +19,6 @@
 
 package org.elasticsearch.search.aggregations.metrics.cardinality;
 
-import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -28,12 +27,10 @@ import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ByteArray;
-import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.ObjectArray;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -51,6 +48,12 @@ import java.util.Set;
  * requires more space and makes hyperloglog (which is less accurate) used sooner,
  * this is also considerably faster.
  *
+ * Buckets start with a small hash table that doubles in size as it fills up. The
+ * registers of hyperloglog are only allocated once a bucket has more distinct values
+ * than a hash table of the same size could hold, so that buckets that only see a few
+ * distinct values, like the ones of a cardinality under a terms aggregation, don't
+ * pay for the registers.
+ *
  * Trying to understand what this class does without having read the paper is
  * considered adventurous.
  */
@@ -62,6 +65,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
     private static final boolean LINEAR_COUNTING = false;
     private static final boolean HYPERLOGLOG = true;
     private static final float MAX_LOAD_FACTOR = 0.75f;
+    private static final int INITIAL_HASH_TABLE_CAPACITY = 8;
     private static final int P2 = 25;
     private static final int BIAS_K = 6;
 
@@ -78,7 +82,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     /**
-     * Return the expected per-bucket memory usage for the given precision.
+     * Return the maximum per-bucket memory usage for the given precision.
      */
     public static long memoryUsage(int precision) {
         return 1L << precision;
@@ -157,7 +161,8 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     private final BigArrays bigArrays;
     private final OpenBitSet algorithm;
-    private ByteArray runLens;
+    // the registers of the buckets that use hyperloglog, null for buckets that use linear counting
+    private ObjectArray<ByteArray> runLens;
     private final Hashset hashSet;
     private final int p, m;
     private final double alphaMM;
@@ -173,7 +178,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
         m = 1 << p;
         this.bigArrays = bigArrays;
         algorithm = new OpenBitSet();
-        runLens = bigArrays.newByteArray(initialBucketCount << p);
+        runLens = bigArrays.newObjectArray(initialBucketCount);
         hashSet = new Hashset(initialBucketCount);
         final double alpha;
         switch (p) {
@@ -195,11 +200,11 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     public long maxBucket() {
-        return runLens.size() >>> p;
+        return runLens.size();
     }
 
     private void ensureCapacity(long numBuckets) {
-        runLens = bigArrays.grow(runLens, numBuckets << p);
+        runLens = bigArrays.grow(runLens, numBuckets);
     }
 
     public void merge(long thisBucket, HyperLogLogPlusPlus other, long otherBucket) {
@@ -225,10 +230,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
             if (algorithm.get(thisBucket) != HYPERLOGLOG) {
                 upgradeToHll(thisBucket);
             }
-            final long thisStart = thisBucket << p;
-            final long otherStart = otherBucket << p;
+            final ByteArray thisRunLens = runLens.get(thisBucket);
+            final ByteArray otherRunLens = other.runLens.get(otherBucket);
             for (int i = 0; i < m; ++i) {
-                runLens.set(thisStart + i, (byte) Math.max(runLens.get(thisStart + i), other.runLens.get(otherStart + i)));
+                thisRunLens.set(i, (byte) Math.max(thisRunLens.get(i), otherRunLens.get(i)));
             }
         }
     }
@@ -267,8 +272,8 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     private void collectHll(long bucket, long index, int runLen) {
-        final long bucketIndex = (bucket << p) + index;
-        runLens.set(bucketIndex, (byte) Math.max(runLen, runLens.get(bucketIndex)));
+        final ByteArray bucketRunLens = runLens.get(bucket);
+        bucketRunLens.set(index, (byte) Math.max(runLen, bucketRunLens.get(index)));
     }
 
     public long cardinality(long bucket) {
@@ -288,8 +293,9 @@ public final class HyperLogLogPlusPlus implements Releasable {
     private long cardinalityHll(long bucket) {
         double inverseSum = 0;
         int zeros = 0;
-        for (long i = bucket << p, end = i + m; i < end; ++i) {
-            final int runLen = runLens.get(i);
+        final ByteArray bucketRunLens = runLens.get(bucket);
+        for (int i = 0; i < m; ++i) {
+            final int runLen = bucketRunLens.get(i);
             inverseSum += 1. / (1L << runLen);
             if (runLen == 0) {
                 ++zeros;
@@ -312,9 +318,11 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     void upgradeToHll(long bucket) {
         ensureCapacity(bucket + 1);
+        assert runLens.get(bucket) == null;
         final IntArray values = hashSet.values(bucket);
         try {
-            runLens.fill(bucket << p, (bucket << p) + m, (byte) 0);
+            hashSet.clear(bucket);
+            runLens.set(bucket, bigArrays.newByteArray(m));
             for (long i = 0; i < values.size(); ++i) {
                 final int encoded = values.get(i);
                 collectHllEncoded(bucket, encoded);
@@ -422,7 +430,13 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     @Override
     public void close() {
-        Releasables.close(runLens, hashSet.sizes);
+        try {
+            for (long bucket = 0; bucket < runLens.size(); ++bucket) {
+                Releasables.close(runLens.get(bucket));
+            }
+        } finally {
+            Releasables.close(runLens, hashSet);
+        }
     }
 
     private Object getComparableData(long bucket) {
@@ -436,8 +450,9 @@ public final class HyperLogLogPlusPlus implements Releasable {
             return values;
         } else {
             Map<Byte, Integer> values = new HashMap<>();
-            for (long i = 0; i < runLens.size(); i++) {
-                byte runLength = runLens.get((bucket << p) + i);
+            final ByteArray bucketRunLens = runLens.get(bucket);
+            for (int i = 0; i < m; i++) {
+                byte runLength = bucketRunLens.get(i);
                 Integer numOccurances = values.get(runLength);
                 if (numOccurances == null) {
                     values.put(runLength, 1);
@@ -460,45 +475,32 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     /**
-     * We are actually using HyperLogLog's runLens array but interpreting it as a hash set
-     * for linear counting.
+     * The hash sets of the buckets that use linear counting. The hash table of a bucket is allocated on its first value and doubles in
+     * size when it exceeds its load factor, up to the size of the registers of hyperloglog, which the bucket is upgraded to once it
+     * has more than {@link #threshold} values.
      */
-    private class Hashset {
+    private class Hashset implements Releasable {
 
-        private final int capacity;
+        private final int maxCapacity;
         private final int threshold;
-        private final int mask;
+        private ObjectArray<IntArray> tables;
         private IntArray sizes;
-        private final BytesRef readSpare;
-        private final ByteBuffer writeSpare;
 
         Hashset(long initialBucketCount) {
-            capacity = m / 4; // because ints take 4 bytes
-            threshold = (int) (capacity * MAX_LOAD_FACTOR);
-            mask = capacity - 1;
+            maxCapacity = m / 4; // because ints take 4 bytes
+            threshold = (int) (maxCapacity * MAX_LOAD_FACTOR);
+            tables = bigArrays.newObjectArray(initialBucketCount);
             sizes = bigArrays.newIntArray(initialBucketCount);
-            readSpare = new BytesRef();
-            writeSpare = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
-        }
-
-        private long index (long bucket, int index) {
-            return (bucket << p) + (index << 2);
-        }
-
-        private int get(long bucket, int index) {
-            runLens.get(index(bucket, index), 4, readSpare);
-            return ByteUtils.readIntLE(readSpare.bytes, readSpare.offset);
-        }
-
-        private void set(long bucket, int index, int value) {
-            writeSpare.putInt(0, value);
-            runLens.set(index(bucket, index), writeSpare.array(), 0, 4);
         }
 
         private int recomputedSize(long bucket) {
+            final IntArray table = bucket < tables.size() ? tables.get(bucket) : null;
+            if (table == null) {
+                return 0;
+            }
             int size = 0;
-            for (int i = 0; i <= mask; ++i) {
-                final int v = get(bucket, i);
+            for (long i = 0; i < table.size(); ++i) {
+                final int v = table.get(i);
                 if (v != 0) {
                     ++size;
                 }
@@ -521,29 +523,75 @@ public final class HyperLogLogPlusPlus implements Releasable {
          */
         public int add(long bucket, int k) {
             sizes = bigArrays.grow(sizes, bucket + 1);
+            tables = bigArrays.grow(tables, bucket + 1);
             assert k != 0;
+            IntArray table = tables.get(bucket);
+            if (table == null) {
+                table = bigArrays.newIntArray(Math.min(INITIAL_HASH_TABLE_CAPACITY, maxCapacity));
+                tables.set(bucket, table);
+            }
+            if (insert(table, k) == false) {
+                // k is already in the set
+                return -1;
+            }
+            final int size = sizes.increment(bucket, 1);
+            if (size > table.size() * MAX_LOAD_FACTOR && table.size() < maxCapacity) {
+                tables.set(bucket, rehash(table, table.size() * 2));
+            }
+            return size;
+        }
+
+        private boolean insert(IntArray table, int k) {
+            final int mask = (int) table.size() - 1;
             for (int i = (k & mask); ; i = (i + 1) & mask) {
-                final int v = get(bucket, i);
+                final int v = table.get(i);
                 if (v == 0) {
                     // means unused, take it!
-                    set(bucket, i, k);
-                    return sizes.increment(bucket, 1);
+                    table.set(i, k);
+                    return true;
                 } else if (v == k) {
-                    // k is already in the set
-                    return -1;
+                    return false;
                 }
             }
         }
 
+        private IntArray rehash(IntArray table, long capacity) {
+            final IntArray newTable = bigArrays.newIntArray(capacity);
+            try {
+                for (long i = 0; i < table.size(); ++i) {
+                    final int k = table.get(i);
+                    if (k != 0) {
+                        insert(newTable, k);
+                    }
+                }
+            } finally {
+                Releasables.close(table);
+            }
+            return newTable;
+        }
+
+        /**
+         * Releases the hash table of the given bucket.
+         */
+        public void clear(long bucket) {
+            if (bucket < tables.size()) {
+                Releasables.close(tables.set(bucket, null));
+            }
+            if (bucket < sizes.size()) {
+                sizes.set(bucket, 0);
+            }
+        }
+
         public IntArray values(final long bucket) {
             final int size = size(bucket);
             final IntArray values = bigArrays.newIntArray(size);
             if (size == 0) {
                 return values;
             }
+            final IntArray table = tables.get(bucket);
             int i = 0;
-            for (int j = 0; j < capacity; ++j) {
-                final int k = get(bucket, j);
+            for (long j = 0; j < table.size(); ++j) {
+                final int k = table.get(j);
                 if (k != 0) {
                     values.set(i++, k);
                 }
@@ -552,6 +600,16 @@ public final class HyperLogLogPlusPlus implements Releasable {
             return values;
         }
 
+        @Override
+        public void close() {
+            try {
+                for (long bucket = 0; bucket < tables.size(); ++bucket) {
+                    Releasables.close(tables.get(bucket));
+                }
+            } finally {
+                Releasables.close(tables, sizes);
+            }
+        }
     }
 
     public void writeTo(long bucket, StreamOutput out) throws IOException {
@@ -566,8 +624,9 @@ public final class HyperLogLogPlusPlus implements Releasable {
             }
         } else {
             out.writeBoolean(HYPERLOGLOG);
-            for (long i = bucket << p, end = i + m; i < end; ++i) {
-                out.writeByte(runLens.get(i));
+            final ByteArray bucketRunLens = runLens.get(bucket);
+            for (int i = 0; i < m; ++i) {
+                out.writeByte(bucketRunLens.get(i));
             }
         }
     }
@@ -585,8 +644,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
             }
         } else {
             counts.algorithm.set(0);
+            final ByteArray runLens = counts.bigArrays.newByteArray(counts.m);
+            counts.runLens.set(0, runLens);
             for (int i = 0; i < counts.m; ++i) {
-                counts.runLens.set(i, in.readByte());
+                runLens.set(i, in.readByte());
             }
         }
         return counts;
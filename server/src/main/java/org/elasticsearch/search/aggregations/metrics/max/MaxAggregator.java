@@ -22,14 +22,14 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.DoubleArray;
-import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.index.fielddata.FieldData;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.MultiValueMode;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
-import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.DoubleValuesLeafCollector;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -72,25 +72,26 @@ public class MaxAggregator extends NumericMetricsAggregator.SingleValue {
     }
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues allValues = valuesSource.doubleValues(ctx);
-        final NumericDoubleValues values = MultiValueMode.MAX.select(allValues);
-        return new LeafBucketCollectorBase(sub, allValues) {
+        final SortedNumericDoubleValues values = FieldData.singleton(MultiValueMode.MAX.select(allValues));
+        return collectInBlocks(new DoubleValuesLeafCollector(sub, allValues, values, canCollectInBlocks(valuesSource)) {
 
             @Override
-            public void collect(int doc, long bucket) throws IOException {
+            protected void collectValues(double[] values, int count, long bucket) {
                 if (bucket >= maxes.size()) {
                     long from = maxes.size();
                     maxes = bigArrays.grow(maxes, bucket + 1);
                     maxes.fill(from, maxes.size(), Double.NEGATIVE_INFINITY);
                 }
-                if (values.advanceExact(doc)) {
-                    final double value = values.doubleValue();
+                if (count > 0) {
                     double max = maxes.get(bucket);
-                    max = Math.max(max, value);
+                    for (int i = 0; i < count; i++) {
+                        max = Math.max(max, values[i]);
+                    }
                     maxes.set(bucket, max);
                 }
             }
 
-        };
+        });
     }
 
     @Override
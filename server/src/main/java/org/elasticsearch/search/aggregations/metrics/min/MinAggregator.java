@@ -22,14 +22,14 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.DoubleArray;
-import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.index.fielddata.FieldData;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.MultiValueMode;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
-import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.DoubleValuesLeafCollector;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -71,25 +71,26 @@ public class MinAggregator extends NumericMetricsAggregator.SingleValue {
         }
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues allValues = valuesSource.doubleValues(ctx);
-        final NumericDoubleValues values = MultiValueMode.MIN.select(allValues);
-        return new LeafBucketCollectorBase(sub, allValues) {
+        final SortedNumericDoubleValues values = FieldData.singleton(MultiValueMode.MIN.select(allValues));
+        return collectInBlocks(new DoubleValuesLeafCollector(sub, allValues, values, canCollectInBlocks(valuesSource)) {
 
             @Override
-            public void collect(int doc, long bucket) throws IOException {
+            protected void collectValues(double[] values, int count, long bucket) {
                 if (bucket >= mins.size()) {
                     long from = mins.size();
                     mins = bigArrays.grow(mins, bucket + 1);
                     mins.fill(from, mins.size(), Double.POSITIVE_INFINITY);
                 }
-                if (values.advanceExact(doc)) {
-                    final double value = values.doubleValue();
+                if (count > 0) {
                     double min = mins.get(bucket);
-                    min = Math.min(min, value);
+                    for (int i = 0; i < count; i++) {
+                        min = Math.min(min, values[i]);
+                    }
                     mins.set(bucket, min);
                 }
             }
 
-        };
+        });
     }
 
     @Override
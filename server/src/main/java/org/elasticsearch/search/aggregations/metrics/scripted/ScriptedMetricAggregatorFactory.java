@@ -67,6 +67,12 @@ public class ScriptedMetricAggregatorFactory extends AggregatorFactory<ScriptedM
         this.aggParams = aggParams;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the combine script produces the state of the whole shard
+        return false;
+    }
+
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
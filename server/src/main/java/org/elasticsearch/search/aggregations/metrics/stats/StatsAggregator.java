@@ -28,7 +28,7 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
-import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.DoubleValuesLeafCollector;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -82,9 +82,9 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
         }
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
-        return new LeafBucketCollectorBase(sub, values) {
+        return collectInBlocks(new DoubleValuesLeafCollector(sub, values, canCollectInBlocks(valuesSource)) {
             @Override
-            public void collect(int doc, long bucket) throws IOException {
+            protected void collectValues(double[] values, int count, long bucket) {
                 if (bucket >= counts.size()) {
                     final long from = counts.size();
                     final long overSize = BigArrays.overSize(bucket + 1);
@@ -97,9 +97,8 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
                     maxes.fill(from, overSize, Double.NEGATIVE_INFINITY);
                 }
 
-                if (values.advanceExact(doc)) {
-                    final int valuesCount = values.docValueCount();
-                    counts.increment(bucket, valuesCount);
+                if (count > 0) {
+                    counts.increment(bucket, count);
                     double min = mins.get(bucket);
                     double max = maxes.get(bucket);
                     // Compute the sum of double values with Kahan summation algorithm which is more
@@ -107,8 +106,8 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
                     double sum = sums.get(bucket);
                     double compensation = compensations.get(bucket);
 
-                    for (int i = 0; i < valuesCount; i++) {
-                        double value = values.nextValue();
+                    for (int i = 0; i < count; i++) {
+                        double value = values[i];
                         if (Double.isFinite(value) == false) {
                             sum += value;
                         } else if (Double.isFinite(sum)) {
@@ -126,7 +125,7 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
                     maxes.set(bucket, max);
                 }
             }
-        };
+        });
     }
 
     @Override
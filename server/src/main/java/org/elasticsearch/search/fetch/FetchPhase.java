@@ -54,6 +54,7 @@ import org.elasticsearch.search.lookup.SourceLookup;
 import org.elasticsearch.tasks.TaskCancelledException;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -131,14 +132,27 @@ public class FetchPhase implements SearchPhase {
 
         try {
             SearchHit[] hits = new SearchHit[context.docIdsToLoadSize()];
+            SearchHit[] sortedHits = new SearchHit[hits.length];
+            // load the documents in the order of their ids, one segment after the other, so that the stored fields of
+            // neighbouring documents are read from the same block and per segment resources can be reused across hits
+            long[] sortedDocIdsAndIndices = new long[hits.length];
+            for (int index = 0; index < hits.length; index++) {
+                sortedDocIdsAndIndices[index] = ((long) context.docIdsToLoad()[context.docIdsToLoadFrom() + index] << 32) | index;
+            }
+            Arrays.sort(sortedDocIdsAndIndices);
+            final List<LeafReaderContext> leaves = context.searcher().getIndexReader().leaves();
+            LeafReaderContext subReaderContext = null;
             FetchSubPhase.HitContext hitContext = new FetchSubPhase.HitContext();
-            for (int index = 0; index < context.docIdsToLoadSize(); index++) {
+            for (int i = 0; i < sortedDocIdsAndIndices.length; i++) {
                 if (context.isCancelled()) {
                     throw new TaskCancelledException("cancelled");
                 }
-                int docId = context.docIdsToLoad()[context.docIdsToLoadFrom() + index];
-                int readerIndex = ReaderUtil.subIndex(docId, context.searcher().getIndexReader().leaves());
-                LeafReaderContext subReaderContext = context.searcher().getIndexReader().leaves().get(readerIndex);
+                int docId = (int) (sortedDocIdsAndIndices[i] >>> 32);
+                int index = (int) sortedDocIdsAndIndices[i];
+                if (subReaderContext == null || docId >= subReaderContext.docBase + subReaderContext.reader().maxDoc()) {
+                    int readerIndex = ReaderUtil.subIndex(docId, leaves);
+                    subReaderContext = leaves.get(readerIndex);
+                }
                 int subDocId = docId - subReaderContext.docBase;
 
                 final SearchHit searchHit;
@@ -152,6 +166,7 @@ public class FetchPhase implements SearchPhase {
                 }
 
                 hits[index] = searchHit;
+                sortedHits[i] = searchHit;
                 hitContext.reset(searchHit, subReaderContext, subDocId, context.searcher());
                 for (FetchSubPhase fetchSubPhase : fetchSubPhases) {
                     fetchSubPhase.hitExecute(context, hitContext);
@@ -162,7 +177,7 @@ public class FetchPhase implements SearchPhase {
             }
 
             for (FetchSubPhase fetchSubPhase : fetchSubPhases) {
-                fetchSubPhase.hitsExecute(context, hits);
+                fetchSubPhase.hitsExecute(context, sortedHits);
                 if (context.isCancelled()) {
                     throw new TaskCancelledException("cancelled");
                 }
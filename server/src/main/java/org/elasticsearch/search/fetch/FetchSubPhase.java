@@ -79,9 +79,14 @@ public interface FetchSubPhase {
 
     /**
      * Executes the hit level phase, with a reader and doc id (note, its a low level reader, and the matching doc).
+     * Hits are executed in the order of their doc ids.
      */
     default void hitExecute(SearchContext context, HitContext hitContext) throws IOException {}
 
-
+    /**
+     * Executes the phase on all hits at once, after {@link #hitExecute} was called on each of them. The hits are sorted by doc id
+     * so that implementations can walk the segments in order and load per segment resources like doc values or scripts once
+     * per segment, advancing them one hit after the other.
+     */
     default void hitsExecute(SearchContext context, SearchHit[] hits) throws IOException {}
 }
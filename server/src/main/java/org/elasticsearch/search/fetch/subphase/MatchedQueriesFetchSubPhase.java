@@ -34,7 +34,6 @@ import org.elasticsearch.search.internal.SearchContext.Lifetime;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,8 +47,6 @@ public final class MatchedQueriesFetchSubPhase implements FetchSubPhase {
             context.parsedQuery() == null) {
             return;
         }
-        hits = hits.clone(); // don't modify the incoming hits
-        Arrays.sort(hits, (a, b) -> Integer.compare(a.docId(), b.docId()));
         @SuppressWarnings("unchecked")
         List<String>[] matchedQueries = new List[hits.length];
         for (int i = 0; i < matchedQueries.length; ++i) {
@@ -65,23 +62,20 @@ public final class MatchedQueriesFetchSubPhase implements FetchSubPhase {
             for (Map.Entry<String, Query> entry : namedQueries.entrySet()) {
                 String name = entry.getKey();
                 Query query = entry.getValue();
-                int readerIndex = -1;
-                int docBase = -1;
+                LeafReaderContext ctx = null;
                 Weight weight = context.searcher().createNormalizedWeight(query, false);
                 Bits matchingDocs = null;
                 final IndexReader indexReader = context.searcher().getIndexReader();
                 for (int i = 0; i < hits.length; ++i) {
                     SearchHit hit = hits[i];
-                    int hitReaderIndex = ReaderUtil.subIndex(hit.docId(), indexReader.leaves());
-                    if (readerIndex != hitReaderIndex) {
-                        readerIndex = hitReaderIndex;
-                        LeafReaderContext ctx = indexReader.leaves().get(readerIndex);
-                        docBase = ctx.docBase;
+                    // hits are sorted by doc id, so the reader only changes once all hits of the previous one were visited
+                    if (ctx == null || hit.docId() >= ctx.docBase + ctx.reader().maxDoc()) {
+                        ctx = indexReader.leaves().get(ReaderUtil.subIndex(hit.docId(), indexReader.leaves()));
                         // scorers can be costly to create, so reuse them across docs of the same segment
                         ScorerSupplier scorerSupplier = weight.scorerSupplier(ctx);
                         matchingDocs = Lucene.asSequentialAccessBits(ctx.reader().maxDoc(), scorerSupplier);
                     }
-                    if (matchingDocs.get(hit.docId() - docBase)) {
+                    if (matchingDocs.get(hit.docId() - ctx.docBase)) {
                         matchedQueries[i].add(name);
                     }
                 }
@@ -30,10 +30,8 @@ import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
@@ -45,19 +43,16 @@ public final class ScriptFieldsFetchSubPhase implements FetchSubPhase {
             return;
         }
 
-        hits = hits.clone(); // don't modify the incoming hits
-        Arrays.sort(hits, Comparator.comparingInt(SearchHit::docId));
-
-        int lastReaderId = -1;
+        LeafReaderContext leafReaderContext = null;
         SearchScript[] leafScripts = null;
         List<ScriptFieldsContext.ScriptField> scriptFields = context.scriptFields().fields();
         final IndexReader reader = context.searcher().getIndexReader();
         for (SearchHit hit : hits) {
-            int readerId = ReaderUtil.subIndex(hit.docId(), reader.leaves());
-            LeafReaderContext leafReaderContext = reader.leaves().get(readerId);
-            if (readerId != lastReaderId) {
+            // hits are sorted by doc id, so the reader only changes once all hits of the previous one were visited
+            if (leafReaderContext == null || hit.docId() >= leafReaderContext.docBase + leafReaderContext.reader().maxDoc()) {
+                int readerId = ReaderUtil.subIndex(hit.docId(), reader.leaves());
+                leafReaderContext = reader.leaves().get(readerId);
                 leafScripts = createLeafScripts(leafReaderContext, scriptFields);
-                lastReaderId = readerId;
             }
             int docId = hit.docId() - leafReaderContext.docBase;
             for (int i = 0; i < leafScripts.length; i++) {
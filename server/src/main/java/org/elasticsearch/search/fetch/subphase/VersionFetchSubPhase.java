@@ -28,8 +28,6 @@ import org.elasticsearch.search.fetch.FetchSubPhase;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 
 public final class VersionFetchSubPhase implements FetchSubPhase {
     @Override
@@ -39,17 +37,14 @@ public final class VersionFetchSubPhase implements FetchSubPhase {
             return;
         }
 
-        hits = hits.clone(); // don't modify the incoming hits
-        Arrays.sort(hits, Comparator.comparingInt(SearchHit::docId));
-
-        int lastReaderId = -1;
+        LeafReaderContext subReaderContext = null;
         NumericDocValues versions = null;
         for (SearchHit hit : hits) {
-            int readerId = ReaderUtil.subIndex(hit.docId(), context.searcher().getIndexReader().leaves());
-            LeafReaderContext subReaderContext = context.searcher().getIndexReader().leaves().get(readerId);
-            if (lastReaderId != readerId) {
+            // hits are sorted by doc id, so the reader only changes once all hits of the previous one were visited
+            if (subReaderContext == null || hit.docId() >= subReaderContext.docBase + subReaderContext.reader().maxDoc()) {
+                int readerId = ReaderUtil.subIndex(hit.docId(), context.searcher().getIndexReader().leaves());
+                subReaderContext = context.searcher().getIndexReader().leaves().get(readerId);
                 versions = subReaderContext.reader().getNumericDocValues(VersionFieldMapper.NAME);
-                lastReaderId = readerId;
             }
             int docId = hit.docId() - subReaderContext.docBase;
             long version = Versions.NOT_FOUND;
@@ -26,6 +26,7 @@ import org.apache.lucene.index.TermContext;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
@@ -34,8 +35,12 @@ import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.indices.IndicesHitCountCache;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.profile.Timer;
 import org.elasticsearch.search.profile.query.ProfileWeight;
@@ -44,14 +49,25 @@ import org.elasticsearch.search.profile.query.QueryProfiler;
 import org.elasticsearch.search.profile.query.QueryTimingType;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Context-aware extension of {@link IndexSearcher}.
  */
 public class ContextIndexSearcher extends IndexSearcher implements Releasable {
 
+    /**
+     * The minimum number of documents of a slice of the index that is searched concurrently, smaller slices are not worth the
+     * overhead of searching them on another thread.
+     */
+    public static final int DEFAULT_MIN_DOCS_PER_SLICE = 100_000;
+
     /** The wrapped {@link IndexSearcher}. The reason why we sometimes prefer delegating to this searcher instead of {@code super} is that
      *  this instance may have more assertions, for example if it comes from MockInternalEngine which wraps the IndexSearcher into an
      *  AssertingIndexSearcher. */
@@ -66,6 +82,13 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
 
     private Runnable checkCancelled;
 
+    private ExecutorService executor;
+
+    // the slices of leaves that are searched concurrently on the executor, null if the leaves are searched sequentially
+    private List<List<LeafReaderContext>> slices;
+
+    private IndicesHitCountCache hitCountCache;
+
     public ContextIndexSearcher(Engine.Searcher searcher,
             QueryCache queryCache, QueryCachingPolicy queryCachingPolicy) {
         super(searcher.reader());
@@ -92,6 +115,71 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         this.checkCancelled = checkCancelled;
     }
 
+    /**
+     * Sets the executor on which the slices of the index are searched concurrently by {@link #search(Query, CollectorManager)}.
+     * The leaves of the index are split into at most <code>maxSliceCount</code> slices of at least <code>minDocsPerSlice</code>
+     * documents, the index is searched sequentially if that results in a single slice.
+     */
+    public void setExecutor(ExecutorService executor, int maxSliceCount, int minDocsPerSlice) {
+        final List<List<LeafReaderContext>> slices = computeSlices(leafContexts, maxSliceCount, minDocsPerSlice);
+        this.executor = executor;
+        this.slices = slices.size() > 1 ? slices : null;
+    }
+
+    /**
+     * Sets the cache of the number of hits of queries per segment, it may only be set if the reader of this searcher doesn't hide
+     * documents that the reader of the segment exposes, like document level security does.
+     */
+    public void setHitCountCache(IndicesHitCountCache hitCountCache) {
+        this.hitCountCache = hitCountCache;
+    }
+
+    /**
+     * Returns the cache of the number of hits of queries per segment, or <code>null</code> if hit counts must not be cached.
+     */
+    @Nullable
+    public IndicesHitCountCache getHitCountCache() {
+        return hitCountCache;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #search(Query, CollectorManager)} searches slices of the index concurrently.
+     */
+    public boolean hasConcurrentSlices() {
+        return slices != null;
+    }
+
+    /**
+     * Splits the given leaves into at most <code>maxSliceCount</code> slices of consecutive leaves. Slices hold at least as many
+     * documents as the total number of documents divided by <code>maxSliceCount</code>, and at least <code>minDocsPerSlice</code>
+     * documents, except for the last one. Slices of consecutive leaves preserve the order of documents, so that merging the top
+     * documents of the slices breaks ties on the document id like a sequential search.
+     */
+    static List<List<LeafReaderContext>> computeSlices(List<LeafReaderContext> leaves, int maxSliceCount, int minDocsPerSlice) {
+        assert maxSliceCount > 0 : "max slice count must be positive but was " + maxSliceCount;
+        long totalDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            totalDocs += leaf.reader().maxDoc();
+        }
+        final long docsPerSlice = Math.max(minDocsPerSlice, (totalDocs + maxSliceCount - 1) / maxSliceCount);
+        final List<List<LeafReaderContext>> slices = new ArrayList<>();
+        List<LeafReaderContext> slice = new ArrayList<>();
+        long sliceDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            slice.add(leaf);
+            sliceDocs += leaf.reader().maxDoc();
+            if (sliceDocs >= docsPerSlice) {
+                slices.add(slice);
+                slice = new ArrayList<>();
+                sliceDocs = 0;
+            }
+        }
+        if (slice.isEmpty() == false) {
+            slices.add(slice);
+        }
+        return slices;
+    }
+
     public void setAggregatedDfs(AggregatedDfs aggregatedDfs) {
         this.aggregatedDfs = aggregatedDfs;
     }
@@ -191,6 +279,74 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         super.search(leaves, cancellableWeight, collector);
     }
 
+    /**
+     * Searches the slices of the index concurrently if an executor is set, with a collector per slice that is created by the
+     * given manager. The calling thread searches the first slice. Unlike {@link IndexSearcher}, this method waits for all slices
+     * to be searched, even if the search of one of them failed, so that no slice is searched once the search context is released.
+     */
+    @Override
+    public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager) throws IOException {
+        final List<List<LeafReaderContext>> slices = this.slices;
+        if (slices == null) {
+            return super.search(query, collectorManager);
+        }
+        final List<C> collectors = new ArrayList<>(slices.size());
+        boolean needsScores = false;
+        for (int i = 0; i < slices.size(); i++) {
+            final C collector = collectorManager.newCollector();
+            collectors.add(collector);
+            needsScores |= collector.needsScores();
+        }
+        final Weight weight = createNormalizedWeight(query, needsScores);
+        final List<FutureTask<C>> tasks = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            final List<LeafReaderContext> leaves = slices.get(i);
+            final C collector = collectors.get(i);
+            tasks.add(new FutureTask<>(() -> {
+                search(leaves, weight, collector);
+                return collector;
+            }));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (RejectedExecutionException e) {
+                tasks.get(i).run();
+            }
+        }
+        tasks.get(0).run();
+
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (FutureTask<C> task : tasks) {
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // keep waiting, the slice might still access the search context
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    failure = ExceptionsHelper.useOrSuppress(failure, e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new ElasticsearchException(failure);
+        }
+        return collectorManager.reduce(collectors);
+    }
+
     @Override
     public Explanation explain(Query query, int doc) throws IOException {
         if (aggregatedDfs != null) {
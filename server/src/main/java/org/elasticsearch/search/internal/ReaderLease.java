@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Pins a point in time view of a shard so that any number of independent searches can search the same reader, for instance to
+ * paginate with <code>search_after</code> or to export consistently with concurrent requests. Unlike a scroll, a lease holds
+ * nothing but the reader, searches create their own search context on top of it. The pinned searcher is not wrapped by the
+ * {@link org.elasticsearch.index.shard.IndexSearcherWrapper} of the shard, each search wraps it on its own behalf.
+ *
+ * The lease holds a reference on itself until it is freed, and every search holds another one while it uses the reader, so the
+ * reader is only closed once the lease is freed and all searches using it completed.
+ *
+ * Like a {@link ScrollContext}, a lease holds a context that {@link org.elasticsearch.index.shard.SearchOperationListener}s can use
+ * to associate state with it when it is opened, for instance the user that opened it, and to validate the requests that use it.
+ */
+public final class ReaderLease extends AbstractRefCounted {
+
+    /** The id of requests that don't search a reader lease. */
+    public static final long NO_LEASE = -1L;
+
+    private final long id;
+    private final IndexShard indexShard;
+    private final Engine.Searcher searcher;
+    private final long keepAlive;
+    private final LongSupplier relativeTimeInMillis;
+    private volatile long lastAccessTime;
+    // only modified while the lease is opened, before it is published to other threads
+    private Map<String, Object> context = null;
+
+    public ReaderLease(long id, IndexShard indexShard, Engine.Searcher searcher, long keepAlive, LongSupplier relativeTimeInMillis) {
+        super("reader_lease");
+        this.id = id;
+        this.indexShard = indexShard;
+        this.searcher = searcher;
+        this.keepAlive = keepAlive;
+        this.relativeTimeInMillis = relativeTimeInMillis;
+        this.lastAccessTime = relativeTimeInMillis.getAsLong();
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public ShardId shardId() {
+        return indexShard.shardId();
+    }
+
+    public IndexShard indexShard() {
+        return indexShard;
+    }
+
+    /**
+     * The time in milliseconds that the lease is kept alive after it was accessed for the last time.
+     */
+    public long keepAlive() {
+        return keepAlive;
+    }
+
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Returns the object or <code>null</code> if the given key does not have a
+     * value in the context
+     */
+    @SuppressWarnings("unchecked") // (T)object
+    public <T> T getFromContext(String key) {
+        return context != null ? (T) context.get(key) : null;
+    }
+
+    /**
+     * Puts the object into the context
+     */
+    public void putInContext(String key, Object value) {
+        if (context == null) {
+            context = new HashMap<>();
+        }
+        context.put(key, value);
+    }
+
+    /**
+     * Returns <code>true</code> if the lease is not in use and hasn't been accessed for longer than its keep alive.
+     */
+    public boolean isExpired(long nowInMillis) {
+        return refCount() == 1 && nowInMillis - lastAccessTime > keepAlive;
+    }
+
+    /**
+     * Acquires an unwrapped searcher over the pinned reader, or returns <code>null</code> if the lease was freed already. Closing
+     * the returned searcher releases the reference it holds on the lease.
+     */
+    public Engine.Searcher tryAcquireSearcher(String source) {
+        if (tryIncRef() == false) {
+            return null;
+        }
+        lastAccessTime = relativeTimeInMillis.getAsLong();
+        return new Engine.Searcher(source, searcher.searcher()) {
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public void close() {
+                if (closed.compareAndSet(false, true)) {
+                    lastAccessTime = relativeTimeInMillis.getAsLong();
+                    decRef();
+                }
+            }
+        };
+    }
+
+    @Override
+    protected void closeInternal() {
+        searcher.close();
+    }
+}
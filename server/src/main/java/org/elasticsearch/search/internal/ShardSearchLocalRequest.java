@@ -73,6 +73,7 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
     private String[] indexRoutings = Strings.EMPTY_ARRAY;
     private String preference;
     private boolean profile;
+    private long readerLeaseId = ReaderLease.NO_LEASE;
 
     ShardSearchLocalRequest() {
     }
@@ -191,6 +192,15 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         return preference;
     }
 
+    @Override
+    public long readerLeaseId() {
+        return readerLeaseId;
+    }
+
+    void setReaderLeaseId(long readerLeaseId) {
+        this.readerLeaseId = readerLeaseId;
+    }
+
     @Override
     public void setProfile(boolean profile) {
         this.profile = profile;
@@ -242,6 +252,11 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
             indexRoutings = Strings.EMPTY_ARRAY;
             preference = null;
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            readerLeaseId = in.readLong();
+        } else {
+            readerLeaseId = ReaderLease.NO_LEASE;
+        }
     }
 
     protected void innerWriteTo(StreamOutput out, boolean asKey) throws IOException {
@@ -272,6 +287,10 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
                 out.writeStringArray(indexRoutings);
                 out.writeOptionalString(preference);
             }
+            // the cache key doesn't need the lease, the reader that it pins is part of the key already
+            if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                out.writeLong(readerLeaseId);
+            }
         }
     }
 
@@ -82,6 +82,12 @@ public interface ShardSearchRequest {
      */
     String preference();
 
+    /**
+     * Returns the id of the {@link ReaderLease} whose reader is searched, or {@link ReaderLease#NO_LEASE} if the request searches
+     * the current reader of the shard.
+     */
+    long readerLeaseId();
+
     /**
      * Sets if this shard search needs to be profiled or not
      * @param profile True if the shard should be profiled
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.internal;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.search.SearchRequest;
@@ -50,6 +51,13 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
 
     private ShardSearchLocalRequest shardSearchLocalRequest;
 
+    private long cachedFieldRangesVersion = NO_CACHED_FIELD_RANGES;
+
+    /**
+     * Marks that the coordinating node has no valid field ranges of the shard cached, see {@link #cachedFieldRangesVersion()}.
+     */
+    public static final long NO_CACHED_FIELD_RANGES = -1L;
+
     public ShardSearchTransportRequest(){
     }
 
@@ -66,6 +74,9 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
         shardSearchLocalRequest = new ShardSearchLocalRequest();
         shardSearchLocalRequest.innerReadFrom(in);
         originalIndices = OriginalIndices.readOriginalIndices(in);
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            cachedFieldRangesVersion = in.readLong();
+        }
     }
 
     @Override
@@ -73,12 +84,39 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
         super.writeTo(out);
         shardSearchLocalRequest.innerWriteTo(out, false);
         OriginalIndices.writeOriginalIndices(originalIndices, out);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeLong(cachedFieldRangesVersion);
+        }
     }
 
     public void searchType(SearchType searchType) {
         shardSearchLocalRequest.setSearchType(searchType);
     }
 
+    /**
+     * Sets the id of the {@link ReaderLease} whose reader the request searches.
+     */
+    public void readerLeaseId(long readerLeaseId) {
+        shardSearchLocalRequest.setReaderLeaseId(readerLeaseId);
+    }
+
+    /**
+     * Sets the version of the index metadata that the field ranges of the shard that the coordinating node has cached were
+     * computed for.
+     */
+    public void cachedFieldRangesVersion(long cachedFieldRangesVersion) {
+        this.cachedFieldRangesVersion = cachedFieldRangesVersion;
+    }
+
+    /**
+     * Returns the version of the index metadata that the field ranges of the shard that the coordinating node has cached were
+     * computed for, or {@link #NO_CACHED_FIELD_RANGES}. The shard doesn't return its ranges with a can_match response if they are
+     * still valid for that version.
+     */
+    public long cachedFieldRangesVersion() {
+        return cachedFieldRangesVersion;
+    }
+
     @Override
     public String[] indices() {
         if (originalIndices == null) {
@@ -170,6 +208,11 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
         return shardSearchLocalRequest.preference();
     }
 
+    @Override
+    public long readerLeaseId() {
+        return shardSearchLocalRequest.readerLeaseId();
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         throw new UnsupportedOperationException("usage of Streamable is to be replaced by Writeable");
@@ -164,7 +164,7 @@ public abstract class AbstractInternalProfileTree<PB extends AbstractProfileBrea
         // calculating the same times over and over...but worth the effort?
         String type = getTypeFromElement(element);
         String description = getDescriptionFromElement(element);
-        return new ProfileResult(type, description, timings, childrenProfileResults);
+        return new ProfileResult(type, description, timings, breakdown.toDebugMap(), childrenProfileResults);
     }
 
     protected abstract String getTypeFromElement(E element);
@@ -58,4 +58,11 @@ public abstract class AbstractProfileBreakdown<T extends Enum<T>> {
         }
         return Collections.unmodifiableMap(map);
     }
+
+    /**
+     * Fetch extra debugging information about how the node was executed, empty unless the node records some.
+     */
+    public Map<String, Object> toDebugMap() {
+        return Collections.emptyMap();
+    }
 }
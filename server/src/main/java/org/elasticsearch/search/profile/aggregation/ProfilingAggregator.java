@@ -27,6 +27,7 @@ import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.profile.Timer;
 
 import java.io.IOException;
+import java.util.function.BiConsumer;
 
 public class ProfilingAggregator extends Aggregator {
 
@@ -108,6 +109,12 @@ public class ProfilingAggregator extends Aggregator {
     @Override
     public void postCollection() throws IOException {
         delegate.postCollection();
+        delegate.collectDebugInfo(profileBreakdown::addDebugInfo);
+    }
+
+    @Override
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+        delegate.collectDebugInfo(add);
     }
 
     @Override
@@ -0,0 +1,112 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.elasticsearch.indices.IndicesHitCountCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Collector} that counts the hits of a query like {@link TotalHitCountCollector}, but takes the number of hits of a
+ * segment from the {@link IndicesHitCountCache} if it is cached, in which case the segment is not collected at all.
+ * The number of hits of the segments that were collected are only added to the cache by {@link #cacheHitCounts()}, since
+ * the collection of a segment may not complete, for instance because the search timed out.
+ */
+final class CachingHitCountCollector implements Collector {
+
+    private final IndicesHitCountCache cache;
+    private final Query query;
+    private final List<SegmentHitCount> collectedSegments = new ArrayList<>();
+    private int cachedHits;
+
+    /**
+     * Ctr
+     * @param cache The cache of the number of hits per segment
+     * @param query The rewritten query whose hits are counted
+     */
+    CachingHitCountCollector(IndicesHitCountCache cache, Query query) {
+        this.cache = cache;
+        this.query = query;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) {
+        final Integer count = cache.get(context.reader(), query);
+        if (count != null) {
+            cachedHits += count;
+            throw new CollectionTerminatedException();
+        }
+        final SegmentHitCount segment = new SegmentHitCount(context.reader());
+        collectedSegments.add(segment);
+        return new LeafCollector() {
+            @Override
+            public void setScorer(Scorer scorer) {
+            }
+
+            @Override
+            public void collect(int doc) {
+                segment.count++;
+            }
+        };
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * Returns the total number of hits.
+     */
+    int getTotalHits() {
+        int totalHits = cachedHits;
+        for (SegmentHitCount segment : collectedSegments) {
+            totalHits += segment.count;
+        }
+        return totalHits;
+    }
+
+    /**
+     * Adds the number of hits of the collected segments to the cache, must only be called if all segments were fully collected.
+     */
+    void cacheHitCounts() {
+        for (SegmentHitCount segment : collectedSegments) {
+            cache.put(segment.reader, query, segment.count);
+        }
+    }
+
+    private static final class SegmentHitCount {
+        final LeafReader reader;
+        int count;
+
+        SegmentHitCount(LeafReader reader) {
+            this.reader = reader;
+        }
+    }
+}
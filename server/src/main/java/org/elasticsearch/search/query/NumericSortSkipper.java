@@ -0,0 +1,543 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.LeafFieldComparator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.DocIdSetBuilder;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.sort.SortAndFormats;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Skips the documents and the segments that cannot compete for the top hits of a search that is sorted by a numeric field, using
+ * the points of the field. The best values of the primary sort that were collected so far bound the values that can still compete:
+ * segments whose points are all out of the bound are not collected at all, and once the bound is selective enough the documents of
+ * a segment are restricted to the ones that have a point within it.
+ *
+ * The collector that is returned by {@link #wrap(Collector)} tracks the bound, and the query that is returned by
+ * {@link #wrapQuery(Query)} skips the documents that are out of it, so both must be used for the same search.
+ */
+final class NumericSortSkipper {
+
+    // the number of times the competitive documents of a segment are updated before they are only updated periodically,
+    // intersecting the points of the field is not free
+    private static final int MAX_EAGER_UPDATES = 128;
+
+    private final SortField sortField;
+    private final String field;
+    private final boolean reverse;
+    private final int numHits;
+    // the key of the value that documents without value are sorted with
+    private final long missingKey;
+    // the key of the primary sort value of search_after, only documents that sort after it can compete
+    private final long afterKey;
+    private final boolean hasAfter;
+    // the leaves that are currently collected with their competitive documents, the slices of the index may be collected concurrently
+    private final Map<LeafReaderContext, SkippingCollector.LeafSkipper> leafSkippers = new ConcurrentHashMap<>();
+
+    NumericSortSkipper(SortedNumericSortField sortField, int numHits, @Nullable Long searchAfter) {
+        assert sortField.getNumericType() == SortField.Type.LONG;
+        this.sortField = sortField;
+        this.field = sortField.getField();
+        this.reverse = sortField.getReverse();
+        this.numHits = numHits;
+        final Object missingValue = sortField.getMissingValue();
+        this.missingKey = key(missingValue == null ? 0L : (Long) missingValue);
+        this.hasAfter = searchAfter != null;
+        this.afterKey = searchAfter == null ? Long.MIN_VALUE : key(searchAfter);
+    }
+
+    /**
+     * Returns a {@link NumericSortSkipper} for the search of the provided <code>searchContext</code>, or <code>null</code> if its
+     * documents can't be skipped. The caller must ensure that the hits don't need to be collected to be counted.
+     * @param numHits The number of top hits to retrieve
+     * @param hasFilterCollector True if the collector chain contains at least one collector that can filter documents
+     */
+    @Nullable
+    static NumericSortSkipper create(SearchContext searchContext, int numHits, boolean hasFilterCollector) {
+        final SortAndFormats sortAndFormats = searchContext.sort();
+        if (sortAndFormats == null
+                || searchContext.trackScores()
+                || hasFilterCollector
+                || searchContext.queryCollectors().isEmpty() == false
+                || searchContext.getProfilers() != null) {
+            // the max score, the filter collectors and the aggregations need to see all matching documents
+            return null;
+        }
+        // multi-valued fields are sorted with a SortedNumericSortField only if they use the min or max value of documents,
+        // points then tell if a document can compete since any of its values can be the selected one
+        final SortField primarySort = sortAndFormats.sort.getSort()[0];
+        if (primarySort instanceof SortedNumericSortField == false
+                || ((SortedNumericSortField) primarySort).getNumericType() != SortField.Type.LONG) {
+            return null;
+        }
+        final MappedFieldType fieldType = searchContext.smartNameFieldType(primarySort.getField());
+        if ((fieldType instanceof NumberFieldMapper.NumberFieldType || fieldType instanceof DateFieldMapper.DateFieldType) == false
+                || fieldType.indexOptions() == IndexOptions.NONE) {
+            // the field has no points
+            return null;
+        }
+        Long after = null;
+        final FieldDoc searchAfter = searchContext.searchAfter();
+        if (searchAfter != null) {
+            if (searchAfter.fields[0] instanceof Long == false) {
+                return null;
+            }
+            after = (Long) searchAfter.fields[0];
+        }
+        return new NumericSortSkipper((SortedNumericSortField) primarySort, numHits, after);
+    }
+
+    /**
+     * Returns the key of a sort value, the lower the key the better the value, whatever the order of the sort.
+     */
+    private long key(long value) {
+        // unlike negation, the bitwise complement doesn't overflow
+        return reverse ? ~value : value;
+    }
+
+    /**
+     * Wraps the top docs collector of the index, or of one of its slices, with a collector that tracks the values that can compete
+     * for its top hits.
+     */
+    Collector wrap(Collector topDocsCollector) {
+        return new SkippingCollector(topDocsCollector);
+    }
+
+    /**
+     * Wraps the query of the search with a query that skips the documents that can't compete in the leaves that are collected by
+     * the collectors returned by {@link #wrap(Collector)}.
+     */
+    Query wrapQuery(Query query) {
+        return new SkippingQuery(query);
+    }
+
+    private final class SkippingCollector extends FilterCollector {
+        // a max heap of the keys of the best values that were collected, its top is the worst competitive value once it is full
+        private final long[] heap = new long[numHits];
+        private int size;
+        // reads the sort values of documents the same way as the top docs collector, including missing values
+        private final FieldComparator<?> comparator = sortField.getComparator(1, 0);
+
+        SkippingCollector(Collector in) {
+            super(in);
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            final LeafSkipper leafSkipper = new LeafSkipper(context);
+            if (leafSkipper.canSkipSegment()) {
+                // none of the documents of the segment can compete
+                throw new CollectionTerminatedException();
+            }
+            final LeafCollector in = super.getLeafCollector(context);
+            final LeafFieldComparator leafComparator = comparator.getLeafComparator(context);
+            leafSkipper.updateCompetitiveDocs();
+            leafSkippers.put(context, leafSkipper);
+            return new FilterLeafCollector(in) {
+                @Override
+                public void setScorer(Scorer scorer) throws IOException {
+                    super.setScorer(scorer);
+                    leafComparator.setScorer(scorer);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    super.collect(doc);
+                    leafComparator.copy(0, doc);
+                    if (offer(key((Long) comparator.value(0)))) {
+                        leafSkipper.updateCompetitiveDocs();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Adds the key of a collected document and returns whether the bound of competitive values changed.
+         */
+        private boolean offer(long key) {
+            if (hasAfter && key <= afterKey) {
+                // the document might not sort after search_after, it can't tighten the bound
+                return false;
+            }
+            if (size < numHits) {
+                heap[size] = key;
+                siftUp(size++);
+                return size == numHits;
+            } else if (key < heap[0]) {
+                final long top = heap[0];
+                heap[0] = key;
+                siftDown();
+                return heap[0] != top;
+            }
+            return false;
+        }
+
+        private void siftUp(int i) {
+            final long key = heap[i];
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (heap[parent] >= key) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = key;
+        }
+
+        private void siftDown() {
+            final long key = heap[0];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= key) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = key;
+        }
+
+        /**
+         * Returns whether some values can't compete anymore.
+         */
+        private boolean isBounded() {
+            return hasAfter || size == numHits;
+        }
+
+        private long minCompetitiveKey() {
+            return afterKey;
+        }
+
+        private long maxCompetitiveKey() {
+            return size == numHits ? heap[0] : Long.MAX_VALUE;
+        }
+
+        private boolean isCompetitive(long key) {
+            // ties are competitive since they are broken by the other sort fields and by doc ids
+            return key >= minCompetitiveKey() && key <= maxCompetitiveKey();
+        }
+
+        final class LeafSkipper {
+            private final int maxDoc;
+            // the points of the field in the segment, null if there are none or if they are not encoded as expected
+            private final PointValues pointValues;
+            private final int bytesPerDim;
+            private DocIdSetIterator competitiveDocs;
+            private long competitiveCost;
+            private int updates;
+
+            LeafSkipper(LeafReaderContext context) throws IOException {
+                this.maxDoc = context.reader().maxDoc();
+                final PointValues points = context.reader().getPointValues(field);
+                if (points != null && points.getNumDimensions() == 1
+                        && (points.getBytesPerDimension() == Long.BYTES || points.getBytesPerDimension() == Integer.BYTES)) {
+                    this.pointValues = points;
+                    this.bytesPerDim = points.getBytesPerDimension();
+                } else {
+                    this.pointValues = null;
+                    this.bytesPerDim = 0;
+                }
+                this.competitiveCost = maxDoc;
+            }
+
+            private long decode(byte[] packedValue) {
+                return bytesPerDim == Long.BYTES ? NumericUtils.sortableBytesToLong(packedValue, 0)
+                    : NumericUtils.sortableBytesToInt(packedValue, 0);
+            }
+
+            /**
+             * Returns whether documents without value can't compete, or whether all the documents of the segment have a value.
+             */
+            private boolean canIgnoreMissing() throws IOException {
+                return isCompetitive(missingKey) == false || (pointValues != null && pointValues.getDocCount() == maxDoc);
+            }
+
+            boolean canSkipSegment() throws IOException {
+                if (isBounded() == false || canIgnoreMissing() == false) {
+                    return false;
+                }
+                if (pointValues == null) {
+                    // none of the documents has a value
+                    return true;
+                }
+                final long min = key(decode(pointValues.getMinPackedValue()));
+                final long max = key(decode(pointValues.getMaxPackedValue()));
+                // the keys of a descending sort are in the opposite order of the values
+                return Math.max(min, max) < minCompetitiveKey() || Math.min(min, max) > maxCompetitiveKey();
+            }
+
+            /**
+             * Restricts the documents of the segment to the ones with a competitive value if it skips enough of them.
+             */
+            void updateCompetitiveDocs() throws IOException {
+                if (pointValues == null || isBounded() == false || isCompetitive(missingKey)) {
+                    // documents without value must be collected
+                    return;
+                }
+                if (++updates > MAX_EAGER_UPDATES && (updates & 0x1f) != 0) {
+                    return;
+                }
+                final long minValue = reverse ? ~maxCompetitiveKey() : minCompetitiveKey();
+                final long maxValue = reverse ? ~minCompetitiveKey() : maxCompetitiveKey();
+                if (pointValues.estimatePointCount(new RangeVisitor(minValue, maxValue, null)) >= competitiveCost * 0.8) {
+                    // not selective enough to be worth it
+                    return;
+                }
+                final DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc, pointValues, field);
+                pointValues.intersect(new RangeVisitor(minValue, maxValue, builder));
+                final DocIdSetIterator iterator = builder.build().iterator();
+                competitiveDocs = iterator == null ? DocIdSetIterator.empty() : iterator;
+                competitiveCost = competitiveDocs.cost();
+            }
+
+            /**
+             * Returns the documents of the segment that can compete, or <code>null</code> if all documents can compete.
+             */
+            DocIdSetIterator competitiveDocs() {
+                return competitiveDocs;
+            }
+
+            private final class RangeVisitor implements PointValues.IntersectVisitor {
+                private final long minValue;
+                private final long maxValue;
+                private final DocIdSetBuilder builder;
+                private DocIdSetBuilder.BulkAdder adder;
+
+                RangeVisitor(long minValue, long maxValue, @Nullable DocIdSetBuilder builder) {
+                    this.minValue = minValue;
+                    this.maxValue = maxValue;
+                    this.builder = builder;
+                }
+
+                @Override
+                public void grow(int count) {
+                    adder = builder.grow(count);
+                }
+
+                @Override
+                public void visit(int docID) {
+                    adder.add(docID);
+                }
+
+                @Override
+                public void visit(int docID, byte[] packedValue) {
+                    final long value = decode(packedValue);
+                    if (value >= minValue && value <= maxValue) {
+                        adder.add(docID);
+                    }
+                }
+
+                @Override
+                public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                    final long min = decode(minPackedValue);
+                    final long max = decode(maxPackedValue);
+                    if (max < minValue || min > maxValue) {
+                        return PointValues.Relation.CELL_OUTSIDE_QUERY;
+                    } else if (min >= minValue && max <= maxValue) {
+                        return PointValues.Relation.CELL_INSIDE_QUERY;
+                    }
+                    return PointValues.Relation.CELL_CROSSES_QUERY;
+                }
+            }
+        }
+    }
+
+    private final class SkippingQuery extends Query {
+        private final Query in;
+
+        SkippingQuery(Query in) {
+            this.in = in;
+        }
+
+        @Override
+        public Query rewrite(IndexReader reader) throws IOException {
+            final Query rewritten = in.rewrite(reader);
+            return rewritten == in ? this : new SkippingQuery(rewritten);
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+            final Weight inWeight = searcher.createWeight(in, needsScores, boost);
+            return new Weight(this) {
+                @Override
+                public void extractTerms(Set<Term> terms) {
+                    inWeight.extractTerms(terms);
+                }
+
+                @Override
+                public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+                    return inWeight.explain(context, doc);
+                }
+
+                @Override
+                public Scorer scorer(LeafReaderContext context) throws IOException {
+                    final Scorer scorer = inWeight.scorer(context);
+                    final SkippingCollector.LeafSkipper leafSkipper = leafSkippers.remove(context);
+                    if (scorer == null || leafSkipper == null) {
+                        return scorer;
+                    }
+                    return new SkippingScorer(this, scorer, leafSkipper);
+                }
+
+                @Override
+                public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+                    if (leafSkippers.containsKey(context) == false) {
+                        return inWeight.bulkScorer(context);
+                    }
+                    return super.bulkScorer(context);
+                }
+
+                @Override
+                public boolean isCacheable(LeafReaderContext ctx) {
+                    // the matching documents depend on the state of the collection
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public String toString(String field) {
+            return "NumericSortSkipper(" + in.toString(field) + ")";
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            // the matching documents depend on the state of the collection
+            return this == obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * A {@link Scorer} that only matches the documents of a scorer that are competitive when they are reached, leapfrogging the
+     * competitive documents of the segment which are updated during the collection.
+     */
+    private static final class SkippingScorer extends Scorer {
+        private final Scorer in;
+        private final DocIdSetIterator iterator;
+
+        SkippingScorer(Weight weight, Scorer in, SkippingCollector.LeafSkipper leafSkipper) {
+            super(weight);
+            this.in = in;
+            final DocIdSetIterator inIterator = in.iterator();
+            this.iterator = new DocIdSetIterator() {
+                private int doc = -1;
+
+                @Override
+                public int docID() {
+                    return doc;
+                }
+
+                @Override
+                public int nextDoc() throws IOException {
+                    return doc = competitiveDoc(inIterator.nextDoc());
+                }
+
+                @Override
+                public int advance(int target) throws IOException {
+                    return doc = competitiveDoc(inIterator.advance(target));
+                }
+
+                private int competitiveDoc(int doc) throws IOException {
+                    while (doc != NO_MORE_DOCS) {
+                        final DocIdSetIterator competitiveDocs = leafSkipper.competitiveDocs();
+                        if (competitiveDocs == null) {
+                            return doc;
+                        }
+                        int competitiveDoc = competitiveDocs.docID();
+                        if (competitiveDoc < doc) {
+                            competitiveDoc = competitiveDocs.advance(doc);
+                        }
+                        if (competitiveDoc == doc) {
+                            return doc;
+                        } else if (competitiveDoc == NO_MORE_DOCS) {
+                            return NO_MORE_DOCS;
+                        }
+                        doc = inIterator.advance(competitiveDoc);
+                    }
+                    return doc;
+                }
+
+                @Override
+                public long cost() {
+                    return inIterator.cost();
+                }
+            };
+        }
+
+        @Override
+        public int docID() {
+            return iterator.docID();
+        }
+
+        @Override
+        public float score() throws IOException {
+            return in.score();
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return iterator;
+        }
+    }
+}
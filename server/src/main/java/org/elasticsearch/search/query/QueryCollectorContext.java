@@ -20,10 +20,12 @@
 package org.elasticsearch.search.query;
 
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.common.lucene.search.FilteredCollector;
 import org.elasticsearch.search.profile.query.InternalProfileCollector;
@@ -70,6 +72,29 @@ abstract class QueryCollectorContext {
      */
     void postProcess(QuerySearchResult result) throws IOException {}
 
+    /**
+     * Returns true if this context can create a collector for each slice of the index, so that the slices can be searched
+     * concurrently.
+     */
+    boolean supportsConcurrentCollection() {
+        return true;
+    }
+
+    /**
+     * Creates a collector for one of the slices of the index that are searched concurrently. The collectors of all slices are
+     * created before the search starts.
+     * @param in The delegate collector
+     */
+    Collector createForSlice(Collector in) throws IOException {
+        return create(in);
+    }
+
+    /**
+     * Merges the results of the collectors created by {@link #createForSlice(Collector)} once all slices are searched, or the
+     * search timed out, and before {@link #postProcess(QuerySearchResult)} is called.
+     */
+    void reduceSlices() throws IOException {}
+
     /**
      * Creates the collector tree from the provided <code>collectors</code>
      * @param collectors Ordered list of collector context
@@ -94,6 +119,30 @@ abstract class QueryCollectorContext {
         return collector;
     }
 
+    /**
+     * Creates a manager that creates the collector tree from the provided <code>collectors</code> for each slice of the index.
+     * The collectors of the slices are merged by {@link #reduceSlices()}, which is called on each collector context once the
+     * search completed, even if it timed out.
+     * @param collectors Ordered list of collector context
+     */
+    static CollectorManager<Collector, Void> createQueryCollectorManager(List<QueryCollectorContext> collectors) {
+        return new CollectorManager<Collector, Void>() {
+            @Override
+            public Collector newCollector() throws IOException {
+                Collector collector = null;
+                for (QueryCollectorContext ctx : collectors) {
+                    collector = ctx.createForSlice(collector);
+                }
+                return collector;
+            }
+
+            @Override
+            public Void reduce(Collection<Collector> sliceCollectors) {
+                return null;
+            }
+        };
+    }
+
     /**
      * Filters documents with a query score greater than <code>minScore</code>
      * @param minScore The minimum score filter
@@ -124,7 +173,20 @@ abstract class QueryCollectorContext {
      * Creates a multi collector from the provided <code>subs</code>
      */
     static QueryCollectorContext createMultiCollectorContext(Collection<Collector> subs) {
+        return createMultiCollectorContext(subs, null);
+    }
+
+    /**
+     * Creates a multi collector from the provided <code>subs</code>. If the slices of the index are searched concurrently, the
+     * first slice is collected by <code>subs</code> and every other slice by a collector of <code>sliceManager</code>, which
+     * must be equivalent to <code>subs</code>. Concurrent collection isn't supported if <code>sliceManager</code> is null.
+     */
+    static <C extends Collector> QueryCollectorContext createMultiCollectorContext(Collection<Collector> subs,
+                                                                                  @Nullable CollectorManager<C, ?> sliceManager) {
         return new QueryCollectorContext(REASON_SEARCH_MULTI) {
+            private final List<C> sliceCollectors = new ArrayList<>();
+            private boolean createdFirstSlice;
+
             @Override
             Collector create(Collector in) throws IOException {
                 List<Collector> subCollectors = new ArrayList<> ();
@@ -146,6 +208,27 @@ abstract class QueryCollectorContext {
                 final Collector collector = MultiCollector.wrap(subCollectors);
                 return new InternalProfileCollector(collector, REASON_SEARCH_MULTI, subCollectors);
             }
+
+            @Override
+            boolean supportsConcurrentCollection() {
+                return sliceManager != null;
+            }
+
+            @Override
+            Collector createForSlice(Collector in) throws IOException {
+                if (createdFirstSlice == false) {
+                    createdFirstSlice = true;
+                    return create(in);
+                }
+                final C sliceCollector = sliceManager.newCollector();
+                sliceCollectors.add(sliceCollector);
+                return MultiCollector.wrap(in, sliceCollector);
+            }
+
+            @Override
+            void reduceSlices() throws IOException {
+                sliceManager.reduce(sliceCollectors);
+            }
         };
     }
 
@@ -174,6 +257,12 @@ abstract class QueryCollectorContext {
                 this.collector = new EarlyTerminatingCollector(in, numHits, true);
                 return collector;
             }
+
+            @Override
+            boolean supportsConcurrentCollection() {
+                // the number of collected documents is counted across all segments
+                return false;
+            }
         };
     }
 }
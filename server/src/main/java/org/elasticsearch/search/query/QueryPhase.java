@@ -26,6 +26,7 @@ import org.apache.lucene.queries.SearchAfterSortedDocQuery;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.EarlyTerminatingSortingCollector;
 import org.apache.lucene.search.FieldDoc;
@@ -41,6 +42,7 @@ import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
 import org.elasticsearch.common.util.concurrent.QueueResizingEsThreadPoolExecutor;
+import org.elasticsearch.indices.IndicesHitCountCache;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchPhase;
 import org.elasticsearch.search.SearchService;
@@ -57,6 +59,7 @@ import org.elasticsearch.search.suggest.SuggestPhase;
 import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.function.Consumer;
 
@@ -193,7 +196,8 @@ public class QueryPhase implements SearchPhase {
             }
             if (searchContext.queryCollectors().isEmpty() == false) {
                 // plug in additional collectors, like aggregations
-                collectors.add(createMultiCollectorContext(searchContext.queryCollectors().values()));
+                collectors.add(createMultiCollectorContext(searchContext.queryCollectors().values(),
+                    sliceCollectorManager(searchContext)));
             }
             if (searchContext.minimumScore() != null) {
                 // apply the minimum score after multi collector so we filter aggs as well
@@ -249,21 +253,38 @@ public class QueryPhase implements SearchPhase {
 
             final boolean doProfile = searchContext.getProfilers() != null;
             // create the top docs collector last when the other collectors are known
-            final TopDocsCollectorContext topDocsFactory = createTopDocsCollectorContext(searchContext, reader, hasFilterCollector);
+            final IndicesHitCountCache hitCountCache =
+                searcher instanceof ContextIndexSearcher ? ((ContextIndexSearcher) searcher).getHitCountCache() : null;
+            final TopDocsCollectorContext topDocsFactory = createTopDocsCollectorContext(searchContext, reader, hasFilterCollector,
+                hitCountCache);
             // add the top docs collector, the first collector context in the chain
             collectors.addFirst(topDocsFactory);
+            // the top docs collector might skip the documents that can't compete
+            query = topDocsFactory.wrapQuery(query);
 
+            // the profilers are not thread-safe, profiled searches are executed sequentially
+            final boolean concurrent = doProfile == false
+                && searcher instanceof ContextIndexSearcher
+                && ((ContextIndexSearcher) searcher).hasConcurrentSlices()
+                && collectors.stream().allMatch(QueryCollectorContext::supportsConcurrentCollection);
             final Collector queryCollector;
             if (doProfile) {
                 InternalProfileCollector profileCollector = QueryCollectorContext.createQueryCollectorWithProfiler(collectors);
                 searchContext.getProfilers().getCurrentQueryProfiler().setCollector(profileCollector);
                 queryCollector = profileCollector;
+            } else if (concurrent) {
+                // the collectors are created for each slice of the index
+                queryCollector = null;
             } else {
                queryCollector = QueryCollectorContext.createQueryCollector(collectors);
             }
 
             try {
-                searcher.search(query, queryCollector);
+                if (concurrent) {
+                    searcher.search(query, QueryCollectorContext.createQueryCollectorManager(collectors));
+                } else {
+                    searcher.search(query, queryCollector);
+                }
             } catch (EarlyTerminatingCollector.EarlyTerminationException e) {
                 queryResult.terminatedEarly(true);
             } catch (TimeExceededException e) {
@@ -280,6 +301,9 @@ public class QueryPhase implements SearchPhase {
 
             final QuerySearchResult result = searchContext.queryResult();
             for (QueryCollectorContext ctx : collectors) {
+                if (concurrent) {
+                    ctx.reduceSlices();
+                }
                 ctx.postProcess(result);
             }
             EsThreadPoolExecutor executor = (EsThreadPoolExecutor)
@@ -299,6 +323,19 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Returns the manager of the collectors of the slices of the index, after the first one, that replace
+     * {@link SearchContext#queryCollectors()} if the slices are searched concurrently, or <code>null</code> if they don't support
+     * concurrent collection. Only aggregations support it.
+     */
+    private static CollectorManager<Collector, Void> sliceCollectorManager(SearchContext searchContext) {
+        if (searchContext.aggregations() != null
+                && searchContext.queryCollectors().keySet().equals(Collections.singleton(AggregationPhase.class))) {
+            return searchContext.aggregations().sliceCollectorManager();
+        }
+        return null;
+    }
+
     /**
      * Returns true if the provided <code>query</code> returns docs in index order (internal doc ids).
      * @param query The query to execute
@@ -35,11 +35,14 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.grouping.CollapseTopFieldDocs;
 import org.apache.lucene.search.grouping.CollapsingTopDocsCollector;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.indices.IndicesHitCountCache;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.collapse.CollapseContext;
 import org.elasticsearch.search.internal.ScrollContext;
@@ -48,6 +51,8 @@ import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
@@ -80,9 +85,40 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         return false;
     }
 
+    /**
+     * Returns the query to execute in place of the provided <code>query</code>, the same query unless the top docs collector
+     * can skip non-competitive documents.
+     */
+    Query wrapQuery(Query query) {
+        return query;
+    }
+
+    @Override
+    boolean supportsConcurrentCollection() {
+        // implementations must create a top docs collector per slice
+        return false;
+    }
+
+    /**
+     * Clears the shard index that {@link TopDocs#merge} sets on the top docs of slices, it is set by the coordinating node.
+     */
+    static void clearShardIndex(TopDocs topDocs) {
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            scoreDoc.shardIndex = -1;
+        }
+    }
+
     static class EmptyTopDocsCollectorContext extends TopDocsCollectorContext {
         private final Collector collector;
         private final IntSupplier hitCountSupplier;
+        // whether the hits must be counted by collecting them
+        private final boolean countHits;
+        // the hit counts of the collectors that were created for the whole index or for its slices
+        private final List<IntSupplier> hitCounts = new ArrayList<>();
+        private final Query query;
+        // the cache of the number of hits per segment, null if the hits must not be cached
+        private final IndicesHitCountCache hitCountCache;
+        private final List<CachingHitCountCollector> cachingCollectors = new ArrayList<>();
 
         /**
          * Ctr
@@ -90,26 +126,57 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
          * @param query The query to execute
          * @param trackTotalHits True if the total number of hits should be tracked
          * @param hasFilterCollector True if the collector chain contains a filter
+         * @param hitCountCache The cache of the number of hits per segment, or <code>null</code> if the hits must not be cached
          */
-        private EmptyTopDocsCollectorContext(IndexReader reader, Query query,
-                                             boolean trackTotalHits, boolean hasFilterCollector) throws IOException {
+        private EmptyTopDocsCollectorContext(IndexReader reader, Query query, boolean trackTotalHits, boolean hasFilterCollector,
+                                             @Nullable IndicesHitCountCache hitCountCache) throws IOException {
             super(REASON_SEARCH_COUNT, 0);
+            this.query = query;
+            // the hit counts of segments can only be cached if all hits of the query are counted
+            this.hitCountCache = hasFilterCollector ? null : hitCountCache;
             if (trackTotalHits) {
-                TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
                 // implicit total hit counts are valid only when there is no filter collector in the chain
                 int hitCount =  hasFilterCollector ? -1 : shortcutTotalHitCount(reader, query);
                 if (hitCount == -1) {
-                    this.collector = hitCountCollector;
-                    this.hitCountSupplier = hitCountCollector::getTotalHits;
+                    this.collector = createHitCountCollector();
+                    this.hitCountSupplier = this::sumHitCounts;
+                    this.countHits = true;
                 } else {
+                    TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
                     this.collector = new EarlyTerminatingCollector(hitCountCollector, 0, false);
                     this.hitCountSupplier = () -> hitCount;
+                    this.countHits = false;
                 }
             } else {
                 this.collector = new EarlyTerminatingCollector(new TotalHitCountCollector(), 0, false);
                 // for bwc hit count is set to 0, it will be converted to -1 by the coordinating node
                 this.hitCountSupplier = () -> 0;
+                this.countHits = false;
+            }
+        }
+
+        /**
+         * Creates a collector that counts all hits, using the hit counts of segments that are cached if possible.
+         */
+        private Collector createHitCountCollector() {
+            if (hitCountCache != null) {
+                final CachingHitCountCollector hitCountCollector = new CachingHitCountCollector(hitCountCache, query);
+                cachingCollectors.add(hitCountCollector);
+                hitCounts.add(hitCountCollector::getTotalHits);
+                return hitCountCollector;
             }
+            final TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
+            hitCounts.add(hitCountCollector::getTotalHits);
+            return hitCountCollector;
+        }
+
+        private int sumHitCounts() {
+            // the collector that was created for the whole index didn't collect anything if the slices were searched concurrently
+            int totalHitCount = 0;
+            for (IntSupplier hitCount : hitCounts) {
+                totalHitCount += hitCount.getAsInt();
+            }
+            return totalHitCount;
         }
 
         Collector create(Collector in) {
@@ -117,16 +184,41 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             return collector;
         }
 
+        @Override
+        boolean supportsConcurrentCollection() {
+            return true;
+        }
+
+        @Override
+        Collector createForSlice(Collector in) {
+            assert in == null;
+            if (countHits) {
+                return createHitCountCollector();
+            }
+            return new EarlyTerminatingCollector(new TotalHitCountCollector(), 0, false);
+        }
+
         @Override
         void postProcess(QuerySearchResult result) {
             final int totalHitCount = hitCountSupplier.getAsInt();
             result.topDocs(new TopDocs(totalHitCount, Lucene.EMPTY_SCORE_DOCS, 0), null);
+            // the segments were only partially collected if the search timed out
+            if (result.searchTimedOut() == false && result.terminatedEarly() != Boolean.TRUE) {
+                for (CachingHitCountCollector cachingCollector : cachingCollectors) {
+                    cachingCollector.cacheHitCounts();
+                }
+            }
         }
     }
 
     static class CollapsingTopDocsCollectorContext extends TopDocsCollectorContext {
+        private final CollapseContext collapseContext;
+        private final Sort sort;
+        private final boolean trackMaxScore;
         private final DocValueFormat[] sortFmt;
         private final CollapsingTopDocsCollector<?> topDocsCollector;
+        private final List<CollapsingTopDocsCollector<?>> sliceTopDocsCollectors = new ArrayList<>();
+        private CollapseTopFieldDocs sliceTopDocs;
 
         /**
          * Ctr
@@ -142,7 +234,9 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             super(REASON_SEARCH_TOP_HITS, numHits);
             assert numHits > 0;
             assert collapseContext != null;
-            Sort sort = sortAndFormats == null ? Sort.RELEVANCE : sortAndFormats.sort;
+            this.collapseContext = collapseContext;
+            this.sort = sortAndFormats == null ? Sort.RELEVANCE : sortAndFormats.sort;
+            this.trackMaxScore = trackMaxScore;
             this.sortFmt = sortAndFormats == null ? new DocValueFormat[] { DocValueFormat.RAW } : sortAndFormats.formats;
             this.topDocsCollector = collapseContext.createTopDocs(sort, numHits, trackMaxScore);
         }
@@ -153,17 +247,50 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             return topDocsCollector;
         }
 
+        @Override
+        boolean supportsConcurrentCollection() {
+            return true;
+        }
+
+        @Override
+        Collector createForSlice(Collector in) {
+            assert in == null;
+            final CollapsingTopDocsCollector<?> sliceTopDocsCollector = collapseContext.createTopDocs(sort, numHits, trackMaxScore);
+            sliceTopDocsCollectors.add(sliceTopDocsCollector);
+            return sliceTopDocsCollector;
+        }
+
+        @Override
+        void reduceSlices() throws IOException {
+            final CollapseTopFieldDocs[] topDocs = new CollapseTopFieldDocs[sliceTopDocsCollectors.size()];
+            for (int i = 0; i < topDocs.length; i++) {
+                topDocs[i] = sliceTopDocsCollectors.get(i).getTopDocs();
+            }
+            sliceTopDocs = CollapseTopFieldDocs.merge(sort, 0, numHits, topDocs, true);
+            clearShardIndex(sliceTopDocs);
+        }
+
         @Override
         void postProcess(QuerySearchResult result) throws IOException {
-            result.topDocs(topDocsCollector.getTopDocs(), sortFmt);
+            result.topDocs(sliceTopDocs != null ? sliceTopDocs : topDocsCollector.getTopDocs(), sortFmt);
         }
     }
 
     abstract static class SimpleTopDocsCollectorContext extends TopDocsCollectorContext {
         private final @Nullable SortAndFormats sortAndFormats;
+        private final @Nullable ScoreDoc searchAfter;
+        private final boolean trackMaxScore;
         private final Collector collector;
-        private final IntSupplier totalHitsSupplier;
-        private final Supplier<TopDocs> topDocsSupplier;
+        private IntSupplier totalHitsSupplier;
+        private Supplier<TopDocs> topDocsSupplier;
+        // whether the hits must be counted by a separate collector since the top docs collector can terminate early
+        private final boolean countHits;
+        // whether the total hit count is extracted from the shard statistics
+        private final boolean totalHitsFromStatistics;
+        private final List<TopDocsCollector<?>> sliceTopDocsCollectors = new ArrayList<>();
+        private final List<TotalHitCountCollector> sliceHitCountCollectors = new ArrayList<>();
+        // skips the documents that can't compete for the top hits of a numeric sort, null if they must all be collected
+        private final @Nullable NumericSortSkipper sortSkipper;
 
         /**
          * Ctr
@@ -175,6 +302,7 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
          * @param trackMaxScore True if max score should be tracked
          * @param trackTotalHits True if the total number of hits should be tracked
          * @param hasFilterCollector True if the collector chain contains at least one collector that can filters document
+         * @param sortSkipper Skips the documents that can't compete for the top hits, or <code>null</code> to collect all of them
          */
         private SimpleTopDocsCollectorContext(IndexReader reader,
                                               Query query,
@@ -183,50 +311,129 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                                               int numHits,
                                               boolean trackMaxScore,
                                               boolean trackTotalHits,
-                                              boolean hasFilterCollector) throws IOException {
+                                              boolean hasFilterCollector,
+                                              @Nullable NumericSortSkipper sortSkipper) throws IOException {
             super(REASON_SEARCH_TOP_HITS, numHits);
             this.sortAndFormats = sortAndFormats;
+            this.searchAfter = searchAfter;
+            this.trackMaxScore = trackMaxScore;
+            this.sortSkipper = sortSkipper;
+            final TopDocsCollector<?> topDocsCollector = createTopDocsCollector();
+            this.topDocsSupplier = topDocsCollector::topDocs;
             if (sortAndFormats == null) {
-                final TopDocsCollector<?> topDocsCollector = TopScoreDocCollector.create(numHits, searchAfter);
                 this.collector = topDocsCollector;
-                this.topDocsSupplier = topDocsCollector::topDocs;
                 this.totalHitsSupplier = topDocsCollector::getTotalHits;
+                this.countHits = false;
+                this.totalHitsFromStatistics = false;
             } else {
-                /**
-                 * We explicitly don't track total hits in the topdocs collector, it can early terminate
-                 * if the sort matches the index sort.
-                 */
-                final TopDocsCollector<?> topDocsCollector = TopFieldCollector.create(sortAndFormats.sort, numHits,
-                    (FieldDoc) searchAfter, true, trackMaxScore, trackMaxScore, false);
-                this.topDocsSupplier = topDocsCollector::topDocs;
                 if (trackTotalHits) {
                     // implicit total hit counts are valid only when there is no filter collector in the chain
                     int count = hasFilterCollector ? -1 : shortcutTotalHitCount(reader, query);
                     if (count != -1) {
                         // we can extract the total count from the shard statistics directly
                         this.totalHitsSupplier = () -> count;
-                        this.collector = topDocsCollector;
+                        this.collector = wrapTopDocsCollector(topDocsCollector);
+                        this.countHits = false;
+                        this.totalHitsFromStatistics = true;
                     } else {
                         // wrap a collector that counts the total number of hits even
                         // if the top docs collector terminates early
+                        assert sortSkipper == null : "the hits must all be collected to be counted";
                         final TotalHitCountCollector countingCollector = new TotalHitCountCollector();
                         this.collector = MultiCollector.wrap(topDocsCollector, countingCollector);
                         this.totalHitsSupplier = countingCollector::getTotalHits;
+                        this.countHits = true;
+                        this.totalHitsFromStatistics = false;
                     }
                 } else {
                     // total hit count is not needed
-                    this.collector = topDocsCollector;
+                    this.collector = wrapTopDocsCollector(topDocsCollector);
                     this.totalHitsSupplier = topDocsCollector::getTotalHits;
+                    this.countHits = false;
+                    this.totalHitsFromStatistics = false;
                 }
             }
         }
 
+        private TopDocsCollector<?> createTopDocsCollector() {
+            if (sortAndFormats == null) {
+                return TopScoreDocCollector.create(numHits, searchAfter);
+            } else {
+                /**
+                 * We explicitly don't track total hits in the topdocs collector, it can early terminate
+                 * if the sort matches the index sort.
+                 */
+                return TopFieldCollector.create(sortAndFormats.sort, numHits,
+                    (FieldDoc) searchAfter, true, trackMaxScore, trackMaxScore, false);
+            }
+        }
+
+        private Collector wrapTopDocsCollector(TopDocsCollector<?> topDocsCollector) {
+            return sortSkipper == null ? topDocsCollector : sortSkipper.wrap(topDocsCollector);
+        }
+
+        @Override
+        Query wrapQuery(Query query) {
+            return sortSkipper == null ? query : sortSkipper.wrapQuery(query);
+        }
+
         @Override
         Collector create(Collector in) {
             assert in == null;
             return collector;
         }
 
+        @Override
+        boolean supportsConcurrentCollection() {
+            return true;
+        }
+
+        @Override
+        Collector createForSlice(Collector in) {
+            assert in == null;
+            final TopDocsCollector<?> topDocsCollector = createTopDocsCollector();
+            sliceTopDocsCollectors.add(topDocsCollector);
+            if (countHits) {
+                final TotalHitCountCollector countingCollector = new TotalHitCountCollector();
+                sliceHitCountCollectors.add(countingCollector);
+                return MultiCollector.wrap(topDocsCollector, countingCollector);
+            }
+            return wrapTopDocsCollector(topDocsCollector);
+        }
+
+        @Override
+        void reduceSlices() {
+            final TopDocs topDocs;
+            int totalHits = 0;
+            if (sortAndFormats == null) {
+                final TopDocs[] sliceTopDocs = new TopDocs[sliceTopDocsCollectors.size()];
+                for (int i = 0; i < sliceTopDocs.length; i++) {
+                    sliceTopDocs[i] = sliceTopDocsCollectors.get(i).topDocs();
+                    totalHits += sliceTopDocsCollectors.get(i).getTotalHits();
+                }
+                topDocs = TopDocs.merge(0, numHits, sliceTopDocs, true);
+            } else {
+                final TopFieldDocs[] sliceTopDocs = new TopFieldDocs[sliceTopDocsCollectors.size()];
+                for (int i = 0; i < sliceTopDocs.length; i++) {
+                    sliceTopDocs[i] = (TopFieldDocs) sliceTopDocsCollectors.get(i).topDocs();
+                    totalHits += sliceTopDocsCollectors.get(i).getTotalHits();
+                }
+                topDocs = TopDocs.merge(sortAndFormats.sort, 0, numHits, sliceTopDocs, true);
+            }
+            clearShardIndex(topDocs);
+            this.topDocsSupplier = () -> topDocs;
+            if (countHits) {
+                totalHits = 0;
+                for (TotalHitCountCollector countingCollector : sliceHitCountCollectors) {
+                    totalHits += countingCollector.getTotalHits();
+                }
+            }
+            if (totalHitsFromStatistics == false) {
+                final int sliceTotalHits = totalHits;
+                this.totalHitsSupplier = () -> sliceTotalHits;
+            }
+        }
+
         @Override
         void postProcess(QuerySearchResult result) throws IOException {
             final TopDocs topDocs = topDocsSupplier.get();
@@ -249,7 +456,7 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                                                  boolean trackTotalHits,
                                                  boolean hasFilterCollector) throws IOException {
             super(reader, query, sortAndFormats, scrollContext.lastEmittedDoc, numHits, trackMaxScore,
-                trackTotalHits, hasFilterCollector);
+                trackTotalHits, hasFilterCollector, null);
             this.scrollContext = Objects.requireNonNull(scrollContext);
             this.numberOfShards = numberOfShards;
         }
@@ -315,16 +522,18 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
     /**
      * Creates a {@link TopDocsCollectorContext} from the provided <code>searchContext</code>.
      * @param hasFilterCollector True if the collector chain contains at least one collector that can filters document.
+     * @param hitCountCache The cache of the number of hits per segment, or <code>null</code> if the hits must not be cached.
      */
     static TopDocsCollectorContext createTopDocsCollectorContext(SearchContext searchContext,
                                                                  IndexReader reader,
-                                                                 boolean hasFilterCollector) throws IOException {
+                                                                 boolean hasFilterCollector,
+                                                                 @Nullable IndicesHitCountCache hitCountCache) throws IOException {
         final Query query = searchContext.query();
         // top collectors don't like a size of 0
         final int totalNumDocs = Math.max(1, reader.numDocs());
         if (searchContext.size() == 0) {
             // no matter what the value of from is
-            return new EmptyTopDocsCollectorContext(reader, query, searchContext.trackTotalHits(), hasFilterCollector);
+            return new EmptyTopDocsCollectorContext(reader, query, searchContext.trackTotalHits(), hasFilterCollector, hitCountCache);
         } else if (searchContext.scrollContext() != null) {
             // no matter what the value of from is
             int numDocs = Math.min(searchContext.size(), totalNumDocs);
@@ -345,8 +554,16 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                     numDocs = Math.max(numDocs, rescoreContext.getWindowSize());
                 }
             }
+            final NumericSortSkipper sortSkipper;
+            if (searchContext.trackTotalHits() && (hasFilterCollector || shortcutTotalHitCount(reader, query) == -1)) {
+                // the hits must all be collected to be counted
+                sortSkipper = null;
+            } else {
+                sortSkipper = NumericSortSkipper.create(searchContext, numDocs, hasFilterCollector);
+            }
             return new SimpleTopDocsCollectorContext(reader, query, searchContext.sort(), searchContext.searchAfter(), numDocs,
-                                                     searchContext.trackScores(), searchContext.trackTotalHits(), hasFilterCollector) {
+                                                     searchContext.trackScores(), searchContext.trackTotalHits(), hasFilterCollector,
+                                                     sortSkipper) {
                 @Override
                 boolean shouldRescore() {
                     return rescore;
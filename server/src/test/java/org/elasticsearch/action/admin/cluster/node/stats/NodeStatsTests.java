@@ -36,6 +36,8 @@ import org.elasticsearch.monitor.process.ProcessStats;
 import org.elasticsearch.node.AdaptiveSelectionStats;
 import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.ScriptStats;
+import org.elasticsearch.search.admission.SearchAdmissionStats;
+import org.elasticsearch.search.admission.SearchCost;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.threadpool.ThreadPoolStats;
@@ -298,6 +300,7 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(aStats.responseTime, bStats.responseTime, 0.01);
                     });
                 }
+                assertEquals(nodeStats.getSearchAdmissionStats(), deserializedNodeStats.getSearchAdmissionStats());
             }
         }
     }
@@ -461,9 +464,20 @@ public class NodeStatsTests extends ESTestCase {
             }
             adaptiveSelectionStats = new AdaptiveSelectionStats(nodeConnections, nodeStats);
         }
+        SearchAdmissionStats searchAdmissionStats = null;
+        if (frequently()) {
+            long[][] counts = new long[3][SearchCost.CostClass.values().length];
+            for (long[] classCounts : counts) {
+                for (int i = 0; i < classCounts.length; i++) {
+                    classCounts[i] = randomNonNegativeLong();
+                }
+            }
+            searchAdmissionStats = new SearchAdmissionStats(randomNonNegativeLong(), randomNonNegativeLong(), randomIntBetween(0, 1000),
+                counts[0], counts[1], counts[2]);
+        }
         //TODO NodeIndicesStats are not tested here, way too complicated to create, also they need to be migrated to Writeable yet
         return new NodeStats(node, randomNonNegativeLong(), null, osStats, processStats, jvmStats, threadPoolStats,
                 fsInfo, transportStats, httpStats, allCircuitBreakerStats, scriptStats, discoveryStats,
-                ingestStats, adaptiveSelectionStats);
+                ingestStats, adaptiveSelectionStats, searchAdmissionStats);
     }
 }
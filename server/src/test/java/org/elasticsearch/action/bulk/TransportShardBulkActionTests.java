@@ -47,9 +47,11 @@ import org.elasticsearch.index.mapper.MetadataFieldMapper;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
+import org.elasticsearch.index.shard.IndexingStats;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -253,6 +255,96 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    public void testParseAppendOnlyItemsConcurrently() throws Exception {
+        IndexMetaData metaData = IndexMetaData.builder(indexMetaData())
+            .settings(Settings.builder().put(idxSettings)
+                .put(IndexSettings.BULK_PARSE_PARALLELISM_SETTING.getKey(), randomIntBetween(2, 8)))
+            .build();
+        IndexShard shard = newShard(shardId, true, "n1", metaData, null);
+        recoverShardFromStore(shard);
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(4, 8) * TransportShardBulkAction.MIN_DOCS_PER_PARSE_THREAD];
+        int appendOnlyDocs = 0;
+        int malformedDocs = 0;
+        for (int i = 0; i < items.length; i++) {
+            final IndexRequest writeRequest;
+            if (rarely()) {
+                writeRequest = new IndexRequest("index", "_doc", "id_" + i).source(Requests.INDEX_CONTENT_TYPE, "foo", "bar_" + i);
+            } else {
+                writeRequest = new IndexRequest("index", "_doc");
+                if (rarely()) {
+                    writeRequest.source("{\"foo\": ", Requests.INDEX_CONTENT_TYPE);
+                    malformedDocs++;
+                } else {
+                    writeRequest.source(Requests.INDEX_CONTENT_TYPE, "foo", "bar_" + i);
+                    appendOnlyDocs++;
+                }
+                writeRequest.process(Version.CURRENT, null, "index");
+            }
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        WritePrimaryResult<BulkShardRequest, BulkShardResponse> result = TransportShardBulkAction.performOnPrimary(
+            bulkShardRequest, shard, null, threadPool::absoluteTimeInMillis, new NoopMappingUpdatePerformer(),
+            () -> {}, threadPool.executor(ThreadPool.Names.WRITE));
+
+        // documents are parsed concurrently but indexed in the order of the items
+        long maxSeqNo = SequenceNumbers.NO_OPS_PERFORMED;
+        int failures = 0;
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse response = result.finalResponseIfSuccessful.getResponses()[i];
+            assertThat(response.getItemId(), equalTo(i));
+            if (response.isFailed()) {
+                failures++;
+                assertThat(response.getFailure().getSeqNo(), equalTo(SequenceNumbers.UNASSIGNED_SEQ_NO));
+            } else {
+                assertThat(response.getResponse().getSeqNo(), equalTo(maxSeqNo + 1));
+                maxSeqNo = response.getResponse().getSeqNo();
+            }
+        }
+        assertThat(failures, equalTo(malformedDocs));
+        assertDocCount(shard, items.length - malformedDocs);
+
+        IndexingStats.Stats stats = shard.indexingStats().getTotal();
+        assertThat(stats.getIndexCount(), equalTo((long) items.length - malformedDocs));
+        assertThat(stats.getParallelParseCount(), equalTo((long) appendOnlyDocs));
+        closeShards(shard);
+    }
+
+    public void testIndexAppendOnlyItemsInBatchesByDefault() throws Exception {
+        IndexShard shard = newShard(shardId, true, "n1", indexMetaData(), null);
+        recoverShardFromStore(shard);
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(2, 2 * TransportShardBulkAction.MIN_DOCS_PER_PARSE_THREAD)];
+        for (int i = 0; i < items.length; i++) {
+            IndexRequest writeRequest = new IndexRequest("index", "_doc").source(Requests.INDEX_CONTENT_TYPE, "foo", "bar_" + i);
+            writeRequest.process(Version.CURRENT, null, "index");
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+        BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(bulkShardRequest, shard);
+
+        // the documents are parsed on the calling thread with the default parse parallelism
+        TransportShardBulkAction.prepareIndexOperations(context, r -> fail("documents should be parsed on the calling thread"));
+        assertThat(context.takePreparedIndexOperations().size(), equalTo(items.length));
+
+        WritePrimaryResult<BulkShardRequest, BulkShardResponse> result = TransportShardBulkAction.performOnPrimary(
+            bulkShardRequest, shard, null, threadPool::absoluteTimeInMillis, new NoopMappingUpdatePerformer(),
+            () -> {}, threadPool.executor(ThreadPool.Names.WRITE));
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse response = result.finalResponseIfSuccessful.getResponses()[i];
+            assertFalse(response.isFailed());
+            assertThat(response.getResponse().getSeqNo(), equalTo((long) i));
+        }
+        assertDocCount(shard, items.length);
+
+        IndexingStats.Stats stats = shard.indexingStats().getTotal();
+        assertThat(stats.getIndexCount(), equalTo((long) items.length));
+        assertThat(stats.getParallelParseCount(), equalTo(0L));
+        closeShards(shard);
+    }
+
     public void testExecuteBulkIndexRequestWithMappingUpdates() throws Exception {
 
         BulkItemRequest[] items = new BulkItemRequest[1];
@@ -22,14 +22,24 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.query.CoordinatorRewriteContext;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.ShardSearchTransportRequest;
 import org.elasticsearch.test.ESTestCase;
@@ -37,13 +47,17 @@ import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.transport.Transport;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
 
@@ -90,7 +104,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
                     public void run() throws IOException {
                         result.set(iter);
                         latch.countDown();
-                    }}, SearchResponse.Clusters.EMPTY);
+                    }}, SearchResponse.Clusters.EMPTY, null, null);
 
         canMatchPhase.start();
         latch.await();
@@ -171,7 +185,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
                 public void run() throws IOException {
                     result.set(iter);
                     latch.countDown();
-                }}, SearchResponse.Clusters.EMPTY);
+                }}, SearchResponse.Clusters.EMPTY, null, null);
 
         canMatchPhase.start();
         latch.await();
@@ -258,10 +272,180 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
                             listener.onFailure(new Exception("failure"));
                         }
                     }
-                }, SearchResponse.Clusters.EMPTY);
+                }, SearchResponse.Clusters.EMPTY, null, null);
 
         canMatchPhase.start();
         latch.await();
         executor.shutdown();
     }
+
+    public void testCachedFieldRangesSkipShards() throws InterruptedException {
+        final long version = randomNonNegativeLong();
+        final ClusterState clusterState = clusterState(version);
+        final ShardFieldRangesCache cache = fieldRangesCache();
+        final GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter(null);
+        for (SearchShardIterator shardIt : shardsIter) {
+            cache.put(shardIt.shardId(), countRanges(version, 10, 20));
+        }
+
+        final List<ShardSearchTransportRequest> requests = new CopyOnWriteArrayList<>();
+        GroupShardsIterator<SearchShardIterator> result = runCanMatchPhase(shardsIter, new RangeQueryBuilder("count").gt(20),
+            cache, clusterState, request -> {
+                requests.add(request);
+                return new SearchTransportService.CanMatchResponse(true);
+            });
+        // no shard can match its cached ranges, so no request is sent but the first shard is kept to build the response
+        assertEquals(0, requests.size());
+        assertFalse(result.get(0).skip());
+        assertTrue(result.get(1).skip());
+
+        result = runCanMatchPhase(shardsIter(null), new RangeQueryBuilder("count").gte(15), cache, clusterState, request -> {
+            requests.add(request);
+            return new SearchTransportService.CanMatchResponse(true);
+        });
+        // the shards don't need to return the ranges that are already cached
+        assertEquals(2, requests.size());
+        for (ShardSearchTransportRequest request : requests) {
+            assertEquals(version, request.cachedFieldRangesVersion());
+        }
+        assertFalse(result.get(0).skip());
+        assertFalse(result.get(1).skip());
+    }
+
+    public void testCachedFieldRangesAreInvalidatedOnMetaDataChange() throws InterruptedException {
+        final long version = randomLongBetween(0, Long.MAX_VALUE - 1);
+        final ClusterState clusterState = clusterState(version + 1);
+        final ShardFieldRangesCache cache = fieldRangesCache();
+        final GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter(null);
+        for (SearchShardIterator shardIt : shardsIter) {
+            cache.put(shardIt.shardId(), countRanges(version, 10, 20));
+        }
+
+        final List<ShardSearchTransportRequest> requests = new CopyOnWriteArrayList<>();
+        final GroupShardsIterator<SearchShardIterator> result = runCanMatchPhase(shardsIter, new RangeQueryBuilder("count").gt(20),
+            cache, clusterState, request -> {
+                requests.add(request);
+                return new SearchTransportService.CanMatchResponse(true, countRanges(version + 1, 10, 30));
+            });
+        assertEquals(2, requests.size());
+        for (ShardSearchTransportRequest request : requests) {
+            assertEquals(ShardSearchTransportRequest.NO_CACHED_FIELD_RANGES, request.cachedFieldRangesVersion());
+        }
+        assertFalse(result.get(0).skip());
+        assertFalse(result.get(1).skip());
+        for (SearchShardIterator shardIt : shardsIter) {
+            final ShardFieldRanges ranges = cache.get(shardIt.shardId(), clusterState);
+            assertNotNull(ranges);
+            assertEquals(version + 1, ranges.getIndexMetaDataVersion());
+        }
+    }
+
+    public void testFieldRangesOfRemoteShardsAreNotCached() throws InterruptedException {
+        final long version = randomNonNegativeLong();
+        final ClusterState clusterState = clusterState(version);
+        final ShardFieldRangesCache cache = fieldRangesCache();
+        final GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter("remote");
+        final boolean cachedLocalRanges = randomBoolean();
+        if (cachedLocalRanges) {
+            // a local index with the same name and uuid must not be mistaken for the remote one
+            for (SearchShardIterator shardIt : shardsIter) {
+                cache.put(shardIt.shardId(), countRanges(version, 10, 20));
+            }
+        }
+
+        final List<ShardSearchTransportRequest> requests = new CopyOnWriteArrayList<>();
+        final GroupShardsIterator<SearchShardIterator> result = runCanMatchPhase(shardsIter, new RangeQueryBuilder("count").gt(20),
+            cache, clusterState, request -> {
+                requests.add(request);
+                return new SearchTransportService.CanMatchResponse(true, countRanges(version, 10, 30));
+            });
+        assertEquals(2, requests.size());
+        for (ShardSearchTransportRequest request : requests) {
+            assertEquals(ShardSearchTransportRequest.NO_CACHED_FIELD_RANGES, request.cachedFieldRangesVersion());
+        }
+        assertFalse(result.get(0).skip());
+        assertFalse(result.get(1).skip());
+        for (SearchShardIterator shardIt : shardsIter) {
+            final ShardFieldRanges ranges = cache.get(shardIt.shardId(), clusterState);
+            if (cachedLocalRanges) {
+                assertEquals(countRanges(version, 10, 20), ranges);
+            } else {
+                assertNull(ranges);
+            }
+        }
+    }
+
+    private static ClusterState clusterState(long indexMetaDataVersion) {
+        final IndexMetaData indexMetaData = IndexMetaData.builder("idx")
+            .settings(Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_INDEX_UUID, "_na_"))
+            .numberOfShards(2)
+            .numberOfReplicas(1)
+            .version(indexMetaDataVersion)
+            .build();
+        return ClusterState.builder(new ClusterName("test")).metaData(MetaData.builder().put(indexMetaData, false)).build();
+    }
+
+    private ShardFieldRangesCache fieldRangesCache() {
+        return new ShardFieldRangesCache(100, (nowInMillis, ranges) ->
+            new CoordinatorRewriteContext(xContentRegistry(), writableRegistry(), null, nowInMillis, ranges));
+    }
+
+    private static ShardFieldRanges countRanges(long indexMetaDataVersion, long min, long max) {
+        return new ShardFieldRanges(indexMetaDataVersion, Collections.singletonMap("count",
+            new ShardFieldRanges.FieldRange(NumberFieldMapper.NumberType.LONG.typeName(), null, null, true, min, max)));
+    }
+
+    private GroupShardsIterator<SearchShardIterator> shardsIter(String clusterAlias) {
+        final DiscoveryNode primaryNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        final DiscoveryNode replicaNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+        final OriginalIndices originalIndices = new OriginalIndices(new String[]{"idx"}, IndicesOptions.strictExpandOpenAndForbidClosed());
+        final List<SearchShardIterator> shardIts = new ArrayList<>();
+        for (SearchShardIterator shardIt : SearchAsyncActionTests.getShardsIter("idx", originalIndices, 2, randomBoolean(),
+                primaryNode, replicaNode)) {
+            shardIts.add(new SearchShardIterator(clusterAlias, shardIt.shardId(), shardIt.getShardRoutings(), originalIndices));
+        }
+        return new GroupShardsIterator<>(shardIts);
+    }
+
+    private GroupShardsIterator<SearchShardIterator> runCanMatchPhase(GroupShardsIterator<SearchShardIterator> shardsIter,
+                                                                      RangeQueryBuilder query, ShardFieldRangesCache cache,
+                                                                      ClusterState clusterState,
+                                                                      Function<ShardSearchTransportRequest,
+                                                                          SearchTransportService.CanMatchResponse> canMatch)
+            throws InterruptedException {
+        final TransportSearchAction.SearchTimeProvider timeProvider = new TransportSearchAction.SearchTimeProvider(0, System.nanoTime(),
+            System::nanoTime);
+        final SearchTransportService searchTransportService = new SearchTransportService(
+            Settings.builder().put("search.remote.connect", false).build(), null, null) {
+
+            @Override
+            public void sendCanMatch(Transport.Connection connection, ShardSearchTransportRequest request, SearchTask task,
+                                     ActionListener<CanMatchResponse> listener) {
+                new Thread(() -> listener.onResponse(canMatch.apply(request))).start();
+            }
+        };
+        final AtomicReference<GroupShardsIterator<SearchShardIterator>> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final SearchRequest searchRequest = new SearchRequest().source(new SearchSourceBuilder().query(query));
+        searchRequest.allowPartialSearchResults(true);
+        final CanMatchPreFilterSearchPhase canMatchPhase = new CanMatchPreFilterSearchPhase(logger,
+            searchTransportService,
+            (clusterAlias, node) -> new SearchAsyncActionTests.MockConnection(
+                new DiscoveryNode(node, buildNewFakeTransportAddress(), Version.CURRENT)),
+            Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY)),
+            Collections.emptyMap(), Collections.emptyMap(), EsExecutors.newDirectExecutorService(),
+            searchRequest, null, shardsIter, timeProvider, 0, null,
+            (iter) -> new SearchPhase("test") {
+                @Override
+                public void run() throws IOException {
+                    result.set(iter);
+                    latch.countDown();
+                }}, SearchResponse.Clusters.EMPTY, cache, clusterState);
+
+        canMatchPhase.start();
+        latch.await();
+        return result.get();
+    }
 }
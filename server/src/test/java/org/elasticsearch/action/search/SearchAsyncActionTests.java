@@ -31,11 +31,15 @@ import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequest;
@@ -46,15 +50,21 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
 public class SearchAsyncActionTests extends ESTestCase {
 
     public void testSkipSearchShards() throws InterruptedException {
@@ -368,6 +378,402 @@ public class SearchAsyncActionTests extends ESTestCase {
         executor.shutdown();
     }
 
+    public void testHedgedRequests() throws InterruptedException {
+        SearchRequest request = new SearchRequest();
+        request.allowPartialSearchResults(true);
+        // the requests to the first copies only respond once the search is done, they must not block the requests to other shards
+        request.setMaxConcurrentShardRequests(10);
+        CountDownLatch latch = new CountDownLatch(1);
+        ActionListener<SearchResponse> responseListener = new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.warn("test failed", e);
+                fail(e.getMessage());
+            }
+        };
+        DiscoveryNode primaryNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode replicaNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+
+        AtomicInteger contextIdGenerator = new AtomicInteger(0);
+        GroupShardsIterator<SearchShardIterator> shardsIter = getShardsIter("idx",
+            new OriginalIndices(new String[]{"idx"}, IndicesOptions.strictExpandOpenAndForbidClosed()),
+            randomIntBetween(1, 10), true, primaryNode, replicaNode);
+        SearchTransportService transportService = new SearchTransportService(Settings.EMPTY, null, null);
+        Map<String, Transport.Connection> lookup = new HashMap<>();
+        lookup.put(primaryNode.getId(), new MockConnection(primaryNode));
+        lookup.put(replicaNode.getId(), new MockConnection(replicaNode));
+        Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+        Map<ShardId, String> firstNodes = new ConcurrentHashMap<>();
+        List<Runnable> slowResponses = new CopyOnWriteArrayList<>();
+        List<TestSearchPhaseResult> releasedResults = new CopyOnWriteArrayList<>();
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ShardRequestHedging hedging = new ShardRequestHedging(threadPool, null, TimeValue.ZERO, Integer.MAX_VALUE) {
+                @Override
+                TimeValue getDelay(String nodeId) {
+                    return TimeValue.timeValueMillis(randomIntBetween(0, 10));
+                }
+            };
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    transportService,
+                    (cluster, node) -> {
+                        assert cluster == null : "cluster was not null: " + cluster;
+                        return lookup.get(node); },
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    Collections.emptyMap(),
+                    EsExecutors.newDirectExecutorService(),
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new InitialSearchPhase.ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    SearchResponse.Clusters.EMPTY) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        Transport.Connection connection = getConnection(null, shard.currentNodeId());
+                        TestSearchPhaseResult testSearchPhaseResult = new TestSearchPhaseResult(contextIdGenerator.incrementAndGet(),
+                            connection.getNode());
+                        if (firstNodes.putIfAbsent(shard.shardId(), shard.currentNodeId()) == null) {
+                            // the first copy doesn't respond until the search is done
+                            slowResponses.add(() -> listener.onResponse(testSearchPhaseResult));
+                        } else {
+                            assertNotEquals(firstNodes.get(shard.shardId()), shard.currentNodeId());
+                            new Thread(() -> listener.onResponse(testSearchPhaseResult)).start();
+                        }
+                    }
+
+                    @Override
+                    ShardRequestHedging getHedging() {
+                        return hedging;
+                    }
+
+                    @Override
+                    void releaseHedgedResult(TestSearchPhaseResult result) {
+                        releasedResults.add(result);
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results, SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() {
+                                for (int i = 0; i < results.getNumShards(); i++) {
+                                    TestSearchPhaseResult result = results.getAtomicArray().get(i);
+                                    ShardId shardId = shardsIter.get(i).shardId();
+                                    assertNotEquals(firstNodes.get(shardId), result.node.getId());
+                                    assertEquals(result.node.getId(), result.getSearchShardTarget().getNodeId());
+                                }
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            latch.await();
+            SearchResponse searchResponse = asyncAction.buildSearchResponse(null, null);
+            assertEquals(shardsIter.size(), searchResponse.getSuccessfulShards());
+            assertEquals(0, searchResponse.getFailedShards());
+            assertEquals(shardsIter.size(), slowResponses.size());
+            for (Runnable slowResponse : slowResponses) {
+                slowResponse.run();
+            }
+            assertEquals(shardsIter.size(), releasedResults.size());
+            for (TestSearchPhaseResult releasedResult : releasedResults) {
+                assertEquals(firstNodes.get(releasedResult.getSearchShardTarget().getShardId()), releasedResult.node.getId());
+            }
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testHedgedRequestsAreThrottledAndLimited() throws Exception {
+        SearchRequest request = new SearchRequest();
+        request.allowPartialSearchResults(true);
+        request.setMaxConcurrentShardRequests(randomIntBetween(1, 3));
+        CountDownLatch latch = new CountDownLatch(1);
+        ActionListener<SearchResponse> responseListener = new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.warn("test failed", e);
+                fail(e.getMessage());
+            }
+        };
+        DiscoveryNode primaryNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode replicaNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+
+        AtomicInteger contextIdGenerator = new AtomicInteger(0);
+        GroupShardsIterator<SearchShardIterator> shardsIter = getShardsIter("idx",
+            new OriginalIndices(new String[]{"idx"}, IndicesOptions.strictExpandOpenAndForbidClosed()),
+            randomIntBetween(5, 20), true, primaryNode, replicaNode);
+        SearchTransportService transportService = new SearchTransportService(Settings.EMPTY, null, null);
+        Map<String, Transport.Connection> lookup = new HashMap<>();
+        lookup.put(primaryNode.getId(), new MockConnection(primaryNode));
+        lookup.put(replicaNode.getId(), new MockConnection(replicaNode));
+        Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+        Map<ShardId, String> firstNodes = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> inFlightRequests = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlightRequests = new AtomicInteger();
+        AtomicInteger hedgedRequests = new AtomicInteger();
+        AtomicInteger responses = new AtomicInteger();
+        List<TestSearchPhaseResult> releasedResults = new CopyOnWriteArrayList<>();
+        final int maxHedges = randomIntBetween(1, 5);
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ShardRequestHedging hedging = new ShardRequestHedging(threadPool, null, TimeValue.ZERO, maxHedges) {
+                @Override
+                TimeValue getDelay(String nodeId) {
+                    return TimeValue.timeValueMillis(randomIntBetween(0, 2));
+                }
+            };
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    transportService,
+                    (cluster, node) -> {
+                        assert cluster == null : "cluster was not null: " + cluster;
+                        return lookup.get(node); },
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    Collections.emptyMap(),
+                    EsExecutors.newDirectExecutorService(),
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new InitialSearchPhase.ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    SearchResponse.Clusters.EMPTY) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        String nodeId = shard.currentNodeId();
+                        AtomicInteger inFlight = inFlightRequests.computeIfAbsent(nodeId, n -> new AtomicInteger());
+                        maxInFlightRequests.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        final boolean hedged = firstNodes.putIfAbsent(shard.shardId(), nodeId) != null;
+                        if (hedged) {
+                            hedgedRequests.incrementAndGet();
+                        }
+                        TestSearchPhaseResult testSearchPhaseResult = new TestSearchPhaseResult(contextIdGenerator.incrementAndGet(),
+                            getConnection(null, nodeId).getNode());
+                        new Thread(() -> {
+                            if (hedged == false) {
+                                // the first copy is slow so that its request is hedged
+                                try {
+                                    Thread.sleep(randomIntBetween(5, 20));
+                                } catch (InterruptedException e) {
+                                    throw new AssertionError(e);
+                                }
+                            }
+                            inFlight.decrementAndGet();
+                            responses.incrementAndGet();
+                            listener.onResponse(testSearchPhaseResult);
+                        }).start();
+                    }
+
+                    @Override
+                    ShardRequestHedging getHedging() {
+                        return hedging;
+                    }
+
+                    @Override
+                    void releaseHedgedResult(TestSearchPhaseResult result) {
+                        releasedResults.add(result);
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results, SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() {
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            latch.await();
+            SearchResponse searchResponse = asyncAction.buildSearchResponse(null, null);
+            assertEquals(shardsIter.size(), searchResponse.getSuccessfulShards());
+            assertEquals(0, searchResponse.getFailedShards());
+            assertBusy(() -> {
+                assertEquals(shardsIter.size() + hedgedRequests.get(), responses.get());
+                // one of the two responses of every hedged request is released
+                assertEquals(hedgedRequests.get(), releasedResults.size());
+            });
+            assertThat(hedgedRequests.get(), lessThanOrEqualTo(maxHedges));
+            assertThat(maxInFlightRequests.get(), lessThanOrEqualTo(request.getMaxConcurrentShardRequests()));
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testHedgedRequestsOnFailingCopies() throws InterruptedException {
+        SearchRequest request = new SearchRequest();
+        request.allowPartialSearchResults(true);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Exception> searchFailure = new AtomicReference<>();
+        ActionListener<SearchResponse> responseListener = new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                searchFailure.set(e);
+                latch.countDown();
+            }
+        };
+        List<DiscoveryNode> nodes = new ArrayList<>();
+        // without a third copy all copies of the shards fail
+        final boolean withThirdCopy = randomBoolean();
+        for (int i = 1; i <= (withThirdCopy ? 3 : 2); i++) {
+            nodes.add(new DiscoveryNode("node_" + i, buildNewFakeTransportAddress(), Version.CURRENT));
+        }
+        OriginalIndices originalIndices = new OriginalIndices(new String[]{"idx"}, IndicesOptions.strictExpandOpenAndForbidClosed());
+        ArrayList<SearchShardIterator> list = new ArrayList<>();
+        int numShards = randomIntBetween(1, 10);
+        for (int i = 0; i < numShards; i++) {
+            ShardId shardId = new ShardId(new Index("idx", "_na_"), i);
+            ArrayList<ShardRouting> copies = new ArrayList<>();
+            for (DiscoveryNode node : nodes) {
+                ShardRouting routing = ShardRouting.newUnassigned(shardId, copies.isEmpty(),
+                    RecoverySource.PeerRecoverySource.INSTANCE, new UnassignedInfo(UnassignedInfo.Reason.INDEX_CREATED, "foobar"));
+                copies.add(routing.initialize(node.getId(), i + node.getId(), 0));
+            }
+            // the copies are not shuffled so that the request is always sent to node_1 first and hedged on node_2
+            list.add(new SearchShardIterator(null, shardId, copies, originalIndices));
+        }
+        GroupShardsIterator<SearchShardIterator> shardsIter = new GroupShardsIterator<>(list);
+
+        AtomicInteger contextIdGenerator = new AtomicInteger(0);
+        SearchTransportService transportService = new SearchTransportService(Settings.EMPTY, null, null);
+        Map<String, Transport.Connection> lookup = new HashMap<>();
+        for (DiscoveryNode node : nodes) {
+            lookup.put(node.getId(), new MockConnection(node));
+        }
+        Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+        Map<ShardId, List<String>> requestedNodes = new ConcurrentHashMap<>();
+        Map<ShardId, Runnable> slowFailures = new ConcurrentHashMap<>();
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ShardRequestHedging hedging = new ShardRequestHedging(threadPool, null, TimeValue.ZERO, Integer.MAX_VALUE) {
+                @Override
+                TimeValue getDelay(String nodeId) {
+                    return TimeValue.timeValueMillis(randomIntBetween(0, 10));
+                }
+            };
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    transportService,
+                    (cluster, node) -> {
+                        assert cluster == null : "cluster was not null: " + cluster;
+                        return lookup.get(node); },
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    Collections.emptyMap(),
+                    EsExecutors.newDirectExecutorService(),
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new InitialSearchPhase.ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    SearchResponse.Clusters.EMPTY) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        Transport.Connection connection = getConnection(null, shard.currentNodeId());
+                        requestedNodes.computeIfAbsent(shard.shardId(), s -> new CopyOnWriteArrayList<>()).add(shard.currentNodeId());
+                        switch (shard.currentNodeId()) {
+                            case "node_1":
+                                // the first copy only fails once the hedged request failed too
+                                slowFailures.put(shard.shardId(), () -> listener.onFailure(new RuntimeException("node_1 failed")));
+                                break;
+                            case "node_2":
+                                new Thread(() -> {
+                                    listener.onFailure(new RuntimeException("node_2 failed"));
+                                    slowFailures.remove(shard.shardId()).run();
+                                }).start();
+                                break;
+                            default:
+                                TestSearchPhaseResult testSearchPhaseResult =
+                                    new TestSearchPhaseResult(contextIdGenerator.incrementAndGet(), connection.getNode());
+                                new Thread(() -> listener.onResponse(testSearchPhaseResult)).start();
+                        }
+                    }
+
+                    @Override
+                    ShardRequestHedging getHedging() {
+                        return hedging;
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results, SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() {
+                                for (int i = 0; i < results.getNumShards(); i++) {
+                                    TestSearchPhaseResult result = results.getAtomicArray().get(i);
+                                    assertEquals("node_3", result.node.getId());
+                                }
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            latch.await();
+            List<String> expectedNodes = new ArrayList<>();
+            for (DiscoveryNode node : nodes) {
+                expectedNodes.add(node.getId());
+            }
+            for (SearchShardIterator shardIt : shardsIter) {
+                // the copy that the hedged request failed on is not retried
+                assertEquals(expectedNodes, requestedNodes.get(shardIt.shardId()));
+            }
+            assertTrue(slowFailures.isEmpty());
+            if (withThirdCopy) {
+                assertNull(searchFailure.get());
+                SearchResponse searchResponse = asyncAction.buildSearchResponse(null, null);
+                assertEquals(shardsIter.size(), searchResponse.getSuccessfulShards());
+                assertEquals(0, searchResponse.getFailedShards());
+            } else {
+                assertThat(searchFailure.get(), instanceOf(SearchPhaseExecutionException.class));
+                SearchPhaseExecutionException e = (SearchPhaseExecutionException) searchFailure.get();
+                assertEquals("all shards failed", e.getMessage());
+                assertEquals(shardsIter.size(), e.shardFailures().length);
+            }
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
     static GroupShardsIterator<SearchShardIterator> getShardsIter(String index, OriginalIndices originalIndices, int numShards,
                                                      boolean doReplicas, DiscoveryNode primaryNode, DiscoveryNode replicaNode) {
         ArrayList<SearchShardIterator> list = new ArrayList<>();
@@ -22,8 +22,15 @@ package org.elasticsearch.action.search;
 import com.carrotsearch.randomizedtesting.RandomizedContext;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.Index;
@@ -33,6 +40,7 @@ import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.nested.InternalReverseNested;
 import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -68,7 +76,8 @@ public class SearchPhaseControllerTests extends ESTestCase {
     @Before
     public void setup() {
         searchPhaseController = new SearchPhaseController(Settings.EMPTY,
-            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b));
+            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b),
+            new NoopCircuitBreaker(CircuitBreaker.REQUEST));
     }
 
     public void testSort() throws Exception {
@@ -314,18 +323,14 @@ public class SearchPhaseControllerTests extends ESTestCase {
         result.aggregations(aggs);
         result.setShardIndex(1);
         consumer.consumeResult(result);
-        int numTotalReducePhases = 1;
-        if (bufferSize == 2) {
-            assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
-            assertEquals(1, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumReducePhases());
-            assertEquals(2, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumBuffered());
-            numTotalReducePhases++;
-        } else {
-            assertThat(consumer, not(instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class)));
-        }
+        // the aggregations are reduced as they arrive, whatever the buffer size
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
+        assertEquals(2, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumReducePhases());
+        int numBuffered = bufferSize == 2 ? 2 : 3;
+        assertEquals(numBuffered, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumBuffered());
 
         SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
-        assertEquals(numTotalReducePhases, reduce.numReducePhases);
+        assertEquals(3, reduce.numReducePhases);
         InternalMax max = (InternalMax) reduce.aggregations.asList().get(0);
         assertEquals(3.0D, max.getValue(), 0.0D);
     }
@@ -400,6 +405,133 @@ public class SearchPhaseControllerTests extends ESTestCase {
         assertEquals(expectedNumResults, reduce.totalHits);
     }
 
+    public void testConsumerAccountsAggsOnBreaker() {
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(1, ByteSizeUnit.MB), 1.0, logger);
+        SearchPhaseController controller = new SearchPhaseController(Settings.EMPTY,
+            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b), breaker);
+        int expectedNumResults = randomIntBetween(2, 100);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(randomIntBetween(0, 10)));
+        if (randomBoolean()) {
+            request.setBatchedReduceSize(randomIntBetween(2, 200));
+        }
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
+        for (int i = 0; i < expectedNumResults; i++) {
+            QuerySearchResult result = createMaxResult(i, randomIntBetween(1, 1000));
+            consumer.consumeResult(result);
+            // every result is folded into the reduced aggregations as it arrives, which are the only ones that are held
+            assertEquals(i, ((SearchPhaseController.QueryPhaseResultConsumer) consumer).getNumReducePhases());
+            assertEquals(SearchPhaseController.AGGREGATION_BYTES, breaker.getUsed());
+            assertEquals(breaker.getUsed(), ((SearchPhaseController.QueryPhaseResultConsumer) consumer).getBreakerBytes());
+        }
+        consumer.reduce();
+        // the final aggregations are held until the response was sent
+        assertEquals(SearchPhaseController.AGGREGATION_BYTES, breaker.getUsed());
+        consumer.close();
+        assertEquals(0, breaker.getUsed());
+        // closing twice must not release the bytes twice
+        consumer.close();
+        assertEquals(0, breaker.getUsed());
+    }
+
+    public void testConsumerBreaks() {
+        long aggsSize = SearchPhaseController.estimateSize((InternalAggregations) createMaxResult(0, 1).consumeAggs());
+        int expectedNumResults = randomIntBetween(3, 100);
+        // the breaker trips when the aggregations of the second shard arrive, before they are reduced with those of the first
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(aggsSize * 2 - 1), 1.0, logger);
+        SearchPhaseController controller = new SearchPhaseController(Settings.EMPTY,
+            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b), breaker);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(0));
+        request.setBatchedReduceSize(randomIntBetween(2, 200));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            QuerySearchResult result = createMaxResult(i, randomIntBetween(1, 1000));
+            consumer.consumeResult(result);
+            // the aggregations of the shard are consumed even if they are dropped
+            expectThrows(IllegalStateException.class, result::consumeAggs);
+        }
+        // the reduced aggregations are released as soon as the breaker trips
+        assertEquals(0, breaker.getUsed());
+        expectThrows(CircuitBreakingException.class, consumer::reduce);
+        consumer.close();
+        assertEquals(0, breaker.getUsed());
+    }
+
+    public void testEstimateSize() {
+        assertEquals(0, SearchPhaseController.estimateSize(null));
+        InternalAggregations max = new InternalAggregations(Collections.singletonList(new InternalMax("test", 1d,
+            DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap())));
+        assertEquals(SearchPhaseController.AGGREGATION_BYTES, SearchPhaseController.estimateSize(max));
+        // the buckets and their sub aggregations are accounted
+        InternalAggregations nested = new InternalAggregations(Collections.singletonList(new InternalReverseNested("nested", 1, max,
+            Collections.emptyList(), Collections.emptyMap())));
+        assertEquals(2 * SearchPhaseController.AGGREGATION_BYTES + SearchPhaseController.BUCKET_BYTES,
+            SearchPhaseController.estimateSize(nested));
+    }
+
+    public void testNonBatchedResultsAccountAggsOnBreaker() {
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(1, ByteSizeUnit.MB), 1.0, logger);
+        SearchPhaseController controller = new SearchPhaseController(Settings.EMPTY,
+            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b), breaker);
+        int expectedNumResults = randomIntBetween(1, 100);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(0));
+        // scroll requests reduce the results of all shards at once
+        request.scroll(TimeValue.timeValueMinutes(1));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, not(instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class)));
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < expectedNumResults; i++) {
+            int number = randomIntBetween(1, 1000);
+            max = Math.max(max, number);
+            QuerySearchResult result = createMaxResult(i, number);
+            consumer.consumeResult(result);
+            // the aggregations are kept until the results are reduced
+            assertTrue(result.hasAggs());
+            assertEquals((i + 1) * SearchPhaseController.AGGREGATION_BYTES, breaker.getUsed());
+        }
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertEquals(max, ((InternalMax) reduce.aggregations.asList().get(0)).getValue(), 0d);
+        // the aggregations of the results are replaced by the reduced aggregations
+        assertEquals(SearchPhaseController.AGGREGATION_BYTES, breaker.getUsed());
+        consumer.close();
+        assertEquals(0, breaker.getUsed());
+    }
+
+    public void testNonBatchedResultsBreak() {
+        int expectedNumResults = randomIntBetween(3, 100);
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(2 * SearchPhaseController.AGGREGATION_BYTES), 1.0,
+            logger);
+        SearchPhaseController controller = new SearchPhaseController(Settings.EMPTY,
+            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b), breaker);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(0));
+        request.scroll(TimeValue.timeValueMinutes(1));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            consumer.consumeResult(createMaxResult(i, randomIntBetween(1, 1000)));
+        }
+        expectThrows(CircuitBreakingException.class, consumer::reduce);
+        consumer.close();
+        assertEquals(0, breaker.getUsed());
+    }
+
+    private static QuerySearchResult createMaxResult(int id, int number) {
+        QuerySearchResult result = new QuerySearchResult(id, new SearchShardTarget("node", new Index("a", "b"), id, null));
+        result.topDocs(new TopDocs(1, new ScoreDoc[0], number), new DocValueFormat[0]);
+        InternalAggregations aggs = new InternalAggregations(Arrays.asList(new InternalMax("test", (double) number,
+            DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap())));
+        result.aggregations(aggs);
+        result.setShardIndex(id);
+        result.size(1);
+        return result;
+    }
 
     public void testConsumerOnlyHits() throws InterruptedException {
         int expectedNumResults = randomIntBetween(1, 100);
@@ -454,7 +586,7 @@ public class SearchPhaseControllerTests extends ESTestCase {
             request.setBatchedReduceSize(bufferSize);
             InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer
                 = searchPhaseController.newSearchPhaseResults(request, expectedNumResults);
-            if ((hasAggs || hasTopDocs) && expectedNumResults > bufferSize) {
+            if ((hasAggs && expectedNumResults > 1) || ((hasAggs || hasTopDocs) && expectedNumResults > bufferSize)) {
                 assertThat("expectedNumResults: " + expectedNumResults + " bufferSize: " + bufferSize,
                     consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
             } else {
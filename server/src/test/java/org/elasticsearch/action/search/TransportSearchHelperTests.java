@@ -19,7 +19,11 @@
 package org.elasticsearch.action.search;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
@@ -27,6 +31,9 @@ import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class TransportSearchHelperTests extends ESTestCase {
 
@@ -61,4 +68,59 @@ public class TransportSearchHelperTests extends ESTestCase {
         assertNull(parseScrollId.getContext()[2].getClusterAlias());
         assertEquals(42, parseScrollId.getContext()[2].getScrollId());
     }
+
+    public void testParseReaderLeaseId() throws IOException {
+        OriginalIndices originalIndices = new OriginalIndices(new String[] {"idx", "alias*"}, IndicesOptions.lenientExpandOpen());
+        List<ReaderLeaseIdForShard> shards = Arrays.asList(
+            new ReaderLeaseIdForShard(new ShardId("idx", "uuid1", 2), "node_1", 1),
+            new ReaderLeaseIdForShard(new ShardId("idy", "uuid2", 0), "node_2", 42));
+
+        String readerLeaseId = TransportSearchHelper.buildReaderLeaseId(originalIndices, shards);
+        ParsedReaderLeaseId parsed = TransportSearchHelper.parseReaderLeaseId(readerLeaseId);
+        assertEquals(readerLeaseId, parsed.getSource());
+        assertArrayEquals(originalIndices.indices(), parsed.getOriginalIndices().indices());
+        assertEquals(originalIndices.indicesOptions(), parsed.getOriginalIndices().indicesOptions());
+        assertEquals(2, parsed.getShards().length);
+        for (int i = 0; i < shards.size(); i++) {
+            assertEquals(shards.get(i).getShardId(), parsed.getShards()[i].getShardId());
+            assertEquals(shards.get(i).getNode(), parsed.getShards()[i].getNode());
+            assertEquals(shards.get(i).getLeaseId(), parsed.getShards()[i].getLeaseId());
+        }
+
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> TransportSearchHelper.parseReaderLeaseId(readerLeaseId.substring(0, readerLeaseId.length() / 2)));
+        assertEquals("Cannot parse reader lease id", e.getMessage());
+    }
+
+    public void testSearchRequestWithReaderLease() throws IOException {
+        OriginalIndices originalIndices = new OriginalIndices(new String[] {"idx", "alias*"}, IndicesOptions.lenientExpandOpen());
+        String readerLeaseId = TransportSearchHelper.buildReaderLeaseId(originalIndices,
+            Collections.singletonList(new ReaderLeaseIdForShard(new ShardId("idx", "uuid1", 0), "node_1", 1)));
+
+        // the indices of the lease are exposed by the request so that they are authorized like the ones of any other search
+        SearchRequest searchRequest = new SearchRequest().readerLease(readerLeaseId);
+        assertArrayEquals(originalIndices.indices(), searchRequest.indices());
+        assertEquals(originalIndices.indicesOptions(), searchRequest.indicesOptions());
+        assertNull(searchRequest.validate());
+        assertEquals(searchRequest, new SearchRequest().readerLease(readerLeaseId));
+        assertNotEquals(searchRequest, new SearchRequest().readerLease(TransportSearchHelper.buildReaderLeaseId(originalIndices,
+            Collections.singletonList(new ReaderLeaseIdForShard(new ShardId("idx", "uuid1", 0), "node_1", 2)))));
+
+        // indices that were set explicitly are kept, but must be the ones of the lease
+        searchRequest = new SearchRequest("idx", "alias*").readerLease(readerLeaseId);
+        assertNull(searchRequest.validate());
+        searchRequest = new SearchRequest("index").readerLease(readerLeaseId);
+        assertArrayEquals(new String[] {"index"}, searchRequest.indices());
+        searchRequest.routing("routing");
+        searchRequest.scroll(new TimeValue(1000));
+        ActionRequestValidationException validationErrors = searchRequest.validate();
+        assertNotNull(validationErrors);
+        assertEquals(3, validationErrors.validationErrors().size());
+        assertEquals("[reader_lease] cannot be used in a scroll context", validationErrors.validationErrors().get(0));
+        assertEquals("[indices] cannot be used with a [reader_lease], the lease determines the shards to search",
+            validationErrors.validationErrors().get(1));
+        assertEquals("[routing] cannot be used with a [reader_lease]", validationErrors.validationErrors().get(2));
+
+        expectThrows(IllegalArgumentException.class, () -> new SearchRequest().readerLease("lease"));
+    }
 }
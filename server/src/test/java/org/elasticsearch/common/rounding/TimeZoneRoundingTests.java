@@ -206,6 +206,70 @@ public class TimeZoneRoundingTests extends ESTestCase {
         }
     }
 
+    public void testPrepareLookupTable() {
+        DateTimeZone tz = DateTimeZone.forID(randomFrom("Europe/Paris", "America/New_York", "Australia/Lord_Howe", "Asia/Kathmandu"));
+        // about 6500 hours are in the range, which is more than fits in a lookup table
+        final Rounding rounding;
+        final boolean expectLookupTable;
+        switch (randomIntBetween(0, 4)) {
+            case 0:
+                rounding = new Rounding.TimeUnitRounding(DateTimeUnit.HOUR_OF_DAY, tz);
+                expectLookupTable = false;
+                break;
+            case 1:
+                rounding = new Rounding.TimeUnitRounding(DateTimeUnit.DAY_OF_MONTH, tz);
+                expectLookupTable = true;
+                break;
+            case 2:
+                rounding = new Rounding.TimeUnitRounding(DateTimeUnit.MONTH_OF_YEAR, tz);
+                expectLookupTable = true;
+                break;
+            case 3:
+                rounding = new Rounding.TimeIntervalRounding(TimeUnit.MINUTES.toMillis(15), tz);
+                expectLookupTable = false;
+                break;
+            default:
+                rounding = new Rounding.TimeIntervalRounding(TimeUnit.HOURS.toMillis(6), tz);
+                expectLookupTable = true;
+                break;
+        }
+        long min = time("2018-03-01T00:00:00Z");
+        long max = time("2018-11-30T00:00:00Z");
+        Rounding.Prepared prepared = rounding.prepare(min, max);
+        assertEquals(expectLookupTable, prepared instanceof Rounding.LookupTable);
+        for (int i = 0; i < 1000; i++) {
+            long date = randomBoolean() ? randomLongBetween(min, max) : randomLongBetween(min - 100L * 86400000, max + 100L * 86400000);
+            if (randomBoolean()) {
+                date = nastyDate(date, tz, TimeUnit.HOURS.toMillis(1));
+            }
+            assertThat(prepared.round(date), equalTo(rounding.round(date)));
+        }
+        // the bounds of the range must be covered by the table
+        assertThat(prepared.round(min), equalTo(rounding.round(min)));
+        assertThat(prepared.round(max), equalTo(rounding.round(max)));
+    }
+
+    public void testPrepareFixedTimeZone() {
+        DateTimeZone tz = DateTimeZone.forOffsetHoursMinutes(randomIntBetween(-12, 12), randomFrom(0, 30, 45));
+        long interval = TimeUnit.MINUTES.toMillis(randomIntBetween(1, 24 * 60));
+        Rounding rounding = new Rounding.TimeIntervalRounding(interval, tz);
+        long min = time("2018-01-01T00:00:00Z");
+        Rounding.Prepared prepared = rounding.prepare(min, min + TimeUnit.DAYS.toMillis(7));
+        assertFalse(prepared instanceof Rounding.LookupTable);
+        for (int i = 0; i < 1000; i++) {
+            long date = Math.abs(randomLong() % (2 * (long) 10e11));
+            assertThat(prepared.round(date), equalTo(rounding.round(date)));
+        }
+    }
+
+    public void testPrepareEmptyRange() {
+        Rounding rounding = new Rounding.TimeUnitRounding(DateTimeUnit.DAY_OF_MONTH, DateTimeZone.forID("Europe/Paris"));
+        Rounding.Prepared prepared = rounding.prepare(time("2018-02-01T00:00:00Z"), time("2018-01-01T00:00:00Z"));
+        assertFalse(prepared instanceof Rounding.LookupTable);
+        long date = time("2018-01-15T12:00:00Z");
+        assertThat(prepared.round(date), equalTo(rounding.round(date)));
+    }
+
     /**
      * To be even more nasty, go to a transition in the selected time zone.
      * In one third of the cases stay there, otherwise go half a unit back or forth
@@ -0,0 +1,135 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.elasticsearch.common.xcontent.XContentHelper.convertToMap;
+import static org.elasticsearch.common.xcontent.XContentHelper.toXContent;
+
+/**
+ * Tests that {@link XContentMapValues#filterContent} filters like {@link XContentMapValues#filter(Map, String[], String[])}.
+ */
+public class XContentMapValuesFilterContentTests extends AbstractFilteringTestCase {
+
+    @Override
+    protected void testFilter(Builder expected, Builder actual, Set<String> includes, Set<String> excludes) throws IOException {
+        final XContentType xContentType = randomFrom(XContentType.values());
+        final boolean humanReadable = randomBoolean();
+
+        String[] sourceIncludes = includes == null ? Strings.EMPTY_ARRAY : includes.toArray(new String[includes.size()]);
+        String[] sourceExcludes = excludes == null ? Strings.EMPTY_ARRAY : excludes.toArray(new String[excludes.size()]);
+
+        BytesReference filtered = filterContent(toBytes(actual, xContentType, humanReadable), sourceIncludes, sourceExcludes);
+        assertEquals("Filtered content must be equal to the expected content",
+                convertToMap(toBytes(expected, xContentType, humanReadable), true, xContentType).v2(),
+                convertToMap(filtered, true, xContentType).v2());
+    }
+
+    public void testPreservesOrder() throws IOException {
+        BytesReference source = toBytes(builder -> builder.startObject()
+                .field("c", 1)
+                .startObject("b").field("y", 2).field("x", 3).endObject()
+                .field("a", 4)
+            .endObject(), XContentType.JSON, false);
+        assertEquals("{\"c\":1,\"b\":{\"y\":2},\"a\":4}",
+                filterContent(source, Strings.EMPTY_ARRAY, new String[] {"b.x"}).utf8ToString());
+    }
+
+    public void testDotsInFieldNames() throws IOException {
+        assertSameAsMapFiltering(builder -> builder.startObject()
+                .field("foo.bar", 2)
+                .startObject("foo").field("baz", 3).endObject()
+                .field("quux", 5)
+            .endObject(), "foo");
+    }
+
+    public void testOmitsEmptyObjectsAndArrays() throws IOException {
+        assertSameAsMapFiltering(builder -> builder.startObject()
+                .startArray("a")
+                    .startObject().field("b", 1).endObject()
+                    .startObject().field("c", 2).endObject()
+                    .startArray().startObject().field("c", 3).endObject().endArray()
+                    .value(4)
+                .endArray()
+                .startArray("empty").endArray()
+                .startObject("d").startObject("e").field("f", 5).endObject().endObject()
+                .nullField("g")
+            .endObject(), "a.b", "empty", "d", "d.e", "d.*", "a", "*.f", "g");
+    }
+
+    public void testNotAnObject() throws IOException {
+        BytesReference source = toBytes(builder -> builder.startArray().value(1).endArray(), XContentType.JSON, false);
+        expectThrows(ElasticsearchParseException.class, () -> filterContent(source, Strings.EMPTY_ARRAY, Strings.EMPTY_ARRAY));
+    }
+
+    /**
+     * Checks that filtering the given content with every combination of an include and an exclude of the given patterns
+     * gives the same result as filtering its map.
+     */
+    private void assertSameAsMapFiltering(Builder content, String... patterns) throws IOException {
+        final XContentType xContentType = randomFrom(XContentType.values());
+        final BytesReference source = toBytes(content, xContentType, false);
+        final Map<String, Object> sourceAsMap = convertToMap(source, true, xContentType).v2();
+        for (String[] includes : patternOrNone(patterns)) {
+            for (String[] excludes : patternOrNone(patterns)) {
+                assertEquals("includes " + String.join(",", includes) + " excludes " + String.join(",", excludes),
+                        XContentMapValues.filter(sourceAsMap, includes, excludes),
+                        convertToMap(filterContent(source, includes, excludes), true, xContentType).v2());
+            }
+        }
+    }
+
+    private static String[][] patternOrNone(String... patterns) {
+        String[][] result = new String[patterns.length + 1][];
+        result[0] = Strings.EMPTY_ARRAY;
+        for (int i = 0; i < patterns.length; i++) {
+            result[i + 1] = new String[] {patterns[i]};
+        }
+        return result;
+    }
+
+    private static BytesReference filterContent(BytesReference source, String[] includes, String[] excludes) throws IOException {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source)) {
+            XContentBuilder builder = XContentBuilder.builder(parser.contentType().xContent());
+            XContentMapValues.filterContent(includes, excludes).accept(parser, builder);
+            return BytesReference.bytes(builder);
+        }
+    }
+
+    private static BytesReference toBytes(Builder test, XContentType xContentType, boolean humanReadable) throws IOException {
+        ToXContentObject toXContent = (builder, params) -> test.apply(builder);
+        return toXContent(toXContent, xContentType, humanReadable);
+    }
+}
@@ -110,6 +110,7 @@ import org.elasticsearch.cluster.routing.TestShardRouting;
 import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
@@ -118,6 +119,7 @@ import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver;
 import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver.DocIdAndSeqNo;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
@@ -151,7 +153,10 @@ import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.translog.SnapshotMatchers;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogConfig;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.IndexSettingsModule;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 
@@ -3057,6 +3062,55 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testIndexAppendOnlyBatch() throws IOException {
+        final int numDocs = randomIntBetween(2, 64);
+        final List<Engine.Index> operations = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            final ParsedDocument doc = testParsedDocument(Integer.toString(i), null, testDocumentWithTextField(),
+                new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+            operations.add(appendOnlyPrimary(doc, false, i));
+        }
+        final long maxSeqNo = engine.getLocalCheckpointTracker().getMaxSeqNo();
+        final long luceneWriteTime = engine.getLuceneWriteTimeInNanos();
+        final long translogWriteTime = engine.getTranslogWriteTimeInNanos();
+        List<Engine.IndexResult> results = engine.indexAppendOnly(operations);
+        assertEquals(numDocs, results.size());
+        assertThat(engine.getLuceneWriteTimeInNanos(), greaterThan(luceneWriteTime));
+        assertThat(engine.getTranslogWriteTimeInNanos(), greaterThan(translogWriteTime));
+        for (int i = 0; i < numDocs; i++) {
+            final Engine.IndexResult result = results.get(i);
+            assertEquals(Engine.Result.Type.SUCCESS, result.getResultType());
+            assertEquals(maxSeqNo + 1 + i, result.getSeqNo());
+            assertTrue(result.isCreated());
+            final Translog.Operation operation = engine.getTranslog().readOperation(result.getTranslogLocation());
+            assertEquals(Translog.Operation.Type.INDEX, operation.opType());
+            assertEquals(Integer.toString(i), ((Translog.Index) operation).id());
+            assertEquals(result.getSeqNo(), operation.seqNo());
+        }
+        assertLuceneOperations(engine, numDocs, 0, 0);
+        assertEquals(0, engine.getNumVersionLookups());
+        assertEquals(maxSeqNo + numDocs, engine.getLocalCheckpointTracker().getCheckpoint());
+
+        // a retry can't be indexed as part of a batch as the document might have been indexed before
+        final ParsedDocument retriedDoc = testParsedDocument("0", null, testDocumentWithTextField(),
+            new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+        final ParsedDocument newDoc = testParsedDocument(Integer.toString(numDocs), null, testDocumentWithTextField(),
+            new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+        results = engine.indexAppendOnly(Arrays.asList(appendOnlyPrimary(retriedDoc, true, 0),
+            appendOnlyPrimary(newDoc, false, numDocs)));
+        assertEquals(2, results.size());
+        assertEquals(maxSeqNo + numDocs + 1, results.get(0).getSeqNo());
+        assertEquals(maxSeqNo + numDocs + 2, results.get(1).getSeqNo());
+        assertLuceneOperations(engine, numDocs + 1, 1, 0);
+        assertEquals(maxSeqNo + numDocs + 2, engine.getLocalCheckpointTracker().getCheckpoint());
+
+        engine.refresh("test");
+        try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+            TopDocs topDocs = searcher.searcher().search(new MatchAllDocsQuery(), 10);
+            assertEquals(numDocs + 1, topDocs.totalHits);
+        }
+    }
+
     public void testDoubleDeliveryReplicaAppendingAndDeleteOnly() throws IOException {
         final ParsedDocument doc = testParsedDocument("1", null, testDocumentWithTextField(),
             new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
@@ -4724,6 +4778,36 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testPagedVersionMapIsAccountedAgainstAccountingBreaker() throws IOException {
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(defaultSettings.getSettings())
+            .put(EngineConfig.INDEX_VERSION_MAP_TYPE_SETTING.getKey(), "paged").build());
+        final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        try (Store store = createStore()) {
+            final EngineConfig config = config(indexSettings, store, createTempDir(), newMergePolicy(), null);
+            final TranslogConfig translogConfig = new TranslogConfig(shardId, config.getTranslogConfig().getTranslogPath(),
+                indexSettings, new BigArrays(null, breakerService, false));
+            final EngineConfig pagedConfig = new EngineConfig(shardId, allocationId.getId(), threadPool, indexSettings, null, store,
+                config.getMergePolicy(), config.getAnalyzer(), config.getSimilarity(), new CodecService(null, logger),
+                config.getEventListener(), IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(),
+                translogConfig, TimeValue.timeValueMinutes(5), config.getExternalRefreshListener(), config.getInternalRefreshListener(),
+                null, config.getTranslogRecoveryRunner(), new NoneCircuitBreakerService(), () -> SequenceNumbers.NO_OPS_PERFORMED,
+                primaryTerm::get);
+            try (InternalEngine engine = createEngine(pagedConfig)) {
+                // a delete makes the engine keep the versions of all subsequent operations in the version map
+                engine.delete(new Engine.Delete("test", "missing", newUid("missing"), primaryTerm.get()));
+                final long accountedBeforeIndexing = breakerService.getBreaker(CircuitBreaker.ACCOUNTING).getUsed();
+                for (int i = 0, docs = randomIntBetween(1, 100); i < docs; i++) {
+                    index(engine, i);
+                }
+                assertThat(breakerService.getBreaker(CircuitBreaker.ACCOUNTING).getUsed(), greaterThan(accountedBeforeIndexing));
+                assertEquals(0, breakerService.getBreaker(CircuitBreaker.REQUEST).getUsed());
+            }
+            assertEquals(0, breakerService.getBreaker(CircuitBreaker.ACCOUNTING).getUsed());
+        }
+    }
+
     private static void trimUnsafeCommits(EngineConfig config) throws IOException {
         final Store store = config.getStore();
         final TranslogConfig translogConfig = config.getTranslogConfig();
@@ -25,26 +25,38 @@ import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.nullValue;
 
 public class LiveVersionMapTests extends ESTestCase {
 
+    private LiveVersionMap newLiveVersionMap() {
+        return randomBoolean() ? new LiveVersionMap() : new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
     public void testRamBytesUsed() throws Exception {
         LiveVersionMap map = new LiveVersionMap();
         for (int i = 0; i < 100000; ++i) {
@@ -99,7 +111,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testBasics() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         try (Releasable r = map.acquireLock(uid("test"))) {
             Translog.Location tlogLoc = randomTranslogLocation();
             map.putIndexUnderLock(uid("test"), new IndexVersionValue(tlogLoc, 1, 1, 1));
@@ -131,7 +143,7 @@ public class LiveVersionMapTests extends ESTestCase {
         List<BytesRef> keyList = new ArrayList<>(keySet);
         ConcurrentHashMap<BytesRef, VersionValue> values = new ConcurrentHashMap<>();
         ConcurrentHashMap<BytesRef, DeleteVersionValue> deletes = new ConcurrentHashMap<>();
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         int numThreads = randomIntBetween(2, 5);
 
         Thread[] threads = new Thread[numThreads];
@@ -259,7 +271,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testCarryOnSafeAccess() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         assertFalse(map.isUnsafe());
         assertFalse(map.isSafeAccessRequired());
         map.enforceSafeAccess();
@@ -291,7 +303,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRefreshTransition() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         try (Releasable r = map.acquireLock(uid("1"))) {
             map.maybePutIndexUnderLock(uid("1"), randomIndexVersionValue());
             assertTrue(map.isUnsafe());
@@ -319,7 +331,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testAddAndDeleteRefreshConcurrently() throws IOException, InterruptedException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         int numIters = randomIntBetween(1000, 5000);
         AtomicBoolean done = new AtomicBoolean(false);
         AtomicLong version = new AtomicLong();
@@ -376,7 +388,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testPruneTombstonesWhileLocked() throws InterruptedException, IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         BytesRef uid = uid("1");
         ;
         try (Releasable ignore = map.acquireLock(uid)) {
@@ -399,7 +411,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRandomlyIndexDeleteAndRefresh() throws Exception {
-        final LiveVersionMap versionMap = new LiveVersionMap();
+        final LiveVersionMap versionMap = newLiveVersionMap();
         final BytesRef uid = uid("1");
         final long versions = between(10, 1000);
         VersionValue latestVersion = null;
@@ -432,6 +444,106 @@ public class LiveVersionMapTests extends ESTestCase {
         }
     }
 
+    public void testPagedVersionMapReleasesTables() throws IOException {
+        final BigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+        final LiveVersionMap map = new LiveVersionMap(bigArrays);
+        map.enforceSafeAccess();
+        final Map<BytesRef, IndexVersionValue> expected = new HashMap<>();
+        final int numRefreshes = randomIntBetween(1, 5);
+        for (int refresh = 0; refresh < numRefreshes; refresh++) {
+            final int numDocs = randomIntBetween(1, 500);
+            for (int i = 0; i < numDocs; i++) {
+                final BytesRef uid = uid(Integer.toString(randomIntBetween(0, 1000)));
+                try (Releasable r = map.acquireLock(uid)) {
+                    final IndexVersionValue version = randomIndexVersionValue();
+                    map.putIndexUnderLock(uid, version);
+                    expected.put(uid, version);
+                    assertEquals(version, map.getUnderLock(uid));
+                }
+            }
+            assertEquals(expected, map.getAllCurrent());
+            assertThat(map.ramBytesUsedForRefresh(), greaterThan(0L));
+            map.beforeRefresh();
+            for (Map.Entry<BytesRef, IndexVersionValue> entry : expected.entrySet()) {
+                try (Releasable r = map.acquireLock(entry.getKey())) {
+                    assertEquals(entry.getValue(), map.getUnderLock(entry.getKey()));
+                }
+            }
+            map.afterRefresh(randomBoolean());
+            for (BytesRef uid : expected.keySet()) {
+                try (Releasable r = map.acquireLock(uid)) {
+                    assertNull(map.getUnderLock(uid));
+                }
+            }
+            assertEquals(0, map.ramBytesUsedForRefresh());
+            expected.clear();
+        }
+        if (randomBoolean()) {
+            final BytesRef uid = uid("deleted");
+            try (Releasable r = map.acquireLock(uid)) {
+                map.putIndexUnderLock(uid, randomIndexVersionValue());
+                map.putDeleteUnderLock(uid, new DeleteVersionValue(1, 1, 1, 1));
+                assertEquals(new DeleteVersionValue(1, 1, 1, 1), map.getUnderLock(uid));
+            }
+        }
+        // releases the pages of the current tables, MockBigArrays verifies that nothing leaked
+        map.clear();
+    }
+
+    public void testAcquireLocksOfCollidingUidsConcurrently() throws Exception {
+        final LiveVersionMap map = newLiveVersionMap();
+        // pick uids that share a handful of lock stripes such that concurrent batches always contend on the same locks
+        final int numStripes = randomIntBetween(2, 4);
+        final Map<Integer, List<BytesRef>> uidsPerStripe = new HashMap<>();
+        for (int i = 0; uidsPerStripe.size() < numStripes || uidsPerStripe.values().stream().anyMatch(l -> l.size() < 4); i++) {
+            final BytesRef uid = uid(Integer.toString(i));
+            final int stripe = LiveVersionMap.uidLockIndex(uid);
+            if (uidsPerStripe.size() < numStripes || uidsPerStripe.containsKey(stripe)) {
+                uidsPerStripe.computeIfAbsent(stripe, k -> new ArrayList<>()).add(uid);
+            }
+        }
+        final List<BytesRef> uids = new ArrayList<>();
+        uidsPerStripe.values().forEach(uids::addAll);
+        final int numThreads = randomIntBetween(2, 5);
+        final int numIterations = randomIntBetween(100, 500);
+        final CountDownLatch startGun = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numThreads];
+        final AtomicLong operations = new AtomicLong();
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    startGun.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                for (int i = 0; i < numIterations; i++) {
+                    // a random subset of the uids in a random order, possibly with several uids of the same stripe
+                    final List<BytesRef> batch = new ArrayList<>(randomSubsetOf(randomIntBetween(1, uids.size()), uids));
+                    Collections.shuffle(batch, random());
+                    try (Releasable r = map.acquireLocks(batch)) {
+                        for (BytesRef uid : batch) {
+                            map.putIndexUnderLock(uid, randomIndexVersionValue());
+                        }
+                    }
+                    operations.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        startGun.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse("batches deadlocked", thread.isAlive());
+        }
+        assertEquals(numThreads * numIterations, operations.get());
+        // all locks have been released
+        for (BytesRef uid : uids) {
+            try (Releasable r = map.acquireLock(uid)) {
+                assertNotNull(map.getUnderLock(uid));
+            }
+        }
+    }
+
     IndexVersionValue randomIndexVersionValue() {
         return new IndexVersionValue(randomTranslogLocation(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
     }
@@ -440,7 +552,7 @@ public class LiveVersionMapTests extends ESTestCase {
         if (randomBoolean()) {
             return null;
         } else {
-            return new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomInt());
+            return new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomIntBetween(0, Integer.MAX_VALUE));
         }
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PresortedIngestTrackerTests extends ESTestCase {
+
+    private static ParseContext.Document doc(long... values) {
+        final ParseContext.Document document = new ParseContext.Document();
+        for (long value : values) {
+            // the indexed point must be ignored
+            document.add(new LongPoint("timestamp", value + 1000));
+            document.add(new SortedNumericDocValuesField("timestamp", value));
+        }
+        return document;
+    }
+
+    private static PresortedIngestTracker tracker(boolean reverse, SortField... otherFields) {
+        final SortField[] sortFields = new SortField[otherFields.length + 1];
+        sortFields[0] = new SortedNumericSortField("timestamp", SortField.Type.LONG, reverse);
+        System.arraycopy(otherFields, 0, sortFields, 1, otherFields.length);
+        return PresortedIngestTracker.create(new Sort(sortFields));
+    }
+
+    private static IndexWriter newWriter(Directory dir) throws IOException {
+        return new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    }
+
+    /**
+     * Simulates a refresh of the internal reader that flushes the given number of segments.
+     */
+    private static void refresh(PresortedIngestTracker tracker, IndexWriter writer, int numSegments) throws IOException {
+        tracker.beforeRefresh();
+        for (int i = 0; i < numSegments; i++) {
+            writer.addDocument(new Document());
+            writer.flush();
+        }
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            tracker.afterRefresh(reader);
+        }
+    }
+
+    public void testNonNumericSort() {
+        assertThat(PresortedIngestTracker.create(new Sort(new SortField("keyword", SortField.Type.STRING))), nullValue());
+    }
+
+    public void testSortKey() {
+        final PresortedIngestTracker tracker = tracker(false);
+        assertThat(tracker.sortKey(doc(5)), equalTo(5L));
+        assertThat(tracker.sortKey(doc(7, 3, 9)), equalTo(3L));
+        assertThat(tracker.sortKey(doc()), nullValue());
+
+        final PresortedIngestTracker maxTracker = PresortedIngestTracker.create(
+            new Sort(new SortedNumericSortField("timestamp", SortField.Type.LONG, false, SortedNumericSelector.Type.MAX)));
+        assertThat(maxTracker.sortKey(doc(7, 3, 9)), equalTo(9L));
+    }
+
+    public void testAscending() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = newWriter(dir)) {
+            final PresortedIngestTracker tracker = tracker(false);
+            refresh(tracker, writer, 0);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(0L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(0L));
+
+            long value = randomLong() / 2;
+            for (int i = 0; i < 100; i++) {
+                value += randomIntBetween(0, 10);
+                tracker.onDocument(doc(value));
+            }
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(1L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(0L));
+
+            tracker.onDocument(doc(10));
+            tracker.onDocument(doc(5));
+            tracker.onDocument(doc(20));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(1L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(1L));
+
+            // each buffer is tracked on its own
+            tracker.onDocument(doc(1));
+            tracker.onDocument(doc(2));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(2L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(1L));
+
+            tracker.onDocument(doc(1));
+            tracker.onDocument(doc());
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(2L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(2L));
+        }
+    }
+
+    public void testDescending() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = newWriter(dir)) {
+            final PresortedIngestTracker tracker = tracker(true);
+            tracker.onDocument(doc(20));
+            tracker.onDocument(doc(20));
+            tracker.onDocument(doc(10));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(1L));
+
+            tracker.onDocument(doc(10));
+            tracker.onDocument(doc(20));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(1L));
+        }
+    }
+
+    public void testTiesWithSecondarySort() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = newWriter(dir)) {
+            final PresortedIngestTracker tracker = tracker(false, new SortedNumericSortField("other", SortField.Type.LONG));
+            tracker.onDocument(doc(1));
+            tracker.onDocument(doc(2));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(1L));
+
+            tracker.onDocument(doc(1));
+            tracker.onDocument(doc(1));
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(1L));
+        }
+    }
+
+    public void testCountsEveryFlushedSegment() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = newWriter(dir)) {
+            // segments that exist when the engine is opened are not counted
+            writer.addDocument(new Document());
+            writer.commit();
+            final PresortedIngestTracker tracker = tracker(false);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                tracker.onReaderOpened(reader);
+            }
+
+            // the index writer may flush several segments between two refreshes, for instance when its buffer is full
+            final int numSegments = randomIntBetween(2, 5);
+            tracker.onDocument(doc(1));
+            tracker.onDocument(doc(2));
+            refresh(tracker, writer, numSegments);
+            assertThat(tracker.getPresortedFlushCount(), equalTo((long) numSegments));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(0L));
+
+            // a refresh that doesn't flush anything isn't counted
+            refresh(tracker, writer, 0);
+            assertThat(tracker.getPresortedFlushCount(), equalTo((long) numSegments));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(0L));
+
+            tracker.onDocument(doc(2));
+            tracker.onDocument(doc(1));
+            refresh(tracker, writer, numSegments);
+            assertThat(tracker.getPresortedFlushCount(), equalTo((long) numSegments));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo((long) numSegments));
+        }
+    }
+
+    public void testConcurrentDocumentsWithEqualKeys() throws Exception {
+        try (Directory dir = newDirectory(); IndexWriter writer = newWriter(dir)) {
+            final PresortedIngestTracker tracker = tracker(false);
+            final int numThreads = randomIntBetween(2, 4);
+            final CountDownLatch startGun = new CountDownLatch(1);
+            final Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        startGun.await();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        tracker.onDocument(doc(42));
+                    }
+                });
+                threads[t].start();
+            }
+            startGun.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            refresh(tracker, writer, 1);
+            assertThat(tracker.getPresortedFlushCount(), equalTo(1L));
+            assertThat(tracker.getUnsortedFlushCount(), equalTo(0L));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.query;
+
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.shard.ShardFieldRanges;
+import org.elasticsearch.test.ESTestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class CoordinatorRewriteContextTests extends ESTestCase {
+
+    private static final long MIN_DATE = new DateTime(2018, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+    private static final long MAX_DATE = new DateTime(2018, 1, 31, 0, 0, DateTimeZone.UTC).getMillis();
+
+    private CoordinatorRewriteContext createContext() {
+        final Map<String, ShardFieldRanges.FieldRange> ranges = new HashMap<>();
+        ranges.put("@timestamp", new ShardFieldRanges.FieldRange(DateFieldMapper.CONTENT_TYPE, "strict_date_optional_time||epoch_millis",
+            Locale.ROOT, true, MIN_DATE, MAX_DATE));
+        ranges.put("count", new ShardFieldRanges.FieldRange(NumberFieldMapper.NumberType.INTEGER.typeName(), null, null, true, 10, 20));
+        ranges.put("empty", new ShardFieldRanges.FieldRange(NumberFieldMapper.NumberType.LONG.typeName(), null, null, false, 0, 0));
+        return new CoordinatorRewriteContext(xContentRegistry(), writableRegistry(), null, () -> MAX_DATE,
+            new ShardFieldRanges(randomNonNegativeLong(), ranges));
+    }
+
+    public void testDateRange() {
+        final CoordinatorRewriteContext context = createContext();
+        assertEquals(MappedFieldType.Relation.DISJOINT,
+            context.getRelation("@timestamp", "2018-02-01", null, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.DISJOINT,
+            context.getRelation("@timestamp", null, "2018-01-01", true, false, null, null));
+        assertEquals(MappedFieldType.Relation.INTERSECTS,
+            context.getRelation("@timestamp", null, "2018-01-01", true, true, null, null));
+        assertEquals(MappedFieldType.Relation.WITHIN,
+            context.getRelation("@timestamp", "2017-12-01", "now", true, true, null, null));
+        assertEquals(MappedFieldType.Relation.DISJOINT,
+            context.getRelation("@timestamp", "now+1d", null, true, true, null, null));
+    }
+
+    public void testNumericRange() {
+        final CoordinatorRewriteContext context = createContext();
+        assertEquals(MappedFieldType.Relation.DISJOINT, context.getRelation("count", 21, null, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.DISJOINT, context.getRelation("count", 20, null, false, true, null, null));
+        assertEquals(MappedFieldType.Relation.INTERSECTS, context.getRelation("count", "20", null, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.WITHIN, context.getRelation("count", 0L, 100L, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.DISJOINT, context.getRelation("empty", 0, 100, true, true, null, null));
+        // bounds that the shard would round or reject are left to the shard
+        assertEquals(MappedFieldType.Relation.INTERSECTS, context.getRelation("count", 25.5, null, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.INTERSECTS, context.getRelation("count", Long.MAX_VALUE, null, true, true, null, null));
+        assertEquals(MappedFieldType.Relation.INTERSECTS, context.getRelation("unknown", 0, 1, true, true, null, null));
+    }
+
+    public void testRewriteToMatchNone() throws IOException {
+        final CoordinatorRewriteContext context = createContext();
+        QueryBuilder query = new BoolQueryBuilder()
+            .filter(new RangeQueryBuilder("@timestamp").gte("2018-03-01"))
+            .filter(new TermQueryBuilder("foo", "bar"));
+        assertEquals(new MatchNoneQueryBuilder(), Rewriteable.rewrite(query, context, true));
+
+        query = new BoolQueryBuilder()
+            .filter(new RangeQueryBuilder("@timestamp").gte("2018-01-15"))
+            .filter(new RangeQueryBuilder("count").lt(15));
+        assertFalse(Rewriteable.rewrite(query, context, true) instanceof MatchNoneQueryBuilder);
+    }
+
+    public void testSerialization() throws IOException {
+        final ShardFieldRanges ranges = new ShardFieldRanges(randomNonNegativeLong(), createRanges());
+        assertEquals(ranges, copyWriteable(ranges, writableRegistry(), ShardFieldRanges::new));
+    }
+
+    private static Map<String, ShardFieldRanges.FieldRange> createRanges() {
+        final Map<String, ShardFieldRanges.FieldRange> ranges = new HashMap<>();
+        final int numFields = randomIntBetween(0, 5);
+        for (int i = 0; i < numFields; i++) {
+            final boolean date = randomBoolean();
+            final boolean hasValues = randomBoolean();
+            final long min = randomLong();
+            final long max = randomLongBetween(min, Long.MAX_VALUE);
+            ranges.put(randomAlphaOfLength(5) + i, new ShardFieldRanges.FieldRange(
+                date ? DateFieldMapper.CONTENT_TYPE : NumberFieldMapper.NumberType.LONG.typeName(),
+                date ? randomFrom("epoch_millis", "yyyy-MM-dd") : null, date ? randomFrom(Locale.ROOT, Locale.GERMANY) : null,
+                hasValues, hasValues ? min : 0, hasValues ? max : 0));
+        }
+        return ranges;
+    }
+}
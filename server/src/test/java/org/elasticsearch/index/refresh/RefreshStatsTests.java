@@ -24,7 +24,8 @@ import org.elasticsearch.test.AbstractStreamableTestCase;
 public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats> {
     @Override
     protected RefreshStats createTestInstance() {
-        return new RefreshStats(randomNonNegativeLong(), randomNonNegativeLong(), between(0, Integer.MAX_VALUE));
+        return new RefreshStats(randomNonNegativeLong(), randomNonNegativeLong(), between(0, Integer.MAX_VALUE),
+            randomNonNegativeLong(), randomNonNegativeLong());
     }
 
     @Override
@@ -37,7 +38,9 @@ public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats>
         long total = instance.getTotal();
         long totalInMillis = instance.getTotalTimeInMillis();
         int listeners = instance.getListeners();
-        switch (randomInt(2)) {
+        long presortedFlushes = instance.getPresortedFlushes();
+        long unsortedFlushes = instance.getUnsortedFlushes();
+        switch (randomInt(4)) {
         case 0:
             total += between(1, 2000);
             break;
@@ -45,10 +48,16 @@ public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats>
             totalInMillis += between(1, 2000);
             break;
         case 2:
-        default:
             listeners += between(1, 2000);
             break;
+        case 3:
+            presortedFlushes += between(1, 2000);
+            break;
+        case 4:
+        default:
+            unsortedFlushes += between(1, 2000);
+            break;
         }
-        return new RefreshStats(total, totalInMillis, listeners);
+        return new RefreshStats(total, totalInMillis, listeners, presortedFlushes, unsortedFlushes);
     }
 }
@@ -0,0 +1,334 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.seqno;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.elasticsearch.index.seqno.ConcurrentLocalCheckpointTracker.BITS_PER_WORD;
+import static org.elasticsearch.index.seqno.ConcurrentLocalCheckpointTracker.RING_SIZE;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ConcurrentLocalCheckpointTrackerTests extends ESTestCase {
+
+    private static ConcurrentLocalCheckpointTracker createEmptyTracker() {
+        return new ConcurrentLocalCheckpointTracker(SequenceNumbers.NO_OPS_PERFORMED, SequenceNumbers.NO_OPS_PERFORMED);
+    }
+
+    public void testSimplePrimary() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        long seqNo1, seqNo2;
+        assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
+        seqNo1 = tracker.generateSeqNo();
+        assertThat(seqNo1, equalTo(0L));
+        tracker.markSeqNoAsCompleted(seqNo1);
+        assertThat(tracker.getCheckpoint(), equalTo(0L));
+        seqNo1 = tracker.generateSeqNo();
+        seqNo2 = tracker.generateSeqNo();
+        assertThat(seqNo1, equalTo(1L));
+        assertThat(seqNo2, equalTo(2L));
+        tracker.markSeqNoAsCompleted(seqNo2);
+        assertThat(tracker.getCheckpoint(), equalTo(0L));
+        tracker.markSeqNoAsCompleted(seqNo1);
+        assertThat(tracker.getCheckpoint(), equalTo(2L));
+    }
+
+    public void testSimpleReplica() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
+        tracker.markSeqNoAsCompleted(0L);
+        assertThat(tracker.getCheckpoint(), equalTo(0L));
+        tracker.markSeqNoAsCompleted(2L);
+        assertThat(tracker.getCheckpoint(), equalTo(0L));
+        assertThat(tracker.getMaxSeqNo(), equalTo(2L));
+        tracker.markSeqNoAsCompleted(1L);
+        assertThat(tracker.getCheckpoint(), equalTo(2L));
+        // replaying completed operations is a no-op
+        tracker.markSeqNoAsCompleted(1L);
+        assertThat(tracker.getCheckpoint(), equalTo(2L));
+    }
+
+    public void testStartFromExistingCheckpoint() {
+        final long localCheckpoint = randomLongBetween(0, Integer.MAX_VALUE);
+        final long maxSeqNo = localCheckpoint + randomIntBetween(0, 10);
+        final ConcurrentLocalCheckpointTracker tracker = new ConcurrentLocalCheckpointTracker(maxSeqNo, localCheckpoint);
+        assertThat(tracker.getCheckpoint(), equalTo(localCheckpoint));
+        assertThat(tracker.getMaxSeqNo(), equalTo(maxSeqNo));
+        assertThat(tracker.generateSeqNo(), equalTo(maxSeqNo + 1));
+        for (long seqNo = localCheckpoint + 1; seqNo <= maxSeqNo + 1; seqNo++) {
+            tracker.markSeqNoAsCompleted(seqNo);
+        }
+        assertThat(tracker.getCheckpoint(), equalTo(maxSeqNo + 1));
+    }
+
+    public void testWrapAround() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final int maxOps = RING_SIZE * randomIntBetween(1, 3) + randomIntBetween(0, BITS_PER_WORD * 2);
+        for (int i = 0; i < maxOps; i++) {
+            tracker.markSeqNoAsCompleted(tracker.generateSeqNo());
+            assertThat(tracker.getCheckpoint(), equalTo((long) i));
+        }
+        assertThat(tracker.getMaxSeqNo(), equalTo(maxOps - 1L));
+    }
+
+    public void testRangePrimary() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final int count = randomIntBetween(1, 2 * RING_SIZE);
+        final long seqNo = tracker.generateSeqNos(count);
+        assertThat(seqNo, equalTo(0L));
+        assertThat(tracker.generateSeqNo(), equalTo((long) count));
+        tracker.markSeqNoRangeAsCompleted(seqNo, seqNo + count - 1);
+        assertThat(tracker.getCheckpoint(), equalTo(count - 1L));
+        tracker.markSeqNoAsCompleted(count);
+        assertThat(tracker.getCheckpoint(), equalTo((long) count));
+    }
+
+    public void testRangeReplica() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final long from = randomIntBetween(1, 2 * RING_SIZE);
+        final long to = from + randomIntBetween(0, 2 * RING_SIZE);
+        tracker.markSeqNoRangeAsCompleted(from, to);
+        assertThat(tracker.getMaxSeqNo(), equalTo(to));
+        assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
+        // overlapping ranges are fine as well
+        tracker.markSeqNoRangeAsCompleted(0, randomLongBetween(0, to));
+        assertThat(tracker.getCheckpoint(), equalTo(to));
+    }
+
+    public void testOutOfRing() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final long gap = randomIntBetween(0, 3 * RING_SIZE);
+        final long maxSeqNo = gap + randomIntBetween(1, 2 * RING_SIZE);
+        final List<Long> seqNos = seqNoRange(gap + 1, maxSeqNo);
+        Randomness.shuffle(seqNos);
+        for (long seqNo : seqNos) {
+            tracker.markSeqNoAsCompleted(seqNo);
+        }
+        assertThat(tracker.getMaxSeqNo(), equalTo(maxSeqNo));
+        final List<Long> missing = seqNoRange(0, gap);
+        Randomness.shuffle(missing);
+        final boolean[] completed = new boolean[Math.toIntExact(gap + 1)];
+        int firstMissing = 0;
+        for (long seqNo : missing) {
+            tracker.markSeqNoAsCompleted(seqNo);
+            completed[Math.toIntExact(seqNo)] = true;
+            while (firstMissing < completed.length && completed[firstMissing]) {
+                firstMissing++;
+            }
+            assertThat(tracker.getCheckpoint(), equalTo(firstMissing == completed.length ? maxSeqNo : firstMissing - 1L));
+        }
+    }
+
+    public void testSameAsSynchronizedTracker() {
+        final LocalCheckpointTracker expected =
+            new LocalCheckpointTracker(SequenceNumbers.NO_OPS_PERFORMED, SequenceNumbers.NO_OPS_PERFORMED);
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final int iterations = scaledRandomIntBetween(100, 2000);
+        for (int i = 0; i < iterations; i++) {
+            final long base = expected.getCheckpoint() + 1;
+            if (randomBoolean()) {
+                final long seqNo = base + randomIntBetween(-BITS_PER_WORD, rarely() ? 2 * RING_SIZE : 2 * BITS_PER_WORD);
+                if (seqNo >= 0) {
+                    expected.markSeqNoAsCompleted(seqNo);
+                    tracker.markSeqNoAsCompleted(seqNo);
+                }
+            } else {
+                final long from = Math.max(0, base + randomIntBetween(-BITS_PER_WORD, 2 * BITS_PER_WORD));
+                final long to = from + randomIntBetween(0, rarely() ? 2 * RING_SIZE : 3 * BITS_PER_WORD);
+                expected.markSeqNoRangeAsCompleted(from, to);
+                tracker.markSeqNoRangeAsCompleted(from, to);
+            }
+            assertThat(tracker.getCheckpoint(), equalTo(expected.getCheckpoint()));
+            assertThat(tracker.getMaxSeqNo(), equalTo(expected.getMaxSeqNo()));
+        }
+    }
+
+    public void testConcurrentPrimary() throws InterruptedException {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        Thread[] threads = new Thread[randomIntBetween(2, 8)];
+        final int opsPerThread = scaledRandomIntBetween(100, RING_SIZE);
+        final int maxOps = opsPerThread * threads.length;
+        final long unFinishedSeq = randomIntBetween(0, maxOps - 2); // make sure we always index the last seqNo to simplify maxSeq checks
+        logger.info("--> will run [{}] threads, maxOps [{}], unfinished seq no [{}]", threads.length, maxOps, unFinishedSeq);
+        final CyclicBarrier barrier = new CyclicBarrier(threads.length);
+        for (int t = 0; t < threads.length; t++) {
+            final int threadId = t;
+            threads[t] = new Thread(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    throw new ElasticsearchException("failure in background thread", e);
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    barrier.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        long seqNo = tracker.generateSeqNo();
+                        if (seqNo != unFinishedSeq) {
+                            tracker.markSeqNoAsCompleted(seqNo);
+                        }
+                    }
+                }
+            }, "testConcurrentPrimary_" + threadId);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(tracker.getMaxSeqNo(), equalTo(maxOps - 1L));
+        assertThat(tracker.getCheckpoint(), equalTo(unFinishedSeq - 1L));
+        tracker.markSeqNoAsCompleted(unFinishedSeq);
+        assertThat(tracker.getCheckpoint(), equalTo(maxOps - 1L));
+    }
+
+    public void testConcurrentReplica() throws InterruptedException {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        Thread[] threads = new Thread[randomIntBetween(2, 8)];
+        final int maxOps = scaledRandomIntBetween(1000, 3 * RING_SIZE);
+        final long unFinishedSeq = randomIntBetween(0, maxOps - 2); // make sure we always index the last seqNo to simplify maxSeq checks
+        final List<Long> seqNos = seqNoRange(0, maxOps - 1);
+        // shuffle in chunks such that sequence numbers are both far ahead of and close to the checkpoint
+        final int chunkSize = randomFrom(BITS_PER_WORD, RING_SIZE, maxOps);
+        for (int i = 0; i < seqNos.size(); i += chunkSize) {
+            Collections.shuffle(seqNos.subList(i, Math.min(seqNos.size(), i + chunkSize)), random());
+        }
+        final List<List<Long>> seqNoPerThread = new ArrayList<>();
+        for (int t = 0; t < threads.length; t++) {
+            seqNoPerThread.add(new ArrayList<>());
+        }
+        for (long seqNo : seqNos) {
+            if (seqNo != unFinishedSeq) {
+                seqNoPerThread.get(randomIntBetween(0, threads.length - 1)).add(seqNo);
+            }
+        }
+        logger.info("--> will run [{}] threads, maxOps [{}], unfinished seq no [{}]", threads.length, maxOps, unFinishedSeq);
+        final CyclicBarrier barrier = new CyclicBarrier(threads.length);
+        for (int t = 0; t < threads.length; t++) {
+            final int threadId = t;
+            threads[t] = new Thread(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    throw new ElasticsearchException("failure in background thread", e);
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    barrier.await();
+                    for (long seqNo : seqNoPerThread.get(threadId)) {
+                        tracker.markSeqNoAsCompleted(seqNo);
+                    }
+                }
+            }, "testConcurrentReplica_" + threadId);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(tracker.getMaxSeqNo(), equalTo(maxOps - 1L));
+        assertThat(tracker.getCheckpoint(), equalTo(unFinishedSeq - 1L));
+        tracker.markSeqNoAsCompleted(unFinishedSeq);
+        assertThat(tracker.getCheckpoint(), equalTo(maxOps - 1L));
+    }
+
+    public void testWaitForOpsToComplete() throws BrokenBarrierException, InterruptedException {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final int seqNo = randomIntBetween(0, 2 * BITS_PER_WORD);
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicBoolean complete = new AtomicBoolean();
+        final Thread thread = new Thread(() -> {
+            try {
+                // sychronize starting with the test thread
+                barrier.await();
+                tracker.waitForOpsToComplete(seqNo);
+                complete.set(true);
+                // synchronize with the test thread checking if we are no longer waiting
+                barrier.await();
+            } catch (BrokenBarrierException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        thread.start();
+
+        // synchronize starting with the waiting thread
+        barrier.await();
+
+        final List<Integer> elements = IntStream.rangeClosed(0, seqNo).boxed().collect(Collectors.toList());
+        Randomness.shuffle(elements);
+        for (int i = 0; i < elements.size() - 1; i++) {
+            tracker.markSeqNoAsCompleted(elements.get(i));
+            assertFalse(complete.get());
+        }
+
+        tracker.markSeqNoAsCompleted(elements.get(elements.size() - 1));
+        // synchronize with the waiting thread to mark that it is complete
+        barrier.await();
+        assertTrue(complete.get());
+
+        thread.join();
+    }
+
+    public void testResetCheckpoint() {
+        final ConcurrentLocalCheckpointTracker tracker = createEmptyTracker();
+        final int operations = 1024 - scaledRandomIntBetween(0, 1024);
+        int maxSeqNo = Math.toIntExact(SequenceNumbers.NO_OPS_PERFORMED);
+        for (int i = 0; i < operations; i++) {
+            if (!rarely()) {
+                tracker.markSeqNoAsCompleted(i);
+                maxSeqNo = i;
+            }
+        }
+        if (randomBoolean()) {
+            tracker.markSeqNoAsCompleted(maxSeqNo + RING_SIZE + 1);
+            maxSeqNo += RING_SIZE + 1;
+        }
+
+        final int localCheckpoint =
+                randomIntBetween(Math.toIntExact(SequenceNumbers.NO_OPS_PERFORMED), Math.toIntExact(tracker.getCheckpoint()));
+        tracker.resetCheckpoint(localCheckpoint);
+        assertThat(tracker.getCheckpoint(), equalTo((long) localCheckpoint));
+        assertThat(tracker.getMaxSeqNo(), equalTo((long) maxSeqNo));
+        assertThat(tracker.generateSeqNo(), equalTo((long) (maxSeqNo + 1)));
+        // operations above the checkpoint must be marked as completed again
+        tracker.markSeqNoAsCompleted(localCheckpoint + 2);
+        assertThat(tracker.getCheckpoint(), equalTo((long) localCheckpoint));
+        tracker.markSeqNoAsCompleted(localCheckpoint + 1);
+        assertThat(tracker.getCheckpoint(), equalTo(localCheckpoint + 2L));
+    }
+
+    private static List<Long> seqNoRange(long from, long to) {
+        final List<Long> seqNos = new ArrayList<>();
+        for (long seqNo = from; seqNo <= to; seqNo++) {
+            seqNos.add(seqNo);
+        }
+        return seqNos;
+    }
+}
@@ -75,6 +75,34 @@ public class LocalCheckpointTrackerTests extends ESTestCase {
         assertThat(tracker.getCheckpoint(), equalTo(2L));
     }
 
+    public void testRangePrimary() {
+        final int count = randomIntBetween(1, 3 * BIT_SET_SIZE);
+        final long seqNo = tracker.generateSeqNos(count);
+        assertThat(seqNo, equalTo(0L));
+        assertThat(tracker.getMaxSeqNo(), equalTo(count - 1L));
+        final long nextSeqNo = tracker.generateSeqNo();
+        assertThat(nextSeqNo, equalTo((long) count));
+        tracker.markSeqNoAsCompleted(nextSeqNo);
+        assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
+        tracker.markSeqNoRangeAsCompleted(seqNo, seqNo + count - 1);
+        assertThat(tracker.getCheckpoint(), equalTo(nextSeqNo));
+        assertThat(tracker.processedSeqNo.size(), isOneOf(0, 1));
+    }
+
+    public void testRangeReplica() {
+        final long from = randomIntBetween(1, 2 * BIT_SET_SIZE);
+        final long to = from + randomIntBetween(0, 2 * BIT_SET_SIZE);
+        tracker.markSeqNoRangeAsCompleted(from, to);
+        assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
+        assertThat(tracker.getMaxSeqNo(), equalTo(to));
+        // overlapping with the checkpoint is fine
+        tracker.markSeqNoRangeAsCompleted(0, randomLongBetween(0, from - 1));
+        tracker.markSeqNoRangeAsCompleted(0, from - 1);
+        assertThat(tracker.getCheckpoint(), equalTo(to));
+        tracker.markSeqNoRangeAsCompleted(0, to);
+        assertThat(tracker.getCheckpoint(), equalTo(to));
+    }
+
     public void testSimpleReplica() {
         assertThat(tracker.getCheckpoint(), equalTo(SequenceNumbers.NO_OPS_PERFORMED));
         tracker.markSeqNoAsCompleted(0L);
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class AdaptiveRefreshPolicyTests extends ESTestCase {
+
+    private static final long MIN = 1000;
+    private static final long MAX = 30000;
+
+    public void testFrequentlySearchedShardKeepsRefreshInterval() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long searches = 0;
+        long indexOps = 0;
+        for (long now = 0; now < 60000; now += MIN) {
+            searches += randomIntBetween(2, 100);
+            indexOps += randomIntBetween(1000, 10000);
+            assertTrue(policy.shouldRefresh(now, searches, indexOps, randomIntBetween(1, 100), MIN, MAX));
+            assertThat(policy.getIntervalInMillis(), equalTo(MIN));
+        }
+    }
+
+    public void testBarelyWrittenShardKeepsRefreshInterval() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        for (long now = 0; now < 60000; now += MIN) {
+            assertTrue(policy.shouldRefresh(now, 0, 0, randomIntBetween(1, 100), MIN, MAX));
+            assertThat(policy.getIntervalInMillis(), equalTo(MIN));
+        }
+    }
+
+    public void testWriteHeavyShardThatIsNeverSearched() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long indexOps = 0;
+        int refreshes = 0;
+        final long duration = 10 * MAX;
+        for (long now = 0; now < duration; now += MIN) {
+            indexOps += randomIntBetween(1000, 10000);
+            if (policy.shouldRefresh(now, 0, indexOps, randomIntBetween(1, 10), MIN, MAX)) {
+                refreshes++;
+            }
+        }
+        assertThat(policy.getIntervalInMillis(), equalTo(MAX));
+        // the initial refresh, at most one while the indexing rate ramps up and one per max interval
+        assertThat((long) refreshes, lessThanOrEqualTo(2 + duration / MAX));
+    }
+
+    public void testRarelySearchedShardIsRefreshedAboutOncePerSearch() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long searches = 0;
+        long indexOps = 0;
+        // one search every five seconds
+        for (long now = 0; now < 300000; now += MIN) {
+            if (now % 5000 == 0) {
+                searches++;
+            }
+            indexOps += 5000;
+            policy.shouldRefresh(now, searches, indexOps, 10, MIN, MAX);
+        }
+        assertThat(policy.getIntervalInMillis(), greaterThan(MIN));
+        assertThat(policy.getIntervalInMillis(), lessThanOrEqualTo(MAX));
+        final long interval = policy.getIntervalInMillis();
+
+        // more segments stretch the interval further
+        policy.shouldRefresh(300000, searches, indexOps + 5000, 10 * AdaptiveRefreshPolicy.SEGMENT_COUNT_THRESHOLD, MIN, MAX);
+        assertThat(policy.getIntervalInMillis(), greaterThan(interval));
+    }
+
+    public void testIntervalShrinksOnceSearchesPickUp() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long indexOps = 0;
+        long now = 0;
+        for (; now < 60000; now += MIN) {
+            indexOps += 5000;
+            policy.shouldRefresh(now, 0, indexOps, 10, MIN, MAX);
+        }
+        assertThat(policy.getIntervalInMillis(), equalTo(MAX));
+        long searches = 0;
+        for (int i = 0; i < 20; i++, now += MIN) {
+            indexOps += 5000;
+            searches += 10;
+            policy.shouldRefresh(now, searches, indexOps, 10, MIN, MAX);
+        }
+        assertThat(policy.getIntervalInMillis(), equalTo(MIN));
+        assertTrue(policy.shouldRefresh(now, searches + 10, indexOps + 5000, 10, MIN, MAX));
+    }
+
+    public void testIntervalIsMeasuredFromLatestRefresh() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long indexOps = 0;
+        long now = 0;
+        for (; now < 60000; now += MIN) {
+            indexOps += 5000;
+            policy.shouldRefresh(now, 0, indexOps, 10, MIN, MAX);
+        }
+        assertThat(policy.getIntervalInMillis(), equalTo(MAX));
+        // an explicit or flush triggered refresh postpones the next scheduled one
+        final long refreshedAt = now;
+        policy.onRefresh(refreshedAt);
+        for (now += MIN; now < refreshedAt + MAX; now += MIN) {
+            indexOps += 5000;
+            assertFalse(policy.shouldRefresh(now, 0, indexOps, 10, MIN, MAX));
+        }
+        assertTrue(policy.shouldRefresh(refreshedAt + MAX, 0, indexOps + 5000, 10, MIN, MAX));
+    }
+
+    public void testDisabledBounds() {
+        final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        final long max = randomLongBetween(0, MIN);
+        long indexOps = 0;
+        for (long now = 0; now < 60000; now += MIN) {
+            indexOps += 5000;
+            assertTrue(policy.shouldRefresh(now, 0, indexOps, 10, MIN, max));
+        }
+    }
+}
@@ -1279,6 +1279,24 @@ public class IndexShardTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    public void testApproximateDocCount() throws IOException {
+        IndexShard shard = newStartedShard();
+        assertThat(shard.approximateDocCount(), equalTo(0L));
+        final int numDocs = randomIntBetween(1, 10);
+        for (int i = 0; i < numDocs; i++) {
+            indexDoc(shard, "_doc", Integer.toString(i));
+        }
+        // the count is only updated by refreshes, it doesn't acquire a searcher
+        assertThat(shard.approximateDocCount(), equalTo(0L));
+        shard.refresh("test");
+        assertThat(shard.approximateDocCount(), equalTo((long) numDocs));
+        deleteDoc(shard, "_doc", "0");
+        shard.refresh("test");
+        assertThat(shard.approximateDocCount(), equalTo((long) numDocs - 1));
+        assertThat(shard.approximateDocCount(), equalTo(shard.docStats().getCount()));
+        closeShards(shard);
+    }
+
     public void testIndexingOperationsListeners() throws IOException {
         IndexShard shard = newStartedShard(true);
         indexDoc(shard, "_doc", "0", "{\"foo\" : \"bar\"}");
@@ -2391,6 +2409,46 @@ public class IndexShardTests extends IndexShardTestCase {
         closeShards(sourceShard, targetShard);
     }
 
+    public void testFieldRanges() throws IOException {
+        final IndexShard shard = newStartedShard(false);
+        shard.applyIndexOperationOnReplica(0, 1, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false,
+            SourceToParse.source(shard.shardId().getIndexName(), "_doc", "0", new BytesArray("{}"), XContentType.JSON));
+        shard.updateGlobalCheckpointOnReplica(0, "test");
+        shard.refresh("test");
+        // the index still accepts writes
+        assertNull(shard.fieldRanges());
+
+        final IndexMetaData metaData = shard.indexSettings().getIndexMetaData();
+        final IndexMetaData blockedMetaData = IndexMetaData.builder(metaData)
+            .settings(Settings.builder().put(metaData.getSettings()).put(IndexMetaData.SETTING_BLOCKS_WRITE, true))
+            .version(metaData.getVersion() + 1)
+            .build();
+        shard.indexSettings().updateIndexMetaData(blockedMetaData);
+        final ShardFieldRanges ranges = shard.fieldRanges();
+        assertNotNull(ranges);
+        assertEquals(blockedMetaData.getVersion(), ranges.getIndexMetaDataVersion());
+        assertSame(ranges, shard.fieldRanges());
+
+        // operations that were accepted before the block are still in flight
+        shard.applyIndexOperationOnReplica(2, 1, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false,
+            SourceToParse.source(shard.shardId().getIndexName(), "_doc", "2", new BytesArray("{}"), XContentType.JSON));
+        assertNull(shard.fieldRanges());
+        shard.applyIndexOperationOnReplica(1, 1, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false,
+            SourceToParse.source(shard.shardId().getIndexName(), "_doc", "1", new BytesArray("{}"), XContentType.JSON));
+        assertEquals(2, shard.getLocalCheckpoint());
+        // the global checkpoint is behind
+        assertNull(shard.fieldRanges());
+        shard.updateGlobalCheckpointOnReplica(2, "test");
+        // a refresh is pending
+        assertNull(shard.fieldRanges());
+        shard.refresh("test");
+        final ShardFieldRanges refreshedRanges = shard.fieldRanges();
+        assertNotNull(refreshedRanges);
+        assertNotSame(ranges, refreshedRanges);
+        assertEquals(blockedMetaData.getVersion(), refreshedRanges.getIndexMetaDataVersion());
+        closeShards(shard);
+    }
+
     public void testDocStats() throws IOException {
         IndexShard indexShard = null;
         try {
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.test.AbstractWireSerializingTestCase;
+
+public class WriteLoadStatsTests extends AbstractWireSerializingTestCase<WriteLoadStats> {
+
+    @Override
+    protected WriteLoadStats createTestInstance() {
+        return new WriteLoadStats(randomNonNegativeLong() / 4, randomNonNegativeLong() / 4, randomNonNegativeLong() / 4,
+            randomNonNegativeLong() / 4);
+    }
+
+    @Override
+    protected Writeable.Reader<WriteLoadStats> instanceReader() {
+        return WriteLoadStats::new;
+    }
+
+    @Override
+    protected WriteLoadStats mutateInstance(WriteLoadStats instance) {
+        long parseTime = instance.getParseTimeInNanos();
+        long indexTime = instance.getIndexTimeInNanos();
+        long translogTime = instance.getTranslogTimeInNanos();
+        long mergeTime = instance.getMergeTimeInNanos();
+        switch (randomInt(3)) {
+        case 0:
+            parseTime += between(1, 2000);
+            break;
+        case 1:
+            indexTime += between(1, 2000);
+            break;
+        case 2:
+            translogTime += between(1, 2000);
+            break;
+        case 3:
+        default:
+            mergeTime += between(1, 2000);
+            break;
+        }
+        return new WriteLoadStats(parseTime, indexTime, translogTime, mergeTime);
+    }
+
+    public void testTotalTime() {
+        assertEquals(10L, new WriteLoadStats(1, 2, 3, 4).getTotalTimeInNanos());
+    }
+}
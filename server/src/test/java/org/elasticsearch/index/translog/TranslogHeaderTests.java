@@ -72,6 +72,28 @@ public class TranslogHeaderTests extends ESTestCase {
         });
     }
 
+    public void testHeaderWithCodec() throws Exception {
+        final String translogUUID = UUIDs.randomBase64UUID();
+        final Translog.Codec codec = randomFrom(Translog.Codec.values());
+        final TranslogHeader outHeader = new TranslogHeader(translogUUID, randomNonNegativeLong(), codec);
+        assertThat(outHeader.sizeInBytes(), equalTo(TranslogHeader.headerSizeInBytes(translogUUID, codec)));
+        final Path translogFile = createTempDir().resolve(Translog.getFilename(randomNonNegativeLong()));
+        try (FileChannel channel = FileChannel.open(translogFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            outHeader.write(channel);
+            assertThat(outHeader.sizeInBytes(), equalTo((int) channel.position()));
+        }
+        try (FileChannel channel = FileChannel.open(translogFile, StandardOpenOption.READ)) {
+            final TranslogHeader inHeader = TranslogHeader.read(translogUUID, translogFile, channel);
+            assertThat(inHeader.getCodec(), equalTo(codec));
+            assertThat(inHeader.getPrimaryTerm(), equalTo(outHeader.getPrimaryTerm()));
+            assertThat(inHeader.sizeInBytes(), equalTo((int) channel.position()));
+        }
+        if (codec == Translog.Codec.DEFAULT) {
+            // files with the default codec remain readable by nodes that don't know about codecs
+            assertThat(outHeader.sizeInBytes(), equalTo(TranslogHeader.headerSizeInBytes(translogUUID)));
+        }
+    }
+
     public void testHeaderWithoutPrimaryTerm() throws Exception {
         final String translogUUID = UUIDs.randomBase64UUID();
         final long generation = randomNonNegativeLong();
@@ -80,6 +80,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
@@ -124,6 +125,7 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isIn;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
@@ -589,6 +591,192 @@ public class TranslogTests extends ESTestCase {
         }
     }
 
+    public void testMappedSnapshotExposesSerializedOperations() throws IOException {
+        final Path path = createTempDir();
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(IndexSettings.INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING.getKey(), true)
+            .build();
+        final List<Translog.Operation> ops = new ArrayList<>();
+        try (Translog mappedTranslog = createTranslog(getTranslogConfig(path, settings))) {
+            final int rolledOps = randomIntBetween(1, 100);
+            for (int i = 0; i < rolledOps; i++) {
+                final byte[] source = randomAlphaOfLength(randomIntBetween(1, 64)).getBytes(StandardCharsets.UTF_8);
+                if (randomBoolean()) {
+                    addToTranslogAndList(mappedTranslog, ops,
+                        new Translog.Index("test", Integer.toString(i), i, primaryTerm.get(), source));
+                } else {
+                    addToTranslogAndList(mappedTranslog, ops, new Translog.NoOp(i, primaryTerm.get(), "test"));
+                }
+            }
+            mappedTranslog.rollGeneration();
+            final int currentOps = randomIntBetween(0, 10);
+            for (int i = rolledOps; i < rolledOps + currentOps; i++) {
+                addToTranslogAndList(mappedTranslog, ops, new Translog.Index("test", Integer.toString(i), i, primaryTerm.get(),
+                    new byte[]{1}));
+            }
+            try (Translog.Snapshot snapshot = mappedTranslog.newSnapshot()) {
+                assertThat(snapshot, SnapshotMatchers.containsOperationsInAnyOrder(ops));
+            }
+            try (Translog.Snapshot snapshot = mappedTranslog.newSnapshot()) {
+                Translog.Operation op;
+                int serialized = 0;
+                while ((op = snapshot.next()) != null) {
+                    final BytesReference bytes = snapshot.serializedOperation();
+                    if (op.seqNo() < rolledOps) {
+                        assertNotNull(bytes);
+                        // the serialized form must be readable as a list of operations written by Translog#writeOperations
+                        try (BytesStreamOutput out = new BytesStreamOutput()) {
+                            out.writeInt(1);
+                            bytes.writeTo(out);
+                            final List<Translog.Operation> read = Translog.readOperations(out.bytes().streamInput(), "test");
+                            assertThat(read, equalTo(Collections.singletonList(op)));
+                        }
+                        serialized++;
+                    } else {
+                        // the current generation is still written to and not mapped
+                        assertNull(bytes);
+                    }
+                }
+                assertThat(serialized, equalTo(rolledOps));
+            }
+        }
+    }
+
+    public void testAddOperationsAsBlock() throws IOException {
+        final List<Translog.Operation> ops = new ArrayList<>();
+        final int numBlocks = randomIntBetween(1, 10);
+        int seqNo = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            final List<Translog.Operation> blockOps = new ArrayList<>();
+            final int numOps = randomIntBetween(1, 20);
+            for (int i = 0; i < numOps; i++, seqNo++) {
+                if (randomBoolean()) {
+                    blockOps.add(new Translog.Index("test", Integer.toString(seqNo), seqNo, primaryTerm.get(),
+                        new byte[]{(byte) seqNo}));
+                } else {
+                    blockOps.add(new Translog.NoOp(seqNo, primaryTerm.get(), "test"));
+                }
+            }
+            final Translog.Location[] locations = translog.add(blockOps);
+            assertThat(locations.length, equalTo(numOps));
+            for (int i = 0; i < numOps; i++) {
+                assertThat(translog.readOperation(locations[i]), equalTo(blockOps.get(i)));
+                if (i > 0) {
+                    // the operations of a block are written back to back
+                    assertThat(locations[i].translogLocation, equalTo(locations[i - 1].translogLocation + locations[i - 1].size));
+                }
+            }
+            ops.addAll(blockOps);
+            if (rarely()) {
+                translog.rollGeneration();
+            }
+        }
+        try (Translog.Snapshot snapshot = translog.newSnapshot()) {
+            assertThat(snapshot, SnapshotMatchers.containsOperationsInAnyOrder(ops));
+        }
+    }
+
+    public void testCompressedTranslog() throws IOException {
+        final Path path = createTempDir();
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING.getKey(), "best_compression")
+            .build();
+        final TranslogConfig config = getTranslogConfig(path, settings);
+        final List<Translog.Operation> ops = new ArrayList<>();
+        final List<Translog.Location> locations = new ArrayList<>();
+        final String translogUUID;
+        try (Translog compressedTranslog = createTranslog(config)) {
+            translogUUID = compressedTranslog.getTranslogUUID();
+            final int numOps = randomIntBetween(1, 100);
+            for (int i = 0; i < numOps; i++) {
+                final Translog.Operation op;
+                switch (randomInt(2)) {
+                    case 0:
+                        final String message = String.join(" ", Collections.nCopies(randomIntBetween(1, 20), "log"));
+                        final byte[] source = ("{\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+                        op = new Translog.Index("test", Integer.toString(i), i, primaryTerm.get(), source);
+                        break;
+                    case 1:
+                        op = new Translog.Delete("test", Integer.toString(i), newUid(Integer.toString(i)), i, primaryTerm.get(), 1);
+                        break;
+                    default:
+                        op = new Translog.NoOp(i, primaryTerm.get(), "test");
+                        break;
+                }
+                locations.add(addToTranslogAndList(compressedTranslog, ops, op));
+                if (rarely()) {
+                    compressedTranslog.rollGeneration();
+                } else if (randomBoolean()) {
+                    // compresses the buffered operations into a block
+                    compressedTranslog.sync();
+                }
+            }
+            // operations are read from blocks of the current and older generations as well as from the buffer
+            for (int i = 0; i < ops.size(); i++) {
+                assertThat(compressedTranslog.readOperation(locations.get(i)), equalTo(ops.get(i)));
+            }
+            try (Translog.Snapshot snapshot = compressedTranslog.newSnapshot()) {
+                assertThat(snapshot, SnapshotMatchers.containsOperationsInAnyOrder(ops));
+            }
+            try (Translog.Snapshot snapshot = compressedTranslog.newSnapshot()) {
+                Translog.Operation op;
+                while ((op = snapshot.next()) != null) {
+                    // decompressed operations are in the format written by Translog#writeOperations and can be shipped as they are
+                    final BytesReference bytes = snapshot.serializedOperation();
+                    assertNotNull(bytes);
+                    try (BytesStreamOutput out = new BytesStreamOutput()) {
+                        out.writeInt(1);
+                        bytes.writeTo(out);
+                        final List<Translog.Operation> read = Translog.readOperations(out.bytes().streamInput(), "test");
+                        assertThat(read, equalTo(Collections.singletonList(op)));
+                    }
+                }
+            }
+            compressedTranslog.sync();
+            assertThat(compressedTranslog.currentFileGeneration(), greaterThanOrEqualTo(2L));
+        }
+
+        // the codec is recorded per generation, such that a translog can be reopened with a different codec
+        final Settings uncompressedSettings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .build();
+        try (Translog reopened = openTranslog(getTranslogConfig(path, uncompressedSettings), translogUUID)) {
+            addToTranslogAndList(reopened, ops, new Translog.NoOp(ops.size(), primaryTerm.get(), "reopened"));
+            try (Translog.Snapshot snapshot = reopened.newSnapshot()) {
+                assertThat(snapshot, SnapshotMatchers.containsOperationsInAnyOrder(ops));
+            }
+        }
+    }
+
+    public void testCompressedTranslogCompressesBlocks() throws IOException {
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING.getKey(), "best_compression")
+            .build();
+        try (Translog compressedTranslog = createTranslog(getTranslogConfig(createTempDir(), settings))) {
+            final long headerSize = compressedTranslog.sizeInBytes();
+            final int numOps = randomIntBetween(50, 500);
+            final List<Translog.Operation> ops = new ArrayList<>();
+            final List<Translog.Location> locations = new ArrayList<>();
+            long uncompressedSize = 0;
+            for (int i = 0; i < numOps; i++) {
+                final String source = "{\"host\":\"host-" + (i % 10) + "\",\"message\":\"GET /index.html 200 " + i + "\"}";
+                final Translog.Location location = addToTranslogAndList(compressedTranslog, ops, new Translog.Index("test",
+                    Integer.toString(i), i, primaryTerm.get(), source.getBytes(StandardCharsets.UTF_8)));
+                locations.add(location);
+                uncompressedSize += location.size;
+            }
+            compressedTranslog.sync();
+            // similar operations that are written to disk together compress well
+            assertThat(compressedTranslog.sizeInBytes() - headerSize, lessThan(uncompressedSize / 2));
+            for (int i = 0; i < numOps; i++) {
+                assertThat(compressedTranslog.readOperation(locations.get(i)), equalTo(ops.get(i)));
+            }
+        }
+    }
+
     public void testReadLocation() throws IOException {
         ArrayList<Translog.Operation> ops = new ArrayList<>();
         ArrayList<Translog.Location> locs = new ArrayList<>();
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndicesHitCountCacheTests extends ESTestCase {
+
+    private static Document newDoc(String id, String value) {
+        Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.NO));
+        doc.add(new StringField("value", value, Field.Store.NO));
+        return doc;
+    }
+
+    private static LeafReader leaf(DirectoryReader reader, int leaf) {
+        return reader.leaves().get(leaf).reader();
+    }
+
+    public void testCacheAcrossRefreshes() throws Exception {
+        IndicesHitCountCache cache = new IndicesHitCountCache(Settings.EMPTY);
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+        writer.addDocument(newDoc("0", "foo"));
+        writer.addDocument(newDoc("1", "foo"));
+        DirectoryReader reader = DirectoryReader.open(writer);
+        assertThat(reader.leaves().size(), equalTo(1));
+
+        Query query = new TermQuery(new Term("value", "foo"));
+        assertThat(cache.get(leaf(reader, 0), query), nullValue());
+        cache.put(leaf(reader, 0), query, 2);
+        assertThat(cache.get(leaf(reader, 0), query), equalTo(2));
+        assertThat(cache.get(leaf(reader, 0), new TermQuery(new Term("value", "bar"))), nullValue());
+        assertThat(cache.count(), equalTo(1));
+        assertThat(cache.numRegisteredCloseListeners(), equalTo(1));
+
+        // the segment that didn't change keeps its hit count
+        writer.addDocument(newDoc("2", "foo"));
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        assertThat(newReader.leaves().size(), equalTo(2));
+        assertThat(cache.get(leaf(newReader, 0), query), equalTo(2));
+        assertThat(cache.get(leaf(newReader, 1), query), nullValue());
+        cache.put(leaf(newReader, 1), query, 1);
+        assertThat(cache.count(), equalTo(2));
+        reader.close();
+        cache.cleanCache();
+        assertThat(cache.count(), equalTo(2));
+        reader = newReader;
+
+        // deletes change the number of hits of a segment
+        writer.deleteDocuments(new Term("id", "0"));
+        newReader = DirectoryReader.openIfChanged(reader);
+        assertThat(cache.get(leaf(newReader, 0), query), nullValue());
+        assertThat(cache.get(leaf(newReader, 1), query), equalTo(1));
+        cache.put(leaf(newReader, 0), query, 1);
+        assertThat(cache.count(), equalTo(3));
+        reader.close();
+        reader = newReader;
+
+        // the segment with deletes keeps its hit count as long as no more documents are deleted from it
+        writer.addDocument(newDoc("3", "bar"));
+        newReader = DirectoryReader.openIfChanged(reader);
+        assertThat(newReader.leaves().size(), equalTo(3));
+        assertThat(cache.get(leaf(newReader, 0), query), equalTo(1));
+        assertThat(cache.get(leaf(newReader, 1), query), equalTo(1));
+        assertThat(cache.get(leaf(newReader, 2), query), nullValue());
+        reader.close();
+        cache.cleanCache();
+        assertThat(cache.count(), equalTo(3));
+
+        newReader.close();
+        cache.cleanCache();
+        assertThat(cache.count(), equalTo(0));
+        assertThat(cache.numRegisteredCloseListeners(), equalTo(0));
+        IOUtils.close(writer, dir, cache);
+    }
+
+    public void testEviction() throws Exception {
+        Query query = new TermQuery(new Term("value", "foo"));
+        final long entrySize = new IndicesHitCountCache.Key(null, 1, query).ramBytesUsed();
+        IndicesHitCountCache cache = new IndicesHitCountCache(Settings.builder()
+            .put(IndicesHitCountCache.INDICES_HIT_COUNT_CACHE_SIZE.getKey(), entrySize * 2 + "b").build());
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+        writer.addDocument(newDoc("0", "foo"));
+        DirectoryReader reader = DirectoryReader.open(writer);
+
+        cache.put(leaf(reader, 0), query, 1);
+        cache.put(leaf(reader, 0), new TermQuery(new Term("value", "bar")), 0);
+        assertThat(cache.count(), equalTo(2));
+        cache.put(leaf(reader, 0), new TermQuery(new Term("value", "baz")), 0);
+        assertThat(cache.count(), equalTo(2));
+        // the least recently used entry was evicted
+        assertThat(cache.get(leaf(reader, 0), query), nullValue());
+        IOUtils.close(reader, writer, dir, cache);
+    }
+}
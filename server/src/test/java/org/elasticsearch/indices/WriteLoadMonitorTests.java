@@ -0,0 +1,110 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.iterable.Iterables;
+import org.elasticsearch.index.shard.WriteLoadStats;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+
+public class WriteLoadMonitorTests extends ESSingleNodeTestCase {
+
+    public void testWindowFromId() {
+        for (WriteLoadMonitor.Window window : WriteLoadMonitor.Window.values()) {
+            assertThat(WriteLoadMonitor.Window.fromId(window.getId()), equalTo(window));
+        }
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> WriteLoadMonitor.Window.fromId("2m"));
+        assertEquals("unknown write load window [2m], must be one of [1m, 5m, 15m]", e.getMessage());
+    }
+
+    public void testShardSample() {
+        final long interval = TimeUnit.SECONDS.toNanos(5);
+        final WriteLoadMonitor.ShardSample sample = new WriteLoadMonitor.ShardSample(null, 0, new WriteLoadStats(0, 0, 0, 0));
+        long busy = 0;
+        for (int i = 1; i <= 12; i++) {
+            // half a thread busy writing
+            busy += interval / 2;
+            sample.update(i * interval, new WriteLoadStats(busy / 4, busy / 4, busy / 4, busy - 3 * (busy / 4)));
+        }
+        final double oneMinute = sample.loads[WriteLoadMonitor.Window.ONE_MINUTE.ordinal()];
+        final double fiveMinutes = sample.loads[WriteLoadMonitor.Window.FIVE_MINUTES.ordinal()];
+        final double fifteenMinutes = sample.loads[WriteLoadMonitor.Window.FIFTEEN_MINUTES.ordinal()];
+        // after one minute the one minute average reached 1 - 1/e of the load
+        assertThat(oneMinute, closeTo(0.5 * (1 - Math.exp(-1)), 0.001));
+        assertThat(oneMinute, greaterThan(fiveMinutes));
+        assertThat(fiveMinutes, greaterThan(fifteenMinutes));
+
+        // the engine was reset, no load must be attributed to the interval
+        sample.update(13 * interval, new WriteLoadStats(busy / 4, 0, 0, 0));
+        assertThat(sample.loads[WriteLoadMonitor.Window.ONE_MINUTE.ordinal()], closeTo(oneMinute * Math.exp(-1d / 12), 0.001));
+
+        // samples without elapsed time are ignored
+        final double[] loads = sample.loads.clone();
+        sample.update(13 * interval, new WriteLoadStats(busy, busy, busy, busy));
+        assertArrayEquals(loads, sample.loads, 0d);
+    }
+
+    public void testHottestShards() {
+        createIndex("hot", Settings.builder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0).build());
+        createIndex("cold", Settings.builder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0).build());
+        ensureGreen();
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        WriteLoadMonitor monitor = new WriteLoadMonitor(Settings.EMPTY, null, () -> Iterables.flatten(indicesService).iterator()) {
+            @Override
+            protected Cancellable scheduleTask(ThreadPool threadPool) {
+                return null;
+            }
+        };
+        monitor.sample(0);
+        for (int i = 0; i < 100; i++) {
+            client().prepareIndex("hot", "type", Integer.toString(i)).setSource("field", "value").get();
+        }
+        monitor.sample(TimeUnit.SECONDS.toNanos(5));
+
+        List<ShardWriteLoad> shards = monitor.hottestShards(WriteLoadMonitor.Window.ONE_MINUTE, 10);
+        assertThat(shards, hasSize(2));
+        assertEquals("hot", shards.get(0).getShardId().getIndexName());
+        assertTrue(shards.get(0).isPrimary());
+        assertThat(shards.get(0).getLoad(WriteLoadMonitor.Window.ONE_MINUTE), greaterThan(0d));
+        assertThat(shards.get(0).getStats().getParseTimeInNanos(), greaterThan(0L));
+        assertThat(shards.get(0).getStats().getIndexTimeInNanos(), greaterThan(0L));
+        assertThat(shards.get(0).getStats().getTranslogTimeInNanos(), greaterThan(0L));
+        assertEquals("cold", shards.get(1).getShardId().getIndexName());
+        assertThat(shards.get(1).getLoad(WriteLoadMonitor.Window.ONE_MINUTE), equalTo(0d));
+
+        assertThat(monitor.hottestShards(WriteLoadMonitor.Window.FIFTEEN_MINUTES, 1), hasSize(1));
+
+        client().admin().indices().prepareDelete("hot").get();
+        monitor.sample(TimeUnit.SECONDS.toNanos(10));
+        shards = monitor.hottestShards(WriteLoadMonitor.Window.ONE_MINUTE, 10);
+        assertThat(shards, hasSize(1));
+        assertEquals("cold", shards.get(0).getShardId().getIndexName());
+    }
+}
@@ -37,6 +37,7 @@ import org.junit.Before;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 
@@ -71,6 +72,18 @@ public class ResponseCollectorServiceTests extends ESTestCase {
         assertThat(nodeStats.get("node1").serviceTime, equalTo(10.0));
     }
 
+    public void testResponseTimeUpperBound() {
+        assertFalse(collector.getResponseTimeUpperBound("node1").isPresent());
+        collector.addNodeStatistics("node1", 1, 100, 10);
+        // the deviation starts with half of the first response time
+        assertThat(collector.getResponseTimeUpperBound("node1").getAsDouble(), closeTo(100 + 4 * 50, 0.001));
+        collector.addNodeStatistics("node1", 1, 100, 10);
+        assertThat(collector.getResponseTimeUpperBound("node1").getAsDouble(), closeTo(100 + 4 * 35, 0.001));
+        collector.addNodeStatistics("node1", 1, 1000, 10);
+        assertThat(collector.getResponseTimeUpperBound("node1").getAsDouble(), greaterThan(1000.0));
+        assertFalse(collector.getResponseTimeUpperBound("node2").isPresent());
+    }
+
     /*
      * Test that concurrently adding values and removing nodes does not cause exceptions
      */
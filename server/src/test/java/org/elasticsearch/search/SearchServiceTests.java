@@ -24,6 +24,12 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.CloseReaderLeaseAction;
+import org.elasticsearch.action.search.CloseReaderLeaseRequest;
+import org.elasticsearch.action.search.CloseReaderLeaseResponse;
+import org.elasticsearch.action.search.OpenReaderLeaseAction;
+import org.elasticsearch.action.search.OpenReaderLeaseRequest;
+import org.elasticsearch.action.search.OpenReaderLeaseResponse;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchTask;
@@ -44,6 +50,7 @@ import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.index.query.TermQueryBuilder;
 import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.indices.IndicesRequestCache;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.SearchPlugin;
@@ -77,6 +84,7 @@ import static java.util.Collections.singletonList;
 import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
 import static org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason.DELETED;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -146,6 +154,57 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         assertEquals(0, service.getActiveContexts());
     }
 
+    public void testReaderLease() {
+        createIndex("index");
+        client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        SearchService service = getInstanceFromNode(SearchService.class);
+
+        OpenReaderLeaseResponse openResponse = client().execute(OpenReaderLeaseAction.INSTANCE,
+            new OpenReaderLeaseRequest(TimeValue.timeValueMinutes(1), "index")).actionGet();
+        assertEquals(1, service.getOpenReaderLeases());
+        assertEquals(0, service.getActiveContexts());
+
+        client().prepareIndex("index", "type", "2").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        assertEquals(2, client().prepareSearch("index").get().getHits().getTotalHits());
+        // the lease still sees the reader that it was opened on
+        for (int i = 0; i < 3; i++) {
+            SearchResponse searchResponse = client().prepareSearch().setReaderLease(openResponse.getId()).get();
+            assertEquals(1, searchResponse.getHits().getTotalHits());
+            assertEquals("1", searchResponse.getHits().getAt(0).getId());
+        }
+        assertEquals(1, service.getOpenReaderLeases());
+        assertEquals(0, service.getActiveContexts());
+
+        CloseReaderLeaseResponse closeResponse = client().execute(CloseReaderLeaseAction.INSTANCE,
+            new CloseReaderLeaseRequest(openResponse.getId())).actionGet();
+        assertTrue(closeResponse.isSucceeded());
+        assertEquals(1, closeResponse.getNumFreed());
+        assertEquals(0, service.getOpenReaderLeases());
+        expectThrows(SearchPhaseExecutionException.class,
+            () -> client().prepareSearch().setReaderLease(openResponse.getId()).get());
+    }
+
+    public void testReaderLeaseFreedOnIndexDelete() {
+        createIndex("index");
+        client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        SearchService service = getInstanceFromNode(SearchService.class);
+
+        client().execute(OpenReaderLeaseAction.INSTANCE, new OpenReaderLeaseRequest(TimeValue.timeValueMinutes(1), "index")).actionGet();
+        assertEquals(1, service.getOpenReaderLeases());
+        assertAcked(client().admin().indices().prepareDelete("index"));
+        assertEquals(0, service.getOpenReaderLeases());
+    }
+
+    public void testReaderLeaseKeepAliveLimit() {
+        createIndex("index");
+        IndexShard indexShard = getInstanceFromNode(IndicesService.class).indexServiceSafe(resolveIndex("index")).getShard(0);
+        SearchService service = getInstanceFromNode(SearchService.class);
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> service.openReaderLease(indexShard.shardId(), TimeValue.timeValueHours(25)));
+        assertThat(e.getMessage(), containsString("Keep alive for reader lease"));
+        assertEquals(0, service.getOpenReaderLeases());
+    }
+
     public void testCloseSearchContextOnRewriteException() {
         createIndex("index");
         client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
@@ -281,6 +340,37 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
 
     }
 
+    public void testHitCountCache() throws IOException {
+        final boolean indexRequestCache = randomBoolean();
+        createIndex("index", Settings.builder()
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), indexRequestCache)
+            .build());
+        final SearchService service = getInstanceFromNode(SearchService.class);
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final IndexShard indexShard = indicesService.indexServiceSafe(resolveIndex("index")).getShard(0);
+
+        // count-only requests use the cache unless the request or, if it doesn't say, the index disables the request cache
+        assertHitCountCache(service, indexShard, new SearchSourceBuilder().size(0), null, indexRequestCache);
+        assertHitCountCache(service, indexShard, new SearchSourceBuilder().size(0), true, true);
+        assertHitCountCache(service, indexShard, new SearchSourceBuilder().size(0), false, false);
+        // requests that collect top hits or aggregations visit every segment anyway
+        assertHitCountCache(service, indexShard, new SearchSourceBuilder().size(randomIntBetween(1, 10)), true, false);
+        assertHitCountCache(service, indexShard, new SearchSourceBuilder().size(0)
+            .aggregation(new TermsAggregationBuilder("test", ValueType.STRING).field("field")), true, false);
+    }
+
+    private static void assertHitCountCache(SearchService service, IndexShard indexShard, SearchSourceBuilder source,
+                                            Boolean requestCache, boolean usesCache) throws IOException {
+        final SearchContext context = service.createContext(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.DEFAULT,
+            source, Strings.EMPTY_ARRAY, requestCache, new AliasFilter(null, Strings.EMPTY_ARRAY), 1.0f, true, null, null));
+        try {
+            assertEquals(usesCache, context.searcher().getHitCountCache() != null);
+        } finally {
+            context.decRef();
+            service.freeContext(context.id());
+        }
+    }
+
     /**
      * test that getting more than the allowed number of docvalue_fields throws an exception
      */
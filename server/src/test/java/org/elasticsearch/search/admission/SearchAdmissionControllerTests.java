@@ -0,0 +1,289 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.admission;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.search.admission.SearchCost.CostClass;
+import org.elasticsearch.tasks.TaskCancelledException;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SearchAdmissionControllerTests extends ESTestCase {
+
+    private static final long BUDGET = 100 * 1024 * 1024;
+
+    private final List<Runnable> forked = new ArrayList<>();
+    private final List<Runnable> timeouts = new ArrayList<>();
+    private final List<ScheduledFuture<?>> timeoutFutures = new ArrayList<>();
+    private final Scheduler scheduler = (delay, executor, command) -> {
+        assertThat(delay, equalTo(TimeValue.timeValueSeconds(30)));
+        timeouts.add(command);
+        final ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        timeoutFutures.add(future);
+        return future;
+    };
+    private ClusterSettings clusterSettings;
+
+    private SearchAdmissionController controller(int searchThreads, int maxDelayed) {
+        final Settings settings = Settings.builder()
+            .put(SearchAdmissionController.MEMORY_BUDGET_SETTING.getKey(), BUDGET + "b")
+            .put(SearchAdmissionController.MAX_DELAYED_REQUESTS_SETTING.getKey(), maxDelayed)
+            .build();
+        clusterSettings = new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+        return new SearchAdmissionController(settings, clusterSettings, forked::add, scheduler, searchThreads);
+    }
+
+    private static final class Request implements ActionListener<Releasable> {
+        final AtomicReference<Releasable> releasable = new AtomicReference<>();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final SearchTask task = new SearchTask(randomNonNegativeLong(), "transport", "indices:data/read/search[phase/query]", "",
+            TaskId.EMPTY_TASK_ID, Collections.emptyMap()) {
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+
+        @Override
+        public void onResponse(Releasable releasable) {
+            assertTrue(this.releasable.compareAndSet(null, releasable));
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            assertTrue(failure.compareAndSet(null, e));
+        }
+
+        boolean admitted() {
+            return releasable.get() != null;
+        }
+    }
+
+    private static Request admit(SearchAdmissionController controller, SearchCost cost) {
+        final Request request = new Request();
+        controller.admit(cost, request.task, request);
+        return request;
+    }
+
+    private void runForked() {
+        final List<Runnable> runnables = new ArrayList<>(forked);
+        forked.clear();
+        runnables.forEach(Runnable::run);
+    }
+
+    public void testCheapRequestsAreAlwaysAdmitted() {
+        final SearchAdmissionController controller = controller(100, 0);
+        final SearchCost half = new SearchCost(BUDGET / 2, SearchCost.CHEAP_WORK);
+        final Request first = admit(controller, half);
+        final Request second = admit(controller, half);
+        final Request third = admit(controller, half);
+        assertTrue(first.admitted());
+        assertTrue(second.admitted());
+        assertThat(third.failure.get(), instanceOf(EsRejectedExecutionException.class));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(admit(controller, new SearchCost(1024, 1000)).admitted());
+        }
+        final SearchAdmissionStats stats = controller.stats();
+        assertThat(stats.getUsedInBytes(), equalTo(BUDGET));
+        assertThat(stats.getAdmitted(CostClass.CHEAP), equalTo(10L));
+        assertThat(stats.getAdmitted(CostClass.EXPENSIVE), equalTo(2L));
+        assertThat(stats.getRejected(CostClass.EXPENSIVE), equalTo(1L));
+    }
+
+    public void testDelayedRequestsAreAdmittedInOrder() {
+        final SearchAdmissionController controller = controller(100, 10);
+        final SearchCost half = new SearchCost(BUDGET / 2, SearchCost.CHEAP_WORK);
+        final Request first = admit(controller, half);
+        final Request second = admit(controller, half);
+        final Request delayedLarge = admit(controller, half);
+        // must not overtake the request that arrived first, even once it fits into the budget
+        final Request delayedSmall = admit(controller, new SearchCost(BUDGET / 100, SearchCost.CHEAP_WORK));
+        assertTrue(first.admitted());
+        assertTrue(second.admitted());
+        assertFalse(delayedLarge.admitted());
+        assertFalse(delayedSmall.admitted());
+        assertThat(controller.stats().getCurrentDelayed(), equalTo(2));
+        assertThat(controller.stats().getDelayed(CostClass.EXPENSIVE), equalTo(1L));
+        assertThat(controller.stats().getDelayed(CostClass.MEDIUM), equalTo(1L));
+
+        first.releasable.get().close();
+        // releasing twice is a no-op
+        first.releasable.get().close();
+        assertThat(forked.size(), equalTo(1));
+        assertFalse(delayedLarge.admitted());
+        runForked();
+        assertTrue(delayedLarge.admitted());
+        assertFalse(delayedSmall.admitted());
+        assertThat(controller.stats().getCurrentDelayed(), equalTo(1));
+        assertThat(controller.stats().getUsedInBytes(), equalTo(BUDGET));
+
+        second.releasable.get().close();
+        runForked();
+        assertTrue(delayedSmall.admitted());
+        assertThat(controller.stats().getUsedInBytes(), equalTo(BUDGET / 2 + BUDGET / 100));
+
+        delayedLarge.releasable.get().close();
+        delayedSmall.releasable.get().close();
+        final SearchAdmissionStats stats = controller.stats();
+        assertThat(stats.getUsedInBytes(), equalTo(0L));
+        assertThat(stats.getCurrentDelayed(), equalTo(0));
+        assertThat(stats.getAdmitted(CostClass.EXPENSIVE), equalTo(3L));
+        assertThat(stats.getAdmitted(CostClass.MEDIUM), equalTo(1L));
+        assertThat(stats.getRejected(CostClass.EXPENSIVE), equalTo(0L));
+    }
+
+    public void testRequestLargerThanBudget() {
+        final SearchAdmissionController controller = controller(4, 10);
+        final Request large = admit(controller, new SearchCost(BUDGET * 10, SearchCost.CHEAP_WORK));
+        assertTrue(large.admitted());
+        assertThat(controller.stats().getAdmitted(CostClass.EXPENSIVE), equalTo(1L));
+        assertThat(controller.stats().getUsedInBytes(), equalTo(BUDGET));
+        final Request delayed = admit(controller, new SearchCost(1024, SearchCost.CHEAP_WORK));
+        assertFalse(delayed.admitted());
+        large.releasable.get().close();
+        runForked();
+        assertTrue(delayed.admitted());
+    }
+
+    public void testExpensiveRequestsAreLimitedToHalfOfTheThreads() {
+        final SearchAdmissionController controller = controller(4, 10);
+        final SearchCost expensive = new SearchCost(1024, SearchCost.EXPENSIVE_WORK);
+        final Request first = admit(controller, expensive);
+        final Request second = admit(controller, expensive);
+        final Request third = admit(controller, expensive);
+        assertTrue(first.admitted());
+        assertTrue(second.admitted());
+        assertFalse(third.admitted());
+        assertThat(controller.stats().getDelayed(CostClass.EXPENSIVE), equalTo(1L));
+        // cheap requests keep flowing
+        assertTrue(admit(controller, new SearchCost(1024, 1000)).admitted());
+
+        second.releasable.get().close();
+        runForked();
+        assertTrue(third.admitted());
+    }
+
+    public void testFailureToForkReleasesBudget() {
+        final Settings settings = Settings.builder()
+            .put(SearchAdmissionController.MEMORY_BUDGET_SETTING.getKey(), BUDGET + "b")
+            .build();
+        final SearchAdmissionController controller = new SearchAdmissionController(settings,
+            new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
+            // like the executors of the thread pool, which notify abstract runnables of rejections instead of throwing
+            runnable -> ((AbstractRunnable) runnable).onRejection(new EsRejectedExecutionException("rejected")), scheduler, 4);
+        final Request first = admit(controller, new SearchCost(BUDGET, SearchCost.CHEAP_WORK));
+        final Request delayed = admit(controller, new SearchCost(BUDGET, SearchCost.CHEAP_WORK));
+        assertTrue(first.admitted());
+        assertThat(delayed.failure.get(), nullValue());
+        first.releasable.get().close();
+        assertThat(delayed.failure.get(), instanceOf(EsRejectedExecutionException.class));
+        assertThat(controller.stats().getUsedInBytes(), equalTo(0L));
+    }
+
+    public void testCancelledRequestsAreSkipped() {
+        final SearchAdmissionController controller = controller(100, 10);
+        final SearchCost half = new SearchCost(BUDGET / 2, SearchCost.CHEAP_WORK);
+        final Request first = admit(controller, half);
+        final Request second = admit(controller, half);
+        final Request cancelled = admit(controller, half);
+        final Request delayed = admit(controller, half);
+        assertTrue(second.admitted());
+        assertThat(controller.stats().getCurrentDelayed(), equalTo(2));
+
+        cancelled.cancelled.set(true);
+        first.releasable.get().close();
+        // the cancelled request is failed without taking the budget, the request behind it gets it instead
+        assertThat(cancelled.failure.get(), instanceOf(TaskCancelledException.class));
+        assertFalse(cancelled.admitted());
+        verify(timeoutFutures.get(0)).cancel(false);
+        runForked();
+        assertTrue(delayed.admitted());
+        assertThat(controller.stats().getCurrentDelayed(), equalTo(0));
+
+        // a request that is cancelled between its admission and its execution releases its budget
+        final Request cancelledAfterAdmission = admit(controller, half);
+        second.releasable.get().close();
+        cancelledAfterAdmission.cancelled.set(true);
+        runForked();
+        assertFalse(cancelledAfterAdmission.admitted());
+        assertThat(cancelledAfterAdmission.failure.get(), instanceOf(TaskCancelledException.class));
+        assertThat(controller.stats().getUsedInBytes(), equalTo(BUDGET / 2));
+    }
+
+    public void testDelayedRequestsTimeOut() {
+        final SearchAdmissionController controller = controller(100, 10);
+        final SearchCost half = new SearchCost(BUDGET / 2, SearchCost.CHEAP_WORK);
+        final Request first = admit(controller, half);
+        final Request second = admit(controller, half);
+        final Request timedOut = admit(controller, half);
+        final Request admitted = admit(controller, half);
+        assertThat(timeouts.size(), equalTo(2));
+
+        timeouts.get(0).run();
+        assertThat(timedOut.failure.get(), instanceOf(EsRejectedExecutionException.class));
+        assertThat(controller.stats().getCurrentDelayed(), equalTo(1));
+        assertThat(controller.stats().getRejected(CostClass.EXPENSIVE), equalTo(1L));
+
+        first.releasable.get().close();
+        verify(timeoutFutures.get(1)).cancel(false);
+        runForked();
+        assertTrue(admitted.admitted());
+        // a timeout that fires once the request was admitted already is a no-op
+        timeouts.get(1).run();
+        assertThat(admitted.failure.get(), nullValue());
+        assertThat(controller.stats().getRejected(CostClass.EXPENSIVE), equalTo(1L));
+        assertThat(controller.stats().getUsedInBytes(), equalTo(BUDGET));
+        assertTrue(second.admitted());
+    }
+
+    public void testUpdateSettings() {
+        final SearchAdmissionController controller = controller(4, 10);
+        clusterSettings.applySettings(Settings.builder()
+            .put(SearchAdmissionController.MEMORY_BUDGET_SETTING.getKey(), "1gb")
+            .put(SearchAdmissionController.MAX_DELAYED_REQUESTS_SETTING.getKey(), 0)
+            .build());
+        assertThat(controller.stats().getMemoryBudgetInBytes(), equalTo(1024L * 1024 * 1024));
+        assertTrue(admit(controller, new SearchCost(1024L * 1024 * 1024, SearchCost.CHEAP_WORK)).admitted());
+        assertThat(admit(controller, new SearchCost(BUDGET, SearchCost.CHEAP_WORK)).failure.get(),
+            instanceOf(EsRejectedExecutionException.class));
+    }
+}
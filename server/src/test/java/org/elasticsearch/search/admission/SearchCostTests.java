@@ -0,0 +1,110 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.admission;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.admission.SearchCost.CostClass;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SearchCostTests extends ESTestCase {
+
+    private static final long BUDGET = 100 * 1024 * 1024;
+
+    public void testNoSource() {
+        final SearchCost cost = SearchCost.estimate(null, 1000);
+        assertThat(cost.getMemoryInBytes(), equalTo(0L));
+        assertThat(cost.getWork(), equalTo(1000L));
+        assertThat(cost.classify(BUDGET), equalTo(CostClass.CHEAP));
+    }
+
+    public void testQueryWeight() {
+        assertThat(SearchCost.queryWeight(QueryBuilders.termQuery("field", "value")), equalTo(1L));
+        assertThat(SearchCost.queryWeight(QueryBuilders.wildcardQuery("field", "va*e")),
+            equalTo((long) SearchCost.EXPENSIVE_QUERY_WEIGHT));
+        assertThat(SearchCost.queryWeight(QueryBuilders.boolQuery()
+                .must(QueryBuilders.termQuery("field", "value"))
+                .filter(QueryBuilders.constantScoreQuery(QueryBuilders.prefixQuery("field", "va")))
+                .should(QueryBuilders.disMaxQuery().add(QueryBuilders.matchQuery("field", "value"))
+                    .add(QueryBuilders.regexpQuery("field", "v.*")))),
+            equalTo(2L + 2 * SearchCost.EXPENSIVE_QUERY_WEIGHT));
+    }
+
+    public void testWorkScalesWithShardSize() {
+        final SearchSourceBuilder source = new SearchSourceBuilder().query(QueryBuilders.boolQuery()
+            .must(QueryBuilders.termQuery("field", "value"))
+            .filter(QueryBuilders.rangeQuery("date").gte("now-1d")))
+            .aggregation(AggregationBuilders.avg("avg").field("number"));
+        final SearchCost small = SearchCost.estimate(source, 1000);
+        assertThat(small.getWork(), equalTo(3000L));
+        assertThat(small.classify(BUDGET), equalTo(CostClass.CHEAP));
+
+        final SearchCost large = SearchCost.estimate(source, 500_000_000L);
+        assertThat(large.getMemoryInBytes(), equalTo(small.getMemoryInBytes()));
+        assertThat(large.classify(BUDGET), equalTo(CostClass.EXPENSIVE));
+    }
+
+    public void testNestedBucketsMultiply() {
+        final SearchSourceBuilder single = new SearchSourceBuilder()
+            .aggregation(AggregationBuilders.terms("terms").field("keyword").size(1000));
+        final SearchSourceBuilder nested = new SearchSourceBuilder()
+            .aggregation(AggregationBuilders.terms("terms").field("keyword").size(1000)
+                .subAggregation(AggregationBuilders.dateHistogram("histo").field("date")
+                    .subAggregation(AggregationBuilders.cardinality("cardinality").field("user"))));
+        final long numDocs = 100_000_000L;
+        final SearchCost singleCost = SearchCost.estimate(single, numDocs);
+        final SearchCost nestedCost = SearchCost.estimate(nested, numDocs);
+        assertThat(singleCost.getMemoryInBytes(), equalTo((1000 * 3 / 2 + 10) * SearchCost.BUCKET_BYTES));
+        assertThat(singleCost.classify(BUDGET), equalTo(CostClass.MEDIUM));
+        assertThat(nestedCost.getMemoryInBytes(), greaterThan(singleCost.getMemoryInBytes() * SearchCost.HISTOGRAM_BUCKETS));
+        assertThat(nestedCost.classify(BUDGET), equalTo(CostClass.EXPENSIVE));
+
+        // empty buckets are not created so the number of buckets is bounded by the number of documents
+        final SearchCost smallShardCost = SearchCost.estimate(nested, 10);
+        assertThat(smallShardCost.getMemoryInBytes(), lessThanOrEqualTo(
+            10 * (2 * SearchCost.BUCKET_BYTES + SearchCost.DEFAULT_PRECISION_THRESHOLD * Integer.BYTES)));
+        assertThat(smallShardCost.classify(BUDGET), equalTo(CostClass.CHEAP));
+    }
+
+    public void testCardinalityPrecision() {
+        final SearchSourceBuilder source = new SearchSourceBuilder()
+            .aggregation(AggregationBuilders.cardinality("cardinality").field("user").precisionThreshold(100_000));
+        final SearchCost cost = SearchCost.estimate(source, 1000);
+        assertThat(cost.getMemoryInBytes(), equalTo(SearchCost.MAX_PRECISION_THRESHOLD * Integer.BYTES));
+    }
+
+    public void testNoOverflow() {
+        SearchSourceBuilder source = new SearchSourceBuilder();
+        source.aggregation(AggregationBuilders.terms("l1").field("a").size(10_000)
+            .subAggregation(AggregationBuilders.terms("l2").field("b").size(10_000)
+                .subAggregation(AggregationBuilders.terms("l3").field("c").size(10_000)
+                    .subAggregation(AggregationBuilders.terms("l4").field("d").size(10_000)
+                        .subAggregation(AggregationBuilders.terms("l5").field("e").size(10_000))))));
+        final SearchCost cost = SearchCost.estimate(source, Long.MAX_VALUE);
+        assertThat(cost.getMemoryInBytes(), greaterThan(0L));
+        assertThat(cost.getWork(), greaterThan(0L));
+        assertThat(cost.classify(BUDGET), equalTo(CostClass.EXPENSIVE));
+    }
+}
@@ -25,10 +25,13 @@ import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
@@ -36,12 +39,15 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.bucket.FilterByFilter;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class FiltersAggregatorTests extends AggregatorTestCase {
@@ -204,6 +210,103 @@ public class FiltersAggregatorTests extends AggregatorTestCase {
         directory.close();
     }
 
+    public void testFilterByFilter() throws Exception {
+        try (Directory directory = newDirectory()) {
+            int numDocs = randomIntBetween(100, 200);
+            int maxTerm = randomIntBetween(10, 50);
+            int[] values = new int[numDocs];
+            boolean[] deleted = new boolean[numDocs];
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < numDocs; i++) {
+                    if (frequently()) {
+                        indexWriter.commit();
+                    }
+                    values[i] = randomInt(maxTerm - 1);
+                    Document document = new Document();
+                    document.add(new Field("field", Integer.toString(values[i]), fieldType));
+                    document.add(new Field("id", Integer.toString(i), fieldType));
+                    indexWriter.addDocument(document);
+                }
+                for (int i = 0; i < numDocs; i++) {
+                    if (rarely()) {
+                        indexWriter.deleteDocuments(new Term("id", Integer.toString(i)));
+                        deleted[i] = true;
+                    }
+                }
+            }
+
+            // the query either matches all documents or those with an even value
+            final boolean matchAll = randomBoolean();
+            final Query query;
+            if (matchAll) {
+                query = new MatchAllDocsQuery();
+            } else {
+                BooleanQuery.Builder evenValues = new BooleanQuery.Builder();
+                for (int value = 0; value < maxTerm; value += 2) {
+                    evenValues.add(new TermQuery(new Term("field", Integer.toString(value))), BooleanClause.Occur.SHOULD);
+                }
+                query = evenValues.build();
+            }
+            int numFilters = randomIntBetween(1, 10);
+            QueryBuilder[] filters = new QueryBuilder[numFilters];
+            int[] expectedCounts = new int[numFilters];
+            for (int i = 0; i < numFilters; i++) {
+                int value = randomInt(maxTerm - 1);
+                filters[i] = QueryBuilders.termQuery("field", Integer.toString(value));
+                for (int doc = 0; doc < numDocs; doc++) {
+                    if (deleted[doc] == false && values[doc] == value && (matchAll || value % 2 == 0)) {
+                        expectedCounts[i]++;
+                    }
+                }
+            }
+            FiltersAggregationBuilder builder = new FiltersAggregationBuilder("test", filters);
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                FiltersAggregator aggregator = createAggregator(query, builder, indexSearcher, createIndexSettings(), fieldType);
+                aggregator.preCollection();
+                indexSearcher.search(query, aggregator);
+                aggregator.postCollection();
+                InternalFilters response = (InternalFilters) aggregator.buildAggregation(0L);
+                for (InternalFilters.InternalBucket bucket : response.getBuckets()) {
+                    assertEquals(expectedCounts[Integer.parseInt(bucket.getKey())], bucket.getDocCount());
+                }
+
+                Map<String, Object> debug = new HashMap<>();
+                aggregator.collectDebugInfo(debug::put);
+                assertThat(debug.get("strategy"), Matchers.isOneOf(FilterByFilter.COLLECT, FilterByFilter.FILTER_BY_FILTER,
+                    FilterByFilter.MIXED));
+                int segmentsCounted = (Integer) debug.get("segments_counted_filter_by_filter");
+                int segmentsCollected = (Integer) debug.get("segments_collected");
+                assertThat(segmentsCounted + segmentsCollected, Matchers.lessThanOrEqualTo(indexReader.leaves().size()));
+            }
+        }
+    }
+
+    public void testOtherBucketIsCollected() throws IOException {
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                Document document = new Document();
+                document.add(new Field("field", "foo", fieldType));
+                indexWriter.addDocument(document);
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                FiltersAggregationBuilder builder = new FiltersAggregationBuilder("test", QueryBuilders.termQuery("field", "foo"))
+                    .otherBucket(true);
+                FiltersAggregator aggregator = createAggregator(new MatchAllDocsQuery(), builder, indexSearcher, createIndexSettings(),
+                    fieldType);
+                aggregator.preCollection();
+                indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                aggregator.postCollection();
+                Map<String, Object> debug = new HashMap<>();
+                aggregator.collectDebugInfo(debug::put);
+                assertEquals(FilterByFilter.COLLECT, debug.get("strategy"));
+                assertEquals(0, debug.get("segments_counted_filter_by_filter"));
+            }
+        }
+    }
+
     public void testParsedAsFilter() throws IOException {
         IndexReader indexReader = new MultiReader();
         IndexSearcher indexSearcher = newSearcher(indexReader);
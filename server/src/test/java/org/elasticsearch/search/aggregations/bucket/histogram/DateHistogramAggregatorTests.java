@@ -20,24 +20,36 @@
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.rounding.Rounding;
 import org.elasticsearch.index.mapper.DateFieldMapper;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.TooManyBucketsException;
@@ -370,6 +382,82 @@ public class DateHistogramAggregatorTests extends AggregatorTestCase {
             histogram -> {}, 5));
     }
 
+    public void testCountFromPoints() throws IOException {
+        final DateTimeZone timeZone = randomFrom(DateTimeZone.UTC, DateTimeZone.forID("Europe/Paris"));
+        final Rounding rounding = Rounding.builder(DateTimeUnit.MONTH_OF_YEAR).timeZone(timeZone).build();
+        final long start = asLong("2017-01-01T00:00:00");
+        final long end = asLong("2019-01-01T00:00:00");
+        final boolean multiValued = randomBoolean();
+
+        try (Directory directory = newDirectory()) {
+            final long[][] values = new long[randomIntBetween(1, 1000)][];
+            final Set<Integer> deleted = new HashSet<>();
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = new long[rarely() ? 0 : multiValued && randomBoolean() ? 2 : 1];
+                    Document document = new Document();
+                    document.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+                    for (int j = 0; j < values[i].length; j++) {
+                        values[i][j] = randomLongBetween(start, end);
+                        document.add(new SortedNumericDocValuesField(DATE_FIELD, values[i][j]));
+                        document.add(new LongPoint(DATE_FIELD, values[i][j]));
+                    }
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        indexWriter.commit();
+                    }
+                }
+                if (randomBoolean()) {
+                    for (int i = 0; i < values.length; i++) {
+                        if (rarely()) {
+                            indexWriter.deleteDocuments(new Term("id", Integer.toString(i)));
+                            deleted.add(i);
+                        }
+                    }
+                }
+            }
+
+            final Query query;
+            final long min;
+            final long max;
+            if (randomBoolean()) {
+                query = new MatchAllDocsQuery();
+                min = Long.MIN_VALUE;
+                max = Long.MAX_VALUE;
+            } else {
+                min = randomLongBetween(start, end);
+                max = randomLongBetween(min, end);
+                query = LongPoint.newRangeQuery(DATE_FIELD, min, max);
+            }
+
+            final Map<Long, Long> expectedCounts = new HashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                if (deleted.contains(i) || Arrays.stream(values[i]).noneMatch(value -> value >= min && value <= max)) {
+                    continue;
+                }
+                Arrays.stream(values[i]).map(rounding::round).distinct().forEach(key -> expectedCounts.merge(key, 1L, Long::sum));
+            }
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                DateHistogramAggregationBuilder aggregationBuilder = new DateHistogramAggregationBuilder("_name")
+                    .field(DATE_FIELD)
+                    .dateHistogramInterval(DateHistogramInterval.MONTH)
+                    .timeZone(timeZone)
+                    .minDocCount(1);
+                DateFieldMapper.DateFieldType fieldType = new DateFieldMapper.Builder("_name").fieldType();
+                fieldType.setName(DATE_FIELD);
+
+                InternalDateHistogram histogram = search(indexSearcher, query, aggregationBuilder, 10000, fieldType);
+                final Map<Long, Long> counts = new HashMap<>();
+                for (Histogram.Bucket bucket : histogram.getBuckets()) {
+                    counts.put(((DateTime) bucket.getKey()).getMillis(), bucket.getDocCount());
+                }
+                assertEquals(expectedCounts, counts);
+            }
+        }
+    }
+
     private void testSearchCase(Query query, List<String> dataset,
                                 Consumer<DateHistogramAggregationBuilder> configure,
                                 Consumer<Histogram> verify) throws IOException {
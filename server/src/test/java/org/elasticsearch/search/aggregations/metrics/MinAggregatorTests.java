@@ -112,6 +112,45 @@ public class MinAggregatorTests extends AggregatorTestCase {
         directory.close();
     }
 
+    public void testMinAggregator_blocks() throws Exception {
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory);
+        // span several blocks of buffered documents, and several segments
+        int numDocs = randomIntBetween(DoubleValuesLeafCollector.BLOCK_SIZE * 2, DoubleValuesLeafCollector.BLOCK_SIZE * 10);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            int numValues = randomIntBetween(0, 3);
+            for (int j = 0; j < numValues; j++) {
+                long value = randomLongBetween(-1000, 1000);
+                document.add(new SortedNumericDocValuesField("number", value));
+                min = Math.min(min, value);
+            }
+            indexWriter.addDocument(document);
+            if (rarely()) {
+                indexWriter.commit();
+            }
+        }
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+
+        MinAggregationBuilder aggregationBuilder = new MinAggregationBuilder("_name").field("number");
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("number");
+
+        MinAggregator aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+        aggregator.preCollection();
+        indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+        aggregator.postCollection();
+        InternalMin result = (InternalMin) aggregator.buildAggregation(0L);
+        assertEquals(min, result.getValue(), 0);
+
+        indexReader.close();
+        directory.close();
+    }
+
     public void testMinAggregator_noValue() throws Exception {
         Directory directory = newDirectory();
         RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory);
@@ -116,6 +116,39 @@ public class StatsAggregatorTests extends AggregatorTestCase {
         );
     }
 
+    public void testRandomLongsInBlocks() throws IOException {
+        MappedFieldType ft =
+            new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        ft.setName("field");
+        final SimpleStatsAggregator expected = new SimpleStatsAggregator();
+        final boolean singleValued = randomBoolean();
+        testCase(ft,
+            iw -> {
+                // span several blocks of buffered documents, and several segments
+                int numDocs = randomIntBetween(DoubleValuesLeafCollector.BLOCK_SIZE * 2, DoubleValuesLeafCollector.BLOCK_SIZE * 10);
+                for (int i = 0; i < numDocs; i++) {
+                    Document doc = new Document();
+                    int numValues = singleValued ? randomIntBetween(0, 1) : randomIntBetween(0, 5);
+                    for (int j = 0; j < numValues; j++) {
+                        long value = randomIntBetween(-100, 100);
+                        doc.add(new SortedNumericDocValuesField("field", value));
+                        expected.add(value);
+                    }
+                    iw.addDocument(doc);
+                    if (rarely()) {
+                        iw.commit();
+                    }
+                }
+            },
+            stats -> {
+                assertEquals(expected.count, stats.getCount(), 0);
+                assertEquals(expected.sum, stats.getSum(), TOLERANCE);
+                assertEquals(expected.min, stats.getMin(), 0);
+                assertEquals(expected.max, stats.getMax(), 0);
+            }
+        );
+    }
+
     public void testSummationAccuracy() throws IOException {
         // Summing up a normal array and expect an accurate value
         double[] values = new double[]{0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 1.0, 1.1, 1.2, 1.3, 1.4, 1.5, 1.6, 1.7};
@@ -21,12 +21,17 @@ package org.elasticsearch.search.aggregations.metrics.cardinality;
 
 import com.carrotsearch.hppc.BitMixer;
 import com.carrotsearch.hppc.IntHashSet;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MAX_PRECISION;
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MIN_PRECISION;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
 
 public class HyperLogLogPlusPlusTests extends ESTestCase {
     public void testEncodeDecode() {
@@ -117,6 +122,49 @@ public class HyperLogLogPlusPlusTests extends ESTestCase {
         assertEquals(1, counts.cardinality(0));
     }
 
+    public void testSparseBuckets() {
+        final int p = randomIntBetween(10, MAX_PRECISION);
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        final BigArrays bigArrays = new BigArrays(null, breakerService, false).withCircuitBreaking();
+        final int numBuckets = randomIntBetween(1000, 10000);
+        final int[] distinctValues = new int[numBuckets];
+        final IntHashSet[] mergedValues = new IntHashSet[10];
+        for (int i = 0; i < mergedValues.length; ++i) {
+            mergedValues[i] = new IntHashSet();
+        }
+        final int maxValue = randomIntBetween(1, 50);
+        try (HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(p, bigArrays, 1);
+             HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(p, bigArrays, 1)) {
+            for (int bucket = 0; bucket < numBuckets; ++bucket) {
+                IntHashSet set = new IntHashSet();
+                for (int i = randomInt(5); i >= 0; --i) {
+                    final int n = randomInt(maxValue);
+                    set.add(n);
+                    mergedValues[bucket % mergedValues.length].add(n);
+                    counts.collect(bucket, BitMixer.mix64(n));
+                }
+                distinctValues[bucket] = set.size();
+            }
+            // buckets that use linear counting only take memory for their values, not the registers of hyperloglog
+            assertThat(breaker.getUsed(), lessThan(numBuckets * HyperLogLogPlusPlus.memoryUsage(p) / 10));
+            for (int bucket = 0; bucket < numBuckets; ++bucket) {
+                assertEquals(distinctValues[bucket], counts.cardinality(bucket));
+            }
+
+            // merging buckets that use linear counting doesn't allocate registers either
+            for (int bucket = 0; bucket < numBuckets; ++bucket) {
+                merged.merge(bucket % mergedValues.length, counts, bucket);
+            }
+            assertThat(breaker.getUsed(), lessThan(numBuckets * HyperLogLogPlusPlus.memoryUsage(p) / 10));
+            for (int bucket = 0; bucket < mergedValues.length; ++bucket) {
+                assertEquals(mergedValues[bucket].size(), merged.cardinality(bucket));
+            }
+        }
+        assertEquals(0, breaker.getUsed());
+    }
+
     public void testPrecisionFromThreshold() {
         assertEquals(4, HyperLogLogPlusPlus.precisionFromThreshold(0));
         assertEquals(6, HyperLogLogPlusPlus.precisionFromThreshold(10));
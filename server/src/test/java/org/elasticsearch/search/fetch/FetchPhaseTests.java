@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.fetch;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.MergePolicyConfig;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.test.TestSearchContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+
+public class FetchPhaseTests extends ESSingleNodeTestCase {
+
+    public void testHitsAreLoadedInDocIdOrderAndReturnedInOriginalOrder() throws IOException {
+        final IndexService indexService = createIndex("test", Settings.builder()
+            .put("index.number_of_shards", 1)
+            .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false)
+            .build());
+        final int numSegments = randomIntBetween(2, 5);
+        int numDocs = 0;
+        for (int segment = 0; segment < numSegments; segment++) {
+            final int numSegmentDocs = randomIntBetween(1, 20);
+            for (int i = 0; i < numSegmentDocs; i++) {
+                client().prepareIndex("test", "type", Integer.toString(numDocs++)).setSource("field", "value").get();
+            }
+            client().admin().indices().prepareRefresh("test").get();
+        }
+
+        final List<Integer> hitExecuteDocIds = new ArrayList<>();
+        final List<SearchHit[]> hitsExecuteHits = new ArrayList<>();
+        final FetchPhase fetchPhase = new FetchPhase(Collections.singletonList(new FetchSubPhase() {
+            @Override
+            public void hitExecute(SearchContext context, HitContext hitContext) {
+                hitExecuteDocIds.add(hitContext.readerContext().docBase + hitContext.docId());
+            }
+
+            @Override
+            public void hitsExecute(SearchContext context, SearchHit[] hits) {
+                hitsExecuteHits.add(hits.clone());
+            }
+        }));
+
+        try (Engine.Searcher searcher = indexService.getShard(0).acquireSearcher("test")) {
+            assertThat(searcher.reader().leaves().size(), greaterThan(1));
+            final List<Integer> docIds = new ArrayList<>();
+            for (int docId = 0; docId < searcher.reader().maxDoc(); docId++) {
+                docIds.add(docId);
+            }
+            Collections.shuffle(docIds, random());
+            final int from = randomIntBetween(0, 5);
+            final int size = randomIntBetween(1, docIds.size());
+            final int[] docIdsToLoad = new int[from + size];
+            for (int i = 0; i < size; i++) {
+                docIdsToLoad[from + i] = docIds.get(i);
+            }
+            final FetchSearchResult fetchResult = new FetchSearchResult();
+            final TestSearchContext context = new TestSearchContext(indexService.getThreadPool(), indexService.getBigArrays(),
+                indexService) {
+                @Override
+                public int[] docIdsToLoad() {
+                    return docIdsToLoad;
+                }
+
+                @Override
+                public int docIdsToLoadFrom() {
+                    return from;
+                }
+
+                @Override
+                public int docIdsToLoadSize() {
+                    return size;
+                }
+
+                @Override
+                public StoredFieldsContext storedFieldsContext() {
+                    return StoredFieldsContext.fromList(Collections.singletonList(StoredFieldsContext._NONE_));
+                }
+
+                @Override
+                public FetchSearchResult fetchResult() {
+                    return fetchResult;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+            };
+            context.setSearcher(searcher);
+            fetchPhase.execute(context);
+
+            // the hits are returned in the order of the doc ids to load
+            final SearchHit[] hits = fetchResult.hits().getHits();
+            assertEquals(size, hits.length);
+            for (int i = 0; i < size; i++) {
+                assertEquals(docIdsToLoad[from + i], hits[i].docId());
+            }
+
+            // but they are loaded in doc id order, one segment after the other
+            assertEquals(size, hitExecuteDocIds.size());
+            for (int i = 1; i < hitExecuteDocIds.size(); i++) {
+                assertThat(hitExecuteDocIds.get(i), greaterThan(hitExecuteDocIds.get(i - 1)));
+            }
+            assertEquals(1, hitsExecuteHits.size());
+            final SearchHit[] sortedHits = hitsExecuteHits.get(0);
+            assertEquals(size, sortedHits.length);
+            for (int i = 0; i < sortedHits.length; i++) {
+                assertEquals((int) hitExecuteDocIds.get(i), sortedHits[i].docId());
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ContextIndexSearcherTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        ThreadPool.terminate(threadPool, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Indexes a segment per given number of documents, every other document matches <code>foo:bar</code>.
+     */
+    private static Directory newIndex(int... segmentSizes) throws IOException {
+        Directory dir = newDirectory();
+        try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            for (int segmentSize : segmentSizes) {
+                for (int i = 0; i < segmentSize; i++) {
+                    Document doc = new Document();
+                    if (i % 2 == 0) {
+                        doc.add(new StringField("foo", "bar", Store.NO));
+                    }
+                    w.addDocument(doc);
+                }
+                w.commit();
+            }
+        }
+        return dir;
+    }
+
+    private static ContextIndexSearcher newSearcher(IndexReader reader) {
+        return new ContextIndexSearcher(new Engine.Searcher("test", new IndexSearcher(reader)),
+            IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy());
+    }
+
+    private static int[] sliceSizes(List<List<LeafReaderContext>> slices) {
+        final int[] sizes = new int[slices.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = slices.get(i).size();
+        }
+        return sizes;
+    }
+
+    public void testComputeSlices() throws IOException {
+        try (Directory dir = newIndex(10, 20, 30, 40);
+             IndexReader reader = DirectoryReader.open(dir)) {
+            final List<LeafReaderContext> leaves = reader.leaves();
+            assertThat(leaves.size(), equalTo(4));
+            assertArrayEquals(new int[] {2, 1, 1}, sliceSizes(ContextIndexSearcher.computeSlices(leaves, 4, 1)));
+            assertArrayEquals(new int[] {4}, sliceSizes(ContextIndexSearcher.computeSlices(leaves, 1, 1)));
+            assertArrayEquals(new int[] {4}, sliceSizes(ContextIndexSearcher.computeSlices(leaves, 4, 1000)));
+            assertArrayEquals(new int[] {3, 1}, sliceSizes(ContextIndexSearcher.computeSlices(leaves, 4, 50)));
+
+            final int maxSliceCount = randomIntBetween(1, 8);
+            final List<List<LeafReaderContext>> slices = ContextIndexSearcher.computeSlices(leaves, maxSliceCount, randomIntBetween(1, 100));
+            assertThat(slices.size(), lessThanOrEqualTo(maxSliceCount));
+            final List<LeafReaderContext> concatenated = new ArrayList<>();
+            slices.forEach(concatenated::addAll);
+            assertThat(concatenated, equalTo(leaves));
+        }
+    }
+
+    public void testSearchSequentiallyWithSingleSlice() throws IOException {
+        try (Directory dir = newIndex(10, 20);
+             IndexReader reader = DirectoryReader.open(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader);
+            searcher.setExecutor(threadPool.executor(ThreadPool.Names.SEARCH_WORKER), 4, 1000);
+            assertFalse(searcher.hasConcurrentSlices());
+            assertThat(searcher.search(new TermQuery(new Term("foo", "bar")), new CountingCollectorManager()), equalTo(15));
+        }
+    }
+
+    public void testConcurrentSearch() throws IOException {
+        try (Directory dir = newIndex(randomIntBetween(1, 50), randomIntBetween(1, 50), randomIntBetween(1, 50),
+                randomIntBetween(1, 50));
+             IndexReader reader = DirectoryReader.open(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader);
+            searcher.setExecutor(threadPool.executor(ThreadPool.Names.SEARCH_WORKER), 4, 1);
+            assertTrue(searcher.hasConcurrentSlices());
+            for (Query query : new Query[] {new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar"))}) {
+                final int expected = new IndexSearcher(reader).count(query);
+                assertThat(searcher.search(query, new CountingCollectorManager()), equalTo(expected));
+            }
+        }
+    }
+
+    public void testFailureWaitsForAllSlices() throws IOException {
+        try (Directory dir = newIndex(10, 10, 10, 10);
+             IndexReader reader = DirectoryReader.open(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader);
+            searcher.setExecutor(threadPool.executor(ThreadPool.Names.SEARCH_WORKER), 4, 1);
+            assertTrue(searcher.hasConcurrentSlices());
+            final LeafReaderContext failingLeaf = randomFrom(reader.leaves());
+            final AtomicInteger collectedLeaves = new AtomicInteger();
+            final CollectorManager<Collector, Void> collectorManager = new CollectorManager<Collector, Void>() {
+                @Override
+                public Collector newCollector() {
+                    return new FilterCollector(new TotalHitCountCollector()) {
+                        @Override
+                        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+                            if (context == failingLeaf) {
+                                throw new IllegalStateException("boom");
+                            }
+                            try {
+                                // give the failure a chance to be reported before the other slices are searched
+                                Thread.sleep(randomIntBetween(0, 10));
+                            } catch (InterruptedException e) {
+                                throw new AssertionError(e);
+                            }
+                            collectedLeaves.incrementAndGet();
+                            return super.getLeafCollector(context);
+                        }
+                    };
+                }
+
+                @Override
+                public Void reduce(Collection<Collector> collectors) {
+                    throw new AssertionError("a failed search must not be reduced");
+                }
+            };
+            final IllegalStateException e = expectThrows(IllegalStateException.class,
+                () -> searcher.search(new MatchAllDocsQuery(), collectorManager));
+            assertThat(e.getMessage(), equalTo("boom"));
+            assertThat(collectedLeaves.get(), equalTo(reader.leaves().size() - 1));
+        }
+    }
+
+    private static class CountingCollectorManager implements CollectorManager<TotalHitCountCollector, Integer> {
+
+        @Override
+        public TotalHitCountCollector newCollector() {
+            return new TotalHitCountCollector();
+        }
+
+        @Override
+        public Integer reduce(Collection<TotalHitCountCollector> collectors) {
+            int totalHits = 0;
+            for (TotalHitCountCollector collector : collectors) {
+                totalHits += collector.getTotalHits();
+            }
+            return totalHits;
+        }
+    }
+}
@@ -80,6 +80,7 @@ public class ShardSearchTransportRequestTests extends AbstractSearchTestCase {
                 assertNotSame(deserializedRequest, shardSearchTransportRequest);
                 assertEquals(deserializedRequest.getAliasFilter(), shardSearchTransportRequest.getAliasFilter());
                 assertEquals(deserializedRequest.indexBoost(), shardSearchTransportRequest.indexBoost(), 0.0f);
+                assertEquals(deserializedRequest.cachedFieldRangesVersion(), shardSearchTransportRequest.cachedFieldRangesVersion());
             }
         }
     }
@@ -95,9 +96,13 @@ public class ShardSearchTransportRequestTests extends AbstractSearchTestCase {
             filteringAliases = new AliasFilter(null, Strings.EMPTY_ARRAY);
         }
         final String[] routings = generateRandomStringArray(5, 10, false, true);
-        return new ShardSearchTransportRequest(new OriginalIndices(searchRequest), searchRequest, shardId,
-            randomIntBetween(1, 100), filteringAliases, randomBoolean() ? 1.0f : randomFloat(),
+        final ShardSearchTransportRequest request = new ShardSearchTransportRequest(new OriginalIndices(searchRequest), searchRequest,
+            shardId, randomIntBetween(1, 100), filteringAliases, randomBoolean() ? 1.0f : randomFloat(),
             Math.abs(randomLong()), null, routings);
+        if (randomBoolean()) {
+            request.cachedFieldRangesVersion(randomNonNegativeLong());
+        }
+        return request;
     }
 
     public void testFilteringAliases() throws Exception {
@@ -56,12 +56,17 @@ public class ProfileResultTests extends ESTestCase {
             }
             timings.put(randomAlphaOfLengthBetween(5, 10), time); // don't overflow Long.MAX_VALUE;
         }
+        int debugSize = randomIntBetween(0, 2);
+        Map<String, Object> debug = new HashMap<>(debugSize);
+        for (int i = 0; i < debugSize; i++) {
+            debug.put(randomAlphaOfLengthBetween(5, 10), randomAlphaOfLengthBetween(5, 10));
+        }
         int childrenSize = depth > 0 ? randomIntBetween(0, 1) : 0;
         List<ProfileResult> children = new ArrayList<>(childrenSize);
         for (int i = 0; i < childrenSize; i++) {
             children.add(createTestItem(depth - 1));
         }
-        return new ProfileResult(type, description, timings, children);
+        return new ProfileResult(type, description, timings, debug, children);
     }
 
     public void testFromXContent() throws IOException {
@@ -83,8 +88,9 @@ public class ProfileResultTests extends ESTestCase {
         BytesReference originalBytes = toShuffledXContent(profileResult, xContentType, ToXContent.EMPTY_PARAMS, humanReadable);
         BytesReference mutated;
         if (addRandomFields) {
-            // "breakdown" just consists of key/value pairs, we shouldn't add anything random there
-            Predicate<String> excludeFilter = (s) -> s.endsWith(ProfileResult.BREAKDOWN.getPreferredName());
+            // "breakdown" and "debug" just consist of key/value pairs, we shouldn't add anything random there
+            Predicate<String> excludeFilter = (s) -> s.endsWith(ProfileResult.BREAKDOWN.getPreferredName())
+                || s.endsWith(ProfileResult.DEBUG.getPreferredName());
             mutated = insertRandomFields(xContentType, originalBytes, excludeFilter, random());
         } else {
             mutated = originalBytes;
@@ -197,5 +203,21 @@ public class ProfileResultTests extends ESTestCase {
                 "    \"key1\" : 1234567890\n" +
                 "  }\n" +
               "}", Strings.toString(builder));
+
+        result = new ProfileResult("profileName", "some description", Collections.singletonMap("key1", 1234L),
+                Collections.singletonMap("strategy", "filter_by_filter"), Collections.emptyList());
+        builder = XContentFactory.jsonBuilder().prettyPrint();
+        result.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        assertEquals("{\n" +
+                "  \"type\" : \"profileName\",\n" +
+                "  \"description\" : \"some description\",\n" +
+                "  \"time_in_nanos\" : 1234,\n" +
+                "  \"breakdown\" : {\n" +
+                "    \"key1\" : 1234\n" +
+                "  },\n" +
+                "  \"debug\" : {\n" +
+                "    \"strategy\" : \"filter_by_filter\"\n" +
+                "  }\n" +
+              "}", Strings.toString(builder));
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
+import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ConcurrentAggregationTests extends ESSingleNodeTestCase {
+
+    public void testTermsMatchSequentialSearch() throws Exception {
+        IndexService index = createIndex("idx", Settings.builder()
+            .put("index.number_of_shards", 1)
+            .put("index.number_of_replicas", 0)
+            .build(), "type", "f", "type=keyword");
+        // every segment has its own distribution of terms, so that the top terms of a segment are not the top terms of the shard
+        final int numSegments = randomIntBetween(3, 5);
+        for (int segment = 0; segment < numSegments; segment++) {
+            BulkRequestBuilder bulk = client().prepareBulk();
+            for (int term = 0; term < 20; term++) {
+                for (int i = randomIntBetween(0, 10); i > 0; i--) {
+                    bulk.add(client().prepareIndex("idx", "type").setSource("f", "term_" + term));
+                }
+            }
+            if (bulk.numberOfActions() > 0) {
+                bulk.get();
+                client().admin().indices().prepareRefresh("idx").get();
+            }
+        }
+
+        TermsAggregationBuilder terms = new TermsAggregationBuilder("terms", ValueType.STRING).field("f")
+            .size(randomIntBetween(1, 3))
+            .shardSize(randomIntBetween(3, 5))
+            .shardMinDocCount(randomIntBetween(0, 5));
+        try (Engine.Searcher searcher = index.getShard(0).acquireSearcher("test")) {
+            Terms expected = searchTerms(index, searcher, terms, false);
+            Terms actual = searchTerms(index, searcher, terms, true);
+            assertThat(actual.getDocCountError(), equalTo(expected.getDocCountError()));
+            assertThat(actual.getSumOfOtherDocCounts(), equalTo(expected.getSumOfOtherDocCounts()));
+            List<? extends Terms.Bucket> expectedBuckets = expected.getBuckets();
+            List<? extends Terms.Bucket> actualBuckets = actual.getBuckets();
+            assertThat(actualBuckets.size(), equalTo(expectedBuckets.size()));
+            for (int i = 0; i < expectedBuckets.size(); i++) {
+                assertThat(actualBuckets.get(i).getKeyAsString(), equalTo(expectedBuckets.get(i).getKeyAsString()));
+                assertThat(actualBuckets.get(i).getDocCount(), equalTo(expectedBuckets.get(i).getDocCount()));
+                assertThat(actualBuckets.get(i).getDocCountError(), equalTo(expectedBuckets.get(i).getDocCountError()));
+            }
+        }
+    }
+
+    private Terms searchTerms(IndexService index, Engine.Searcher searcher, AggregationBuilder terms, boolean concurrent)
+            throws Exception {
+        TestSearchContext context = (TestSearchContext) createSearchContext(index);
+        try {
+            context.setSearcher(searcher);
+            if (concurrent) {
+                context.searcher().setExecutor(getInstanceFromNode(ThreadPool.class).executor(ThreadPool.Names.SEARCH_WORKER), 4, 1);
+                assertTrue(context.searcher().hasConcurrentSlices());
+            }
+            context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+            context.setSize(0);
+            context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+            AggregatorFactories factories = AggregatorFactories.builder().addAggregator(terms).build(context, null);
+            context.aggregations(new SearchContextAggregations(factories, new MultiBucketConsumer(10000)));
+            AggregationPhase aggregationPhase = new AggregationPhase();
+            aggregationPhase.preProcess(context);
+            QueryPhase.execute(context, context.searcher(), checkCancelled -> {});
+            aggregationPhase.execute(context);
+            return context.queryResult().consumeAggs().get("terms");
+        } finally {
+            context.close();
+        }
+    }
+}
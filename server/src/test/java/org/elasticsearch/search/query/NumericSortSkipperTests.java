@@ -0,0 +1,167 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class NumericSortSkipperTests extends ESTestCase {
+
+    public void testSameTopDocsAsFullCollection() throws IOException {
+        doTestSameTopDocs(true);
+    }
+
+    public void testSameTopDocsAsFullCollectionWithIntegers() throws IOException {
+        doTestSameTopDocs(false);
+    }
+
+    private void doTestSameTopDocs(boolean longs) throws IOException {
+        try (Directory dir = newDirectory();
+             RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numDocs = scaledRandomIntBetween(500, 2000);
+            for (int i = 0; i < numDocs; i++) {
+                final Document doc = new Document();
+                final int numValues = rarely() ? 0 : randomIntBetween(1, 2);
+                for (int j = 0; j < numValues; j++) {
+                    // few distinct values so that there are ties
+                    final int value = randomIntBetween(-500, 500);
+                    doc.add(longs ? new LongPoint("field", value) : new IntPoint("field", value));
+                    doc.add(new SortedNumericDocValuesField("field", value));
+                }
+                doc.add(new StringField("foo", randomBoolean() ? "bar" : "baz", Store.NO));
+                w.addDocument(doc);
+                if (rarely()) {
+                    w.commit();
+                }
+            }
+            try (IndexReader reader = w.getReader()) {
+                final IndexSearcher searcher = newSearcher(reader);
+                for (int i = 0; i < 20; i++) {
+                    final SortedNumericSortField sortField = new SortedNumericSortField("field", SortField.Type.LONG, randomBoolean(),
+                        randomFrom(SortedNumericSelector.Type.MIN, SortedNumericSelector.Type.MAX));
+                    sortField.setMissingValue(randomFrom(Long.MIN_VALUE, Long.MAX_VALUE, 0L, (long) randomIntBetween(-600, 600)));
+                    final Sort sort = new Sort(sortField);
+                    final Query query = randomBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("foo", "bar"));
+                    final int numHits = randomIntBetween(1, 50);
+                    FieldDoc after = null;
+                    if (randomBoolean()) {
+                        final TopDocs firstPage = searcher.search(query, randomIntBetween(1, 100), sort);
+                        if (firstPage.scoreDocs.length > 0) {
+                            after = (FieldDoc) firstPage.scoreDocs[firstPage.scoreDocs.length - 1];
+                        }
+                    }
+
+                    final TopFieldCollector expected = TopFieldCollector.create(sort, numHits, after, true, false, false, false);
+                    searcher.search(query, expected);
+                    final TopFieldCollector actual = TopFieldCollector.create(sort, numHits, after, true, false, false, false);
+                    final NumericSortSkipper skipper = new NumericSortSkipper(sortField, numHits,
+                        after == null ? null : (Long) after.fields[0]);
+                    searcher.search(skipper.wrapQuery(query), skipper.wrap(actual));
+                    assertSameTopDocs(expected.topDocs(), actual.topDocs());
+                }
+            }
+        }
+    }
+
+    private static void assertSameTopDocs(TopDocs expected, TopDocs actual) {
+        assertThat(actual.scoreDocs.length, equalTo(expected.scoreDocs.length));
+        for (int i = 0; i < expected.scoreDocs.length; i++) {
+            assertThat(actual.scoreDocs[i].doc, equalTo(expected.scoreDocs[i].doc));
+            assertThat(((FieldDoc) actual.scoreDocs[i]).fields, equalTo(((FieldDoc) expected.scoreDocs[i]).fields));
+        }
+    }
+
+    public void testSkipsNonCompetitiveDocsAndSegments() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numDocs = 10000;
+            for (int i = 0; i < numDocs; i++) {
+                final Document doc = new Document();
+                doc.add(new LongPoint("timestamp", i));
+                doc.add(new SortedNumericDocValuesField("timestamp", i));
+                w.addDocument(doc);
+            }
+            try (IndexReader reader = DirectoryReader.open(w)) {
+                final IndexSearcher searcher = new IndexSearcher(reader);
+                final SortedNumericSortField sortField = new SortedNumericSortField("timestamp", SortField.Type.LONG);
+                sortField.setMissingValue(Long.MAX_VALUE);
+                final Sort sort = new Sort(sortField);
+                final TopFieldCollector topDocsCollector = TopFieldCollector.create(sort, 10, null, true, false, false, false);
+                final AtomicInteger collected = new AtomicInteger();
+                final Collector countingCollector = new FilterCollector(topDocsCollector) {
+                    @Override
+                    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+                        return new FilterLeafCollector(super.getLeafCollector(context)) {
+                            @Override
+                            public void collect(int doc) throws IOException {
+                                collected.incrementAndGet();
+                                super.collect(doc);
+                            }
+                        };
+                    }
+                };
+                final NumericSortSkipper skipper = new NumericSortSkipper(sortField, 10, null);
+                searcher.search(skipper.wrapQuery(new MatchAllDocsQuery()), skipper.wrap(countingCollector));
+                final TopDocs topDocs = topDocsCollector.topDocs();
+                assertThat(topDocs.scoreDocs.length, equalTo(10));
+                for (int i = 0; i < 10; i++) {
+                    assertThat(((FieldDoc) topDocs.scoreDocs[i]).fields[0], equalTo((long) i));
+                }
+                // the first segment has the best values: its other documents are skipped if it is large enough
+                // for the points to tell them apart, and the other segments are skipped
+                assertThat(collected.get(), lessThan(numDocs / 2));
+            }
+        }
+    }
+}
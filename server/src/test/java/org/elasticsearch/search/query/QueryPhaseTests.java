@@ -47,18 +47,23 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
+import org.elasticsearch.indices.IndicesHitCountCache;
 import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -539,6 +544,117 @@ public class QueryPhaseTests extends IndexShardTestCase {
         dir.close();
     }
 
+    public void testConcurrentSegmentSearch() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(200, 400);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            if (randomBoolean()) {
+                doc.add(new StringField("foo", "bar", Store.NO));
+            }
+            doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 10)));
+            w.addDocument(doc);
+            if (i % 50 == 49) {
+                w.commit();
+            }
+        }
+        w.close();
+        final IndexReader reader = DirectoryReader.open(dir);
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final ContextIndexSearcher concurrentSearcher = new ContextIndexSearcher(new Engine.Searcher("test", new IndexSearcher(reader)),
+            IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy());
+        concurrentSearcher.setExecutor(threadPool.executor(ThreadPool.Names.SEARCH_WORKER), 4, 1);
+        assertTrue(concurrentSearcher.hasConcurrentSlices());
+
+        // all matching documents have the same score and many share the same rank, ties must be broken like a sequential search
+        final Query query = new TermQuery(new Term("foo", "bar"));
+        for (int size : new int[] {0, 10}) {
+            for (boolean sort : new boolean[] {false, true}) {
+                for (boolean postFilter : new boolean[] {false, true}) {
+                    TestSearchContext context = new TestSearchContext(null, indexShard);
+                    context.parsedQuery(new ParsedQuery(query));
+                    context.setSize(size);
+                    context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+                    if (sort) {
+                        context.sort(new SortAndFormats(new Sort(new SortField("rank", SortField.Type.INT)),
+                            new DocValueFormat[] {DocValueFormat.RAW}));
+                    }
+                    if (postFilter) {
+                        context.parsedPostFilter(new ParsedQuery(new MinDocQuery(numDocs / 2)));
+                    }
+                    QueryPhase.execute(context, searcher, checkCancelled -> {});
+                    final TopDocs expected = context.queryResult().topDocs();
+                    QueryPhase.execute(context, concurrentSearcher, checkCancelled -> {});
+                    final TopDocs actual = context.queryResult().topDocs();
+                    assertThat(actual.totalHits, equalTo(expected.totalHits));
+                    assertThat(actual.scoreDocs.length, equalTo(expected.scoreDocs.length));
+                    for (int i = 0; i < expected.scoreDocs.length; i++) {
+                        assertThat(actual.scoreDocs[i].doc, equalTo(expected.scoreDocs[i].doc));
+                        assertThat(actual.scoreDocs[i].shardIndex, equalTo(-1));
+                    }
+                }
+            }
+        }
+        reader.close();
+        dir.close();
+    }
+
+    public void testHitCountCache() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 200);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            doc.add(new StringField("foo", randomFrom("bar", "baz", "qux"), Store.NO));
+            w.addDocument(doc);
+            if (i % 20 == 19) {
+                w.commit();
+            }
+        }
+        w.close();
+        final IndexReader reader = DirectoryReader.open(dir);
+        final IndicesHitCountCache cache = new IndicesHitCountCache(Settings.EMPTY);
+        final ContextIndexSearcher searcher = new ContextIndexSearcher(new Engine.Searcher("test", new IndexSearcher(reader)),
+            IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy());
+        searcher.setHitCountCache(cache);
+        // hits of term queries are counted without collecting them
+        final Query query = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
+            .add(new TermQuery(new Term("foo", "baz")), Occur.SHOULD)
+            .build();
+        final int expectedHits = new IndexSearcher(reader).count(query);
+
+        TestSearchContext context = new TestSearchContext(null, indexShard);
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(0);
+        context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+        context.parsedPostFilter(new ParsedQuery(new MinDocQuery(numDocs / 2)));
+        QueryPhase.execute(context, searcher, checkCancelled -> {});
+        // hit counts can't be cached if a collector filters hits
+        assertThat(cache.count(), equalTo(0));
+
+        context.parsedPostFilter(null);
+        QueryPhase.execute(context, searcher, checkCancelled -> {});
+        assertEquals(expectedHits, context.queryResult().topDocs().totalHits);
+        assertThat(cache.count(), equalTo(reader.leaves().size()));
+        QueryPhase.execute(context, searcher, checkCancelled -> {});
+        assertEquals(expectedHits, context.queryResult().topDocs().totalHits);
+
+        // segments whose hit count is cached are not collected
+        for (LeafReaderContext leaf : reader.leaves()) {
+            cache.put(leaf.reader(), query, 1);
+        }
+        QueryPhase.execute(context, searcher, checkCancelled -> {});
+        assertEquals(reader.leaves().size(), context.queryResult().topDocs().totalHits);
+
+        reader.close();
+        cache.close();
+        dir.close();
+    }
+
     static IndexSearcher getAssertingEarlyTerminationSearcher(IndexReader reader, int size) {
         return new IndexSearcher(reader) {
             protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
@@ -26,6 +26,7 @@ import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
@@ -80,13 +81,15 @@ public class MockBigArrays extends BigArrays {
     private final Random random;
     private final PageCacheRecycler recycler;
     private final CircuitBreakerService breakerService;
+    private final String breakerName;
 
     public MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService) {
-        this(recycler, breakerService, false);
+        this(recycler, breakerService, CircuitBreaker.REQUEST, false);
     }
 
-    private MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService, boolean checkBreaker) {
-        super(recycler, breakerService, checkBreaker);
+    private MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService, String breakerName, boolean checkBreaker) {
+        super(recycler, breakerService, breakerName, checkBreaker);
+        this.breakerName = breakerName;
         this.recycler = recycler;
         this.breakerService = breakerService;
         long seed;
@@ -101,7 +104,12 @@ public class MockBigArrays extends BigArrays {
 
     @Override
     public BigArrays withCircuitBreaking() {
-        return new MockBigArrays(this.recycler, this.breakerService, true);
+        return new MockBigArrays(this.recycler, this.breakerService, this.breakerName, true);
+    }
+
+    @Override
+    public BigArrays withBreaker(String breakerName) {
+        return new MockBigArrays(this.recycler, this.breakerService, breakerName, this.checkBreaker);
     }
 
     @Override
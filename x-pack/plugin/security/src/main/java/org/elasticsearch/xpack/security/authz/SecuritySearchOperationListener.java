@@ -9,6 +9,7 @@ import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.index.shard.SearchOperationListener;
 import org.elasticsearch.license.XPackLicenseState;
 import org.elasticsearch.search.SearchContextMissingException;
+import org.elasticsearch.search.internal.ReaderLease;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.transport.TransportRequest;
@@ -20,13 +21,14 @@ import static org.elasticsearch.xpack.security.authz.AuthorizationService.ORIGIN
 import static org.elasticsearch.xpack.security.authz.AuthorizationService.ROLE_NAMES_KEY;
 
 /**
- * A {@link SearchOperationListener} that is used to provide authorization for scroll requests.
+ * A {@link SearchOperationListener} that is used to provide authorization for scroll requests and reader leases.
  *
  * In order to identify the user associated with a scroll request, we replace the {@link ScrollContext}
  * on creation with a custom implementation that holds the {@link Authentication} object. When
  * this context is accessed again in {@link SearchOperationListener#onPreQueryPhase(SearchContext)}
  * the ScrollContext is inspected for the authentication, which is compared to the currently
- * authentication.
+ * authentication. Reader leases hold the {@link Authentication} of the user that opened them the same
+ * way, it is compared to the current authentication whenever a lease is searched or freed.
  */
 public final class SecuritySearchOperationListener implements SearchOperationListener {
 
@@ -68,6 +70,30 @@ public final class SecuritySearchOperationListener implements SearchOperationLis
         }
     }
 
+    /**
+     * Adds the {@link Authentication} to the {@link ReaderLease}
+     */
+    @Override
+    public void onNewReaderLease(ReaderLease lease) {
+        if (licenseState.isSecurityEnabled() && licenseState.isAuthAllowed()) {
+            lease.putInContext(AuthenticationField.AUTHENTICATION_KEY, Authentication.getAuthentication(threadContext));
+        }
+    }
+
+    /**
+     * Compares the {@link Authentication} object from the {@link ReaderLease} with the current authentication context
+     */
+    @Override
+    public void validateReaderLease(ReaderLease lease, TransportRequest request) {
+        if (licenseState.isSecurityEnabled() && licenseState.isAuthAllowed()) {
+            final Authentication originalAuth = lease.getFromContext(AuthenticationField.AUTHENTICATION_KEY);
+            final Authentication current = Authentication.getAuthentication(threadContext);
+            final String action = threadContext.getTransient(ORIGINATING_ACTION_KEY);
+            ensureAuthenticatedUserIsSame(originalAuth, current, auditTrailService, lease.id(), action, request,
+                    threadContext.getTransient(ROLE_NAMES_KEY));
+        }
+    }
+
     /**
      * Compares the {@link Authentication} that was stored in the {@link ScrollContext} with the
      * current authentication. We cannot guarantee that all of the details of the authentication will
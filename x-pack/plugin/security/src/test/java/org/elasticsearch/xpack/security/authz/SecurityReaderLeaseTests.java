@@ -0,0 +1,124 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.authz;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.CloseReaderLeaseAction;
+import org.elasticsearch.action.search.CloseReaderLeaseRequest;
+import org.elasticsearch.action.search.CloseReaderLeaseResponse;
+import org.elasticsearch.action.search.OpenReaderLeaseAction;
+import org.elasticsearch.action.search.OpenReaderLeaseRequest;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.SecureString;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchContextMissingException;
+import org.elasticsearch.test.SecurityIntegTestCase;
+import org.elasticsearch.test.SecuritySettingsSourceField;
+import org.elasticsearch.xpack.core.security.authc.support.UsernamePasswordToken;
+import org.junit.After;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class SecurityReaderLeaseTests extends SecurityIntegTestCase {
+
+    private int indexDocs() throws Exception {
+        final int numDocs = randomIntBetween(4, 16);
+        IndexRequestBuilder[] docs = new IndexRequestBuilder[numDocs];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = client().prepareIndex("foo", "bar").setSource("doc", i);
+        }
+        indexRandom(true, docs);
+        return numDocs;
+    }
+
+    private String openReaderLease() {
+        return client().execute(OpenReaderLeaseAction.INSTANCE, new OpenReaderLeaseRequest(TimeValue.timeValueMinutes(1), "foo"))
+            .actionGet().getId();
+    }
+
+    private Client otherClient() {
+        return client().filterWithHeader(Collections.singletonMap("Authorization",
+            UsernamePasswordToken.basicAuthHeaderValue("other", SecuritySettingsSourceField.TEST_PASSWORD_SECURE_STRING)));
+    }
+
+    private void putOtherUser(String... readableIndices) {
+        securityClient().preparePutRole("other_role")
+            .addIndices(readableIndices, new String[] { "read" }, null, null, null)
+            .get();
+        securityClient().preparePutUser("other", SecuritySettingsSourceField.TEST_PASSWORD.toCharArray(), getFastStoredHashAlgoForTests(),
+            "other_role")
+            .get();
+    }
+
+    public void testIndicesOfReaderLeaseAreAuthorized() throws Exception {
+        assertSecurityIndexActive();
+        putOtherUser(randomAlphaOfLengthBetween(4, 12));
+        final int numDocs = indexDocs();
+        final String readerLease = openReaderLease();
+
+        ElasticsearchSecurityException e = expectThrows(ElasticsearchSecurityException.class,
+            () -> otherClient().prepareSearch().setReaderLease(readerLease).get());
+        assertThat(e.getMessage(), containsString("is unauthorized for user [other]"));
+        // nor can a user without access to the index close the lease
+        CloseReaderLeaseResponse closeResponse = otherClient().execute(CloseReaderLeaseAction.INSTANCE,
+            new CloseReaderLeaseRequest(readerLease)).actionGet();
+        assertFalse(closeResponse.isSucceeded());
+        assertThat(closeResponse.getNumFreed(), equalTo(0));
+
+        SearchResponse response = client().prepareSearch().setReaderLease(readerLease).get();
+        assertEquals(numDocs, response.getHits().getTotalHits());
+        assertTrue(client().execute(CloseReaderLeaseAction.INSTANCE, new CloseReaderLeaseRequest(readerLease)).actionGet()
+            .isSucceeded());
+    }
+
+    public void testReaderLeaseIsPerUser() throws Exception {
+        assertSecurityIndexActive();
+        // the other user may read the index, but not through a lease that was opened by another user
+        putOtherUser("foo");
+        final int numDocs = indexDocs();
+        final String readerLease = openReaderLease();
+
+        SearchPhaseExecutionException e = expectThrows(SearchPhaseExecutionException.class,
+            () -> otherClient().prepareSearch().setReaderLease(readerLease).get());
+        for (ShardSearchFailure failure : e.shardFailures()) {
+            assertThat(ExceptionsHelper.unwrapCause(failure.getCause()), instanceOf(SearchContextMissingException.class));
+        }
+        CloseReaderLeaseResponse closeResponse = otherClient().execute(CloseReaderLeaseAction.INSTANCE,
+            new CloseReaderLeaseRequest(readerLease)).actionGet();
+        assertFalse(closeResponse.isSucceeded());
+        assertThat(closeResponse.getNumFreed(), equalTo(0));
+
+        SearchResponse response = client().prepareSearch().setReaderLease(readerLease).get();
+        assertEquals(numDocs, response.getHits().getTotalHits());
+        closeResponse = client().execute(CloseReaderLeaseAction.INSTANCE, new CloseReaderLeaseRequest(readerLease)).actionGet();
+        assertTrue(closeResponse.isSucceeded());
+        assertThat(closeResponse.getNumFreed(), equalTo(getNumShards("foo").numPrimaries));
+    }
+
+    @After
+    public void cleanupSecurityIndex() throws Exception {
+        super.deleteSecurityIndex();
+    }
+
+    @Override
+    public String transportClientUsername() {
+        return this.nodeClientUsername();
+    }
+
+    @Override
+    public SecureString transportClientPassword() {
+        return this.nodeClientPassword();
+    }
+}
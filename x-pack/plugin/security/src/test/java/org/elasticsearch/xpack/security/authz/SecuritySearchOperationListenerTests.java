@@ -9,10 +9,13 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.license.XPackLicenseState;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchContextMissingException;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
+import org.elasticsearch.search.internal.ReaderLease;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.test.ESTestCase;
@@ -166,6 +169,37 @@ public class SecuritySearchOperationListenerTests extends ESTestCase {
         }
     }
 
+    public void testReaderLeaseIsBoundToUser() {
+        ReaderLease lease = new ReaderLease(randomNonNegativeLong(), mock(IndexShard.class), mock(Engine.Searcher.class), 1000L, () -> 0L);
+        XPackLicenseState licenseState = mock(XPackLicenseState.class);
+        when(licenseState.isSecurityEnabled()).thenReturn(true);
+        when(licenseState.isAuthAllowed()).thenReturn(true);
+        ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+        AuditTrailService auditTrailService = mock(AuditTrailService.class);
+        SecuritySearchOperationListener listener = new SecuritySearchOperationListener(threadContext, licenseState, auditTrailService);
+
+        try (StoredContext ignore = threadContext.newStoredContext(false)) {
+            Authentication authentication = new Authentication(new User("test", "role"), new RealmRef("realm", "file", "node"), null);
+            authentication.writeToContext(threadContext);
+            listener.onNewReaderLease(lease);
+            Authentication leaseAuth = lease.getFromContext(AuthenticationField.AUTHENTICATION_KEY);
+            assertEquals(authentication, leaseAuth);
+            listener.validateReaderLease(lease, Empty.INSTANCE);
+            verifyZeroInteractions(auditTrailService);
+        }
+
+        try (StoredContext ignore = threadContext.newStoredContext(false)) {
+            Authentication authentication = new Authentication(new User("other", "role"), new RealmRef("realm", "file", "node"), null);
+            authentication.writeToContext(threadContext);
+            threadContext.putTransient(ORIGINATING_ACTION_KEY, "action");
+            threadContext.putTransient(ROLE_NAMES_KEY, authentication.getUser().roles());
+            SearchContextMissingException expected =
+                    expectThrows(SearchContextMissingException.class, () -> listener.validateReaderLease(lease, Empty.INSTANCE));
+            assertEquals(lease.id(), expected.id());
+            verify(auditTrailService).accessDenied(authentication, "action", Empty.INSTANCE, authentication.getUser().roles());
+        }
+    }
+
     public void testEnsuredAuthenticatedUserIsSame() {
         Authentication original = new Authentication(new User("test", "role"), new RealmRef("realm", "file", "node"), null);
         Authentication current =